@@ -24,6 +24,7 @@ import org.apache.openjpa.jdbc.kernel.NativeJDBCSeq;
 import org.apache.openjpa.jdbc.kernel.TableJDBCSeq;
 import org.apache.openjpa.jdbc.kernel.ValueTableJDBCSeq;
 import org.apache.openjpa.jdbc.meta.SequenceMapping;
+import org.apache.openjpa.kernel.SnowflakeSeq;
 import org.apache.openjpa.kernel.TimeSeededSeq;
 
 /**
@@ -45,6 +46,7 @@ public class JDBCSeqValue
         SequenceMapping.IMPL_CLASS_TABLE, ClassTableJDBCSeq.class.getName(),
         SequenceMapping.IMPL_NATIVE, NativeJDBCSeq.class.getName(),
         SequenceMapping.IMPL_TIME, TimeSeededSeq.class.getName(),
+        SequenceMapping.IMPL_SNOWFLAKE, SnowflakeSeq.class.getName(),
         // deprecated aliases
         "db", TableJDBCSeq.class.getName(),
         "db-class", ClassTableJDBCSeq.class.getName(),
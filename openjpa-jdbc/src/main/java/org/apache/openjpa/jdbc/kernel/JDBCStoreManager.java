@@ -27,7 +27,9 @@ import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -37,16 +39,20 @@ import org.apache.openjpa.datacache.QueryCache;
 import org.apache.openjpa.datacache.QueryCacheStoreQuery;
 import org.apache.openjpa.enhance.PersistenceCapable;
 import org.apache.openjpa.event.OrphanedKeyAction;
+import org.apache.openjpa.instrumentation.InstrumentationManager;
 import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
 import org.apache.openjpa.jdbc.meta.ClassMapping;
 import org.apache.openjpa.jdbc.meta.Discriminator;
 import org.apache.openjpa.jdbc.meta.FieldMapping;
+import org.apache.openjpa.jdbc.meta.Joinable;
 import org.apache.openjpa.jdbc.meta.ValueMapping;
 import org.apache.openjpa.jdbc.meta.strats.SuperclassDiscriminatorStrategy;
+import org.apache.openjpa.jdbc.schema.Column;
 import org.apache.openjpa.jdbc.sql.DBDictionary;
 import org.apache.openjpa.jdbc.sql.JoinSyntaxes;
 import org.apache.openjpa.jdbc.sql.Joins;
 import org.apache.openjpa.jdbc.sql.Result;
+import org.apache.openjpa.jdbc.sql.SQLBuffer;
 import org.apache.openjpa.jdbc.sql.SQLExceptions;
 import org.apache.openjpa.jdbc.sql.SQLFactory;
 import org.apache.openjpa.jdbc.sql.Select;
@@ -64,6 +70,8 @@ import org.apache.openjpa.kernel.StoreContext;
 import org.apache.openjpa.kernel.StoreManager;
 import org.apache.openjpa.kernel.StoreQuery;
 import org.apache.openjpa.kernel.exps.ExpressionParser;
+import org.apache.openjpa.lib.instrumentation.Metrics;
+import org.apache.openjpa.lib.instrumentation.SQLStatistics;
 import org.apache.openjpa.lib.jdbc.DelegatingConnection;
 import org.apache.openjpa.lib.jdbc.DelegatingPreparedStatement;
 import org.apache.openjpa.lib.jdbc.DelegatingStatement;
@@ -104,6 +112,7 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
     private RefCountConnection _conn = null;
     private boolean _active = false;
     private Log _log = null;
+    private Metrics _metrics = null;
 
     // track the pending statements so we can cancel them
     private List<Statement> _stmnts = Collections.synchronizedList(new ArrayList<Statement>());
@@ -135,6 +144,9 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
 
         _ds = getDataSource(ctx);
 
+        InstrumentationManager im = _conf.getInstrumentationManagerInstance();
+        _metrics = (im == null) ? null : im.getMetrics();
+
         if (_conf.getUpdateManagerInstance().orderDirty())
             ctx.setOrderDirtyObjects(true);
     }
@@ -322,6 +334,9 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
     public boolean initialize(OpenJPAStateManager sm, PCState state,
         FetchConfiguration fetch, Object context) {
         ConnectionInfo info = (ConnectionInfo) context;
+        SQLStatistics stats = (info == null) ? getSQLStatistics() : null;
+        String origin = (stats == null) ? null
+            : stats.setOrigin("find " + sm.getMetaData().getDescribedType().getName());
         try {
             return initializeState(sm, state, (JDBCFetchConfiguration) fetch,
                 info);
@@ -330,9 +345,20 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
         } catch (SQLException se) {
             throw SQLExceptions.getStore(se, Exceptions.toString(sm.getPersistenceCapable()),
                     _dict, fetch.getReadLockLevel());
+        } finally {
+            if (stats != null)
+                stats.setOrigin(origin);
         }
     }
 
+    /**
+     * Gets the statistics the SQL statements are recorded in, or null if
+     * they are not kept.
+     */
+    private SQLStatistics getSQLStatistics() {
+        return (_metrics == null) ? null : _metrics.getSQLStatistics();
+    }
+
     /**
      * Initialize a newly-loaded instance.
      */
@@ -651,6 +677,9 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
                 res = info.result;
             info.sm = null;
         }
+        SQLStatistics stats = getSQLStatistics();
+        String origin = (stats == null) ? null
+            : stats.setOrigin("load " + sm.getMetaData().getDescribedType().getName());
         try {
             // if there's an existing result, load all we can from it
             ClassMapping mapping = (ClassMapping) sm.getMetaData();
@@ -708,6 +737,9 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
             throw new StoreException(cnfe);
         } catch (SQLException se) {
             throw SQLExceptions.getStore(se, _dict, lockLevel);
+        } finally {
+            if (stats != null)
+                stats.setOrigin(origin);
         }
     }
 
@@ -736,10 +768,175 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
                 fields.clear(i);
     }
 
+    /**
+     * Loads the given instances. Instances of the same type that are yet
+     * to be initialized and that can be selected by a single primary key
+     * column are selected together, with as few statements as the
+     * {@link DBDictionary#inClauseLimit} allows. The other instances are
+     * loaded one by one.
+     */
     @Override
     public Collection loadAll(Collection sms, PCState state, int load,
         FetchConfiguration fetch, Object context) {
-        return ImplHelper.loadAll(sms, this, state, load, fetch, context);
+        if (context != null || sms.size() < 2)
+            return ImplHelper.loadAll(sms, this, state, load, fetch, context);
+
+        Map<ClassMapping, List<OpenJPAStateManager>> groups = new LinkedHashMap<>();
+        List<OpenJPAStateManager> rest = new ArrayList<>();
+        for (Object o : sms) {
+            OpenJPAStateManager sm = (OpenJPAStateManager) o;
+            ClassMapping[] mappings = (sm.getManagedInstance() != null) ? null
+                : ((ClassMapping) sm.getMetaData()).getIndependentAssignableMappings();
+            if (mappings == null || mappings.length != 1
+                || !canSelectAll(mappings[0])) {
+                rest.add(sm);
+                continue;
+            }
+            List<OpenJPAStateManager> group = groups.get(mappings[0]);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(mappings[0], group);
+            }
+            group.add(sm);
+        }
+
+        Collection failed = new ArrayList();
+        for (Map.Entry<ClassMapping, List<OpenJPAStateManager>> e : groups.entrySet()) {
+            if (e.getValue().size() == 1)
+                rest.addAll(e.getValue());
+            else
+                failed.addAll(initializeAll(e.getKey(), e.getValue(), state,
+                    (JDBCFetchConfiguration) fetch));
+        }
+        if (!rest.isEmpty())
+            failed.addAll(ImplHelper.loadAll(rest, this, state, load, fetch, context));
+        return failed;
+    }
+
+    /**
+     * Initializes the given instances of the given type from the rows of
+     * the statements that select them all.
+     *
+     * @return the identities of the instances not found
+     */
+    private Collection initializeAll(ClassMapping mapping,
+        List<OpenJPAStateManager> sms, PCState state,
+        JDBCFetchConfiguration fetch) {
+        Map<Object, OpenJPAStateManager> smsById = new HashMap<>();
+        List<Object> oids = new ArrayList<>(sms.size());
+        for (OpenJPAStateManager sm : sms) {
+            smsById.put(toIdValue(sm.getObjectId()), sm);
+            oids.add(sm.getObjectId());
+        }
+
+        List<Result> results = null;
+        try {
+            results = selectAll(mapping, oids, fetch);
+            if (results == null)
+                return ImplHelper.loadAll(sms, this, state,
+                    StoreManager.FORCE_LOAD_NONE, fetch, null);
+            for (Result res : results) {
+                while (res.next()) {
+                    Object oid = mapping.getObjectId(this, res, null, true, null);
+                    OpenJPAStateManager sm = smsById.remove(toIdValue(oid));
+                    if (sm == null)
+                        continue;
+                    ConnectionInfo info = new ConnectionInfo();
+                    info.result = res;
+                    info.mapping = mapping;
+                    if (!initialize(sm, state, fetch, info))
+                        smsById.put(toIdValue(oid), sm);
+                }
+            }
+        } catch (SQLException se) {
+            throw SQLExceptions.getStore(se, _dict);
+        } finally {
+            if (results != null)
+                for (Result res : results)
+                    res.close();
+        }
+
+        Collection failed = new ArrayList(smsById.size());
+        for (OpenJPAStateManager sm : smsById.values())
+            failed.add(sm.getId());
+        return failed;
+    }
+
+    /**
+     * Selects the instances of the given independent type or its subclasses
+     * whose identities are the given ones, with as few statements as the
+     * {@link DBDictionary#inClauseLimit} of the database allows. The rows of
+     * each result initialize the instances as the rows of a query result do.
+     *
+     * @return the results of the statements, or null if the instances of the
+     * type can not be selected by a single primary key column.
+     *
+     * @since 3.1.1
+     */
+    public List<Result> selectAll(ClassMapping mapping, List<Object> oids,
+        JDBCFetchConfiguration fetch) throws SQLException {
+        if (!canSelectAll(mapping))
+            return null;
+        Column pk = mapping.getPrimaryKeyColumns()[0];
+        int limit = (_dict.inClauseLimit > 0) ? _dict.inClauseLimit : oids.size();
+        List<Result> results = new ArrayList<>();
+        try {
+            for (int start = 0; start < oids.size(); start += limit) {
+                Select sel = _sql.newSelect();
+                if (!select(sel, mapping, Select.SUBS_ANY_JOINABLE, null, null,
+                    fetch, EagerFetchModes.EAGER_NONE, true, false)) {
+                    for (Result result : results)
+                        result.close();
+                    return null;
+                }
+                SQLBuffer buf = new SQLBuffer(_dict);
+                buf.append(sel.getColumnAlias(pk)).append(" IN (");
+                int end = Math.min(start + limit, oids.size());
+                for (int i = start; i < end; i++) {
+                    if (i > start)
+                        buf.append(", ");
+                    buf.appendValue(toPrimaryKeyValue(mapping, pk, oids.get(i)), pk);
+                }
+                sel.where(buf.append(")"));
+                results.add(sel.execute(this, fetch));
+            }
+            return results;
+        } catch (SQLException | RuntimeException e) {
+            for (Result result : results)
+                result.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Affirms if the instances of the given type can be selected by the
+     * values of their identity, as the type is independent and its identity
+     * is a single primary key column.
+     *
+     * @since 3.1.1
+     */
+    public static boolean canSelectAll(ClassMapping mapping) {
+        ClassMapping[] mappings = mapping.getIndependentAssignableMappings();
+        return mappings.length == 1 && mappings[0] == mapping
+            && mapping.getEmbeddingMapping() == null
+            && mapping.isPrimaryKeyObjectId(false)
+            && mapping.getPrimaryKeyColumns().length == 1;
+    }
+
+    /**
+     * Gets the value of the given primary key column for the given identity.
+     */
+    private Object toPrimaryKeyValue(ClassMapping mapping, Column pk, Object oid) {
+        if (mapping.getIdentityType() != ClassMetaData.ID_APPLICATION)
+            return ((Id) oid).getId();
+        Object[] pks = ApplicationIds.toPKValues(oid, mapping);
+        Joinable join = mapping.assertJoinable(pk);
+        Object val = pks[mapping.getField(join.getFieldIndex()).getPrimaryKeyIndex()];
+        return join.getJoinValue(val, pk, this);
+    }
+
+    private static Object toIdValue(Object oid) {
+        return (oid instanceof OpenJPAId) ? ((OpenJPAId) oid).getIdObject() : oid;
     }
 
     @Override
@@ -1003,8 +1200,12 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
         try {
             // connect if the connection is currently null, or if
             // the connection has been closed out from under us
-            if (_conn == null)
+            if (_conn == null) {
+                long start = (_metrics == null) ? 0 : System.nanoTime();
                 _conn = connectInternal();
+                if (_metrics != null)
+                    _metrics.record(Metrics.CONNECTION_WAIT, start);
+            }
             if (ref)
                 _conn.ref();
         } catch (SQLException se) {
@@ -1075,7 +1276,14 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
 
         // if inverse relation is known, exclude loading during find
         exclude = excludeInverseRelation(mapping, info, exclude);
-        return _ctx.find(oid, fetch, exclude, info, 0);
+        if (_metrics == null)
+            return _ctx.find(oid, fetch, exclude, info, 0);
+        long start = System.nanoTime();
+        try {
+            return _ctx.find(oid, fetch, exclude, info, 0);
+        } finally {
+            _metrics.record(Metrics.RESULT_LOAD, start);
+        }
     }
 
     private BitSet excludeInverseRelation(ClassMapping mapping,
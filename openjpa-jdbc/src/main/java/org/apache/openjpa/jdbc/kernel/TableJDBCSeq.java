@@ -25,7 +25,11 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
+import javax.sql.DataSource;
 import javax.transaction.NotSupportedException;
 
 import org.apache.openjpa.conf.OpenJPAConfiguration;
@@ -80,13 +84,21 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
     public static final String ACTION_SET = "set";
     public static final String DEFAULT_TABLE = "OPENJPA_SEQUENCE_TABLE";
 
+    // allocations closer together than this grow the next block, and
+    // allocations further apart shrink it
+    private static final long GROW_MILLIS = 1000;
+    private static final long SHRINK_MILLIS = 60 * 1000;
+
     private static final Localizer _loc = Localizer.forPackage
         (TableJDBCSeq.class);
 
     private transient JDBCConfiguration _conf = null;
     private transient Log _log = null;
     private int _alloc = 50;
+    private int _maxAlloc = 0;
+    private boolean _prefetch = false;
     private int _intValue = 1;
+    private transient ExecutorService _prefetcher = null;
     private final ConcurrentHashMap<ClassMapping, Status> _stat = new ConcurrentHashMap<>();
 
     private DBIdentifier _table = DBIdentifier.newTable(DEFAULT_TABLE);
@@ -190,6 +202,55 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
         _alloc = alloc;
     }
 
+    /**
+     * Return the largest number of sequences to allocate for each update of
+     * the sequence table. When greater than {@link #getAllocate}, the block
+     * size adapts to the rate at which sequence values are used: it doubles
+     * each time a block runs out within a second of the last update, and
+     * halves, down to {@link #getAllocate}, each time a block lasts longer
+     * than a minute. Defaults to 0, allocating fixed blocks.
+     *
+     * @since 3.1.1
+     */
+    public int getMaxAllocate() {
+        return _maxAlloc;
+    }
+
+    /**
+     * Return the largest number of sequences to allocate for each update of
+     * the sequence table.
+     *
+     * @see #getMaxAllocate
+     * @since 3.1.1
+     */
+    public void setMaxAllocate(int maxAlloc) {
+        _maxAlloc = maxAlloc;
+    }
+
+    /**
+     * Whether to allocate the next block of sequence values on a background
+     * thread once half of the current block has been used, so that threads
+     * obtaining values do not wait on the sequence table. Only applies to
+     * non-transactional sequences outside of managed transactions. Defaults
+     * to false.
+     *
+     * @since 3.1.1
+     */
+    public boolean getPrefetch() {
+        return _prefetch;
+    }
+
+    /**
+     * Whether to allocate the next block of sequence values on a background
+     * thread once half of the current block has been used.
+     *
+     * @see #getPrefetch
+     * @since 3.1.1
+     */
+    public void setPrefetch(boolean prefetch) {
+        _prefetch = prefetch;
+    }
+
     /**
      * Return the number as the initial number for the
      * GeneratedValue.TABLE strategy to start with.
@@ -304,10 +365,137 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
                 // make sure seq is at least 1, since autoassigned ids of 0 can
                 // conflict with uninitialized values
                 stat.seq = Math.max(stat.seq, 1);
-                if (stat.seq < stat.max)
-                    return stat.seq++;
-                allocateSequence(store, mapping, stat, _alloc, true);
+                if (stat.seq < stat.max) {
+                    long seq = stat.seq++;
+                    if (stat.next == null && !stat.prefetching
+                        && stat.max - stat.seq <= getAllocate(stat) / 2
+                        && isPrefetch())
+                        prefetch(store, mapping, stat);
+                    return seq;
+                }
+                if (stat.next != null) {
+                    // move on to the block allocated in the background
+                    stat.seq = stat.next.seq;
+                    stat.max = stat.next.max;
+                    stat.next = null;
+                    continue;
+                }
+                if (stat.prefetching) {
+                    // a block allocated now would come before the one being
+                    // prefetched, handing out values out of order; wait
+                    stat.wait();
+                    continue;
+                }
+                allocateSequence(store, mapping, stat, nextAllocate(stat),
+                    true);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (_prefetcher != null)
+                _prefetcher.shutdown();
+            _prefetcher = null;
+        }
+        super.close();
+    }
+
+    /**
+     * Return the size of the last block allocated for the given status.
+     */
+    private int getAllocate(Status stat) {
+        return (stat.alloc == 0) ? _alloc : stat.alloc;
+    }
+
+    /**
+     * Return the current time in milliseconds, used to adapt block sizes.
+     *
+     * @since 3.1.1
+     */
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Return the size of the next block to allocate for the given status,
+     * adapting it to the time since the last allocation if configured.
+     */
+    private int nextAllocate(Status stat) {
+        int alloc = getAllocate(stat);
+        if (_maxAlloc > _alloc) {
+            long now = currentTimeMillis();
+            if (stat.time != 0) {
+                long elapsed = now - stat.time;
+                if (elapsed < GROW_MILLIS)
+                    alloc = (int) Math.min((long) alloc * 2, _maxAlloc);
+                else if (elapsed > SHRINK_MILLIS)
+                    alloc = Math.max(alloc / 2, _alloc);
             }
+            stat.time = now;
+        }
+        stat.alloc = alloc;
+        return alloc;
+    }
+
+    /**
+     * Whether blocks may be allocated in the background. The background
+     * thread cannot share the store's connection or a managed transaction.
+     */
+    private boolean isPrefetch() {
+        return _prefetch && type != TYPE_TRANSACTIONAL
+            && type != TYPE_CONTIGUOUS && !suspendInJTA();
+    }
+
+    /**
+     * Allocate the block after the current one for the given status on the
+     * background thread. Must be called while holding the status lock. The
+     * block is allocated through the configuration's data source rather
+     * than the given store, which may be closed by the time it runs.
+     * Synchronous allocations wait for the prefetch to finish, so blocks are
+     * always handed out in the order they were allocated.
+     */
+    private void prefetch(JDBCStore store, final ClassMapping mapping,
+        final Status stat) {
+        final Status next = new Status();
+        final Runnable runnable = new AllocateSequenceRunnable(
+            _conf.getDataSource2(store.getContext()), mapping, next,
+            nextAllocate(stat), true);
+        stat.prefetching = true;
+        synchronized (this) {
+            if (_prefetcher == null)
+                _prefetcher = Executors.newSingleThreadExecutor(
+                    new ThreadFactory() {
+                        @Override
+                        public Thread newThread(Runnable r) {
+                            Thread t = new Thread(r, "OpenJPA-TableJDBCSeq");
+                            t.setDaemon(true);
+                            return t;
+                        }
+                    });
+            _prefetcher.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runnable.run();
+                        synchronized (stat) {
+                            if (next.seq < next.max)
+                                stat.next = next;
+                        }
+                    } catch (RuntimeException re) {
+                        // the next block will be allocated when needed
+                        if (_log.isWarnEnabled())
+                            _log.warn(_loc.get("prefetch-seq-failed",
+                                mapping), re);
+                    } finally {
+                        synchronized (stat) {
+                            stat.prefetching = false;
+                            stat.notifyAll();
+                        }
+                    }
+                }
+            });
         }
     }
 
@@ -820,6 +1008,12 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
         private static final long serialVersionUID = 1L;
         public long seq = 1L;
         public long max = 0L;
+        public int alloc = 0;
+        public long time = 0L;
+
+        // the block allocated in the background, if any
+        transient Status next = null;
+        transient boolean prefetching = false;
     }
 
     /**
@@ -884,6 +1078,7 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
     protected class AllocateSequenceRunnable implements Runnable {
 
         JDBCStore store = null;
+        DataSource ds = null;
         ClassMapping mapping = null;
         Status stat = null;
         int alloc;
@@ -898,6 +1093,32 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
             this.updateStatSeq = updateStatSeq;
         }
 
+        /**
+         * Allocate outside of any store, using connections from the given
+         * data source. Only for sequences that are not transactional.
+         */
+        AllocateSequenceRunnable(DataSource ds, ClassMapping mapping,
+                Status stat, int alloc, boolean updateStatSeq) {
+            this.ds = ds;
+            this.mapping = mapping;
+            this.stat = stat;
+            this.alloc = alloc;
+            this.updateStatSeq = updateStatSeq;
+        }
+
+        /**
+         * Return a connection from the data source, if any, or else for the
+         * store according to the sequence type.
+         */
+        private Connection connect() throws SQLException {
+            if (ds == null)
+                return getConnection(store);
+            Connection conn = ds.getConnection();
+            if (conn.getAutoCommit())
+                conn.setAutoCommit(false);
+            return conn;
+        }
+
         /**
          * This method actually obtains the current sequence value.
          *
@@ -914,7 +1135,7 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
             try {
                 // Try to use the store's connection.
 
-                conn = getConnection(store);
+                conn = connect();
                 boolean sequenceSet =
                     setSequence(mapping, stat, alloc, updateStatSeq, conn);
                 closeConnection(conn);
@@ -922,7 +1143,8 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
                 if (!sequenceSet) {
                     // insert a new sequence column. Prefer connection2 / non-jta-data-source when inserting a
                     // sequence column regardless of Seq.type.
-                    conn = _conf.getDataSource2(store.getContext()).getConnection();
+                    conn = (ds != null) ? ds.getConnection()
+                        : _conf.getDataSource2(store.getContext()).getConnection();
                     try {
                         insertSequence(mapping, conn);
                     } catch (SQLException e) {
@@ -938,7 +1160,7 @@ public class TableJDBCSeq extends AbstractJDBCSeq implements Configurable {
 
                     // now we should be able to update using the connection per
                     // on the seq type.
-                    conn = getConnection(store);
+                    conn = connect();
                     if (!setSequence(mapping, stat, alloc, updateStatSeq, conn))
                     {
                         throw (err != null) ? err : new SQLException(_loc.get(
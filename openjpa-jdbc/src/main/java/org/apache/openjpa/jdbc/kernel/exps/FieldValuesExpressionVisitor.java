@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.kernel.exps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.openjpa.kernel.exps.AbstractExpressionVisitor;
+import org.apache.openjpa.kernel.exps.Expression;
+import org.apache.openjpa.meta.FieldMetaData;
+
+/**
+ * Determines the values a field of the candidate is restricted to by the
+ * visited filter, when the filter only admits candidates whose field equals
+ * one of a finite set of literals or parameters. Equality, <code>IN</code>
+ * and their conjunctions and disjunctions are understood; any other
+ * expression leaves the field unrestricted.
+ *
+ * @since 3.1.1
+ */
+public class FieldValuesExpressionVisitor
+    extends AbstractExpressionVisitor {
+
+    private final FieldMetaData _field;
+    private final Object[] _params;
+    private final LinkedList<List<Set<Object>>> _frames = new LinkedList<>();
+    private Set<Object> _values = null;
+
+    private FieldValuesExpressionVisitor(FieldMetaData field, Object[] params) {
+        _field = field;
+        _params = params;
+        _frames.add(new ArrayList<Set<Object>>());
+    }
+
+    /**
+     * Return the values the given field of the candidate must equal one of
+     * to satisfy the given filter, or null if the filter does not restrict
+     * the field to a finite set of values.
+     *
+     * @param exp the filter of a compiled query
+     * @param field the field of the candidate
+     * @param params the parameters bound to the query
+     */
+    public static Collection<Object> getValues(Expression exp,
+        FieldMetaData field, Object[] params) {
+        if (exp == null || field == null)
+            return null;
+        FieldValuesExpressionVisitor v = new FieldValuesExpressionVisitor
+            (field, params);
+        exp.acceptVisit(v);
+        return v._values;
+    }
+
+    @Override
+    public void enter(Expression exp) {
+        _frames.add(new ArrayList<Set<Object>>());
+    }
+
+    @Override
+    public void exit(Expression exp) {
+        List<Set<Object>> children = _frames.removeLast();
+        Set<Object> values;
+        if (exp instanceof AndExpression)
+            values = intersect(children);
+        else if (exp instanceof OrExpression)
+            values = union(children);
+        else if (exp instanceof EqualExpression)
+            values = getValues(((EqualExpression) exp).getValue1(),
+                ((EqualExpression) exp).getValue2(), false);
+        else if (exp instanceof InExpression)
+            values = getValues(((InExpression) exp).getValue(),
+                ((InExpression) exp).getConstant(), true);
+        else
+            values = null;
+
+        if (_frames.size() == 1)
+            _values = values;
+        else
+            _frames.getLast().add(values);
+    }
+
+    /**
+     * Either side of a conjunction suffices, so use the narrower one.
+     */
+    private static Set<Object> intersect(List<Set<Object>> children) {
+        Set<Object> values = null;
+        for (Set<Object> child : children)
+            if (child != null && (values == null
+                || child.size() < values.size()))
+                values = child;
+        return values;
+    }
+
+    /**
+     * Both sides of a disjunction must restrict the field.
+     */
+    private static Set<Object> union(List<Set<Object>> children) {
+        if (children.isEmpty())
+            return null;
+        Set<Object> values = new LinkedHashSet<>();
+        for (Set<Object> child : children) {
+            if (child == null)
+                return null;
+            values.addAll(child);
+        }
+        return values;
+    }
+
+    private Set<Object> getValues(Val val1, Val val2, boolean in) {
+        if (isField(val1))
+            return toValues(val2, in);
+        if (!in && isField(val2))
+            return toValues(val1, false);
+        return null;
+    }
+
+    private boolean isField(Val val) {
+        return val instanceof PCPath
+            && ((PCPath) val).isCandidateFieldPath()
+            && _field.equals(((PCPath) val).last());
+    }
+
+    private Set<Object> toValues(Val val, boolean in) {
+        Object value;
+        if (val instanceof Lit)
+            value = ((Lit) val).getValue();
+        else if (val instanceof Param)
+            value = ((Param) val).getValue(_params);
+        else if (val instanceof CollectionParam)
+            value = ((CollectionParam) val).getValue(_params);
+        else
+            return null;
+        if (value == null)
+            return null;
+
+        Collection<?> values;
+        if (in && value instanceof Collection)
+            values = (Collection<?>) value;
+        else if (in && value instanceof Object[])
+            values = Arrays.asList((Object[]) value);
+        else
+            values = Arrays.asList(value);
+        if (values.isEmpty() || values.contains(null))
+            return null;
+        return new LinkedHashSet<Object>(values);
+    }
+}
@@ -1126,6 +1126,19 @@ public class PCPath extends CandidatePath implements JDBCPath {
             pstate.field.appendIsNotNull(sql, sel, pstate.joins);
     }
 
+    /**
+     * Return whether this path traverses a single field of the candidate,
+     * as in <code>x.field</code>.
+     *
+     * @since 3.1.1
+     */
+    public boolean isCandidateFieldPath() {
+        if (_type != PATH || _actions == null || _actions.size() != 1)
+            return false;
+        int op = ((Action) _actions.getFirst()).op;
+        return op == Action.GET || op == Action.GET_OUTER;
+    }
+
     public boolean isSubqueryPath() {
         if (_actions != null && _actions.size() == 1 &&
            ((Action)_actions.get(0)).op == Action.SUBQUERY)
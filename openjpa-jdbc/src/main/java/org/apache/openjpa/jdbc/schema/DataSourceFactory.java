@@ -29,9 +29,11 @@ import java.util.List;
 
 import javax.sql.DataSource;
 
+import org.apache.openjpa.instrumentation.InstrumentationManager;
 import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
 import org.apache.openjpa.jdbc.sql.DBDictionary;
 import org.apache.openjpa.lib.conf.Configurations;
+import org.apache.openjpa.lib.instrumentation.Metrics;
 import org.apache.openjpa.lib.jdbc.ConfiguringConnectionDecorator;
 import org.apache.openjpa.lib.jdbc.ConnectionDecorator;
 import org.apache.openjpa.lib.jdbc.DecoratingDataSource;
@@ -39,6 +41,7 @@ import org.apache.openjpa.lib.jdbc.DelegatingDataSource;
 import org.apache.openjpa.lib.jdbc.JDBCEventConnectionDecorator;
 import org.apache.openjpa.lib.jdbc.JDBCListener;
 import org.apache.openjpa.lib.jdbc.LoggingConnectionDecorator;
+import org.apache.openjpa.lib.jdbc.MetricsConnectionDecorator;
 import org.apache.openjpa.lib.log.Log;
 import org.apache.openjpa.lib.util.J2DoPrivHelper;
 import org.apache.openjpa.lib.util.Localizer;
@@ -161,6 +164,12 @@ public class DataSourceFactory {
                     decorators.addAll(decs);
             }
 
+            // metrics decorator
+            InstrumentationManager im = conf.getInstrumentationManagerInstance();
+            Metrics metrics = (im == null) ? null : im.getMetrics();
+            if (metrics != null)
+                decorators.add(new MetricsConnectionDecorator(metrics));
+
             // logging decorator
             LoggingConnectionDecorator lcd =
                 new LoggingConnectionDecorator();
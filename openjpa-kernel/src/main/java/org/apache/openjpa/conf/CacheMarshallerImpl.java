@@ -23,10 +23,19 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
@@ -41,6 +50,8 @@ import org.apache.openjpa.util.InternalException;
 /**
  * Default {@link CacheMarshaller} implementation that writes data
  * to a specified file and reads data from a specified file or URL.
+ * Local files are memory-mapped for reading, and replaced atomically
+ * when written.
  *
  * @since 1.1.0
  */
@@ -61,10 +72,21 @@ public class CacheMarshallerImpl
     private String _inputResourceLocation;
 
     private boolean _consumeErrors = true;
+    private boolean _autoStore = false;
+    private boolean _loaded = false;
 
     @Override
     public Object load() {
-        if (_inputURL == null) {
+        URL inputURL = _inputURL;
+        if (inputURL == null && _autoStore && _outputFile != null
+            && _outputFile.isFile()) {
+            try {
+                inputURL = _outputFile.toURI().toURL();
+            } catch (MalformedURLException mue) {
+                throw new InternalException(mue);
+            }
+        }
+        if (inputURL == null) {
             _log.trace(_loc.get("cache-marshaller-no-inputs", getId()));
             return null;
         }
@@ -72,8 +94,7 @@ public class CacheMarshallerImpl
         Object o = null;
         ObjectInputStream in = null;
         try {
-            in = new ObjectInputStream(new BufferedInputStream(
-                _inputURL.openStream()));
+            in = new ObjectInputStream(openInput(inputURL));
 
             o = in.readObject();
             o = _validationPolicy.getValidData(o);
@@ -86,18 +107,19 @@ public class CacheMarshallerImpl
                 configure(o);
             }
 
+            _loaded = o != null;
             if (_log.isTraceEnabled())
                 _log.trace(_loc.get("cache-marshaller-loaded",
-                    o == null ? null : o.getClass().getName(), _inputURL));
+                    o == null ? null : o.getClass().getName(), inputURL));
         } catch (Exception e) {
             if (_consumeErrors) {
                 if (_log.isWarnEnabled())
                     _log.warn(_loc.get("cache-marshaller-load-exception-ignore",
-                        _inputURL), e);
+                        inputURL), e);
             } else {
                 throw new InternalException(
                     _loc.get("cache-marshaller-load-exception-fatal",
-                        _inputURL),
+                        inputURL),
                     e);
             }
         } finally {
@@ -108,6 +130,31 @@ public class CacheMarshallerImpl
         return o;
     }
 
+    /**
+     * Open the given URL for reading, memory-mapping it if it is a local
+     * file.
+     */
+    private static InputStream openInput(URL url)
+        throws IOException {
+        if ("file".equals(url.getProtocol())) {
+            File file;
+            try {
+                file = new File(url.toURI());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+                // not a hierarchical file URI; read it as a stream
+                file = null;
+            }
+            if (file != null && file.isFile()) {
+                try (FileChannel channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.READ)) {
+                    return new MappedInputStream(channel.map(
+                        FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+                }
+            }
+        }
+        return new BufferedInputStream(url.openStream());
+    }
+
     private void configure(Object o) {
         if (o instanceof Configurable) {
             ((Configurable) o).setConfiguration(_conf);
@@ -123,14 +170,30 @@ public class CacheMarshallerImpl
             return;
         }
         OutputStream out = null;
+        File tmp = null;
         try {
-            out = new FileOutputStream(_outputFile);
+            // write to a temporary file and move it into place, so that
+            // readers never see a partially written file
+            File dir = _outputFile.getAbsoluteFile().getParentFile();
+            tmp = File.createTempFile(_outputFile.getName(), ".tmp", dir);
+            out = new FileOutputStream(tmp);
             ObjectOutputStream oos =
                 new ObjectOutputStream(new BufferedOutputStream(out));
             Object toStore = _validationPolicy.getCacheableData(o);
             oos.writeObject(toStore);
             oos.flush();
             out.flush();
+            out.close();
+            out = null;
+            try {
+                Files.move(tmp.toPath(), _outputFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException amnse) {
+                Files.move(tmp.toPath(), _outputFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
             if (_log.isTraceEnabled())
                 _log.trace(_loc.get("cache-marshaller-stored",
                     o.getClass().getName(), _outputFile));
@@ -149,6 +212,8 @@ public class CacheMarshallerImpl
             if (out != null) {
                 try { out.close(); } catch (IOException ioe) { }
             }
+            if (tmp != null)
+                tmp.delete();
         }
     }
 
@@ -172,6 +237,37 @@ public class CacheMarshallerImpl
         _consumeErrors = consume;
     }
 
+    /**
+     * Whether the data should be stored to the output file by its owner
+     * after a successful start that did not load it, and loaded from the
+     * output file when no input is configured. Defaults to false.
+     *
+     * @since 3.1.1
+     */
+    public void setAutoStore(boolean autoStore) {
+        _autoStore = autoStore;
+    }
+
+    /**
+     * Whether the data should be stored to the output file by its owner
+     * after a successful start that did not load it, and loaded from the
+     * output file when no input is configured.
+     *
+     * @since 3.1.1
+     */
+    public boolean getAutoStore() {
+        return _autoStore;
+    }
+
+    /**
+     * Whether {@link #load} has returned valid cached data.
+     *
+     * @since 3.1.1
+     */
+    public boolean isLoaded() {
+        return _loaded;
+    }
+
     @Override
     public String getId() {
         return _id;
@@ -258,4 +354,38 @@ public class CacheMarshallerImpl
             throw ise;
         }
     }
+
+    /**
+     * Stream over a memory-mapped file.
+     */
+    private static class MappedInputStream
+        extends InputStream {
+
+        private final ByteBuffer _buf;
+
+        MappedInputStream(ByteBuffer buf) {
+            _buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return (_buf.hasRemaining()) ? _buf.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0)
+                return 0;
+            if (!_buf.hasRemaining())
+                return -1;
+            len = Math.min(len, _buf.remaining());
+            _buf.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public int available() {
+            return _buf.remaining();
+        }
+    }
 }
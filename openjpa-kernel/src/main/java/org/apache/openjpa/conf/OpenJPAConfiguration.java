@@ -1984,6 +1984,24 @@ public interface OpenJPAConfiguration
        */
       void setUseTCCLinSelectNew(Boolean useTcclForSelectNew);
 
+    /**
+     * The parser used to parse JPQL strings: <code>javacc</code> for the
+     * generated parser, or <code>descent</code> for the hand-written
+     * recursive-descent parser. Both produce the same parse trees.
+     *
+     * @since 3.1.1
+     */
+    String getJPQLParser();
+
+    /**
+     * The parser used to parse JPQL strings: <code>javacc</code> for the
+     * generated parser, or <code>descent</code> for the hand-written
+     * recursive-descent parser. Both produce the same parse trees.
+     *
+     * @since 3.1.1
+     */
+    void setJPQLParser(String parser);
+
     String getDatabaseAction();
 
     int getDatabaseActionConstant();
@@ -181,6 +181,7 @@ public class OpenJPAConfigurationImpl
     public BooleanValue postLoadOnMerge;
     public BooleanValue optimizeIdCopy;
     public BooleanValue useTcclForSelectNew;
+    public StringValue jpqlParser;
     public ClassListValue typesWithoutEnhancement;
 
     // JPA Properties
@@ -663,7 +664,10 @@ public class OpenJPAConfigurationImpl
         instrumentationManager.setInstantiatingGetter("getInstrumentationManager");
 
         instrumentationProviders = addPluginList("Instrumentation");
-        aliases = new String[] { "jmx", "org.apache.openjpa.instrumentation.jmx.JMXProvider" };
+        aliases = new String[] {
+            "jmx", "org.apache.openjpa.instrumentation.jmx.JMXProvider",
+            "metrics", "org.apache.openjpa.instrumentation.jmx.MetricsProvider",
+        };
         instrumentationProviders.setAliases(aliases);
         instrumentationProviders.setInstantiatingGetter("getInstrumentationInstances");
 
@@ -676,6 +680,16 @@ public class OpenJPAConfigurationImpl
         useTcclForSelectNew.setDefault("false");
         useTcclForSelectNew.set(false);
 
+        jpqlParser = addString("JPQLParser");
+        aliases = new String[] {
+            "javacc", "javacc",
+            "descent", "descent",
+        };
+        jpqlParser.setAliases(aliases);
+        jpqlParser.setDefault(aliases[0]);
+        jpqlParser.set(aliases[0]);
+        jpqlParser.setAliasListComprehensive(true);
+
         typesWithoutEnhancement = new ClassListValue();
 
         // initialize supported options that some runtimes may not support
@@ -2285,6 +2299,16 @@ public class OpenJPAConfigurationImpl
         }
     }
 
+    @Override
+    public String getJPQLParser() {
+        return jpqlParser.get();
+    }
+
+    @Override
+    public void setJPQLParser(String parser) {
+        jpqlParser.set(parser);
+    }
+
     @Override
     public Collection<Class<?>> getTypesWithoutEnhancement() {
         return asList(typesWithoutEnhancement.get());
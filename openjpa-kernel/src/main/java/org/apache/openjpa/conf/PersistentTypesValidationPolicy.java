@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.conf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.openjpa.lib.conf.Configuration;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.MetaDataIndex;
+import org.apache.openjpa.meta.MetaDataRepository;
+
+/**
+ * Extends {@link OpenJPAVersionAndConfigurationTypeValidationPolicy} to
+ * also reject a cached {@link MetaDataRepository} once the class file of
+ * any of its persistent types has changed, using the hash of a
+ * {@link MetaDataIndex} of those types.
+ *
+ * @since 3.1.1
+ */
+public class PersistentTypesValidationPolicy
+    extends OpenJPAVersionAndConfigurationTypeValidationPolicy {
+
+    private OpenJPAConfiguration _conf;
+
+    @Override
+    public Object getCacheableData(Object o) {
+        return new Object[] {
+            super.getCacheableData(o),
+            index(o),
+        };
+    }
+
+    @Override
+    public Object getValidData(Object o) {
+        // a corrupt or foreign cache file is a miss, not an error
+        if (!(o instanceof Object[]))
+            return null;
+        Object[] array = (Object[]) o;
+        if (array.length != 2 || !(array[0] instanceof Object[])
+            || (array[1] != null && !(array[1] instanceof byte[])))
+            return null;
+
+        Object data = super.getValidData(array[0]);
+        if (data == null || array[1] == null)
+            return data;
+        try {
+            MetaDataIndex index = MetaDataIndex.read(
+                new ByteArrayInputStream((byte[]) array[1]));
+            return (index != null && index.isValid(getClassLoader()))
+                ? data : null;
+        } catch (IOException ioe) {
+            return null;
+        }
+    }
+
+    /**
+     * Return the serialized index of the persistent types of the repository
+     * in the given data, or null if the data holds no repository.
+     */
+    private byte[] index(Object o) {
+        MetaDataRepository repos = null;
+        if (o instanceof MetaDataRepository)
+            repos = (MetaDataRepository) o;
+        else if (o instanceof Object[])
+            for (Object elem : (Object[]) o)
+                if (elem instanceof MetaDataRepository)
+                    repos = (MetaDataRepository) elem;
+        if (repos == null)
+            return null;
+
+        ClassMetaData[] metas = repos.getMetaDatas();
+        List<String> names = new ArrayList<>(metas.length);
+        for (ClassMetaData meta : metas)
+            names.add(meta.getDescribedType().getName());
+
+        MetaDataIndex index = new MetaDataIndex();
+        index.addTypeNames(MetaDataIndex.CLASSES, names);
+        index.seal(getClassLoader());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            index.write(out);
+        } catch (IOException ioe) {
+            return null;
+        }
+        return out.toByteArray();
+    }
+
+    private ClassLoader getClassLoader() {
+        return _conf.getClassResolverInstance().getClassLoader(getClass(),
+            null);
+    }
+
+    @Override
+    public void setConfiguration(Configuration conf) {
+        super.setConfiguration(conf);
+        _conf = (OpenJPAConfiguration) conf;
+    }
+}
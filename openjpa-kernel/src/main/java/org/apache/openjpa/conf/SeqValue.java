@@ -18,6 +18,7 @@
  */
 package org.apache.openjpa.conf;
 
+import org.apache.openjpa.kernel.SnowflakeSeq;
 import org.apache.openjpa.kernel.TimeSeededSeq;
 import org.apache.openjpa.lib.conf.PluginValue;
 import org.apache.openjpa.meta.SequenceMetaData;
@@ -35,6 +36,7 @@ public class SeqValue
     private static final String[] ALIASES = new String[]{
         SequenceMetaData.IMPL_TIME, TimeSeededSeq.class.getName(),
         SequenceMetaData.IMPL_NATIVE, TimeSeededSeq.class.getName(),
+        SequenceMetaData.IMPL_SNOWFLAKE, SnowflakeSeq.class.getName(),
         // deprecated aliases
         "sjvm", TimeSeededSeq.class.getName(),
     };
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.instrumentation;
+
+import org.apache.openjpa.lib.instrumentation.AbstractInstrument;
+import org.apache.openjpa.lib.instrumentation.LatencyHistogram;
+import org.apache.openjpa.lib.instrumentation.Metrics;
+
+/**
+ * Provides a basic instrument implementation wrapper for the metrics of
+ * OpenJPA operations. This class can be extended to create a provider
+ * specific instrument for the metrics.
+ *
+ * @since 3.1.1
+ */
+public abstract class AbstractMetricsInstrument extends AbstractInstrument
+    implements MetricsInstrument {
+
+    private Metrics _metrics = null;
+    private String _configID = null;
+    private String _configRef = null;
+
+    public void setMetrics(Metrics metrics) {
+        _metrics = metrics;
+    }
+
+    public Metrics getMetrics() {
+        return _metrics;
+    }
+
+    public void setConfigId(String cid) {
+        _configID = cid;
+    }
+
+    public void setContextRef(String cref) {
+        _configRef = cref;
+    }
+
+    public String getConfigId() {
+        return _configID;
+    }
+
+    public String getContextRef() {
+        return _configRef;
+    }
+
+    @Override
+    public String[] getOperationNames() {
+        if (_metrics == null)
+            return new String[0];
+        return _metrics.getHistogramNames().toArray(new String[0]);
+    }
+
+    @Override
+    public long getCount(String operation) {
+        LatencyHistogram histogram = getHistogram(operation);
+        return histogram == null ? 0 : histogram.getCount();
+    }
+
+    @Override
+    public double getMeanTime(String operation) {
+        LatencyHistogram histogram = getHistogram(operation);
+        return histogram == null ? 0 : histogram.getMean();
+    }
+
+    @Override
+    public long getPercentileTime(String operation, double percent) {
+        LatencyHistogram histogram = getHistogram(operation);
+        return histogram == null ? 0 : histogram.getPercentile(percent);
+    }
+
+    @Override
+    public long getMaxTime(String operation) {
+        LatencyHistogram histogram = getHistogram(operation);
+        return histogram == null ? 0 : histogram.getMax();
+    }
+
+    @Override
+    public String[] getCounterNames() {
+        if (_metrics == null)
+            return new String[0];
+        return _metrics.getCounterNames().toArray(new String[0]);
+    }
+
+    @Override
+    public long getCounter(String name) {
+        return _metrics == null ? 0 : _metrics.getCounter(name);
+    }
+
+    @Override
+    public void reset() {
+        if (_metrics != null)
+            _metrics.reset();
+    }
+
+    private LatencyHistogram getHistogram(String operation) {
+        return _metrics == null ? null : _metrics.getHistogram(operation);
+    }
+}
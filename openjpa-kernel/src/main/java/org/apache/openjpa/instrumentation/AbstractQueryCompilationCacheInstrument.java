@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.instrumentation;
+
+import java.util.Date;
+
+import org.apache.openjpa.kernel.QueryCompilationCache;
+import org.apache.openjpa.lib.instrumentation.AbstractInstrument;
+import org.apache.openjpa.lib.instrumentation.InstrumentationLevel;
+
+/**
+ * Provides a basic instrument implementation wrapper for the query
+ * compilation cache. This class can be extended to create a provider
+ * specific instrument for the query compilation cache.
+ */
+public abstract class AbstractQueryCompilationCacheInstrument
+    extends AbstractInstrument
+    implements QueryCompilationCacheInstrument {
+
+    public static final long NO_STATS = -1;
+
+    private QueryCompilationCache _qcc;
+    private String _configID = null;
+    private String _configRef = null;
+
+    public void setConfigId(String cid) {
+        _configID = cid;
+    }
+
+    public void setContextRef(String cref) {
+        _configRef = cref;
+    }
+
+    public String getConfigId() {
+        return _configID;
+    }
+
+    public String getContextRef() {
+        return _configRef;
+    }
+
+    public void setQueryCompilationCache(QueryCompilationCache qcc) {
+        _qcc = qcc;
+    }
+
+    @Override
+    public long getSize() {
+        if (_qcc != null)
+            return _qcc.size();
+        return NO_STATS;
+    }
+
+    @Override
+    public long getEstimatedMemory() {
+        if (_qcc != null)
+            return _qcc.getEstimatedMemory();
+        return NO_STATS;
+    }
+
+    @Override
+    public long getHitCount() {
+        if (_qcc != null)
+            return _qcc.getHitCount();
+        return NO_STATS;
+    }
+
+    @Override
+    public long getMissCount() {
+        if (_qcc != null)
+            return _qcc.getMissCount();
+        return NO_STATS;
+    }
+
+    @Override
+    public long getEvictionCount() {
+        if (_qcc != null)
+            return _qcc.getEvictionCount();
+        return NO_STATS;
+    }
+
+    @Override
+    public long getCompileCount() {
+        if (_qcc != null)
+            return _qcc.getCompileCount();
+        return NO_STATS;
+    }
+
+    @Override
+    public long getCompileTime() {
+        if (_qcc != null)
+            return _qcc.getCompileTime();
+        return NO_STATS;
+    }
+
+    @Override
+    public void reset() {
+        if (_qcc != null)
+            _qcc.reset();
+    }
+
+    @Override
+    public Date sinceDate() {
+        if (_qcc != null)
+            return _qcc.since();
+        return null;
+    }
+
+    @Override
+    public Date startDate() {
+        if (_qcc != null)
+            return _qcc.start();
+        return null;
+    }
+
+    @Override
+    public InstrumentationLevel getLevel() {
+        return InstrumentationLevel.FACTORY;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.instrumentation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.openjpa.lib.instrumentation.AbstractInstrument;
+import org.apache.openjpa.lib.instrumentation.SQLStatistics;
+
+/**
+ * Provides a basic instrument implementation wrapper for the statistics of
+ * the SQL statements executed. This class can be extended to create a
+ * provider specific instrument for the SQL statistics.
+ *
+ * @since 3.1.1
+ */
+public abstract class AbstractSQLStatisticsInstrument extends AbstractInstrument
+    implements SQLStatisticsInstrument {
+
+    private static final String[] EMPTY = new String[0];
+
+    private SQLStatistics _stats = null;
+    private String _configID = null;
+    private String _configRef = null;
+
+    public void setSQLStatistics(SQLStatistics stats) {
+        _stats = stats;
+    }
+
+    public SQLStatistics getSQLStatistics() {
+        return _stats;
+    }
+
+    public void setConfigId(String cid) {
+        _configID = cid;
+    }
+
+    public void setContextRef(String cref) {
+        _configRef = cref;
+    }
+
+    public String getConfigId() {
+        return _configID;
+    }
+
+    public String getContextRef() {
+        return _configRef;
+    }
+
+    @Override
+    public String[] getStatements() {
+        if (_stats == null)
+            return EMPTY;
+        return _stats.getStatements().toArray(EMPTY);
+    }
+
+    @Override
+    public String[] getTopStatements(int count) {
+        if (_stats == null)
+            return EMPTY;
+        List<SQLStatistics.Entry> entries = _stats.getStatistics();
+        entries.sort(Comparator.comparingLong(
+            (SQLStatistics.Entry e) -> e.getLatency().getTotal()).reversed());
+        List<String> sqls = new ArrayList<>();
+        for (int i = 0; i < entries.size() && i < count; i++)
+            sqls.add(entries.get(i).getSQL());
+        return sqls.toArray(EMPTY);
+    }
+
+    @Override
+    public long getCount(String sql) {
+        SQLStatistics.Entry entry = getEntry(sql);
+        return entry == null ? 0 : entry.getCount();
+    }
+
+    @Override
+    public long getTotalTime(String sql) {
+        SQLStatistics.Entry entry = getEntry(sql);
+        return entry == null ? 0 : entry.getLatency().getTotal();
+    }
+
+    @Override
+    public double getMeanTime(String sql) {
+        SQLStatistics.Entry entry = getEntry(sql);
+        return entry == null ? 0 : entry.getLatency().getMean();
+    }
+
+    @Override
+    public long getPercentileTime(String sql, double percent) {
+        SQLStatistics.Entry entry = getEntry(sql);
+        return entry == null ? 0 : entry.getLatency().getPercentile(percent);
+    }
+
+    @Override
+    public long getMaxTime(String sql) {
+        SQLStatistics.Entry entry = getEntry(sql);
+        return entry == null ? 0 : entry.getLatency().getMax();
+    }
+
+    @Override
+    public long getRowsRead(String sql) {
+        SQLStatistics.Entry entry = getEntry(sql);
+        return entry == null ? 0 : entry.getRowsRead();
+    }
+
+    @Override
+    public long getRowsWritten(String sql) {
+        SQLStatistics.Entry entry = getEntry(sql);
+        return entry == null ? 0 : entry.getRowsWritten();
+    }
+
+    @Override
+    public long getBatchCount(String sql) {
+        SQLStatistics.Entry entry = getEntry(sql);
+        return entry == null ? 0 : entry.getBatchCount();
+    }
+
+    @Override
+    public double getMeanBatchSize(String sql) {
+        SQLStatistics.Entry entry = getEntry(sql);
+        return entry == null ? 0 : entry.getMeanBatchSize();
+    }
+
+    @Override
+    public long getMaxBatchSize(String sql) {
+        SQLStatistics.Entry entry = getEntry(sql);
+        return entry == null ? 0 : entry.getMaxBatchSize();
+    }
+
+    @Override
+    public String[] getOrigins(String sql) {
+        SQLStatistics.Entry entry = getEntry(sql);
+        return entry == null ? EMPTY : entry.getOrigins().toArray(EMPTY);
+    }
+
+    @Override
+    public String[] getSlowExecutions() {
+        if (_stats == null)
+            return EMPTY;
+        List<String> slow = new ArrayList<>();
+        for (SQLStatistics.SlowExecution exec : _stats.getSlowExecutions())
+            slow.add(exec.toString());
+        return slow.toArray(EMPTY);
+    }
+
+    @Override
+    public long getUntrackedCount() {
+        return _stats == null ? 0 : _stats.getUntrackedCount();
+    }
+
+    @Override
+    public void reset() {
+        if (_stats != null)
+            _stats.reset();
+    }
+
+    private SQLStatistics.Entry getEntry(String sql) {
+        return _stats == null ? null : _stats.getStatistics(sql);
+    }
+}
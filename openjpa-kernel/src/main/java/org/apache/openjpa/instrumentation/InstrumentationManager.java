@@ -24,6 +24,7 @@ import org.apache.openjpa.conf.OpenJPAConfiguration;
 import org.apache.openjpa.lib.conf.PluginListValue;
 import org.apache.openjpa.lib.instrumentation.InstrumentationLevel;
 import org.apache.openjpa.lib.instrumentation.InstrumentationProvider;
+import org.apache.openjpa.lib.instrumentation.Metrics;
 import org.apache.openjpa.lib.util.Closeable;
 
 /**
@@ -68,4 +69,12 @@ public interface InstrumentationManager extends Closeable {
      * @return  all providers managed by this manager
      */
     Set<InstrumentationProvider> getProviders();
+
+    /**
+     * Returns the metrics that the operations of the runtime are timed
+     * into, if a managed provider records them.
+     * @return the metrics, or null if no managed provider records them
+     * @since 3.1.1
+     */
+    Metrics getMetrics();
 }
@@ -27,6 +27,7 @@ import org.apache.openjpa.conf.OpenJPAConfiguration;
 import org.apache.openjpa.lib.conf.PluginListValue;
 import org.apache.openjpa.lib.instrumentation.InstrumentationLevel;
 import org.apache.openjpa.lib.instrumentation.InstrumentationProvider;
+import org.apache.openjpa.lib.instrumentation.Metrics;
 
 /**
  * An implementation of an instrumentation manager.
@@ -65,6 +66,21 @@ public class InstrumentationManagerImpl implements InstrumentationManager {
         return Collections.unmodifiableSet(_providers);
     }
 
+    /**
+     * Returns the metrics of the first provider that records metrics, if any
+     */
+    @Override
+    public Metrics getMetrics() {
+        synchronized (_providers) {
+            for (InstrumentationProvider provider : _providers) {
+                if (provider instanceof MetricsSource) {
+                    return ((MetricsSource) provider).getMetrics();
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      *  Starts all providers at a specific level and context
      */
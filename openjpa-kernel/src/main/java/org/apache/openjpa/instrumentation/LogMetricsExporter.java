@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.instrumentation;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.lib.conf.Configurable;
+import org.apache.openjpa.lib.conf.Configuration;
+import org.apache.openjpa.lib.instrumentation.LatencyHistogram;
+import org.apache.openjpa.lib.instrumentation.Metrics;
+import org.apache.openjpa.lib.instrumentation.MetricsExporter;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.lib.util.Localizer;
+
+/**
+ * Exports the metrics to the <code>openjpa.Runtime</code> log at
+ * <code>INFO</code> level, a line per operation and counter. Latencies are
+ * logged in microseconds.
+ *
+ * @since 3.1.1
+ */
+public class LogMetricsExporter implements MetricsExporter, Configurable {
+
+    private static final Localizer _loc = Localizer.forPackage(LogMetricsExporter.class);
+
+    private Log _log = null;
+
+    @Override
+    public void setConfiguration(Configuration conf) {
+        _log = conf.getLog(OpenJPAConfiguration.LOG_RUNTIME);
+    }
+
+    @Override
+    public void startConfiguration() {
+    }
+
+    @Override
+    public void endConfiguration() {
+    }
+
+    @Override
+    public void export(Metrics metrics) {
+        if (_log == null || !_log.isInfoEnabled())
+            return;
+        for (String name : metrics.getHistogramNames()) {
+            LatencyHistogram histogram = metrics.getHistogram(name);
+            _log.info(_loc.get("metrics-operation", new Object[] { name,
+                histogram.getCount(), toMicros(histogram.getMean()),
+                toMicros(histogram.getPercentile(50)),
+                toMicros(histogram.getPercentile(99)),
+                toMicros(histogram.getMax()) }));
+        }
+        for (String name : metrics.getCounterNames())
+            _log.info(_loc.get("metrics-counter", name, metrics.getCounter(name)));
+    }
+
+    private static long toMicros(double nanos) {
+        return Math.round(nanos / 1000);
+    }
+}
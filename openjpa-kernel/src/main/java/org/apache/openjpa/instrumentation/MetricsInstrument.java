@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.instrumentation;
+
+/**
+ * Interface for providing the latencies and counts of the operations timed
+ * by OpenJPA. Latencies are in nanoseconds.
+ *
+ * @since 3.1.1
+ */
+public interface MetricsInstrument {
+
+    /**
+     * Gets the names of the operations timed so far.
+     */
+    String[] getOperationNames();
+
+    /**
+     * Gets the number of times the given operation was timed since last reset.
+     */
+    long getCount(String operation);
+
+    /**
+     * Gets the mean latency of the given operation since last reset.
+     */
+    double getMeanTime(String operation);
+
+    /**
+     * Gets the latency that the given percentage of the executions of the
+     * given operation did not exceed since last reset.
+     */
+    long getPercentileTime(String operation, double percent);
+
+    /**
+     * Gets the largest latency of the given operation since last reset.
+     */
+    long getMaxTime(String operation);
+
+    /**
+     * Gets the names of the counters updated so far.
+     */
+    String[] getCounterNames();
+
+    /**
+     * Gets the value of the given counter since last reset.
+     */
+    long getCounter(String name);
+
+    /**
+     * Discards the latencies and counts recorded so far.
+     */
+    void reset();
+
+    /**
+     * Publishes the current latencies and counts through the configured
+     * exporter, if any.
+     */
+    void export();
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.instrumentation;
+
+import java.util.Date;
+
+/**
+ * Interface for providing instrumented query compilation cache metrics and
+ * operations.
+ */
+public interface QueryCompilationCacheInstrument {
+
+    /**
+     * Returns number of compiled queries currently held by the cache.
+     */
+    long getSize();
+
+    /**
+     * Returns the estimated memory held by the cached compilations, in bytes.
+     */
+    long getEstimatedMemory();
+
+    /**
+     * Returns number of lookups that found a cached compilation since last
+     * reset.
+     */
+    long getHitCount();
+
+    /**
+     * Returns number of lookups that did not find a cached compilation since
+     * last reset.
+     */
+    long getMissCount();
+
+    /**
+     * Returns number of compilations evicted from the cache since last reset.
+     */
+    long getEvictionCount();
+
+    /**
+     * Returns number of queries compiled since last reset.
+     */
+    long getCompileCount();
+
+    /**
+     * Returns total time spent compiling queries since last reset, in
+     * milliseconds.
+     */
+    long getCompileTime();
+
+    /**
+     * Resets cache statistics
+     */
+    void reset();
+
+    /**
+     * Returns date since cache statistics collection were last reset.
+     */
+    Date sinceDate();
+
+    /**
+     * Returns date cache statistics collection started.
+     */
+    Date startDate();
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.instrumentation;
+
+/**
+ * Interface for providing the statistics of the SQL statements executed,
+ * by normalized SQL. Latencies are in nanoseconds.
+ *
+ * @since 3.1.1
+ */
+public interface SQLStatisticsInstrument {
+
+    /**
+     * Gets the normalized SQL statements executed so far.
+     */
+    String[] getStatements();
+
+    /**
+     * Gets the given number of normalized SQL statements that took the
+     * most time in total, from the most expensive.
+     */
+    String[] getTopStatements(int count);
+
+    /**
+     * Gets the number of executions of the given statement since last reset.
+     */
+    long getCount(String sql);
+
+    /**
+     * Gets the total latency of the given statement since last reset.
+     */
+    long getTotalTime(String sql);
+
+    /**
+     * Gets the mean latency of the given statement since last reset.
+     */
+    double getMeanTime(String sql);
+
+    /**
+     * Gets the latency that the given percentage of the executions of the
+     * given statement did not exceed since last reset.
+     */
+    long getPercentileTime(String sql, double percent);
+
+    /**
+     * Gets the largest latency of the given statement since last reset.
+     */
+    long getMaxTime(String sql);
+
+    /**
+     * Gets the number of rows read from the results of the given statement.
+     */
+    long getRowsRead(String sql);
+
+    /**
+     * Gets the number of rows written by the given statement.
+     */
+    long getRowsWritten(String sql);
+
+    /**
+     * Gets the number of batch executions of the given statement.
+     */
+    long getBatchCount(String sql);
+
+    /**
+     * Gets the mean number of statements of a batch execution of the given
+     * statement.
+     */
+    double getMeanBatchSize(String sql);
+
+    /**
+     * Gets the largest number of statements of a batch execution of the
+     * given statement.
+     */
+    long getMaxBatchSize(String sql);
+
+    /**
+     * Gets the JPQL queries or finders that issued the given statement.
+     */
+    String[] getOrigins(String sql);
+
+    /**
+     * Gets the executions slower than the threshold, from the oldest to the
+     * most recent, with their latency, parameters and origin.
+     */
+    String[] getSlowExecutions();
+
+    /**
+     * Gets the number of executions of statements that were not tracked, as
+     * the maximum number of statements was reached.
+     */
+    long getUntrackedCount();
+
+    /**
+     * Discards the statistics and slow executions recorded so far.
+     */
+    void reset();
+}
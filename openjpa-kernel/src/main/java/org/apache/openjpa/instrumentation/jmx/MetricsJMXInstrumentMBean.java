@@ -0,0 +1,32 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.instrumentation.jmx;
+
+import org.apache.openjpa.instrumentation.MetricsInstrument;
+
+/**
+ * Simple MBean interface for providing the metrics of OpenJPA operations.
+ * Note: Simple MBeans require an MBean interface matching the supplied
+ * implementation class.
+ *
+ * @since 3.1.1
+ */
+public interface MetricsJMXInstrumentMBean extends MetricsInstrument {
+
+}
@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.instrumentation.jmx;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.instrumentation.LogMetricsExporter;
+import org.apache.openjpa.instrumentation.MetricsSource;
+import org.apache.openjpa.lib.conf.PluginValue;
+import org.apache.openjpa.lib.instrumentation.Metrics;
+import org.apache.openjpa.lib.instrumentation.MetricsExporter;
+import org.apache.openjpa.lib.instrumentation.SQLStatistics;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.lib.util.Localizer;
+
+/**
+ * A JMX instrumentation provider that records the latencies of finds,
+ * flushes, commits, query compilations and executions, SQL executions,
+ * connection waits and result materializations in lock-free histograms.
+ * The metrics are exposed by the <code>Metrics</code> MBean and can be
+ * published periodically by a {@link MetricsExporter}, for example:
+ * <code>openjpa.Instrumentation=metrics(Exporter=log, ExportInterval=60000)</code>
+ * With <code>SQLStatistics=true</code>, the provider also keeps the
+ * {@link SQLStatistics statistics} of each SQL statement shape and the
+ * slowest executions, exposed by the <code>SQLStatistics</code> MBean.
+ *
+ * @since 3.1.1
+ */
+public class MetricsProvider extends JMXProvider implements MetricsSource {
+
+    // Aliases for built-in instrumentation, including the metrics
+    public static final String[] METRICS_INSTRUMENT_ALIASES = {
+        "DataCache", "org.apache.openjpa.instrumentation.jmx.DataCacheJMXInstrument",
+        "QueryCache", "org.apache.openjpa.instrumentation.jmx.QueryCacheJMXInstrument",
+        "QuerySQLCache", "org.apache.openjpa.instrumentation.jmx.PreparedQueryCacheJMXInstrument",
+        "QueryCompilationCache",
+            "org.apache.openjpa.instrumentation.jmx.QueryCompilationCacheJMXInstrument",
+        "Metrics", "org.apache.openjpa.instrumentation.jmx.MetricsJMXInstrument",
+        "SQLStatistics", "org.apache.openjpa.instrumentation.jmx.SQLStatisticsJMXInstrument"
+    };
+
+    private static final Localizer _loc = Localizer.forPackage(MetricsProvider.class);
+
+    private final Metrics _metrics = new Metrics();
+    private String _exporter = null;
+    private MetricsExporter _exporterInstance = null;
+    private long _exportInterval = 0;
+    private Timer _timer = null;
+    private boolean _sqlStatistics = false;
+    private int _maxSQLStatements = 1000;
+    private long _slowSQLThreshold = 1000;
+    private int _slowSQLHistory = 100;
+
+    /**
+     * Gets the metrics recorded for the configuration of this provider.
+     */
+    @Override
+    public Metrics getMetrics() {
+        return _metrics;
+    }
+
+    /**
+     * Gets the plug-in string of the exporter that publishes the metrics.
+     */
+    public String getExporter() {
+        return _exporter;
+    }
+
+    /**
+     * Sets the plug-in string of the exporter that publishes the metrics,
+     * either <code>log</code> or the name of a {@link MetricsExporter}
+     * implementation with its properties.
+     */
+    public void setExporter(String exporter) {
+        _exporter = exporter;
+        _exporterInstance = null;
+    }
+
+    /**
+     * Gets the exporter that publishes the metrics, or null if none is
+     * configured.
+     */
+    public MetricsExporter getExporterInstance() {
+        if (_exporterInstance == null && _exporter != null) {
+            PluginValue val = new PluginValue("Exporter", true);
+            val.setAliases(new String[] { "log", LogMetricsExporter.class.getName() });
+            val.setString(_exporter);
+            _exporterInstance = (MetricsExporter) val.instantiate(MetricsExporter.class,
+                getConfiguration());
+        }
+        return _exporterInstance;
+    }
+
+    public void setExporterInstance(MetricsExporter exporter) {
+        _exporterInstance = exporter;
+    }
+
+    /**
+     * Gets the interval in milliseconds at which the metrics are exported.
+     */
+    public long getExportInterval() {
+        return _exportInterval;
+    }
+
+    /**
+     * Sets the interval in milliseconds at which the metrics are exported.
+     * The metrics are only exported on demand if the interval is not
+     * positive, which is the default.
+     */
+    public void setExportInterval(long interval) {
+        _exportInterval = interval;
+    }
+
+    /**
+     * Affirms if the statistics of the SQL statements executed are kept.
+     */
+    public boolean getSQLStatistics() {
+        return _sqlStatistics;
+    }
+
+    /**
+     * Sets whether to keep the statistics of the SQL statements executed.
+     * Defaults to false.
+     */
+    public void setSQLStatistics(boolean sqlStatistics) {
+        _sqlStatistics = sqlStatistics;
+    }
+
+    /**
+     * Gets the number of distinct normalized SQL statements to keep the
+     * statistics of.
+     */
+    public int getMaxSQLStatements() {
+        return _maxSQLStatements;
+    }
+
+    /**
+     * Sets the number of distinct normalized SQL statements to keep the
+     * statistics of. Defaults to 1000.
+     */
+    public void setMaxSQLStatements(int max) {
+        _maxSQLStatements = max;
+    }
+
+    /**
+     * Gets the latency in milliseconds from which a SQL execution is kept
+     * as slow.
+     */
+    public long getSlowSQLThreshold() {
+        return _slowSQLThreshold;
+    }
+
+    /**
+     * Sets the latency in milliseconds from which a SQL execution is kept
+     * as slow, with its parameters and origin. A negative value keeps
+     * none. Defaults to 1000.
+     */
+    public void setSlowSQLThreshold(long threshold) {
+        _slowSQLThreshold = threshold;
+    }
+
+    /**
+     * Gets the number of slow SQL executions kept.
+     */
+    public int getSlowSQLHistory() {
+        return _slowSQLHistory;
+    }
+
+    /**
+     * Sets the number of slow SQL executions kept, the oldest being
+     * discarded first. Defaults to 100.
+     */
+    public void setSlowSQLHistory(int history) {
+        _slowSQLHistory = history;
+    }
+
+    /**
+     * Publishes the current metrics through the exporter, if any.
+     */
+    public void export() {
+        MetricsExporter exporter = getExporterInstance();
+        if (exporter == null)
+            return;
+        try {
+            exporter.export(_metrics);
+        } catch (RuntimeException e) {
+            Log log = ((OpenJPAConfiguration) getConfiguration())
+                .getLog(OpenJPAConfiguration.LOG_RUNTIME);
+            if (log.isWarnEnabled())
+                log.warn(_loc.get("metrics-export-failed", _exporter), e);
+        }
+    }
+
+    /**
+     * Starts the provider and the metrics and SQL statistics instruments,
+     * which need not be listed among the instruments of this provider, and
+     * schedules the export of the metrics.
+     */
+    @Override
+    public void start() {
+        if (_sqlStatistics && _metrics.getSQLStatistics() == null)
+            _metrics.setSQLStatistics(new SQLStatistics(_maxSQLStatements,
+                _slowSQLThreshold, _slowSQLHistory));
+        super.start();
+        if (getInstrumentByName("Metrics") == null)
+            addInstrument(new MetricsJMXInstrument());
+        if (_sqlStatistics && getInstrumentByName("SQLStatistics") == null)
+            addInstrument(new SQLStatisticsJMXInstrument());
+        if (_exportInterval > 0 && getExporterInstance() != null) {
+            _timer = new Timer("OpenJPA metrics exporter", true);
+            _timer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    export();
+                }
+            }, _exportInterval, _exportInterval);
+        }
+    }
+
+    /**
+     * Stops the export of the metrics, exporting them a last time, and the
+     * instruments of this provider.
+     */
+    @Override
+    public void stop() {
+        if (_timer != null) {
+            _timer.cancel();
+            _timer = null;
+            export();
+        }
+        super.stop();
+    }
+
+    @Override
+    public String[] getInstrumentAliases() {
+        return METRICS_INSTRUMENT_ALIASES;
+    }
+}
@@ -43,6 +43,10 @@ import org.apache.commons.collections4.map.AbstractReferenceMap.ReferenceStrengt
 import org.apache.commons.collections4.set.MapBackedSet;
 import org.apache.openjpa.audit.Auditor;
 import org.apache.openjpa.conf.BrokerValue;
+import org.apache.openjpa.conf.CacheMarshaller;
+import org.apache.openjpa.conf.CacheMarshallerImpl;
+import org.apache.openjpa.conf.CacheMarshallersValue;
+import org.apache.openjpa.conf.MetaDataCacheMaintenance;
 import org.apache.openjpa.conf.OpenJPAConfiguration;
 import org.apache.openjpa.conf.OpenJPAConfigurationImpl;
 import org.apache.openjpa.conf.OpenJPAVersion;
@@ -907,6 +911,14 @@ public abstract class AbstractBrokerFactory implements BrokerFactory {
             loadPersistentTypes(AccessController.doPrivileged(J2DoPrivHelper
                 .getContextClassLoaderAction()));
             mdr.preload();
+
+            // Store the preloaded repository for the next start if the metadata cache marshaller asks for it
+            CacheMarshaller cm = CacheMarshallersValue.getMarshallerById(_conf,
+                MetaDataCacheMaintenance.class.getName());
+            if (cm instanceof CacheMarshallerImpl && ((CacheMarshallerImpl) cm).getAutoStore()
+                && !((CacheMarshallerImpl) cm).isLoaded()) {
+                cm.store(new Object[] { mdr, null });
+            }
         }
 
         // Get a DataCacheManager instance up front to avoid threading concerns on first call.
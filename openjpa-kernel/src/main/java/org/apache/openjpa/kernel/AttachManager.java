@@ -39,7 +39,9 @@ import org.apache.openjpa.meta.ValueMetaData;
 import org.apache.openjpa.util.CallbackException;
 import org.apache.openjpa.util.Exceptions;
 import org.apache.openjpa.util.ImplHelper;
+import org.apache.openjpa.util.ObjectId;
 import org.apache.openjpa.util.OpenJPAException;
+import org.apache.openjpa.util.OpenJPAId;
 import org.apache.openjpa.util.OptimisticException;
 import org.apache.openjpa.util.ProxyManager;
 import org.apache.openjpa.util.UserException;
@@ -127,6 +129,9 @@ public class AttachManager {
         boolean opt = true;
         boolean failFast = false;
         try {
+            if (instances.size() > 1)
+                preload(instances);
+
             int i = 0;
             for (Iterator itr = instances.iterator(); itr.hasNext(); i++) {
                 try {
@@ -159,6 +164,50 @@ public class AttachManager {
         return attached;
     }
 
+    /**
+     * Load the persistent state of the given detached instances into the
+     * broker before attaching them, so that the attach strategies find it
+     * in the cache rather than selecting each instance on its own. Only
+     * instances whose type has a single, simple application identity field
+     * are loaded, and only within an active transaction. They are found
+     * together, so that the store can read them from the data cache or
+     * select them with as few statements as the database allows. Any
+     * instance not loaded here is found as before.
+     */
+    private void preload(Collection instances) {
+        if (!_broker.isActive())
+            return;
+
+        List<Object> oids = new ArrayList<>();
+        for (Object obj : instances) {
+            if (!ImplHelper.isManageable(obj))
+                continue;
+            PersistenceCapable pc = ImplHelper.toPersistenceCapable(obj,
+                _broker.getConfiguration());
+            if (_broker.getStateManagerImpl(pc, false) != null
+                || Boolean.FALSE.equals(pc.pcIsDetached()))
+                continue;
+
+            ClassMetaData meta = _broker.getConfiguration().
+                getMetaDataRepositoryInstance().getMetaData(
+                ImplHelper.getManagedInstance(pc).getClass(),
+                _broker.getClassLoader(), false);
+            if (meta == null || meta.isEmbeddedOnly()
+                || meta.getIdentityType() != ClassMetaData.ID_APPLICATION
+                || meta.getPrimaryKeyFields().length != 1)
+                continue;
+
+            // object ids may wrap embedded or compound keys, which the
+            // store cannot select by a single column
+            Object oid = getDetachedObjectId(pc);
+            if (oid instanceof OpenJPAId && !(oid instanceof ObjectId)
+                && _broker.getStateManagerImplById(oid, false) == null)
+                oids.add(oid);
+        }
+        if (oids.size() > 1)
+            _broker.findAll(oids, true, null);
+    }
+
     /**
      * Invoke postAttach() on any attached instances that implement
      * PostAttachCallback. This will be done after the entire graph has
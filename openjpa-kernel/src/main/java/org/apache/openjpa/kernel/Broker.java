@@ -575,6 +575,23 @@ public interface Broker
      */
     Object[] detachAll(Collection objs, OpCallbacks call);
 
+    /**
+     * Detach the specified objects from the broker in batches of the given
+     * size, handing the detached instances of each batch to the given
+     * callback as soon as the batch completes. Unlike
+     * {@link #detachAll(Collection, OpCallbacks)}, the detached graphs of
+     * different batches do not share instances, and only one batch of
+     * detached instances needs to be held in memory at a time.
+     *
+     * @param objs the instances to detach
+     * @param batchSize the number of instances per batch; all instances
+     * are detached in a single batch if not positive
+     * @param callback receives the detached instances of each batch
+     * @since 3.1.1
+     */
+    void detachAll(Collection objs, OpCallbacks call, int batchSize,
+        DetachBatchCallback callback);
+
     /**
      * Import the specified detached object into the broker.
      *
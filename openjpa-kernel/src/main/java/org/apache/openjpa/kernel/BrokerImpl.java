@@ -66,6 +66,7 @@ import org.apache.openjpa.instrumentation.InstrumentationManager;
 import org.apache.openjpa.kernel.exps.ExpressionParser;
 import org.apache.openjpa.lib.conf.Configurations;
 import org.apache.openjpa.lib.instrumentation.InstrumentationLevel;
+import org.apache.openjpa.lib.instrumentation.Metrics;
 import org.apache.openjpa.lib.log.Log;
 import org.apache.openjpa.lib.util.J2DoPrivHelper;
 import org.apache.openjpa.lib.util.Localizer;
@@ -174,6 +175,7 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
     private transient OpCallbacks _call = null;
     private transient RuntimeExceptionTranslator _extrans = null;
     private transient InstrumentationManager _instm = null;
+    private transient Metrics _metrics = null;
 
     // ref to producing factory and configuration
     private transient AbstractBrokerFactory _factory = null;
@@ -385,6 +387,7 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
         _instm = _conf.getInstrumentationManagerInstance();
         if (_instm != null) {
             _instm.start(InstrumentationLevel.BROKER, this);
+            _metrics = _instm.getMetrics();
         }
 
         _dmLite = new DetachManagerLite(_conf);
@@ -471,6 +474,16 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
         return _conf;
     }
 
+    /**
+     * Return the metrics that operations are timed into, or null if they
+     * are not recorded.
+     *
+     * @since 3.1.1
+     */
+    Metrics getMetrics() {
+        return _metrics;
+    }
+
     @Override
     public FetchConfiguration getFetchConfiguration() {
         return _fc;
@@ -985,7 +998,14 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
         int flags = OID_COPY | OID_ALLOW_NEW | OID_NODELETED;
         if (!validate)
             flags |= OID_NOVALIDATE;
-        return find(oid, _fc, null, null, flags, call);
+        if (_metrics == null)
+            return find(oid, _fc, null, null, flags, call);
+        long start = System.nanoTime();
+        try {
+            return find(oid, _fc, null, null, flags, call);
+        } finally {
+            _metrics.record(Metrics.BROKER_FIND, start);
+        }
     }
 
     @Override
@@ -1586,6 +1606,7 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
 
     @Override
     public void commit() {
+        long start = (_metrics == null) ? 0 : System.nanoTime();
         beginOperation(false);
         try {
             assertTransactionOperation();
@@ -1608,6 +1629,8 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
             throw new StoreException(e);
         } finally {
             endOperation();
+            if (_metrics != null)
+                _metrics.record(Metrics.BROKER_COMMIT, start);
         }
     }
 
@@ -2195,10 +2218,13 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
             throw new InvalidStateException(_loc.get("reentrant-flush"));
 
         _flags |= FLAG_FLUSHING;
+        long start = (_metrics == null) ? 0 : System.nanoTime();
         try {
             flush(reason);
         } finally {
             _flags &= ~FLAG_FLUSHING;
+            if (_metrics != null)
+                _metrics.record(Metrics.BROKER_FLUSH, start);
         }
     }
 
@@ -3540,6 +3566,27 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
         }
     }
 
+    @Override
+    public void detachAll(Collection objs, OpCallbacks call, int batchSize,
+        DetachBatchCallback callback) {
+        if (objs == null || objs.isEmpty())
+            return;
+        if (call == null)
+            call = _call;
+
+        beginOperation(true);
+        try {
+            new DetachManager(this, false, call).detachAll(objs, batchSize,
+                callback);
+        } catch (OpenJPAException ke) {
+            throw ke;
+        } catch (RuntimeException re) {
+            throw new GeneralException(re);
+        } finally {
+            endOperation();
+        }
+    }
+
     @Override
     public void detachAll(OpCallbacks call) {
         detachAll(call, true);
@@ -3980,6 +4027,10 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
                 return UUIDType4HexSeq.getInstance();
             case ValueStrategies.UUID_TYPE4_STRING:
                 return UUIDType4StringSeq.getInstance();
+            case ValueStrategies.UUID_TYPE7_HEX:
+                return UUIDType7HexSeq.getInstance();
+            case ValueStrategies.UUID_TYPE7_STRING:
+                return UUIDType7StringSeq.getInstance();
             case ValueStrategies.SEQUENCE:
                 SequenceMetaData smd = (fmd == null)
                     ? meta.getIdentitySequenceMetaData()
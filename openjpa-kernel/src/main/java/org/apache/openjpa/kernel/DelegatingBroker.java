@@ -1327,6 +1327,16 @@ public class DelegatingBroker
         }
     }
 
+    @Override
+    public void detachAll(Collection objs, OpCallbacks call, int batchSize,
+        DetachBatchCallback callback) {
+        try {
+            _broker.detachAll(objs, call, batchSize, callback);
+        } catch (RuntimeException re) {
+            throw translate(re, objs);
+        }
+    }
+
     @Override
     public void detachAll(OpCallbacks call) {
         try {
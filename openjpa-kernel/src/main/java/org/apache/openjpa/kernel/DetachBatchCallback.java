@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+/**
+ * Receives the detached instances of a batched detach as each batch
+ * completes.
+ *
+ * @see Broker#detachAll(java.util.Collection, OpCallbacks, int,
+ * DetachBatchCallback)
+ * @since 3.1.1
+ */
+public interface DetachBatchCallback {
+
+    /**
+     * Called once per batch, in the order of the detached instances.
+     *
+     * @param detached the detached instances of the batch; copies of the
+     * given instances when detaching copies, otherwise the given instances
+     * themselves
+     */
+    void detached(Object[] detached);
+}
@@ -352,6 +352,33 @@ public class DetachManager
         return null;
     }
 
+    /**
+     * Detach the given instances in batches of the given size, handing the
+     * detached instances of each batch to the given callback as soon as the
+     * batch completes. Each batch is detached as by {@link #detachAll}, so
+     * instances reachable from more than one batch are detached once per
+     * batch, and after-detach callbacks fire per batch.
+     *
+     * @since 3.1.1
+     */
+    public void detachAll(Collection instances, int batchSize,
+        DetachBatchCallback callback) {
+        if (batchSize <= 0)
+            batchSize = instances.size();
+
+        List batch = new ArrayList(Math.min(batchSize, instances.size()));
+        Object[] detached;
+        for (Iterator itr = instances.iterator(); itr.hasNext();) {
+            batch.add(itr.next());
+            if (batch.size() == batchSize || !itr.hasNext()) {
+                detached = detachAll(batch);
+                callback.detached((detached == null) ? batch.toArray()
+                    : detached);
+                batch.clear();
+            }
+        }
+    }
+
     /**
      * Invoke postDetach() on any detached instances that implement
      * PostDetachCallback. This will be done after the entire graph has
@@ -47,6 +47,7 @@ import org.apache.openjpa.kernel.exps.Subquery;
 import org.apache.openjpa.kernel.exps.Val;
 import org.apache.openjpa.kernel.exps.Value;
 import org.apache.openjpa.kernel.exps.WildcardMatch;
+import org.apache.openjpa.lib.log.Log;
 import org.apache.openjpa.lib.rop.ListResultObjectProvider;
 import org.apache.openjpa.lib.rop.RangeResultObjectProvider;
 import org.apache.openjpa.lib.rop.ResultObjectProvider;
@@ -673,13 +674,26 @@ public class ExpressionStoreQuery
             // find matching objects
             List results = new ArrayList();
             StoreContext ctx = q.getContext().getStoreContext();
+            int parallelism = getParallelism(q.getContext());
+            int minPartition = getParallelThreshold(q.getContext());
             try {
-                Object obj;
-                while (itr.hasNext()) {
-                    obj = itr.next();
-                    if (_factory.matches(_exps[0], _meta, _subs, obj, ctx,
-                        params))
-                        results.add(obj);
+                if (parallelism > 1) {
+                    while (itr.hasNext())
+                        results.add(itr.next());
+                    if (!isParallelizable(ctx, results))
+                        parallelism = 1;
+                    logParallelism(ctx, results.size(), parallelism,
+                        minPartition);
+                    results = _factory.filter(_exps[0], _meta, _subs,
+                        results, ctx, params, parallelism, minPartition);
+                } else {
+                    Object obj;
+                    while (itr.hasNext()) {
+                        obj = itr.next();
+                        if (_factory.matches(_exps[0], _meta, _subs, obj, ctx,
+                            params))
+                            results.add(obj);
+                    }
                 }
             }
             finally {
@@ -703,8 +717,10 @@ public class ExpressionStoreQuery
             }
 
             // apply projections, order results, and filter duplicates
-            results = _factory.project(_exps[0], results, ctx, params);
-            results = _factory.order(_exps[0], results, ctx, params);
+            results = _factory.project(_exps[0], results, ctx, params,
+                parallelism, minPartition);
+            results = _factory.order(_exps[0], results, ctx, params,
+                parallelism, minPartition);
             results = _factory.distinct(_exps[0], coll == null, results);
 
             ResultObjectProvider rop = new ListResultObjectProvider(results);
@@ -713,6 +729,63 @@ public class ExpressionStoreQuery
             return rop;
         }
 
+        /**
+         * Return the parallelism requested through the
+         * {@link QueryHints#HINT_IN_MEMORY_PARALLELISM} hint, or 1 if the
+         * query must be evaluated serially.
+         */
+        private int getParallelism(QueryContext ctx) {
+            Object hint = ctx.getFetchConfiguration().getHint
+                (QueryHints.HINT_IN_MEMORY_PARALLELISM);
+            if (hint == null)
+                return 1;
+            int parallelism = ((Number) Filters.convert(hint, Integer.class))
+                .intValue();
+            if (parallelism > 1 && !_factory.isParallelizable(_exps[0]))
+                return 1;
+            return parallelism;
+        }
+
+        /**
+         * Return the minimum number of candidates of a partition requested
+         * through the {@link QueryHints#HINT_IN_MEMORY_PARALLEL_THRESHOLD}
+         * hint, or {@link InMemoryExpressionFactory#MIN_PARALLEL_PARTITION}.
+         */
+        private static int getParallelThreshold(QueryContext ctx) {
+            Object hint = ctx.getFetchConfiguration().getHint
+                (QueryHints.HINT_IN_MEMORY_PARALLEL_THRESHOLD);
+            if (hint == null)
+                return InMemoryExpressionFactory.MIN_PARALLEL_PARTITION;
+            return Math.max(1, ((Number) Filters.convert(hint, Integer.class))
+                .intValue());
+        }
+
+        private static void logParallelism(StoreContext ctx, int candidates,
+            int parallelism, int minPartition) {
+            Log log = ctx.getConfiguration().getLog
+                (OpenJPAConfiguration.LOG_QUERY);
+            int parts = InMemoryExpressionFactory.getPartitionCount
+                (candidates, parallelism, minPartition);
+            if (parts > 1 && log.isTraceEnabled())
+                log.trace(_loc.get("in-mem-parallel",
+                    String.valueOf(candidates), String.valueOf(parts)));
+        }
+
+        /**
+         * Evaluating a managed candidate may load its state through the
+         * context, which is only safe to do from several threads when the
+         * broker is multithreaded.
+         */
+        private static boolean isParallelizable(StoreContext ctx,
+            List candidates) {
+            if (ctx.getBroker().getMultithreaded())
+                return true;
+            for (Object candidate : candidates)
+                if (candidate != null && ctx.getStateManager(candidate) != null)
+                    return false;
+            return true;
+        }
+
         @Override
         public String[] getDataStoreActions(StoreQuery q, Object[] params,
             Range range) {
@@ -46,7 +46,19 @@ public class OrderingMergedResultObjectProvider
     public OrderingMergedResultObjectProvider(ResultObjectProvider[] rops,
         boolean[] asc, StoreQuery.Executor[] execs, StoreQuery q,
         Object[] params) {
-        super(rops, new OrderingComparator(asc));
+        this(rops, asc, execs, q, params, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructor. The merge stops and closes the given providers once
+     * <code>limit</code> results have been returned.
+     *
+     * @since 3.1.1
+     */
+    public OrderingMergedResultObjectProvider(ResultObjectProvider[] rops,
+        boolean[] asc, StoreQuery.Executor[] execs, StoreQuery q,
+        Object[] params, long limit) {
+        super(rops, new OrderingComparator(asc), limit);
         _orderings = asc.length;
         _execs = execs;
         _query = q;
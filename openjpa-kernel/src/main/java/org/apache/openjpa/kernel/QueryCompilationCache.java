@@ -0,0 +1,510 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.openjpa.util.GeneralException;
+
+/**
+ * Concurrent, size-bounded cache of compiled queries.
+ * Lookups never lock. The cache is bounded both by a number of entries and
+ * by an estimate of the memory held by the compiled expression trees, which
+ * grow roughly linearly with the length of the query string.
+ * When a bound is exceeded, the entries that are cheapest to recompile
+ * relative to their size, least often used and least recently used are
+ * evicted first. Concurrent compilations of the same query through
+ * {@link #compile} are collapsed into a single compilation whose result is
+ * shared by all callers.
+ * Hit, miss, eviction and compile-time statistics are kept for the
+ * <code>QueryCompilationCache</code> instrument.
+ *
+ * @since 3.1.1
+ */
+public class QueryCompilationCache
+    extends AbstractMap<Object,Object>
+    implements ConcurrentMap<Object,Object> {
+
+    /**
+     * Default maximum number of cached compilations.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 1000;
+
+    /**
+     * Default maximum estimated memory of the cached compilations, in bytes.
+     */
+    public static final long DEFAULT_MAX_MEMORY = 32L * 1024 * 1024;
+
+    // heuristic memory estimate of a compilation: a fixed overhead plus a
+    // multiple of the characters in the query string
+    private static final long ENTRY_OVERHEAD = 1024;
+    private static final long BYTES_PER_QUERY_CHAR = 64;
+
+    // fraction of each bound that eviction reduces the cache to, so that
+    // eviction runs once per batch of insertions rather than on each one
+    private static final double EVICTION_TARGET = 0.9;
+
+    private final ConcurrentMap<Object,Entry> _entries =
+        new ConcurrentHashMap<>();
+    private final ConcurrentMap<Object,Compile> _compiling =
+        new ConcurrentHashMap<>();
+    private final ReentrantLock _evictLock = new ReentrantLock();
+    private final AtomicLong _memory = new AtomicLong();
+    private final AtomicLong _clock = new AtomicLong();
+
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private final LongAdder _compiles = new LongAdder();
+    private final LongAdder _compileNanos = new LongAdder();
+    private final Date _start = new Date();
+    private volatile Date _since = new Date();
+
+    private volatile int _cacheSize = DEFAULT_CACHE_SIZE;
+    private volatile long _maxMemory = DEFAULT_MAX_MEMORY;
+
+    /**
+     * The maximum number of cached compilations. Defaults to
+     * {@link #DEFAULT_CACHE_SIZE}.
+     */
+    public int getCacheSize() {
+        return _cacheSize;
+    }
+
+    /**
+     * The maximum number of cached compilations.
+     */
+    public void setCacheSize(int size) {
+        _cacheSize = size;
+        evictIfNeeded();
+    }
+
+    /**
+     * The maximum estimated memory held by cached compilations, in bytes.
+     * Defaults to {@link #DEFAULT_MAX_MEMORY}.
+     */
+    public long getMaxMemory() {
+        return _maxMemory;
+    }
+
+    /**
+     * The maximum estimated memory held by cached compilations, in bytes.
+     */
+    public void setMaxMemory(long bytes) {
+        _maxMemory = bytes;
+        evictIfNeeded();
+    }
+
+    /**
+     * Return the compilation cached under the given key, or run the given
+     * compiler to create it. If another thread is already compiling the same
+     * key, wait for and return its result instead of compiling again.
+     * A null result from the compiler is not cached; callers waiting on that
+     * compilation receive null and must compile for themselves.
+     */
+    public Object compile(Object key, Callable<Object> compiler) {
+        Object value = get(key);
+        if (value != null)
+            return value;
+
+        Compile compile = new Compile(key, compiler);
+        Compile existing = _compiling.putIfAbsent(key, compile);
+        if (existing == null) {
+            try {
+                compile.run();
+            } finally {
+                _compiling.remove(key, compile);
+            }
+        } else if (existing.owner == Thread.currentThread()) {
+            // reentrant compilation of the same query; waiting on ourselves
+            // would never return
+            return call(compiler);
+        } else
+            compile = existing;
+
+        try {
+            return compile.get();
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new GeneralException(cause);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new GeneralException(ie);
+        }
+    }
+
+    private static Object call(Callable<Object> compiler) {
+        try {
+            return compiler.call();
+        } catch (RuntimeException re) {
+            throw re;
+        } catch (Exception e) {
+            throw new GeneralException(e);
+        }
+    }
+
+    @Override
+    public Object get(Object key) {
+        Entry entry = _entries.get(key);
+        if (entry == null) {
+            _misses.increment();
+            return null;
+        }
+        _hits.increment();
+        entry.hits++;
+        entry.lastAccess = _clock.incrementAndGet();
+        return entry.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return _entries.containsKey(key);
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        return put(key, value, 0);
+    }
+
+    private Object put(Object key, Object value, long compileNanos) {
+        if (value == null)
+            throw new NullPointerException();
+        Entry entry = new Entry(value, weigh(key), compileNanos,
+            _clock.incrementAndGet());
+        Entry prev = _entries.put(key, entry);
+        _memory.addAndGet(entry.weight - ((prev == null) ? 0 : prev.weight));
+        evictIfNeeded();
+        return (prev == null) ? null : prev.value;
+    }
+
+    @Override
+    public Object putIfAbsent(Object key, Object value) {
+        if (value == null)
+            throw new NullPointerException();
+        Entry entry = new Entry(value, weigh(key), 0, _clock.incrementAndGet());
+        Entry prev = _entries.putIfAbsent(key, entry);
+        if (prev != null)
+            return prev.value;
+        _memory.addAndGet(entry.weight);
+        evictIfNeeded();
+        return null;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        Entry entry = _entries.remove(key);
+        if (entry == null)
+            return null;
+        _memory.addAndGet(-entry.weight);
+        return entry.value;
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        Entry entry = _entries.get(key);
+        if (entry == null || !entry.value.equals(value)
+            || !_entries.remove(key, entry))
+            return false;
+        _memory.addAndGet(-entry.weight);
+        return true;
+    }
+
+    @Override
+    public boolean replace(Object key, Object oldValue, Object newValue) {
+        Entry entry = _entries.get(key);
+        if (entry == null || !entry.value.equals(oldValue))
+            return false;
+        Entry replacement = new Entry(newValue, entry.weight,
+            entry.compileNanos, _clock.incrementAndGet());
+        return _entries.replace(key, entry, replacement);
+    }
+
+    @Override
+    public Object replace(Object key, Object value) {
+        Entry entry = _entries.get(key);
+        if (entry == null)
+            return null;
+        Entry replacement = new Entry(value, entry.weight, entry.compileNanos,
+            _clock.incrementAndGet());
+        return (_entries.replace(key, entry, replacement)) ? entry.value
+            : null;
+    }
+
+    @Override
+    public int size() {
+        return _entries.size();
+    }
+
+    @Override
+    public void clear() {
+        for (Object key : _entries.keySet())
+            remove(key);
+    }
+
+    @Override
+    public Set<Map.Entry<Object,Object>> entrySet() {
+        return new AbstractSet<Map.Entry<Object,Object>>() {
+            @Override
+            public Iterator<Map.Entry<Object,Object>> iterator() {
+                final Iterator<Map.Entry<Object,Entry>> itr =
+                    _entries.entrySet().iterator();
+                return new Iterator<Map.Entry<Object,Object>>() {
+                    private Object _last = null;
+
+                    @Override
+                    public boolean hasNext() {
+                        return itr.hasNext();
+                    }
+
+                    @Override
+                    public Map.Entry<Object,Object> next() {
+                        Map.Entry<Object,Entry> e = itr.next();
+                        _last = e.getKey();
+                        return new SimpleImmutableEntry<>(e.getKey(),
+                            e.getValue().value);
+                    }
+
+                    @Override
+                    public void remove() {
+                        if (_last == null)
+                            throw new IllegalStateException();
+                        QueryCompilationCache.this.remove(_last);
+                        _last = null;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return _entries.size();
+            }
+        };
+    }
+
+    /**
+     * Estimated memory held by the cached compilations, in bytes.
+     */
+    public long getEstimatedMemory() {
+        return _memory.get();
+    }
+
+    /**
+     * Number of lookups that found a cached compilation since last reset.
+     */
+    public long getHitCount() {
+        return _hits.sum();
+    }
+
+    /**
+     * Number of lookups that did not find a cached compilation since last
+     * reset.
+     */
+    public long getMissCount() {
+        return _misses.sum();
+    }
+
+    /**
+     * Number of compilations evicted to respect the bounds since last reset.
+     */
+    public long getEvictionCount() {
+        return _evictions.sum();
+    }
+
+    /**
+     * Number of compilations performed through {@link #compile} since last
+     * reset.
+     */
+    public long getCompileCount() {
+        return _compiles.sum();
+    }
+
+    /**
+     * Total time spent in compilations performed through {@link #compile}
+     * since last reset, in milliseconds.
+     */
+    public long getCompileTime() {
+        return _compileNanos.sum() / 1000000;
+    }
+
+    /**
+     * Reset the statistics.
+     */
+    public void reset() {
+        _hits.reset();
+        _misses.reset();
+        _evictions.reset();
+        _compiles.reset();
+        _compileNanos.reset();
+        _since = new Date();
+    }
+
+    /**
+     * Date the statistics were last reset.
+     */
+    public Date since() {
+        return _since;
+    }
+
+    /**
+     * Date the statistics collection started.
+     */
+    public Date start() {
+        return _start;
+    }
+
+    /**
+     * Estimate the memory held by the compilation of the given key.
+     */
+    protected long weigh(Object key) {
+        String query = (key instanceof QueryImpl.CompilationKey)
+            ? ((QueryImpl.CompilationKey) key).query : null;
+        return ENTRY_OVERHEAD + ((query == null) ? 0
+            : query.length() * BYTES_PER_QUERY_CHAR);
+    }
+
+    private boolean isOverBounds(double fraction) {
+        return _entries.size() > _cacheSize * fraction
+            || _memory.get() > _maxMemory * fraction;
+    }
+
+    /**
+     * Evict entries if either bound is exceeded. Only one thread evicts at a
+     * time; others carry on, since the evicting thread restores the bounds.
+     */
+    private void evictIfNeeded() {
+        if (!isOverBounds(1) || !_evictLock.tryLock())
+            return;
+        try {
+            List<Candidate> candidates = new ArrayList<>(_entries.size());
+            long now = _clock.get();
+            for (Map.Entry<Object,Entry> e : _entries.entrySet())
+                candidates.add(new Candidate(e.getKey(), e.getValue(), now,
+                    _entries.size()));
+            Collections.sort(candidates, Candidate.BY_RETENTION);
+
+            for (Candidate candidate : candidates) {
+                if (!isOverBounds(EVICTION_TARGET))
+                    break;
+                if (_entries.remove(candidate.key, candidate.entry)) {
+                    _memory.addAndGet(-candidate.entry.weight);
+                    _evictions.increment();
+                }
+            }
+        } finally {
+            _evictLock.unlock();
+        }
+    }
+
+    /**
+     * A cached compilation with the data used to rank it for eviction.
+     */
+    private static class Entry {
+
+        private final Object value;
+        private final long weight;
+        private final long compileNanos;
+
+        // approximate; lost updates only perturb the eviction order
+        private volatile long hits = 0;
+        private volatile long lastAccess;
+
+        private Entry(Object value, long weight, long compileNanos,
+            long lastAccess) {
+            this.value = value;
+            this.weight = weight;
+            this.compileNanos = compileNanos;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    /**
+     * An entry considered for eviction. The retention score is the cost of
+     * recompiling the entry times its use count per byte held, decayed by
+     * how many cache accesses ago it was last used.
+     */
+    private static class Candidate {
+
+        private static final Comparator<Candidate> BY_RETENTION =
+            new Comparator<Candidate>() {
+                @Override
+                public int compare(Candidate c1, Candidate c2) {
+                    return Double.compare(c1.score, c2.score);
+                }
+            };
+
+        private final Object key;
+        private final Entry entry;
+        private final double score;
+
+        private Candidate(Object key, Entry entry, long now, int size) {
+            this.key = key;
+            this.entry = entry;
+            double age = (double) (now - entry.lastAccess) / Math.max(size, 1);
+            score = (double) Math.max(entry.compileNanos, 1) * (entry.hits + 1)
+                / entry.weight / (1 + age);
+        }
+    }
+
+    /**
+     * A compilation in progress that concurrent callers for the same key
+     * wait on.
+     */
+    private class Compile
+        extends FutureTask<Object> {
+
+        private final Thread owner = Thread.currentThread();
+
+        private Compile(final Object key, final Callable<Object> compiler) {
+            super(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    long start = System.nanoTime();
+                    Object value = compiler.call();
+                    long nanos = System.nanoTime() - start;
+                    _compiles.increment();
+                    _compileNanos.add(nanos);
+                    if (value != null)
+                        put(key, value, nanos);
+                    return value;
+                }
+            });
+        }
+    }
+}
@@ -108,4 +108,22 @@ public interface QueryHints {
      * if possible.
      */
     String HINT_USE_LITERAL_IN_SQL = "openjpa.hint.UseLiteralInSQL";
+
+    /**
+     * An integer directive to evaluate in-memory queries, such as queries
+     * over a candidate collection, on up to the given number of fork-join
+     * workers. Candidates are partitioned, filtered and projected
+     * concurrently and the partial results merged in candidate order.
+     * Queries with variables, subqueries or custom filter and aggregate
+     * listeners are always evaluated serially, as are queries over managed
+     * instances unless the broker is multithreaded.
+     */
+    String HINT_IN_MEMORY_PARALLELISM = "openjpa.hint.InMemoryParallelism";
+
+    /**
+     * An integer directive for the minimum number of candidates each worker
+     * evaluates when {@link #HINT_IN_MEMORY_PARALLELISM} is set. Fewer
+     * candidates are evaluated serially. Defaults to 1024.
+     */
+    String HINT_IN_MEMORY_PARALLEL_THRESHOLD = "openjpa.hint.InMemoryParallelThreshold";
 }
@@ -31,6 +31,7 @@ import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.concurrent.Callable;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.collections4.map.AbstractReferenceMap.ReferenceStrength;
@@ -44,6 +45,8 @@ import org.apache.openjpa.kernel.exps.Literal;
 import org.apache.openjpa.kernel.exps.Path;
 import org.apache.openjpa.kernel.exps.QueryExpressions;
 import org.apache.openjpa.kernel.exps.Val;
+import org.apache.openjpa.lib.instrumentation.Metrics;
+import org.apache.openjpa.lib.instrumentation.SQLStatistics;
 import org.apache.openjpa.lib.log.Log;
 import org.apache.openjpa.lib.rop.BatchedResultObjectProvider;
 import org.apache.openjpa.lib.rop.EagerResultList;
@@ -655,6 +658,8 @@ public class QueryImpl implements Query {
         boolean readOnly = _readOnly;
         _readOnly = false;
         _compiling = true;
+        Metrics metrics = (_broker == null) ? null : _broker.getMetrics();
+        long start = (metrics == null) ? 0 : System.nanoTime();
         try {
             _compiled = compilationFromCache();
             return _compiled;
@@ -665,6 +670,8 @@ public class QueryImpl implements Query {
         } finally {
             _compiling = false;
             _readOnly = readOnly;
+            if (metrics != null)
+                metrics.record(Metrics.QUERY_COMPILE, start);
         }
     }
 
@@ -685,6 +692,9 @@ public class QueryImpl implements Query {
             key.query = getQueryString();
             key.language = getLanguage();
             key.storeKey = _storeQuery.newCompilationKey();
+            if (compCache instanceof QueryCompilationCache)
+                return compilationFromCache((QueryCompilationCache) compCache,
+                    key);
             Compilation comp = (Compilation) compCache.get(key);
 
             // parse declarations if needed
@@ -710,6 +720,33 @@ public class QueryImpl implements Query {
         }
     }
 
+    /**
+     * Find the cached compilation for the current query, compiling it at
+     * most once across concurrent queries with the same key.
+     */
+    private Compilation compilationFromCache(QueryCompilationCache compCache,
+        CompilationKey key) {
+        final Compilation[] compiled = new Compilation[1];
+        Compilation comp = (Compilation) compCache.compile(key,
+            new Callable<Object>() {
+                @Override
+                public Object call() {
+                    compiled[0] = newCompilation();
+                    // only cache those queries that can be compiled
+                    return (compiled[0].storeData == null) ? null
+                        : compiled[0];
+                }
+            });
+
+        // compiled by this query, and therefore already populated
+        if (compiled[0] != null)
+            return compiled[0];
+        if (comp == null)
+            return newCompilation();
+        _storeQuery.populateFromCompilation(comp.storeData);
+        return comp;
+    }
+
     /**
      * Create and populate a new compilation.
      */
@@ -847,6 +884,10 @@ public class QueryImpl implements Query {
         if (params == null)
             params = StoreQuery.EMPTY_OBJECTS;
 
+        Metrics metrics = _broker.getMetrics();
+        long start = (metrics == null) ? 0 : System.nanoTime();
+        SQLStatistics stats = (metrics == null) ? null : metrics.getSQLStatistics();
+        String origin = (stats == null) ? null : stats.setOrigin(getOrigin());
         lock();
         try {
             assertNotSerialized();
@@ -882,6 +923,10 @@ public class QueryImpl implements Query {
         }
         finally {
             unlock();
+            if (metrics != null)
+                metrics.record(Metrics.QUERY_EXECUTE, start);
+            if (stats != null)
+                stats.setOrigin(origin);
         }
     }
 
@@ -889,6 +934,10 @@ public class QueryImpl implements Query {
         if (params == null)
             params = Collections.EMPTY_MAP;
 
+        Metrics metrics = _broker.getMetrics();
+        long start = (metrics == null) ? 0 : System.nanoTime();
+        SQLStatistics stats = (metrics == null) ? null : metrics.getSQLStatistics();
+        String origin = (stats == null) ? null : stats.setOrigin(getOrigin());
         lock();
         try {
             _broker.beginOperation(true);
@@ -926,9 +975,24 @@ public class QueryImpl implements Query {
         }
         finally {
             unlock();
+            if (metrics != null)
+                metrics.record(Metrics.QUERY_EXECUTE, start);
+            if (stats != null)
+                stats.setOrigin(origin);
         }
     }
 
+    /**
+     * The origin the SQL statements issued by the execution of this query
+     * are recorded under: the query string, or the language and candidate
+     * type if there is no query string.
+     */
+    private String getOrigin() {
+        if (_query != null)
+            return _query;
+        return (_class == null) ? _language : _language + " " + _class.getName();
+    }
+
     @Override
     public long deleteAll() {
         return deleteAll((Object[]) null);
@@ -1888,7 +1952,7 @@ public class QueryImpl implements Query {
     /**
      * Struct to hold the unparsed properties associated with a query.
      */
-    private static class CompilationKey
+    static class CompilationKey
         implements Serializable {
 
         
@@ -1991,10 +2055,10 @@ public class QueryImpl implements Query {
             boolean[] asc = _executors[0].getAscending(q);
             ResultObjectProvider rop;
             if (asc.length == 0)
-                rop = new MergedResultObjectProvider(rops);
+                rop = new MergedResultObjectProvider(rops, null, range.end);
             else
                 rop = new OrderingMergedResultObjectProvider(rops, asc,
-                    _executors, q, params);
+                    _executors, q, params, range.end);
 
             // if there is a lower bound, wrap in range rop
             if (range.start != 0)
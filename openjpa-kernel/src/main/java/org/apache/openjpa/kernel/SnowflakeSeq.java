@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.openjpa.lib.conf.Configurable;
+import org.apache.openjpa.lib.conf.Configuration;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.util.UserException;
+
+////////////////////////////////////////////////////////////
+// NOTE: Do not change property names; see SequenceMetaData
+// for standard property names.
+////////////////////////////////////////////////////////////
+
+/**
+ * A {@link Seq} that generates time-ordered 64-bit values without a
+ * datastore trip. Each value holds, from the most significant bit, 41 bits
+ * of milliseconds since the epoch, the 10-bit node id, and a 12-bit counter
+ * that orders values generated in the same millisecond. Every JVM sharing a
+ * sequence must be given a distinct node id.
+ *
+ * @since 3.1.1
+ */
+public class SnowflakeSeq
+    implements Seq, Configurable {
+
+    /**
+     * Default epoch: 2020-01-01T00:00:00Z.
+     */
+    public static final long DEFAULT_EPOCH = 1577836800000L;
+
+    private static final int NODE_BITS = 10;
+    private static final int COUNTER_BITS = 12;
+    private static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+    private static final Localizer _loc = Localizer.forPackage
+        (SnowflakeSeq.class);
+
+    // last millis since the epoch shifted left by the counter bits, plus
+    // the counter within that millisecond
+    private final AtomicLong _time = new AtomicLong();
+    private int _nodeId = 0;
+    private long _epoch = DEFAULT_EPOCH;
+    private volatile Long _last = null;
+
+    /**
+     * The id of this node, between 0 and 1023. Defaults to 0.
+     */
+    public int getNodeId() {
+        return _nodeId;
+    }
+
+    /**
+     * The id of this node, between 0 and 1023. Defaults to 0.
+     */
+    public void setNodeId(int nodeId) {
+        _nodeId = nodeId;
+    }
+
+    /**
+     * The time in milliseconds from which values count. Defaults to
+     * {@link #DEFAULT_EPOCH}.
+     */
+    public long getEpoch() {
+        return _epoch;
+    }
+
+    /**
+     * The time in milliseconds from which values count. Defaults to
+     * {@link #DEFAULT_EPOCH}.
+     */
+    public void setEpoch(long epoch) {
+        _epoch = epoch;
+    }
+
+    @Override
+    public void setType(int type) {
+    }
+
+    @Override
+    public Object next(StoreContext ctx, ClassMetaData meta) {
+        // values generated in the same millisecond take the next counter
+        // value, borrowing from the following millisecond once it runs out
+        long last, time;
+        do {
+            last = _time.get();
+            time = Math.max((System.currentTimeMillis() - _epoch)
+                << COUNTER_BITS, last + 1);
+        } while (!_time.compareAndSet(last, time));
+
+        long millis = time >>> COUNTER_BITS;
+        long counter = time & ((1 << COUNTER_BITS) - 1);
+        Long next = (millis << (NODE_BITS + COUNTER_BITS))
+            | ((long) _nodeId << COUNTER_BITS) | counter;
+        _last = next;
+        return next;
+    }
+
+    @Override
+    public Object current(StoreContext ctx, ClassMetaData meta) {
+        return _last;
+    }
+
+    @Override
+    public void allocate(int additional, StoreContext ctx, ClassMetaData meta) {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void setConfiguration(Configuration conf) {
+    }
+
+    @Override
+    public void startConfiguration() {
+    }
+
+    @Override
+    public void endConfiguration() {
+        if (_nodeId < 0 || _nodeId > MAX_NODE_ID)
+            throw new UserException(_loc.get("bad-snowflake-node", _nodeId,
+                MAX_NODE_ID));
+    }
+}
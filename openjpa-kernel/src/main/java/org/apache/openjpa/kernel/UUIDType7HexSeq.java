@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+import org.apache.openjpa.lib.util.UUIDGenerator;
+import org.apache.openjpa.meta.ClassMetaData;
+
+/**
+ * Sequence for generating 32-character hex Type 7 UUID strings. Type 7
+ * UUIDs begin with their creation time, so that values generated one after
+ * the other sort next to each other in primary key indexes.
+ *
+ * @since 3.1.1
+ */
+public class UUIDType7HexSeq
+    implements Seq {
+
+    private static final UUIDType7HexSeq _instance = new UUIDType7HexSeq();
+
+    private volatile String _last = null;
+
+    /**
+     * Return the singleton instance.
+     */
+    public static UUIDType7HexSeq getInstance() {
+        return _instance;
+    }
+
+    /**
+     * Hide constructor.
+     */
+    private UUIDType7HexSeq() {
+    }
+
+    @Override
+    public void setType(int type) {
+    }
+
+    @Override
+    public Object next(StoreContext ctx, ClassMetaData meta) {
+        String next = UUIDGenerator.nextHex(UUIDGenerator.TYPE7);
+        _last = next;
+        return next;
+    }
+
+    @Override
+    public Object current(StoreContext ctx, ClassMetaData meta) {
+        return _last;
+    }
+
+    @Override
+    public void allocate(int additional, StoreContext ctx, ClassMetaData meta) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
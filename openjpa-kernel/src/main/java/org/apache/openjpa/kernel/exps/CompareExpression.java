@@ -35,6 +35,7 @@ abstract class CompareExpression
     private static final long serialVersionUID = 1L;
     private final Val _val1;
     private final Val _val2;
+    private transient volatile Promotion _promotion = null;
 
     /**
      * Constructor. Supply values to compare.
@@ -49,8 +50,8 @@ abstract class CompareExpression
         StoreContext ctx, Object[] params) {
         Object o1 = _val1.eval(candidate, orig, ctx, params);
         Object o2 = _val2.eval(candidate, orig, ctx, params);
-        if (o1 != null && o2 != null) {
-            Class c = Filters.promote(o1.getClass(), o2.getClass());
+        if (o1 != null && o2 != null && o1.getClass() != o2.getClass()) {
+            Class c = promote(o1.getClass(), o2.getClass());
             o1 = Filters.convert(o1, c);
             o2 = Filters.convert(o2, c);
         }
@@ -67,14 +68,29 @@ abstract class CompareExpression
         Object o2 = (c2 == null || c2.isEmpty()) ? null
             : c2.iterator().next();
 
-        if (o1 != null && o2 != null) {
-            Class c = Filters.promote(o1.getClass(), o2.getClass());
+        if (o1 != null && o2 != null && o1.getClass() != o2.getClass()) {
+            Class c = promote(o1.getClass(), o2.getClass());
             o1 = Filters.convert(o1, c);
             o2 = Filters.convert(o2, c);
         }
         return compare(o1, o2);
     }
 
+    /**
+     * Return the type both operands are converted to before comparing.
+     * The operand types of a given comparison rarely vary between
+     * candidates, so the promotion for the last pair of types seen is
+     * cached. Values of the same type are never converted.
+     */
+    private Class promote(Class c1, Class c2) {
+        Promotion last = _promotion;
+        if (last != null && last.type1 == c1 && last.type2 == c2)
+            return last.promoted;
+        Class promoted = Filters.promote(c1, c2);
+        _promotion = new Promotion(c1, c2, promoted);
+        return promoted;
+    }
+
     /**
      * Compare the two values.
      */
@@ -87,4 +103,20 @@ abstract class CompareExpression
         _val2.acceptVisit(visitor);
         visitor.exit(this);
     }
+
+    /**
+     * Immutable record of the type two operand types are promoted to.
+     */
+    private static class Promotion {
+
+        private final Class type1;
+        private final Class type2;
+        private final Class promoted;
+
+        private Promotion(Class type1, Class type2, Class promoted) {
+            this.type1 = type1;
+            this.type2 = type2;
+            this.promoted = promoted;
+        }
+    }
 }
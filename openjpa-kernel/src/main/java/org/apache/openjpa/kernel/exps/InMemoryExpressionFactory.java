@@ -29,7 +29,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinTask;
 
 import org.apache.openjpa.kernel.Extent;
 import org.apache.openjpa.kernel.StoreContext;
@@ -41,7 +44,12 @@ import org.apache.openjpa.util.UserException;
 
 /**
  * Expression factory implementation that can be used to execute queries
- * in memory.
+ * in memory. The expression tree is interpreted for each candidate rather
+ * than compiled to a generated class: values of managed and detached
+ * candidates are read through their state managers and the tree classes
+ * are serializable, so a generated evaluator would call back into the same
+ * code. Instead, comparisons skip conversion of operands of the same type
+ * and ordering values are evaluated once per match, not per comparison.
  *
  * @author Abe White
  */
@@ -51,6 +59,13 @@ public class InMemoryExpressionFactory
     private static final Value NULL = new Null();
     private static final Object UNIQUE = new Object();
 
+    /**
+     * Default minimum number of candidates handed to each partition when
+     * evaluating in parallel; smaller inputs are evaluated on the calling
+     * thread.
+     */
+    public static final int MIN_PARALLEL_PARTITION = 1024;
+
     // list of unbound variables in this query
     private List<UnboundVariable> _unbounds = null;
 
@@ -305,18 +320,52 @@ public class InMemoryExpressionFactory
 
         int results = (projected) ? exps.projections.length : 0;
         boolean[] asc = (projected) ? exps.ascending : null;
+
+        // if this is a projection, then in project() we must have selected
+        // the ordering values already after the projection values; otherwise
+        // evaluate them once per match rather than on every comparison
+        List rows = (results > 0) ? matches
+            : decorate(orderValues, matches, ctx, params);
         int idx;
         for (int i = orderValues.length - 1; i >= 0; i--) {
-            // if this is a projection, then in project() we must have selected
-            // the ordering value already after the projection values
-            idx = (results > 0) ? results + i : -1;
-            Collections.sort(matches,
-                new OrderValueComparator((Val) orderValues[i],
-                    asc == null || asc[i], idx, ctx, params));
+            idx = (results > 0) ? results + i : i;
+            Collections.sort(rows,
+                new OrderValueComparator(asc == null || asc[i], idx));
         }
+        if (rows != matches)
+            undecorate(rows, orderValues.length, matches);
         return matches;
     }
 
+    /**
+     * Return a list of rows holding the given values evaluated for each
+     * match, followed by the match itself.
+     */
+    private static List decorate(Value[] vals, List matches,
+        StoreContext ctx, Object[] params) {
+        List rows = new ArrayList(matches.size());
+        Object[] row;
+        for (Object match : matches) {
+            row = new Object[vals.length + 1];
+            for (int i = 0; i < vals.length; i++)
+                row[i] = ((Val) vals[i]).evaluate(match, match, ctx, params);
+            row[vals.length] = match;
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Replace the contents of the given matches with the matches held in
+     * the given decorated rows, in row order.
+     */
+    private static void undecorate(List rows, int len, List matches) {
+        for (ListIterator li = matches.listIterator(); li.hasNext();) {
+            li.next();
+            li.set(((Object[]) rows.get(li.previousIndex()))[len]);
+        }
+    }
+
     /**
      * Filter the given list of matches, removing duplicate entries.
      */
@@ -356,6 +405,243 @@ public class InMemoryExpressionFactory
         return (distinct == null) ? matches : distinct;
     }
 
+    /**
+     * Return true if the given expressions can be evaluated concurrently
+     * over disjoint partitions of the candidates. Variables hold the value
+     * they are currently bound to, subqueries execute through the context,
+     * and extensions and custom aggregates call out to listeners of unknown
+     * thread safety, so the presence of any of them forces serial evaluation.
+     */
+    public boolean isParallelizable(QueryExpressions exps) {
+        if (_unbounds != null && !_unbounds.isEmpty())
+            return false;
+
+        ParallelSafetyVisitor visitor = new ParallelSafetyVisitor();
+        if (exps.filter != null)
+            exps.filter.acceptVisit(visitor);
+        if (exps.having != null)
+            exps.having.acceptVisit(visitor);
+        visit(exps.projections, visitor);
+        visit(exps.grouping, visitor);
+        visit(exps.ordering, visitor);
+        return visitor.isSafe();
+    }
+
+    private static void visit(Value[] vals, ExpressionVisitor visitor) {
+        for (int i = 0; i < vals.length; i++)
+            vals[i].acceptVisit(visitor);
+    }
+
+    /**
+     * Return the candidates that match the given type and expression,
+     * evaluating disjoint partitions of the list on the fork-join pool.
+     * The relative order of the candidates is preserved. Falls back to
+     * serial evaluation when <code>parallelism</code> is less than 2 or the
+     * list is too small to be worth splitting.
+     *
+     * @param parallelism the maximum number of partitions to evaluate
+     * concurrently
+     * @param minPartition the minimum number of candidates of a partition
+     */
+    public List filter(final QueryExpressions exps, final ClassMetaData type,
+        final boolean subs, List candidates, final StoreContext ctx,
+        final Object[] params, int parallelism, int minPartition) {
+        List<List> parts = partition(candidates, parallelism, minPartition);
+        if (parts == null) {
+            List matches = new ArrayList();
+            for (Object candidate : candidates)
+                if (matches(exps, type, subs, candidate, ctx, params))
+                    matches.add(candidate);
+            return matches;
+        }
+
+        List<Callable<List>> tasks = new ArrayList<>(parts.size());
+        for (final List part : parts) {
+            tasks.add(new Callable<List>() {
+                @Override
+                public List call() {
+                    List matches = new ArrayList();
+                    for (Object candidate : part)
+                        if (matches(exps, type, subs, candidate, ctx, params))
+                            matches.add(candidate);
+                    return matches;
+                }
+            });
+        }
+        return concat(invokeAll(tasks), candidates.size());
+    }
+
+    /**
+     * Create the projections for the given results, evaluating disjoint
+     * partitions of the matches (or groups) on the fork-join pool. An
+     * ungrouped aggregate spans the whole list and is always evaluated on
+     * the calling thread.
+     *
+     * @see #project(QueryExpressions, List, StoreContext, Object[])
+     */
+    public List project(final QueryExpressions exps, List matches,
+        final StoreContext ctx, final Object[] params, int parallelism,
+        int minPartition) {
+        if (exps.projections.length == 0
+            || (exps.grouping.length == 0 && exps.isAggregate()))
+            return project(exps, matches, ctx, params);
+
+        List<List> parts = partition(matches, parallelism, minPartition);
+        if (parts == null)
+            return project(exps, matches, ctx, params);
+
+        final boolean agg = exps.grouping.length > 0;
+        List<Callable<List>> tasks = new ArrayList<>(parts.size());
+        for (final List part : parts) {
+            tasks.add(new Callable<List>() {
+                @Override
+                public List call() {
+                    List projected = new ArrayList(part.size());
+                    for (Object candidate : part)
+                        projected.add(project(candidate, exps, agg, ctx,
+                            params));
+                    return projected;
+                }
+            });
+        }
+        return concat(invokeAll(tasks), matches.size());
+    }
+
+    /**
+     * Order the given list of matches on the ordering values. Disjoint
+     * partitions of the matches are sorted on the fork-join pool and then
+     * merged, taking equal rows from the earlier partition first so that
+     * the order is the same as that of the serial implementation.
+     *
+     * @see #order(QueryExpressions, List, StoreContext, Object[])
+     */
+    public List order(final QueryExpressions exps, List matches,
+        final StoreContext ctx, final Object[] params, int parallelism,
+        int minPartition) {
+        if (exps.ordering.length == 0)
+            return matches;
+        List<List> parts = partition(matches, parallelism, minPartition);
+        if (parts == null)
+            return order(exps, matches, ctx, params);
+
+        // if this is a projection, then in project() we must have selected
+        // the ordering values already after the projection values; otherwise
+        // evaluate them once per match in the partition that sorts it
+        final int results = exps.projections.length;
+        Comparator[] comps = new Comparator[exps.ordering.length];
+        for (int i = 0; i < exps.ordering.length; i++)
+            comps[i] = new OrderValueComparator(exps.ascending[i],
+                (results > 0) ? results + i : i);
+        final Comparator comp = new ChainedComparator(comps);
+
+        List<Callable<List>> tasks = new ArrayList<>(parts.size());
+        for (final List part : parts) {
+            tasks.add(new Callable<List>() {
+                @Override
+                public List call() {
+                    List rows = (results > 0) ? new ArrayList(part)
+                        : decorate(exps.ordering, part, ctx, params);
+                    Collections.sort(rows, comp);
+                    return rows;
+                }
+            });
+        }
+
+        List ordered = merge(invokeAll(tasks), comp, matches.size());
+        if (results == 0)
+            undecorate(ordered, exps.ordering.length, ordered);
+        return ordered;
+    }
+
+    /**
+     * Merge the given sorted lists into a single sorted list. Of equal
+     * elements, those of the earlier list come first.
+     */
+    private static List merge(List<List> sorted, final Comparator comp,
+        int size) {
+        PriorityQueue<MergeCursor> heads = new PriorityQueue<>(sorted.size(),
+            new Comparator<MergeCursor>() {
+                @Override
+                public int compare(MergeCursor c1, MergeCursor c2) {
+                    int cmp = comp.compare(c1.head, c2.head);
+                    return (cmp != 0) ? cmp : c1.index - c2.index;
+                }
+            });
+        for (int i = 0; i < sorted.size(); i++) {
+            Iterator itr = sorted.get(i).iterator();
+            if (itr.hasNext())
+                heads.add(new MergeCursor(i, itr));
+        }
+
+        List merged = new ArrayList(size);
+        MergeCursor cursor;
+        while ((cursor = heads.poll()) != null) {
+            merged.add(cursor.head);
+            if (cursor.advance())
+                heads.add(cursor);
+        }
+        return merged;
+    }
+
+    /**
+     * Return the number of partitions a list of the given size is evaluated
+     * in, or 1 if it is evaluated serially.
+     *
+     * @param parallelism the maximum number of partitions
+     * @param minPartition the minimum number of elements of a partition
+     */
+    public static int getPartitionCount(int size, int parallelism,
+        int minPartition) {
+        if (parallelism < 2)
+            return 1;
+        int parts = Math.min(parallelism, size / Math.max(1, minPartition));
+        return (parts < 2) ? 1 : parts;
+    }
+
+    /**
+     * Split the given list into at most <code>parallelism</code> contiguous
+     * partitions of at least <code>minPartition</code> elements, or return
+     * null if the list should be evaluated serially.
+     */
+    private static List<List> partition(List list, int parallelism,
+        int minPartition) {
+        if (list == null)
+            return null;
+        int parts = getPartitionCount(list.size(), parallelism, minPartition);
+        if (parts < 2)
+            return null;
+
+        List<List> partitions = new ArrayList<>(parts);
+        int size = list.size();
+        for (int i = 0; i < parts; i++)
+            partitions.add(list.subList(i * size / parts,
+                (i + 1) * size / parts));
+        return partitions;
+    }
+
+    /**
+     * Run the given tasks on the fork-join pool and return their results in
+     * task order. Runtime exceptions raised by a task are rethrown.
+     */
+    private static List<List> invokeAll(List<Callable<List>> tasks) {
+        List<ForkJoinTask<List>> forks = new ArrayList<>(tasks.size());
+        for (Callable<List> task : tasks)
+            forks.add(ForkJoinTask.adapt(task));
+        ForkJoinTask.invokeAll(forks);
+
+        List<List> results = new ArrayList<>(forks.size());
+        for (ForkJoinTask<List> fork : forks)
+            results.add(fork.join());
+        return results;
+    }
+
+    private static List concat(List<List> parts, int size) {
+        List all = new ArrayList(size);
+        for (List part : parts)
+            all.addAll(part);
+        return all;
+    }
+
     @Override
     public Expression emptyExpression() {
         return new Exp();
@@ -777,37 +1063,98 @@ public class InMemoryExpressionFactory
     }
 
     /**
-     * Comparator that uses the result of eval'ing a Value to sort on. Null
-     * values are placed last if sorting in ascending order, first if
-     * descending.
+     * The next element of a sorted list being merged.
+     */
+    private static class MergeCursor {
+
+        private final int index;
+        private final Iterator itr;
+        private Object head;
+
+        private MergeCursor(int index, Iterator itr) {
+            this.index = index;
+            this.itr = itr;
+            this.head = itr.next();
+        }
+
+        /**
+         * Move to the next element, returning false if there is none.
+         */
+        private boolean advance() {
+            if (!itr.hasNext())
+                return false;
+            head = itr.next();
+            return true;
+        }
+    }
+
+    /**
+     * Comparator that consults each of a series of comparators in turn until
+     * one of them distinguishes the given objects.
+     */
+    private static class ChainedComparator
+        implements Comparator {
+
+        private final Comparator[] _comps;
+
+        private ChainedComparator(Comparator[] comps) {
+            _comps = comps;
+        }
+
+        @Override
+        public int compare(Object o1, Object o2) {
+            int cmp;
+            for (int i = 0; i < _comps.length; i++) {
+                cmp = _comps[i].compare(o1, o2);
+                if (cmp != 0)
+                    return cmp;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Detects values and expressions that cannot be evaluated concurrently
+     * on behalf of different candidates.
+     */
+    private static class ParallelSafetyVisitor
+        extends AbstractExpressionVisitor {
+
+        private boolean _safe = true;
+
+        public boolean isSafe() {
+            return _safe;
+        }
+
+        @Override
+        public void enter(Value val) {
+            if (val instanceof BoundVariable || val instanceof UnboundVariable
+                || val instanceof SubQ || val instanceof Extension
+                || val instanceof Aggregate)
+                _safe = false;
+        }
+    }
+
+    /**
+     * Comparator of rows holding evaluated ordering values, on the value at
+     * a given index. Null values are placed last if sorting in ascending
+     * order, first if descending.
      */
     private static class OrderValueComparator
         implements Comparator {
 
-        private final StoreContext _ctx;
-        private final Val _val;
         private final boolean _asc;
         private final int _idx;
-        private final Object[] _params;
 
-        private OrderValueComparator(Val val, boolean asc, int idx,
-            StoreContext ctx, Object[] params) {
-            _ctx = ctx;
-            _val = val;
+        private OrderValueComparator(boolean asc, int idx) {
             _asc = asc;
             _idx = idx;
-            _params = params;
         }
 
         @Override
         public int compare(Object o1, Object o2) {
-            if (_idx != -1) {
-                o1 = ((Object[]) o1)[_idx];
-                o2 = ((Object[]) o2)[_idx];
-            } else {
-                o1 = _val.evaluate(o1, o1, _ctx, _params);
-                o2 = _val.evaluate(o2, o2, _ctx, _params);
-            }
+            o1 = ((Object[]) o1)[_idx];
+            o2 = ((Object[]) o2)[_idx];
 
             if (o1 == null && o2 == null)
                 return 0;
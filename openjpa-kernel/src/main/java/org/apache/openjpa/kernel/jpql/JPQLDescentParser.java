@@ -0,0 +1,2169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel.jpql;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.apache.openjpa.kernel.jpql.JPQLExpressionBuilder.JPQLNode;
+import org.apache.openjpa.lib.util.Localizer;
+
+/**
+ * Hand-written recursive-descent parser for JPQL. It accepts the grammar
+ * in <code>JPQL.jjt</code> and produces the same {@link JPQLNode} tree as
+ * the JavaCC-generated {@link JPQL} parser, so that
+ * {@link JPQLExpressionBuilder} can consume either.
+ *
+ * The query is tokenized once up front. Each production is a method that
+ * either consumes its input and pushes its nodes on the node stack, or
+ * restores the token position and the stack and returns false. Where the
+ * grammar chooses between alternatives with syntactic lookahead, the
+ * alternatives are simply tried in order; the productions that the grammar
+ * re-scans most often are memoized by token position so that backtracking
+ * never parses the same expression twice.
+ *
+ * @since 3.1.1
+ */
+class JPQLDescentParser
+    implements JPQLTreeConstants {
+
+    private static final Localizer _loc = Localizer.forPackage
+        (JPQLDescentParser.class);
+
+    // token kinds
+    private static final int EOF = 0;
+    private static final int COMMA = 1;
+    private static final int DOT = 2;
+    private static final int EQ = 3;
+    private static final int NE = 4;
+    private static final int GT = 5;
+    private static final int GE = 6;
+    private static final int LT = 7;
+    private static final int LE = 8;
+    private static final int PLUS = 9;
+    private static final int MINUS = 10;
+    private static final int TIMES = 11;
+    private static final int DIV = 12;
+    private static final int LPAREN = 13;
+    private static final int RPAREN = 14;
+    private static final int COLON = 15;
+    private static final int QUESTION = 16;
+    private static final int INTEGER_LITERAL = 17;
+    private static final int DECIMAL_LITERAL = 18;
+    private static final int STRING_LITERAL = 19;
+    private static final int STRING_LITERAL2 = 20;
+    private static final int CHARACTER_LITERAL = 21;
+    private static final int DATE_LITERAL = 22;
+    private static final int TIME_LITERAL = 23;
+    private static final int TIMESTAMP_LITERAL = 24;
+    private static final int BOOLEAN_LITERAL = 25;
+    private static final int IDENTIFIER = 26;
+
+    // reserved words; every one of them may also be used as a path component
+    private static final int NEW = 27;
+    private static final int ALL = 28;
+    private static final int ANY = 29;
+    private static final int EXISTS = 30;
+    private static final int SOME = 31;
+    private static final int EMPTY = 32;
+    private static final int ASC = 33;
+    private static final int DESC = 34;
+    private static final int ORDER = 35;
+    private static final int BY = 36;
+    private static final int IS = 37;
+    private static final int MEMBER = 38;
+    private static final int OF = 39;
+    private static final int LIKE = 40;
+    private static final int ESCAPE = 41;
+    private static final int BETWEEN = 42;
+    private static final int NULL = 43;
+    private static final int KEY = 44;
+    private static final int VALUE = 45;
+    private static final int TYPE = 46;
+    private static final int ENTRY = 47;
+    private static final int AVG = 48;
+    private static final int MIN = 49;
+    private static final int MAX = 50;
+    private static final int SUM = 51;
+    private static final int COUNT = 52;
+    private static final int OR = 53;
+    private static final int AND = 54;
+    private static final int NOT = 55;
+    private static final int CONCAT = 56;
+    private static final int SUBSTRING = 57;
+    private static final int TRIM = 58;
+    private static final int LOWER = 59;
+    private static final int UPPER = 60;
+    private static final int LEADING = 61;
+    private static final int TRAILING = 62;
+    private static final int BOTH = 63;
+    private static final int LENGTH = 64;
+    private static final int LOCATE = 65;
+    private static final int ABS = 66;
+    private static final int SQRT = 67;
+    private static final int MOD = 68;
+    private static final int SIZE = 69;
+    private static final int INDEX = 70;
+    private static final int CURRENT_DATE = 71;
+    private static final int CURRENT_TIME = 72;
+    private static final int CURRENT_TIMESTAMP = 73;
+    private static final int SELECT = 74;
+    private static final int DISTINCT = 75;
+    private static final int FROM = 76;
+    private static final int UPDATE = 77;
+    private static final int DELETE = 78;
+    private static final int WHERE = 79;
+    private static final int GROUP = 80;
+    private static final int HAVING = 81;
+    private static final int AS = 82;
+    private static final int LEFT = 83;
+    private static final int OUTER = 84;
+    private static final int INNER = 85;
+    private static final int JOIN = 86;
+    private static final int FETCH = 87;
+    private static final int IN = 88;
+    private static final int SET = 89;
+    private static final int OBJECT = 90;
+    private static final int CASE = 91;
+    private static final int WHEN = 92;
+    private static final int ELSE = 93;
+    private static final int THEN = 94;
+    private static final int END = 95;
+    private static final int NULLIF = 96;
+    private static final int COALESCE = 97;
+    private static final int CLASS = 98;
+
+    private static final int FIRST_KEYWORD = NEW;
+    private static final int LAST_KEYWORD = CLASS;
+
+    private static final String[] KEYWORDS = {
+        "NEW", "ALL", "ANY", "EXISTS", "SOME", "EMPTY", "ASC", "DESC",
+        "ORDER", "BY", "IS", "MEMBER", "OF", "LIKE", "ESCAPE", "BETWEEN",
+        "NULL", "KEY", "VALUE", "TYPE", "ENTRY", "AVG", "MIN", "MAX", "SUM",
+        "COUNT", "OR", "AND", "NOT", "CONCAT", "SUBSTRING", "TRIM", "LOWER",
+        "UPPER", "LEADING", "TRAILING", "BOTH", "LENGTH", "LOCATE", "ABS",
+        "SQRT", "MOD", "SIZE", "INDEX", "CURRENT_DATE", "CURRENT_TIME",
+        "CURRENT_TIMESTAMP", "SELECT", "DISTINCT", "FROM", "UPDATE", "DELETE",
+        "WHERE", "GROUP", "HAVING", "AS", "LEFT", "OUTER", "INNER", "JOIN",
+        "FETCH", "IN", "SET", "OBJECT", "CASE", "WHEN", "ELSE", "THEN", "END",
+        "NULLIF", "COALESCE", "CLASS",
+    };
+
+    private static final String[] IMAGES = {
+        "<EOF>", "\",\"", "\".\"", "\"=\"", "\"<>\"", "\">\"", "\">=\"",
+        "\"<\"", "\"<=\"", "\"+\"", "\"-\"", "\"*\"", "\"/\"", "\"(\"",
+        "\")\"", "\":\"", "\"?\"", "<INTEGER_LITERAL>", "<DECIMAL_LITERAL>",
+        "<STRING_LITERAL>", "<STRING_LITERAL2>", "<CHARACTER_LITERAL>",
+        "<DATE_LITERAL>", "<TIME_LITERAL>", "<TIMESTAMP_LITERAL>",
+        "<BOOLEAN_LITERAL>", "<IDENTIFIER>",
+    };
+
+    // the longest reserved word is CURRENT_TIMESTAMP
+    private static final int MAX_KEYWORD_LENGTH = 17;
+
+    private static final Map<String, Integer> _keywords = new HashMap<>();
+
+    static {
+        for (int i = 0; i < KEYWORDS.length; i++)
+            _keywords.put(KEYWORDS[i], FIRST_KEYWORD + i);
+        _keywords.put("TRUE", BOOLEAN_LITERAL);
+        _keywords.put("FALSE", BOOLEAN_LITERAL);
+    }
+
+    // operand types of comparison expressions
+    private static final int ARITHMETIC = 0;
+    private static final int STRING = 1;
+    private static final int BOOLEAN = 2;
+    private static final int ENUM = 3;
+    private static final int DATETIME = 4;
+    private static final int ENTITY = 5;
+    private static final int ENTITY_TYPE = 6;
+
+    // memoized productions
+    private static final int M_PATH = 0;
+    private static final int M_QUALIFIED_PATH = 1;
+    private static final int M_GENERAL_IDENTIFIER = 2;
+    private static final int M_ARITHMETIC = 3;
+    private static final int M_STRING = 4;
+    private static final int M_DATETIME = 5;
+    private static final int M_BOOLEAN = 6;
+    private static final int M_ENUM = 7;
+    private static final int M_ENTITY = 8;
+    private static final int M_SCALAR = 9;
+    private static final int M_CASE = 10;
+    private static final int M_AGGREGATE = 11;
+    private static final int M_SUBQUERY = 12;
+    private static final int M_COUNT = 13;
+
+    private static final Memo FAILED = new Memo(-1, null);
+
+    private final String jpql;
+    private final char[] chars;
+
+    // token table
+    private int[] kinds;
+    private int[] starts;
+    private int[] ends;
+    private int count;
+
+    // parse state
+    private int pos;
+    private JPQLNode[] stack = new JPQLNode[32];
+    private int sp;
+    private boolean inEnumPath;
+    private final Memo[][] memos = new Memo[M_COUNT][];
+
+    // error reporting: the furthest token reached and the kinds expected there
+    private int furthest = -1;
+    private final BitSet expected = new BitSet();
+
+    public JPQLDescentParser(String jpql) {
+        this.jpql = jpql;
+        this.chars = jpql.indexOf('\\') == -1 ? jpql.toCharArray()
+            : unescape(jpql);
+    }
+
+    /**
+     * Parse the query and return the root of its node tree.
+     */
+    public JPQLNode parseQuery() {
+        tokenize();
+        if (!(selectStatement() || updateStatement() || deleteStatement())
+            || !tok(EOF))
+            throw parseException();
+
+        JPQLNode root = stack[0];
+        link(root);
+        return root;
+    }
+
+    /**
+     * Set the parent of every node in the tree. Parents are assigned once
+     * the tree is complete because memoized nodes may be adopted by
+     * several candidate parents while alternatives are being tried.
+     */
+    private static void link(JPQLNode node) {
+        if (node.children == null)
+            return;
+        for (JPQLNode child : node.children) {
+            child.parent = node;
+            link(child);
+        }
+    }
+
+    /////////
+    // Lexer
+    /////////
+
+    /**
+     * Translate unicode escapes the way the generated parser's character
+     * stream does: a <code>\\u</code> sequence preceded by an odd number of
+     * backslashes, optionally with repeated <code>u</code>s, followed by
+     * four hexadecimal digits.
+     */
+    private static char[] unescape(String jpql) {
+        int len = jpql.length();
+        StringBuilder buf = new StringBuilder(len);
+        for (int i = 0; i < len; i++) {
+            char c = jpql.charAt(i);
+            if (c != '\\') {
+                buf.append(c);
+                continue;
+            }
+
+            int run = 1;
+            while (i + run < len && jpql.charAt(i + run) == '\\')
+                run++;
+            int next = i + run;
+            if ((run & 1) == 0 || next >= len || jpql.charAt(next) != 'u') {
+                buf.append(jpql, i, next);
+                i = next - 1;
+                continue;
+            }
+
+            buf.append(jpql, i, next - 1);
+            while (next < len && jpql.charAt(next) == 'u')
+                next++;
+            if (next + 4 > len)
+                throw new ParseException(_loc.get("bad-escape",
+                    Integer.valueOf(i + 1)).getMessage());
+            int value = 0;
+            for (int j = 0; j < 4; j++) {
+                int digit = Character.digit(jpql.charAt(next + j), 16);
+                if (digit == -1)
+                    throw new ParseException(_loc.get("bad-escape",
+                        Integer.valueOf(i + 1)).getMessage());
+                value = (value << 4) | digit;
+            }
+            buf.append((char) value);
+            i = next + 3;
+        }
+
+        char[] chars = new char[buf.length()];
+        buf.getChars(0, chars.length, chars, 0);
+        return chars;
+    }
+
+    private void tokenize() {
+        int len = chars.length;
+        int capacity = len / 3 + 2;
+        kinds = new int[capacity];
+        starts = new int[capacity];
+        ends = new int[capacity];
+
+        int i = 0;
+        while (true) {
+            while (i < len && (chars[i] == ' ' || chars[i] == '\n'
+                || chars[i] == '\r' || chars[i] == '\t'))
+                i++;
+            if (i == len) {
+                addToken(EOF, i, i);
+                return;
+            }
+
+            int start = i;
+            char c = chars[i];
+            int kind;
+            switch (c) {
+                case ',':
+                    kind = COMMA;
+                    i++;
+                    break;
+                case '=':
+                    kind = EQ;
+                    i++;
+                    break;
+                case '<':
+                    i++;
+                    if (i < len && chars[i] == '>') {
+                        kind = NE;
+                        i++;
+                    } else if (i < len && chars[i] == '=') {
+                        kind = LE;
+                        i++;
+                    } else
+                        kind = LT;
+                    break;
+                case '>':
+                    i++;
+                    if (i < len && chars[i] == '=') {
+                        kind = GE;
+                        i++;
+                    } else
+                        kind = GT;
+                    break;
+                case '+':
+                    kind = PLUS;
+                    i++;
+                    break;
+                case '-':
+                    kind = MINUS;
+                    i++;
+                    break;
+                case '*':
+                    kind = TIMES;
+                    i++;
+                    break;
+                case '/':
+                    kind = DIV;
+                    i++;
+                    break;
+                case '(':
+                    kind = LPAREN;
+                    i++;
+                    break;
+                case ')':
+                    kind = RPAREN;
+                    i++;
+                    break;
+                case ':':
+                    kind = COLON;
+                    i++;
+                    break;
+                case '?':
+                    kind = QUESTION;
+                    i++;
+                    break;
+                case '.':
+                    if (i + 1 < len && isDigit(chars[i + 1])) {
+                        kind = DECIMAL_LITERAL;
+                        i = scanNumber(i);
+                    } else {
+                        kind = DOT;
+                        i++;
+                    }
+                    break;
+                case '\'':
+                    i = scanString(i);
+                    int end = scanCharacter(start);
+                    if (end > i) {
+                        kind = CHARACTER_LITERAL;
+                        i = end;
+                    } else if (i == -1)
+                        throw lexicalException(start);
+                    else
+                        kind = STRING_LITERAL;
+                    break;
+                case '"':
+                    i = indexOf('"', i + 1);
+                    if (i == -1)
+                        throw lexicalException(start);
+                    kind = STRING_LITERAL2;
+                    i++;
+                    break;
+                case '{':
+                    if (startsWith(i, "{d '")) {
+                        kind = DATE_LITERAL;
+                        i = scanTemporal(i + 4, "-");
+                    } else if (startsWith(i, "{t '")) {
+                        kind = TIME_LITERAL;
+                        i = scanTemporal(i + 4, ":");
+                    } else if (startsWith(i, "{ts '")) {
+                        kind = TIMESTAMP_LITERAL;
+                        i = scanTemporal(i + 5, "-: .");
+                    } else
+                        throw lexicalException(start);
+                    if (i == -1)
+                        throw lexicalException(start);
+                    break;
+                default:
+                    if (isDigit(c)) {
+                        i = scanNumber(i);
+                        kind = isInteger(start, i) ? INTEGER_LITERAL
+                            : DECIMAL_LITERAL;
+                    } else if (isLetter(c)) {
+                        i++;
+                        while (i < len && (isLetter(chars[i])
+                            || isLetterDigit(chars[i])))
+                            i++;
+                        kind = keyword(start, i);
+                    } else
+                        throw lexicalException(start);
+            }
+            addToken(kind, start, i);
+        }
+    }
+
+    private void addToken(int kind, int start, int end) {
+        if (count == kinds.length) {
+            int capacity = count * 2;
+            int[] k = new int[capacity];
+            int[] s = new int[capacity];
+            int[] e = new int[capacity];
+            System.arraycopy(kinds, 0, k, 0, count);
+            System.arraycopy(starts, 0, s, 0, count);
+            System.arraycopy(ends, 0, e, 0, count);
+            kinds = k;
+            starts = s;
+            ends = e;
+        }
+        kinds[count] = kind;
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    /**
+     * Return the end of the longest integer or decimal literal starting at
+     * the given index.
+     */
+    private int scanNumber(int i) {
+        int len = chars.length;
+        while (i < len && isDigit(chars[i]))
+            i++;
+        if (i < len && (chars[i] == 'l' || chars[i] == 'L')) {
+            // an integer literal, unless an exponent or a decimal point
+            // could have made for a longer decimal literal; neither can
+            // follow digits directly when we see the suffix
+            return i + 1;
+        }
+        if (i < len && chars[i] == '.') {
+            i++;
+            while (i < len && isDigit(chars[i]))
+                i++;
+        }
+        if (i < len && (chars[i] == 'e' || chars[i] == 'E')) {
+            int j = i + 1;
+            if (j < len && (chars[j] == '+' || chars[j] == '-'))
+                j++;
+            if (j < len && isDigit(chars[j])) {
+                while (j < len && isDigit(chars[j]))
+                    j++;
+                i = j;
+            }
+        }
+        if (i < len && (chars[i] == 'f' || chars[i] == 'F'
+            || chars[i] == 'd' || chars[i] == 'D'))
+            i++;
+        return i;
+    }
+
+    /**
+     * An all-digit literal, optionally with a long suffix, is an integer;
+     * anything else that {@link #scanNumber} accepts is a decimal.
+     */
+    private boolean isInteger(int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = chars[i];
+            if (!isDigit(c))
+                return i == end - 1 && (c == 'l' || c == 'L');
+        }
+        return true;
+    }
+
+    /**
+     * Return the end of the longest single-quoted string literal starting
+     * at the given index, in which quotes are escaped by doubling them, or
+     * -1 if the literal is not terminated.
+     */
+    private int scanString(int i) {
+        int len = chars.length;
+        int end = -1;
+        for (i++; i < len; i++) {
+            if (chars[i] != '\'')
+                continue;
+            end = i + 1;
+            if (i + 1 < len && chars[i + 1] == '\'')
+                i++;
+            else
+                break;
+        }
+        return end;
+    }
+
+    /**
+     * Return the end of a Java-style character literal starting at the
+     * given index, or -1 if there is none. The grammar declares but never
+     * uses such literals; they only win over string literals for inputs
+     * like <code>'\''</code>.
+     */
+    private int scanCharacter(int i) {
+        int len = chars.length;
+        if (i + 2 >= len)
+            return -1;
+        char c = chars[i + 1];
+        if (c != '\\')
+            return c != '\'' && c != '\n' && c != '\r'
+                && chars[i + 2] == '\'' ? i + 3 : -1;
+
+        c = chars[i + 2];
+        if ("ntbrf\\'".indexOf(c) != -1)
+            return i + 3 < len && chars[i + 3] == '\'' ? i + 4 : -1;
+
+        int digits = 0;
+        int max = c >= '0' && c <= '3' ? 3 : 2;
+        while (digits < max && i + 2 + digits < len
+            && chars[i + 2 + digits] >= '0' && chars[i + 2 + digits] <= '7')
+            digits++;
+        for (; digits > 0; digits--) {
+            int quote = i + 2 + digits;
+            if (quote < len && chars[quote] == '\'')
+                return quote + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Return the end of a JDBC escape-syntax temporal literal whose body
+     * starts at the given index and consists of digits and the given
+     * separators, or -1 if it is malformed.
+     */
+    private int scanTemporal(int i, String separators) {
+        int len = chars.length;
+        while (i < len && (isDigit(chars[i])
+            || separators.indexOf(chars[i]) != -1))
+            i++;
+        return startsWith(i, "'}") ? i + 2 : -1;
+    }
+
+    private int indexOf(char c, int from) {
+        for (int i = from; i < chars.length; i++)
+            if (chars[i] == c)
+                return i;
+        return -1;
+    }
+
+    private boolean startsWith(int i, String prefix) {
+        if (i + prefix.length() > chars.length)
+            return false;
+        for (int j = 0; j < prefix.length(); j++)
+            if (chars[i + j] != prefix.charAt(j))
+                return false;
+        return true;
+    }
+
+    /**
+     * Return the kind of the identifier-like token between the given
+     * indexes. Reserved words are matched case-insensitively over ASCII
+     * only, as the generated token manager does.
+     */
+    private int keyword(int start, int end) {
+        int len = end - start;
+        if (len > MAX_KEYWORD_LENGTH)
+            return IDENTIFIER;
+        char[] upper = new char[len];
+        for (int i = 0; i < len; i++) {
+            char c = chars[start + i];
+            if (c >= 'a' && c <= 'z')
+                c -= 'a' - 'A';
+            else if (c > 0x7f)
+                return IDENTIFIER;
+            upper[i] = c;
+        }
+        Integer kind = _keywords.get(new String(upper));
+        return kind == null ? IDENTIFIER : kind;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(char c) {
+        return c == '$' || c == '_'
+            || (c >= 'A' && c <= 'Z')
+            || (c >= 'a' && c <= 'z')
+            || (c >= 'À' && c <= 'Ö')
+            || (c >= 'Ø' && c <= 'ö')
+            || (c >= 'ø' && c <= 'ÿ')
+            || (c >= 'Ā' && c <= '῿')
+            || (c >= '぀' && c <= '㆏')
+            || (c >= '㌀' && c <= '㍿')
+            || (c >= '㐀' && c <= '㴭')
+            || (c >= '一' && c <= '鿿')
+            || (c >= '豈' && c <= '﫿');
+    }
+
+    private static boolean isLetterDigit(char c) {
+        return (c >= '0' && c <= '9')
+            || (c >= '٠' && c <= '٩')
+            || (c >= '۰' && c <= '۹')
+            || (c >= '०' && c <= '९')
+            || (c >= '০' && c <= '৯')
+            || (c >= '੦' && c <= '੯')
+            || (c >= '૦' && c <= '૯')
+            || (c >= '୦' && c <= '୯')
+            || (c >= '௧' && c <= '௯')
+            || (c >= '౦' && c <= '౯')
+            || (c >= '೦' && c <= '೯')
+            || (c >= '൦' && c <= '൯')
+            || (c >= '๐' && c <= '๙')
+            || (c >= '໐' && c <= '໙')
+            || (c >= '၀' && c <= '၉');
+    }
+
+    /////////////////
+    // Parser support
+    /////////////////
+
+    /**
+     * Consume a token of the given kind.
+     */
+    private boolean tok(int kind) {
+        if (kinds[pos] == kind) {
+            pos++;
+            return true;
+        }
+        expect(kind, kind);
+        return false;
+    }
+
+    /**
+     * Record that a token in the given kind range was expected at the
+     * current position.
+     */
+    private void expect(int from, int to) {
+        if (pos < furthest)
+            return;
+        if (pos > furthest) {
+            furthest = pos;
+            expected.clear();
+        }
+        expected.set(from, to + 1);
+    }
+
+    /**
+     * Restore the given position and stack depth after a failed match.
+     */
+    private boolean fail(int p, int s) {
+        pos = p;
+        sp = s;
+        return false;
+    }
+
+    private void push(JPQLNode node) {
+        if (sp == stack.length) {
+            JPQLNode[] grown = new JPQLNode[sp * 2];
+            System.arraycopy(stack, 0, grown, 0, sp);
+            stack = grown;
+        }
+        stack[sp++] = node;
+    }
+
+    /**
+     * Create a node of the given type whose children are all the nodes
+     * pushed since the given stack mark, and push it.
+     */
+    private JPQLNode reduce(int id, int mark) {
+        JPQLNode node = new SimpleNode(jpql, id, inEnumPath);
+        int size = sp - mark;
+        if (size > 0) {
+            node.children = new JPQLNode[size];
+            System.arraycopy(stack, mark, node.children, 0, size);
+            sp = mark;
+        }
+        push(node);
+        return node;
+    }
+
+    private boolean close(int id, int mark) {
+        reduce(id, mark);
+        return true;
+    }
+
+    /**
+     * Consume a token of the given kind and push a childless node of the
+     * given type holding its image.
+     */
+    private boolean text(int kind, int id) {
+        if (!tok(kind))
+            return false;
+        reduce(id, sp).setText(image(pos - 1));
+        return true;
+    }
+
+    private String image(int token) {
+        return new String(chars, starts[token], ends[token] - starts[token]);
+    }
+
+    private Memo recall(int rule) {
+        if (inEnumPath || memos[rule] == null)
+            return null;
+        return memos[rule][pos];
+    }
+
+    private boolean replay(Memo memo) {
+        if (memo == FAILED)
+            return false;
+        for (JPQLNode node : memo.nodes)
+            push(node);
+        pos = memo.end;
+        return true;
+    }
+
+    private boolean remember(int rule, int p, int s, boolean matched) {
+        if (inEnumPath)
+            return matched;
+        if (memos[rule] == null)
+            memos[rule] = new Memo[count];
+        if (!matched)
+            memos[rule][p] = FAILED;
+        else {
+            JPQLNode[] nodes = new JPQLNode[sp - s];
+            System.arraycopy(stack, s, nodes, 0, nodes.length);
+            memos[rule][p] = new Memo(pos, nodes);
+        }
+        return matched;
+    }
+
+    private ParseException parseException() {
+        TreeSet<String> images = new TreeSet<>();
+        for (int i = expected.nextSetBit(0); i >= 0;
+            i = expected.nextSetBit(i + 1))
+            images.add(i < FIRST_KEYWORD ? IMAGES[i]
+                : "\"" + KEYWORDS[i - FIRST_KEYWORD] + "\"");
+
+        int token = Math.max(furthest, 0);
+        String current = kinds[token] == EOF ? IMAGES[EOF] : image(token);
+        return new ParseException(_loc.get("bad-parse", new Object[]{
+            current, Integer.valueOf(column(starts[token])), images })
+            .getMessage());
+    }
+
+    private ParseException lexicalException(int index) {
+        return new ParseException(_loc.get("bad-token", new Object[]{
+            String.valueOf(chars[index]), Integer.valueOf(column(index)) })
+            .getMessage());
+    }
+
+    /**
+     * The 1-based column of the given character on its line, with tabs
+     * expanded to multiples of 8 as the generated character stream does.
+     */
+    private int column(int index) {
+        int column = 0;
+        for (int i = 0; i < index; i++) {
+            if (chars[i] == '\n' || chars[i] == '\r')
+                column = 0;
+            else if (chars[i] == '\t')
+                column += 8 - (column % 8);
+            else
+                column++;
+        }
+        return column + 1;
+    }
+
+    //////////////
+    // Productions
+    //////////////
+
+    private boolean selectStatement() {
+        int p = pos, s = sp;
+        if (!selectClause() || !fromClause())
+            return fail(p, s);
+        whereClause();
+        groupbyClause();
+        havingClause();
+        orderbyClause();
+        return close(JJTSELECT, s);
+    }
+
+    private boolean updateStatement() {
+        int p = pos, s = sp;
+        if (!updateClause())
+            return fail(p, s);
+        whereClause();
+        return close(JJTUPDATE, s);
+    }
+
+    private boolean deleteStatement() {
+        int p = pos, s = sp;
+        if (!tok(DELETE) || !tok(FROM) || !fromItem())
+            return fail(p, s);
+        close(JJTFROM, s);
+        whereClause();
+        return close(JJTDELETE, s);
+    }
+
+    private boolean fromClause() {
+        int p = pos, s = sp;
+        if (!tok(FROM) || !identificationVariableDeclaration())
+            return fail(p, s);
+        while (true) {
+            int q = pos, t = sp;
+            if (!tok(COMMA) || !(collectionMemberDeclaration()
+                || identificationVariableDeclaration())) {
+                fail(q, t);
+                break;
+            }
+        }
+        return close(JJTFROM, s);
+    }
+
+    private boolean identificationVariableDeclaration() {
+        if (!fromItem())
+            return false;
+        while (fetchJoin() || innerJoin() || outerJoin())
+            ;
+        return true;
+    }
+
+    private boolean fromItem() {
+        int p = pos, s = sp;
+        if (!abstractSchemaName())
+            return fail(p, s);
+        tok(AS);
+        identificationVariable();
+        return close(JJTFROMITEM, s);
+    }
+
+    private boolean subqueryFromClause() {
+        int p = pos, s = sp;
+        if (!tok(FROM) || !subqueryFromItem())
+            return fail(p, s);
+        while (true) {
+            int q = pos, t = sp;
+            if (!tok(COMMA) || !subqueryFromItem()) {
+                fail(q, t);
+                break;
+            }
+        }
+        return close(JJTFROM, s);
+    }
+
+    private boolean subselectIdentificationVariableDeclaration() {
+        if (!fromItem())
+            return false;
+        while (innerJoin() || outerJoin())
+            ;
+        return true;
+    }
+
+    private boolean subqueryFromItem() {
+        return collectionMemberDeclaration()
+            || subselectIdentificationVariableDeclaration();
+    }
+
+    private boolean innerJoin() {
+        int p = pos, s = sp;
+        tok(INNER);
+        if (!tok(JOIN) || !path())
+            return fail(p, s);
+        tok(AS);
+        if (!identificationVariable())
+            return fail(p, s);
+        return close(JJTINNERJOIN, s);
+    }
+
+    private boolean collectionMemberDeclaration() {
+        int p = pos, s = sp;
+        if (!tok(IN) || !tok(LPAREN) || !(path() || qualifiedPath())
+            || !tok(RPAREN))
+            return fail(p, s);
+        tok(AS);
+        if (!identificationVariable())
+            return fail(p, s);
+        return close(JJTINNERJOIN, s);
+    }
+
+    private boolean outerJoin() {
+        int p = pos, s = sp;
+        if (!tok(LEFT))
+            return false;
+        tok(OUTER);
+        if (!tok(JOIN) || !path())
+            return fail(p, s);
+        tok(AS);
+        if (!identificationVariable())
+            return fail(p, s);
+        return close(JJTOUTERJOIN, s);
+    }
+
+    private boolean fetchJoin() {
+        return outerFetchJoin() || innerFetchJoin();
+    }
+
+    private boolean outerFetchJoin() {
+        int p = pos, s = sp;
+        if (!tok(LEFT))
+            return false;
+        tok(OUTER);
+        if (!tok(JOIN) || !tok(FETCH) || !path())
+            return fail(p, s);
+        return close(JJTOUTERFETCHJOIN, s);
+    }
+
+    private boolean innerFetchJoin() {
+        int p = pos, s = sp;
+        tok(INNER);
+        if (!tok(JOIN) || !tok(FETCH) || !path())
+            return fail(p, s);
+        return close(JJTINNERFETCHJOIN, s);
+    }
+
+    private boolean path() {
+        Memo memo = recall(M_PATH);
+        if (memo != null)
+            return replay(memo);
+        int p = pos, s = sp;
+        boolean matched = identificationVariable() && pathComponents();
+        if (matched)
+            close(JJTPATH, s);
+        else
+            fail(p, s);
+        return remember(M_PATH, p, s, matched);
+    }
+
+    /**
+     * One or more dot-separated path components.
+     */
+    private boolean pathComponents() {
+        boolean matched = false;
+        while (true) {
+            int q = pos, t = sp;
+            if (!tok(DOT) || !pathComponent()) {
+                fail(q, t);
+                return matched;
+            }
+            matched = true;
+        }
+    }
+
+    private boolean updateClause() {
+        int p = pos, s = sp;
+        if (!tok(UPDATE) || !fromItem())
+            return fail(p, s);
+        close(JJTFROM, s);
+        if (!setClause())
+            return fail(p, s);
+        return true;
+    }
+
+    private boolean setClause() {
+        int p = pos, s = sp;
+        if (!tok(SET) || !updateItem())
+            return fail(p, s);
+        while (true) {
+            int q = pos, t = sp;
+            if (!tok(COMMA) || !updateItem()) {
+                fail(q, t);
+                return true;
+            }
+        }
+    }
+
+    private boolean updateItem() {
+        int p = pos, s = sp;
+        if (!path() || !tok(EQ))
+            return fail(p, s);
+        close(JJTEQUALS, sp);
+        if (!newValue())
+            return fail(p, s);
+        return close(JJTUPDATEITEM, s);
+    }
+
+    private boolean newValue() {
+        int s = sp;
+        if (!(caseExpression() || arithmeticExpression() || stringPrimary()
+            || datetimePrimary() || booleanPrimary() || enumPrimary()
+            || simpleEntityExpression() || tok(NULL)))
+            return false;
+        return close(JJTUPDATEVALUE, s);
+    }
+
+    private boolean simpleEntityExpression() {
+        return identificationVariable() || inputParameter();
+    }
+
+    private boolean selectClause() {
+        int p = pos, s = sp;
+        if (!tok(SELECT))
+            return false;
+        distinct();
+        if (!selectExpressions())
+            return fail(p, s);
+        return close(JJTSELECTCLAUSE, s);
+    }
+
+    private boolean simpleSelectClause() {
+        int p = pos, s = sp;
+        if (!tok(SELECT))
+            return false;
+        distinct();
+        if (!subselectExpressions())
+            return fail(p, s);
+        return close(JJTSELECTCLAUSE, s);
+    }
+
+    private boolean selectExpressions() {
+        int s = sp;
+        if (!selectExpression())
+            return false;
+        while (true) {
+            int q = pos, t = sp;
+            if (!tok(COMMA) || !selectExpression()) {
+                fail(q, t);
+                return close(JJTSELECTEXPRESSIONS, s);
+            }
+        }
+    }
+
+    private boolean selectExpression() {
+        int s = sp;
+        if (!(scalarExpression() || aggregateSelectExpression() || path()
+            || qualifiedPath() || qualifiedIdentificationVariable()
+            || identificationVariable() || objectExpression()
+            || constructorExpression() || entityTypeExpression()
+            || selectExtension()))
+            return false;
+        int q = pos, t = sp;
+        tok(AS);
+        if (!identificationVariable())
+            fail(q, t);
+        return close(JJTSELECTEXPRESSION, s);
+    }
+
+    private boolean objectExpression() {
+        int p = pos, s = sp;
+        if (!tok(OBJECT) || !tok(LPAREN) || !identificationVariable()
+            || !tok(RPAREN))
+            return fail(p, s);
+        return true;
+    }
+
+    private boolean selectExtension() {
+        int s = sp;
+        if (!scalarFunction())
+            return false;
+        return close(JJTSELECTEXTENSION, s);
+    }
+
+    private boolean subselectExpressions() {
+        int s = sp;
+        if (!subselectExpression())
+            return false;
+        while (true) {
+            int q = pos, t = sp;
+            if (!tok(COMMA) || !subselectExpression()) {
+                fail(q, t);
+                return close(JJTSELECTEXPRESSIONS, s);
+            }
+        }
+    }
+
+    private boolean subselectExpression() {
+        int s = sp;
+        if (!(scalarExpression() || path() || qualifiedPath()
+            || qualifiedIdentificationVariable()
+            || aggregateSelectExpression() || identificationVariable()))
+            return false;
+        return close(JJTSELECTEXPRESSION, s);
+    }
+
+    private boolean constructorExpression() {
+        int p = pos, s = sp;
+        if (!tok(NEW) || !classname() || !constructorParameters())
+            return fail(p, s);
+        return close(JJTCONSTRUCTOR, s);
+    }
+
+    private boolean classname() {
+        int s = sp;
+        if (!identificationVariable())
+            return false;
+        while (true) {
+            int q = pos, t = sp;
+            if (!tok(DOT) || !identificationVariable()) {
+                fail(q, t);
+                return close(JJTCLASSNAME, s);
+            }
+        }
+    }
+
+    private boolean constructorParameters() {
+        int p = pos, s = sp;
+        if (!tok(LPAREN) || !constructorParameter())
+            return fail(p, s);
+        while (true) {
+            int q = pos, t = sp;
+            if (!tok(COMMA) || !constructorParameter()) {
+                fail(q, t);
+                break;
+            }
+        }
+        if (!tok(RPAREN))
+            return fail(p, s);
+        return close(JJTCONSTRUCTORPARAMS, s);
+    }
+
+    private boolean constructorParameter() {
+        int s = sp;
+        if (!(scalarExpression() || qualifiedPath()
+            || qualifiedIdentificationVariable() || path()
+            || aggregateSelectExpression() || identificationVariable()))
+            return false;
+        return close(JJTCONSTRUCTORPARAM, s);
+    }
+
+    private boolean aggregateSelectExpression() {
+        Memo memo = recall(M_AGGREGATE);
+        if (memo != null)
+            return replay(memo);
+        int p = pos, s = sp;
+        boolean matched = aggregate(AVG, JJTAVERAGE)
+            || aggregate(MAX, JJTMAX) || aggregate(MIN, JJTMIN)
+            || aggregate(SUM, JJTSUM) || aggregate(COUNT, JJTCOUNT);
+        if (matched)
+            close(JJTAGGREGATE, s);
+        return remember(M_AGGREGATE, p, s, matched);
+    }
+
+    private boolean aggregate(int kind, int id) {
+        int p = pos, s = sp;
+        if (!tok(kind) || !aggregatePath())
+            return fail(p, s);
+        return close(id, s);
+    }
+
+    private boolean distinct() {
+        if (!tok(DISTINCT))
+            return false;
+        return close(JJTDISTINCT, sp);
+    }
+
+    private boolean aggregatePath() {
+        int p = pos, s = sp;
+        if (!tok(LPAREN) || !(arithmeticExpression() || distinctPath()
+            || path() || qualifiedPath() || identificationVariable())
+            || !tok(RPAREN))
+            return fail(p, s);
+        return true;
+    }
+
+    private boolean distinctPath() {
+        int p = pos, s = sp;
+        if (!tok(DISTINCT) || !(path() || qualifiedPath()
+            || qualifiedIdentificationVariable() || identificationVariable()))
+            return fail(p, s);
+        return close(JJTDISTINCTPATH, s);
+    }
+
+    private boolean whereClause() {
+        int p = pos, s = sp;
+        if (!tok(WHERE) || !conditionalExpression())
+            return fail(p, s);
+        return close(JJTWHERE, s);
+    }
+
+    private boolean groupbyClause() {
+        int p = pos, s = sp;
+        if (!tok(GROUP) || !tok(BY) || !groupbyItem())
+            return fail(p, s);
+        while (true) {
+            int q = pos, t = sp;
+            if (!tok(COMMA) || !groupbyItem()) {
+                fail(q, t);
+                return close(JJTGROUPBY, s);
+            }
+        }
+    }
+
+    private boolean groupbyItem() {
+        return path() || groupbyExtension() || qualifiedPath()
+            || generalIdentificationVariable() || identificationVariable();
+    }
+
+    private boolean groupbyExtension() {
+        int s = sp;
+        if (!scalarFunction())
+            return false;
+        return close(JJTGROUPBYEXTENSION, s);
+    }
+
+    private boolean havingClause() {
+        int p = pos, s = sp;
+        if (!tok(HAVING) || !conditionalExpression())
+            return fail(p, s);
+        return close(JJTHAVING, s);
+    }
+
+    private boolean subquery() {
+        Memo memo = recall(M_SUBQUERY);
+        if (memo != null)
+            return replay(memo);
+        int p = pos, s = sp;
+        boolean matched = simpleSelectClause() && subqueryFromClause();
+        if (matched) {
+            whereClause();
+            groupbyClause();
+            havingClause();
+            close(JJTSUBSELECT, s);
+        } else
+            fail(p, s);
+        return remember(M_SUBQUERY, p, s, matched);
+    }
+
+    /**
+     * <code>"(" subquery ")"</code>
+     */
+    private boolean parenthesizedSubquery() {
+        int p = pos, s = sp;
+        if (!tok(LPAREN) || !subquery() || !tok(RPAREN))
+            return fail(p, s);
+        return true;
+    }
+
+    private boolean conditionalExpression() {
+        int p = pos, s = sp;
+        if (!conditionalTerm())
+            return fail(p, s);
+        while (true) {
+            int q = pos, t = sp;
+            if (!tok(OR) || !conditionalExpression())
+                return fail(q, t) || true;
+            close(JJTOR, sp - 2);
+        }
+    }
+
+    private boolean conditionalTerm() {
+        int p = pos, s = sp;
+        if (!conditionalFactor())
+            return fail(p, s);
+        while (true) {
+            int q = pos, t = sp;
+            if (!tok(AND) || !conditionalTerm())
+                return fail(q, t) || true;
+            close(JJTAND, sp - 2);
+        }
+    }
+
+    private boolean conditionalFactor() {
+        int p = pos, s = sp;
+        if (tok(NOT) && conditionalPrimary())
+            return close(JJTNOT, s);
+        fail(p, s);
+        return conditionalPrimary();
+    }
+
+    private boolean conditionalPrimary() {
+        if (simpleCondExpression())
+            return true;
+        int p = pos, s = sp;
+        if (!tok(LPAREN) || !conditionalExpression() || !tok(RPAREN))
+            return fail(p, s);
+        return true;
+    }
+
+    private boolean simpleCondExpression() {
+        return existsExpression() || comparisonExpression()
+            || betweenExpression() || likeExpression() || inExpression()
+            || nullComparisonExpression()
+            || emptyCollectionComparisonExpression()
+            || collectionMemberExpression();
+    }
+
+    private boolean betweenExpression() {
+        return between(ARITHMETIC) || between(STRING) || between(DATETIME);
+    }
+
+    private boolean between(int type) {
+        int p = pos, s = sp;
+        if (!operand(type))
+            return false;
+        boolean not = tok(NOT);
+        if (!tok(BETWEEN) || !operand(type) || !tok(AND) || !operand(type))
+            return fail(p, s);
+        reduce(JJTBETWEEN, s).not = not;
+        return true;
+    }
+
+    private boolean inExpression() {
+        int p = pos, s = sp;
+        if (!(path() || scalarFunction() || typeDiscriminator()))
+            return fail(p, s);
+        boolean not = tok(NOT);
+        if (!tok(IN))
+            return fail(p, s);
+
+        int q = pos, t = sp;
+        boolean matched = false;
+        if (tok(LPAREN)) {
+            if (literalOrParam()) {
+                while (true) {
+                    int r = pos, u = sp;
+                    if (!tok(COMMA) || !literalOrParam()) {
+                        fail(r, u);
+                        break;
+                    }
+                }
+                matched = true;
+            } else
+                matched = subquery();
+            matched = matched && tok(RPAREN);
+        }
+        if (!matched) {
+            fail(q, t);
+            if (!collectionValuedInputParameter())
+                return fail(p, s);
+        }
+        reduce(JJTIN, s).not = not;
+        return true;
+    }
+
+    private boolean entityTypeLiteral() {
+        int s = sp;
+        if (!identificationVariable())
+            return false;
+        return close(JJTTYPELITERAL, s);
+    }
+
+    private boolean literalOrParam() {
+        return numericLiteral() || text(STRING_LITERAL, JJTSTRINGLITERAL)
+            || text(STRING_LITERAL2, JJTSTRINGLITERAL2)
+            || text(BOOLEAN_LITERAL, JJTBOOLEANLITERAL) || inputParameter()
+            || entityTypeLiteral();
+    }
+
+    private boolean likeExpression() {
+        int p = pos, s = sp;
+        if (!stringExpression())
+            return false;
+        boolean not = tok(NOT);
+        if (!tok(LIKE) || !patternValue())
+            return fail(p, s);
+        reduce(JJTLIKE, s).not = not;
+        return true;
+    }
+
+    private boolean nullComparisonExpression() {
+        int p = pos, s = sp;
+        if (!(inputParameter() || path() || qualifiedPath()
+            || valueIdentifier() || aggregateSelectExpression()))
+            return false;
+        if (!tok(IS))
+            return fail(p, s);
+        boolean not = tok(NOT);
+        if (!tok(NULL))
+            return fail(p, s);
+        reduce(JJTISNULL, s).not = not;
+        return true;
+    }
+
+    /**
+     * <code>VALUE "(" identification_variable ")"</code> without a
+     * wrapping node.
+     */
+    private boolean valueIdentifier() {
+        int p = pos, s = sp;
+        if (!tok(VALUE) || !tok(LPAREN) || !identificationVariable()
+            || !tok(RPAREN))
+            return fail(p, s);
+        return true;
+    }
+
+    private boolean emptyCollectionComparisonExpression() {
+        int p = pos, s = sp;
+        if (!(path() || qualifiedPath()))
+            return false;
+        if (!tok(IS))
+            return fail(p, s);
+        boolean not = tok(NOT);
+        if (!tok(EMPTY))
+            return fail(p, s);
+        reduce(JJTISEMPTY, s).not = not;
+        return true;
+    }
+
+    private boolean collectionMemberExpression() {
+        int p = pos, s = sp;
+        if (!(path() || inputParameter() || literal() || pathComponent()))
+            return false;
+        boolean not = tok(NOT);
+        if (!tok(MEMBER))
+            return fail(p, s);
+        tok(OF);
+        if (!(path() || qualifiedPath()))
+            return fail(p, s);
+        reduce(JJTMEMBEROF, s).not = not;
+        return true;
+    }
+
+    private boolean existsExpression() {
+        int p = pos, s = sp;
+        boolean not = tok(NOT);
+        if (!tok(EXISTS) || !parenthesizedSubquery())
+            return fail(p, s);
+        reduce(JJTEXISTS, s).not = not;
+        return true;
+    }
+
+    private boolean allOrAnyExpression() {
+        return quantifiedSubquery(ANY, JJTANY)
+            || quantifiedSubquery(SOME, JJTANY)
+            || quantifiedSubquery(ALL, JJTALL);
+    }
+
+    private boolean quantifiedSubquery(int kind, int id) {
+        int p = pos, s = sp;
+        if (!tok(kind) || !parenthesizedSubquery())
+            return fail(p, s);
+        return close(id, s);
+    }
+
+    private boolean comparisonExpression() {
+        return comparison(ARITHMETIC) || comparison(STRING)
+            || comparison(BOOLEAN) || comparison(ENUM)
+            || comparison(DATETIME) || comparison(ENTITY)
+            || comparison(ENTITY_TYPE);
+    }
+
+    /**
+     * The <code>string_comp</code>, <code>boolean_comp</code>,
+     * <code>enum_comp</code>, <code>arithmetic_comp</code>,
+     * <code>datetime_comp</code>, <code>entity_comp</code> and
+     * <code>entity_type_comp</code> productions, which differ only in
+     * their operands and the operators they allow.
+     */
+    private boolean comparison(int type) {
+        int p = pos, s = sp;
+        if (!operand(type))
+            return false;
+        int id = comparator(type);
+        if (id == -1)
+            return fail(p, s);
+
+        boolean matched;
+        switch (type) {
+            case ENTITY:
+                matched = allOrAnyExpression() || operand(type);
+                break;
+            case ENTITY_TYPE:
+                matched = operand(type);
+                break;
+            default:
+                matched = operand(type) || allOrAnyExpression();
+        }
+        if (!matched)
+            return fail(p, s);
+        return close(id, sp - 2);
+    }
+
+    /**
+     * Consume a comparison operator allowed between operands of the given
+     * type and return the node type it creates, or -1.
+     */
+    private int comparator(int type) {
+        boolean ordered = type == ARITHMETIC || type == STRING
+            || type == DATETIME;
+        int id;
+        switch (kinds[pos]) {
+            case EQ:
+                id = JJTEQUALS;
+                break;
+            case NE:
+                id = JJTNOTEQUALS;
+                break;
+            case GT:
+                id = ordered ? JJTGREATERTHAN : -1;
+                break;
+            case GE:
+                id = ordered ? JJTGREATEROREQUAL : -1;
+                break;
+            case LT:
+                id = ordered ? JJTLESSTHAN : -1;
+                break;
+            case LE:
+                id = ordered ? JJTLESSOREQUAL : -1;
+                break;
+            default:
+                id = -1;
+        }
+        if (id != -1)
+            pos++;
+        else
+            expect(EQ, ordered ? LE : NE);
+        return id;
+    }
+
+    private boolean operand(int type) {
+        switch (type) {
+            case ARITHMETIC:
+                return arithmeticExpression();
+            case STRING:
+                return stringExpression();
+            case BOOLEAN:
+                return booleanExpression();
+            case ENUM:
+                return enumExpression();
+            case DATETIME:
+                return datetimeExpression();
+            case ENTITY:
+                return entityBeanExpression();
+            default:
+                return entityTypeExpression() || entityTypeLiteral();
+        }
+    }
+
+    private boolean scalarFunction() {
+        return functionsReturningNumerics() || functionsReturningDatetime()
+            || functionsReturningStrings();
+    }
+
+    private boolean arithmeticExpression() {
+        Memo memo = recall(M_ARITHMETIC);
+        if (memo != null)
+            return replay(memo);
+        int p = pos, s = sp;
+        boolean matched = arithmeticTerm();
+        if (matched) {
+            while (true) {
+                int q = pos, t = sp;
+                int kind = kinds[pos];
+                if (!(tok(PLUS) || tok(MINUS)) || !arithmeticExpression()) {
+                    fail(q, t);
+                    break;
+                }
+                close(kind == PLUS ? JJTADD : JJTSUBTRACT, sp - 2);
+            }
+        }
+        return remember(M_ARITHMETIC, p, s, matched);
+    }
+
+    private boolean arithmeticTerm() {
+        if (!arithmeticFactor())
+            return false;
+        while (true) {
+            int q = pos, t = sp;
+            int kind = kinds[pos];
+            if (!(tok(TIMES) || tok(DIV)) || !arithmeticTerm())
+                return fail(q, t) || true;
+            close(kind == TIMES ? JJTMULTIPLY : JJTDIVIDE, sp - 2);
+        }
+    }
+
+    private boolean arithmeticFactor() {
+        return numericLiteral() || inputParameter() || path()
+            || qualifiedPath() || generalIdentificationVariable()
+            || identificationVariable() || parenthesizedArithmetic()
+            || functionsReturningNumerics() || aggregateSelectExpression()
+            || caseExpression() || parenthesizedSubquery();
+    }
+
+    private boolean parenthesizedArithmetic() {
+        int p = pos, s = sp;
+        if (!tok(LPAREN) || !arithmeticExpression() || !tok(RPAREN))
+            return fail(p, s);
+        return true;
+    }
+
+    private boolean qualifiedPath() {
+        Memo memo = recall(M_QUALIFIED_PATH);
+        if (memo != null)
+            return replay(memo);
+        int p = pos, s = sp;
+        boolean matched = (qualifier(KEY, JJTKEY) || qualifier(VALUE, -1))
+            && pathComponents();
+        if (matched)
+            close(JJTQUALIFIEDPATH, s);
+        else
+            fail(p, s);
+        return remember(M_QUALIFIED_PATH, p, s, matched);
+    }
+
+    /**
+     * <code>KIND "(" identification_variable ")"</code>, wrapping the
+     * identification variable in a node of the given type unless it is -1.
+     */
+    private boolean qualifier(int kind, int id) {
+        int p = pos, s = sp;
+        if (!tok(kind) || !tok(LPAREN) || !identificationVariable()
+            || !tok(RPAREN))
+            return fail(p, s);
+        if (id != -1)
+            close(id, s);
+        return true;
+    }
+
+    private boolean qualifiedIdentificationVariable() {
+        int s = sp;
+        if (!(qualifier(KEY, JJTKEY) || qualifier(VALUE, JJTVALUE)
+            || qualifier(ENTRY, JJTENTRY)))
+            return false;
+        return close(JJTQUALIFIEDIDENTIFIER, s);
+    }
+
+    private boolean generalIdentificationVariable() {
+        Memo memo = recall(M_GENERAL_IDENTIFIER);
+        if (memo != null)
+            return replay(memo);
+        int p = pos, s = sp;
+        boolean matched = qualifier(KEY, JJTKEY)
+            || qualifier(VALUE, JJTVALUE);
+        if (matched)
+            close(JJTGENERALIDENTIFIER, s);
+        return remember(M_GENERAL_IDENTIFIER, p, s, matched);
+    }
+
+    private boolean typeDiscriminator() {
+        int p = pos, s = sp;
+        if (!tok(TYPE) || !tok(LPAREN) || !(path() || qualifiedPath()
+            || generalIdentificationVariable() || identificationVariable()
+            || inputParameter()) || !tok(RPAREN))
+            return fail(p, s);
+        return close(JJTTYPE, s);
+    }
+
+    private boolean entityTypeExpression() {
+        return typeDiscriminator() || inputParameter();
+    }
+
+    private boolean scalarExpression() {
+        Memo memo = recall(M_SCALAR);
+        if (memo != null)
+            return replay(memo);
+        int p = pos, s = sp;
+        boolean matched = arithmeticExpression() || caseExpression()
+            || stringPrimary() || datetimePrimary() || enumPrimary()
+            || booleanPrimary() || entityTypeExpression();
+        if (matched)
+            close(JJTSCALAREXPRESSION, s);
+        return remember(M_SCALAR, p, s, matched);
+    }
+
+    private boolean caseExpression() {
+        Memo memo = recall(M_CASE);
+        if (memo != null)
+            return replay(memo);
+        int p = pos, s = sp;
+        boolean matched;
+        if (tok(CASE))
+            matched = generalCaseExpression() || simpleCaseExpression();
+        else if (tok(COALESCE))
+            matched = coalesceExpression();
+        else if (tok(NULLIF))
+            matched = nullifExpression();
+        else
+            matched = false;
+        if (matched)
+            close(JJTCASE, s);
+        else
+            fail(p, s);
+        return remember(M_CASE, p, s, matched);
+    }
+
+    private boolean generalCaseExpression() {
+        int p = pos, s = sp;
+        if (!whenClause())
+            return false;
+        while (whenClause())
+            ;
+        if (!tok(ELSE) || !scalarOrTypeLiteral() || !tok(END))
+            return fail(p, s);
+        return close(JJTGENERALCASE, s);
+    }
+
+    private boolean scalarOrTypeLiteral() {
+        return scalarExpression() || entityTypeLiteral();
+    }
+
+    private boolean whenClause() {
+        int p = pos, s = sp;
+        if (!tok(WHEN) || !conditionalExpression() || !tok(THEN)
+            || !scalarOrTypeLiteral())
+            return fail(p, s);
+        return close(JJTWHEN, s);
+    }
+
+    private boolean simpleCaseExpression() {
+        int p = pos, s = sp;
+        if (!(typeDiscriminator() || path()) || !simpleWhenClause())
+            return fail(p, s);
+        while (simpleWhenClause())
+            ;
+        if (!tok(ELSE) || !scalarOrTypeLiteral() || !tok(END))
+            return fail(p, s);
+        return close(JJTSIMPLECASE, s);
+    }
+
+    private boolean simpleWhenClause() {
+        int p = pos, s = sp;
+        if (!tok(WHEN) || !scalarOrTypeLiteral() || !tok(THEN)
+            || !scalarOrTypeLiteral())
+            return fail(p, s);
+        return close(JJTWHENSCALAR, s);
+    }
+
+    private boolean coalesceExpression() {
+        int p = pos, s = sp;
+        if (!tok(LPAREN) || !scalarExpression() || !tok(COMMA)
+            || !scalarExpression())
+            return fail(p, s);
+        while (true) {
+            int q = pos, t = sp;
+            if (!tok(COMMA) || !scalarExpression()) {
+                fail(q, t);
+                break;
+            }
+        }
+        if (!tok(RPAREN))
+            return fail(p, s);
+        return close(JJTCOALESCE, s);
+    }
+
+    private boolean nullifExpression() {
+        int p = pos, s = sp;
+        if (!tok(LPAREN) || !scalarExpression() || !tok(COMMA)
+            || !scalarExpression() || !tok(RPAREN))
+            return fail(p, s);
+        return close(JJTNULLIF, s);
+    }
+
+    private boolean stringExpression() {
+        Memo memo = recall(M_STRING);
+        if (memo != null)
+            return replay(memo);
+        int p = pos, s = sp;
+        return remember(M_STRING, p, s, inputParameter() || stringPrimary());
+    }
+
+    private boolean stringPrimary() {
+        return text(STRING_LITERAL, JJTSTRINGLITERAL)
+            || text(STRING_LITERAL2, JJTSTRINGLITERAL2) || path()
+            || qualifiedPath() || generalIdentificationVariable()
+            || identificationVariable() || parenthesizedString()
+            || functionsReturningStrings() || parenthesizedSubquery()
+            || caseExpression();
+    }
+
+    private boolean parenthesizedString() {
+        int p = pos, s = sp;
+        if (!tok(LPAREN) || !stringExpression() || !tok(RPAREN))
+            return fail(p, s);
+        return true;
+    }
+
+    private boolean datetimeExpression() {
+        Memo memo = recall(M_DATETIME);
+        if (memo != null)
+            return replay(memo);
+        int p = pos, s = sp;
+        return remember(M_DATETIME, p, s,
+            datetimePrimary() || parenthesizedSubquery());
+    }
+
+    private boolean datetimePrimary() {
+        return text(DATE_LITERAL, JJTDATELITERAL)
+            || text(TIME_LITERAL, JJTTIMELITERAL)
+            || text(TIMESTAMP_LITERAL, JJTTIMESTAMPLITERAL) || path()
+            || functionsReturningDatetime() || inputParameter()
+            || aggregateSelectExpression() || qualifiedPath()
+            || generalIdentificationVariable() || identificationVariable()
+            || caseExpression();
+    }
+
+    private boolean booleanExpression() {
+        Memo memo = recall(M_BOOLEAN);
+        if (memo != null)
+            return replay(memo);
+        int p = pos, s = sp;
+        return remember(M_BOOLEAN, p, s,
+            booleanPrimary() || parenthesizedSubquery());
+    }
+
+    private boolean booleanPrimary() {
+        return path() || text(BOOLEAN_LITERAL, JJTBOOLEANLITERAL)
+            || inputParameter() || qualifiedPath()
+            || generalIdentificationVariable() || identificationVariable()
+            || caseExpression();
+    }
+
+    private boolean enumExpression() {
+        Memo memo = recall(M_ENUM);
+        if (memo != null)
+            return replay(memo);
+        int p = pos, s = sp;
+        return remember(M_ENUM, p, s,
+            enumPrimary() || parenthesizedSubquery());
+    }
+
+    private boolean enumPrimary() {
+        return path() || enumLiteral() || inputParameter() || qualifiedPath()
+            || generalIdentificationVariable() || identificationVariable()
+            || caseExpression();
+    }
+
+    private boolean enumLiteral() {
+        inEnumPath = true;
+        boolean matched = path();
+        inEnumPath = false;
+        return matched;
+    }
+
+    private boolean entityBeanExpression() {
+        Memo memo = recall(M_ENTITY);
+        if (memo != null)
+            return replay(memo);
+        int p = pos, s = sp;
+        return remember(M_ENTITY, p, s, inputParameter() || path()
+            || qualifiedPath() || pathComponent());
+    }
+
+    private boolean functionsReturningStrings() {
+        return concat() || substring() || trim()
+            || function(LOWER, JJTLOWER, STRING)
+            || function(UPPER, JJTUPPER, STRING);
+    }
+
+    /**
+     * <code>KIND "(" operand ")"</code> wrapped in a node of the given type.
+     */
+    private boolean function(int kind, int id, int type) {
+        int p = pos, s = sp;
+        if (!tok(kind) || !tok(LPAREN) || !operand(type) || !tok(RPAREN))
+            return fail(p, s);
+        return close(id, s);
+    }
+
+    private boolean concat() {
+        int p = pos, s = sp;
+        if (!tok(CONCAT) || !tok(LPAREN) || !stringExpression()
+            || !tok(COMMA) || !stringExpression())
+            return fail(p, s);
+        optionalArgument(STRING);
+        if (!tok(RPAREN))
+            return fail(p, s);
+        return close(JJTCONCAT, s);
+    }
+
+    /**
+     * <code>[ "," operand ]</code>
+     */
+    private void optionalArgument(int type) {
+        int q = pos, t = sp;
+        if (!tok(COMMA) || !operand(type))
+            fail(q, t);
+    }
+
+    private boolean substring() {
+        int p = pos, s = sp;
+        if (!tok(SUBSTRING) || !tok(LPAREN) || !stringExpression()
+            || !tok(COMMA) || !arithmeticExpression())
+            return fail(p, s);
+        optionalArgument(ARITHMETIC);
+        if (!tok(RPAREN))
+            return fail(p, s);
+        return close(JJTSUBSTRING, s);
+    }
+
+    private boolean trim() {
+        int p = pos, s = sp;
+        if (!tok(TRIM) || !tok(LPAREN))
+            return fail(p, s);
+        int q = pos, t = sp;
+        trimSpecification();
+        text(STRING_LITERAL, JJTTRIMCHARACTER);
+        if (!tok(FROM))
+            fail(q, t);
+        if (!stringExpression() || !tok(RPAREN))
+            return fail(p, s);
+        return close(JJTTRIM, s);
+    }
+
+    private boolean trimSpecification() {
+        int id;
+        switch (kinds[pos]) {
+            case LEADING:
+                id = JJTTRIMLEADING;
+                break;
+            case TRAILING:
+                id = JJTTRIMTRAILING;
+                break;
+            case BOTH:
+                id = JJTTRIMBOTH;
+                break;
+            default:
+                expect(LEADING, BOTH);
+                return false;
+        }
+        pos++;
+        return close(id, sp);
+    }
+
+    private boolean functionsReturningNumerics() {
+        return function(LENGTH, JJTLENGTH, STRING) || locate()
+            || function(ABS, JJTABS, ARITHMETIC)
+            || function(SQRT, JJTSQRT, ARITHMETIC) || mod() || size()
+            || index();
+    }
+
+    private boolean locate() {
+        int p = pos, s = sp;
+        if (!tok(LOCATE) || !tok(LPAREN) || !stringExpression()
+            || !tok(COMMA) || !stringExpression())
+            return fail(p, s);
+        optionalArgument(ARITHMETIC);
+        if (!tok(RPAREN))
+            return fail(p, s);
+        return close(JJTLOCATE, s);
+    }
+
+    private boolean mod() {
+        int p = pos, s = sp;
+        if (!tok(MOD) || !tok(LPAREN) || !arithmeticExpression()
+            || !tok(COMMA) || !arithmeticExpression() || !tok(RPAREN))
+            return fail(p, s);
+        return close(JJTMOD, s);
+    }
+
+    private boolean size() {
+        int p = pos, s = sp;
+        if (!tok(SIZE) || !tok(LPAREN) || !(path() || qualifiedPath())
+            || !tok(RPAREN))
+            return fail(p, s);
+        return close(JJTSIZE, s);
+    }
+
+    private boolean index() {
+        int p = pos, s = sp;
+        if (!tok(INDEX) || !tok(LPAREN) || !identificationVariable()
+            || !tok(RPAREN))
+            return fail(p, s);
+        return close(JJTINDEX, s);
+    }
+
+    private boolean functionsReturningDatetime() {
+        int id;
+        switch (kinds[pos]) {
+            case CURRENT_DATE:
+                id = JJTCURRENTDATE;
+                break;
+            case CURRENT_TIME:
+                id = JJTCURRENTTIME;
+                break;
+            case CURRENT_TIMESTAMP:
+                id = JJTCURRENTTIMESTAMP;
+                break;
+            default:
+                expect(CURRENT_DATE, CURRENT_TIMESTAMP);
+                return false;
+        }
+        pos++;
+        return close(id, sp);
+    }
+
+    private boolean orderbyClause() {
+        int p = pos, s = sp;
+        if (!tok(ORDER) || !tok(BY) || !orderbyItem())
+            return fail(p, s);
+        while (true) {
+            int q = pos, t = sp;
+            if (!tok(COMMA) || !orderbyItem()) {
+                fail(q, t);
+                return close(JJTORDERBY, s);
+            }
+        }
+    }
+
+    private boolean orderbyItem() {
+        int s = sp;
+        if (!(path() || qualifiedPath() || generalIdentificationVariable()
+            || orderbyExtension() || identificationVariable()))
+            return false;
+        if (tok(ASC))
+            close(JJTASCENDING, sp);
+        else if (tok(DESC))
+            close(JJTDESCENDING, sp);
+        return close(JJTORDERBYITEM, s);
+    }
+
+    private boolean orderbyExtension() {
+        int s = sp;
+        if (!aggregateSelectExpression())
+            return false;
+        return close(JJTORDERBYEXTENSION, s);
+    }
+
+    private boolean abstractSchemaName() {
+        int s = sp;
+        if (!pathComponent())
+            return false;
+        while (true) {
+            int q = pos, t = sp;
+            if (!tok(DOT) || !pathComponent()) {
+                fail(q, t);
+                return close(JJTABSTRACTSCHEMANAME, s);
+            }
+        }
+    }
+
+    private boolean identificationVariable() {
+        return text(IDENTIFIER, JJTIDENTIFIER);
+    }
+
+    /**
+     * Unlike an identification variable, a path component may be a
+     * reserved word, e.g. <code>Order.group.length</code>.
+     */
+    private boolean pathComponent() {
+        int kind = kinds[pos];
+        if (kind != IDENTIFIER
+            && (kind < FIRST_KEYWORD || kind > LAST_KEYWORD)) {
+            expect(IDENTIFIER, IDENTIFIER);
+            expect(FIRST_KEYWORD, LAST_KEYWORD);
+            return false;
+        }
+        pos++;
+        reduce(JJTIDENTIFICATIONVARIABLE, sp).setText(image(pos - 1));
+        return true;
+    }
+
+    private boolean literal() {
+        return numericLiteral() || text(BOOLEAN_LITERAL, JJTBOOLEANLITERAL)
+            || text(STRING_LITERAL, JJTSTRINGLITERAL)
+            || text(STRING_LITERAL2, JJTSTRINGLITERAL2) || enumLiteral()
+            || text(DATE_LITERAL, JJTDATELITERAL)
+            || text(TIME_LITERAL, JJTTIMELITERAL)
+            || text(TIMESTAMP_LITERAL, JJTTIMESTAMPLITERAL);
+    }
+
+    private boolean numericLiteral() {
+        return signedLiteral(DECIMAL_LITERAL, JJTDECIMALLITERAL)
+            || signedLiteral(INTEGER_LITERAL, JJTINTEGERLITERAL);
+    }
+
+    /**
+     * <code>[ "+" | negative ] KIND</code>, where a negative sign becomes
+     * a child of the literal node.
+     */
+    private boolean signedLiteral(int kind, int id) {
+        int p = pos, s = sp;
+        if (!tok(PLUS) && tok(MINUS))
+            close(JJTNEGATIVE, sp);
+        if (!tok(kind))
+            return fail(p, s);
+        reduce(id, s).setText(image(pos - 1));
+        return true;
+    }
+
+    private boolean inputParameter() {
+        return namedInputParameter() || positionalInputParameter();
+    }
+
+    private boolean collectionValuedInputParameter() {
+        int s = sp;
+        if (!inputParameter())
+            return false;
+        return close(JJTCOLLECTIONPARAMETER, s);
+    }
+
+    private boolean namedInputParameter() {
+        int p = pos, s = sp;
+        if (!tok(COLON) || !pathComponent())
+            return fail(p, s);
+        return close(JJTNAMEDINPUTPARAMETER, s);
+    }
+
+    private boolean positionalInputParameter() {
+        int p = pos;
+        if (!tok(QUESTION) || !tok(INTEGER_LITERAL)) {
+            pos = p;
+            return false;
+        }
+        reduce(JJTPOSITIONALINPUTPARAMETER, sp).setText(image(pos - 1));
+        return true;
+    }
+
+    private boolean patternValue() {
+        int s = sp;
+        if (!(inputParameter() || text(STRING_LITERAL, JJTSTRINGLITERAL)
+            || text(STRING_LITERAL2, JJTSTRINGLITERAL2)))
+            return false;
+        int q = pos, t = sp;
+        if (tok(ESCAPE) && text(STRING_LITERAL, JJTESCAPECHARACTER))
+            close(JJTESCAPECHARACTER, t);
+        else
+            fail(q, t);
+        return close(JJTPATTERNVALUE, s);
+    }
+
+    /**
+     * The outcome of a memoized production at some token position: the
+     * position after it and the nodes it pushed.
+     */
+    private static class Memo {
+        final int end;
+        final JPQLNode[] nodes;
+
+        Memo(int end, JPQLNode[] nodes) {
+            this.end = end;
+            this.nodes = nodes;
+        }
+    }
+}
@@ -132,7 +132,8 @@ public class JPQLExpressionBuilder
     }
 
     protected ParsedJPQL getParsedQuery(String jpql) {
-        return new ParsedJPQL(jpql);
+        return new ParsedJPQL(jpql,
+            JPQLParser.getParserName(resolver.getQueryContext()));
     }
 
     private void setCandidate(ClassMetaData cmd, String schemaAlias) {
@@ -283,8 +284,7 @@ public class JPQLExpressionBuilder
 
     @Override
     protected String currentQuery() {
-        return ctx().parsed == null || root().parser == null ? null
-            : root().parser.jpql;
+        return ctx().parsed == null ? null : root().jpql;
     }
 
     QueryExpressions getQueryExpressions() {
@@ -1603,7 +1603,7 @@ public class JPQLExpressionBuilder
         final boolean subclasses = true;
 
         // parse the subquery
-        ParsedJPQL parsed = new ParsedJPQL(node.parser.jpql, node);
+        ParsedJPQL parsed = new ParsedJPQL(node.jpql, node);
         Context subContext = new Context(parsed, null, ctx());
         contexts.push(subContext);
 
@@ -2256,6 +2256,7 @@ public class JPQLExpressionBuilder
         private static final long serialVersionUID = 1L;
         final int id;
         final JPQL parser;
+        final String jpql;
         JPQLNode parent;
         JPQLNode[] children;
         String text;
@@ -2265,9 +2266,21 @@ public class JPQLExpressionBuilder
         public JPQLNode(JPQL parser, int id) {
             this.id = id;
             this.parser = parser;
+            this.jpql = parser.jpql;
             this.inEnumPath = parser.inEnumPath;
         }
 
+        /**
+         * Constructor for nodes built by a parser other than the generated
+         * one, such as {@link JPQLDescentParser}.
+         */
+        public JPQLNode(String jpql, int id, boolean inEnumPath) {
+            this.id = id;
+            this.parser = null;
+            this.jpql = jpql;
+            this.inEnumPath = inEnumPath;
+        }
+
         public void jjtOpen() {
         }
 
@@ -2423,7 +2436,11 @@ public class JPQLExpressionBuilder
         private Class<?> _candidateType;
 
         ParsedJPQL(String jpql) {
-            this(jpql, parse(jpql));
+            this(jpql, JPQLParser.PARSER_JAVACC);
+        }
+
+        ParsedJPQL(String jpql, String parser) {
+            this(jpql, parse(jpql, parser));
         }
 
         ParsedJPQL(String query, JPQLNode root) {
@@ -2431,11 +2448,13 @@ public class JPQLExpressionBuilder
             this.query = query;
         }
 
-        private static JPQLNode parse(String jpql) {
+        private static JPQLNode parse(String jpql, String parser) {
             if (jpql == null)
                 jpql = "";
 
             try {
+                if (JPQLParser.PARSER_DESCENT.equals(parser))
+                    return new JPQLDescentParser(jpql).parseQuery();
                 return (JPQLNode) new JPQL(jpql).parseQuery();
             } catch (Error e) {
                 // special handling for Error subclasses, which the
@@ -18,7 +18,9 @@
  */
 package org.apache.openjpa.kernel.jpql;
 
+import org.apache.openjpa.conf.OpenJPAConfiguration;
 import org.apache.openjpa.kernel.ExpressionStoreQuery;
+import org.apache.openjpa.kernel.QueryContext;
 import org.apache.openjpa.kernel.exps.ExpressionFactory;
 import org.apache.openjpa.kernel.exps.ExpressionParser;
 import org.apache.openjpa.kernel.exps.QueryExpressions;
@@ -42,19 +44,49 @@ public class JPQLParser
         Localizer.forPackage(JPQLParser.class);
     public static final String LANG_JPQL = "javax.persistence.JPQL";
 
+    /**
+     * Name of the JavaCC-generated parser, the default.
+     *
+     * @since 3.1.1
+     */
+    public static final String PARSER_JAVACC = "javacc";
+
+    /**
+     * Name of the hand-written recursive-descent parser.
+     *
+     * @since 3.1.1
+     */
+    public static final String PARSER_DESCENT = "descent";
+
     @Override
     public Object parse(String ql, ExpressionStoreQuery query) {
         if (query.getContext().getParameterDeclaration() != null)
             throw new UserException(_loc.get("param-decs-invalid"));
 
         try {
-        	return new JPQLExpressionBuilder.ParsedJPQL(ql);
+        	return new JPQLExpressionBuilder.ParsedJPQL(ql,
+        	    getParserName(query.getContext()));
         } catch (ParseException e) {
         	throw new ParseException(_loc.get("jpql-parse-error",
         		ql, e.getMessage()).getMessage(), e);
         }
     }
 
+    /**
+     * Return the name of the parser configured for the given query, or
+     * {@link #PARSER_JAVACC} if it cannot be determined.
+     *
+     * @see OpenJPAConfiguration#getJPQLParser
+     * @since 3.1.1
+     */
+    static String getParserName(QueryContext ctx) {
+        if (ctx == null || ctx.getStoreContext() == null)
+            return PARSER_JAVACC;
+        String parser = ctx.getStoreContext().getConfiguration()
+            .getJPQLParser();
+        return parser == null ? PARSER_JAVACC : parser;
+    }
+
     @Override
     public void populate(Object parsed, ExpressionStoreQuery query) {
         if (!(parsed instanceof JPQLExpressionBuilder.ParsedJPQL))
@@ -33,4 +33,8 @@ public class SimpleNode
     SimpleNode(JPQL parser, int id) {
         super(parser, id);
     }
+
+    SimpleNode(String jpql, int id, boolean inEnumPath) {
+        super(jpql, id, inEnumPath);
+    }
 }
@@ -36,6 +36,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -83,6 +84,8 @@ public abstract class AbstractCFMetaDataFactory
     protected Collection<String> cpath = null;
 
     private Set<String> _typeNames = null;
+    private String _index = null;
+    private Map<Object, String[]> _mapped = null; // rsrc -> names, indexing
     public static final String PERSISTENCE_UNIT_ROOT_URL = "PersistenceUnitRootUrl";
     public static final String MAPPING_FILE_NAMES = "MappingFileNames";
     public static final String JAR_FILE_URLS = "JarFiles";
@@ -176,6 +179,28 @@ public abstract class AbstractCFMetaDataFactory
           : new ArrayList<>(Arrays.asList(StringUtil.split(cpath, ";", 0)));
     }
 
+    /**
+     * Classpath resource of a {@link MetaDataIndex} to read persistent type
+     * names from instead of scanning the configured locations. A missing
+     * or stale index is ignored.
+     *
+     * @since 3.1.1
+     */
+    public String getIndex() {
+        return _index;
+    }
+
+    /**
+     * Classpath resource of a {@link MetaDataIndex} to read persistent type
+     * names from instead of scanning the configured locations. A missing
+     * or stale index is ignored.
+     *
+     * @since 3.1.1
+     */
+    public void setIndex(String index) {
+        _index = (StringUtil.isEmpty(index)) ? null : index;
+    }
+
     @Override
     public boolean store(ClassMetaData[] metas, QueryMetaData[] queries,
         SequenceMetaData[] seqs, int mode, Map<File,String> output) {
@@ -622,7 +647,9 @@ public abstract class AbstractCFMetaDataFactory
                 envLoader);
             long start = System.currentTimeMillis();
 
-            Set names = parsePersistentTypeNames(loader);
+            Set names = (_index == null) ? null : readIndex(loader);
+            if (names == null)
+                names = parsePersistentTypeNames(loader);
             if (names.isEmpty() && devpath)
                 scan(new ClasspathMetaDataIterator(null, newMetaDataFilter()),
                     newClassArgParser(), names, false, null);
@@ -638,6 +665,101 @@ public abstract class AbstractCFMetaDataFactory
         }
     }
 
+    /**
+     * Read persistent type names from the configured index, returning null
+     * if the index is missing or stale.
+     */
+    private Set<String> readIndex(ClassLoader loader)
+        throws IOException {
+        URL url = AccessController.doPrivileged(
+            J2DoPrivHelper.getResourceAction(loader, _index));
+        if (url == null) {
+            log.warn(_loc.get("index-not-found", _index));
+            return null;
+        }
+
+        MetaDataIndex index;
+        try (InputStream in = AccessController.doPrivileged(
+            J2DoPrivHelper.openStreamAction(url))) {
+            index = MetaDataIndex.read(in);
+        } catch (PrivilegedActionException pae) {
+            throw (IOException) pae.getException();
+        }
+        if (index == null || !index.isValid(loader)) {
+            log.warn(_loc.get("index-stale", _index));
+            return null;
+        }
+
+        for (Map.Entry<String, Set<String>> entry
+            : index.getResources().entrySet()) {
+            url = AccessController.doPrivileged(
+                J2DoPrivHelper.getResourceAction(loader, entry.getKey()));
+            mapPersistentTypeNames(url, entry.getValue().toArray(
+                new String[entry.getValue().size()]));
+        }
+        Set<String> names = index.getTypeNames();
+        if (types != null)
+            names.addAll(types);
+
+        if (log.isTraceEnabled())
+            log.trace(_loc.get("index-found-names", _index, names));
+        return names;
+    }
+
+    /**
+     * Build an index of the persistent types found in the configured
+     * locations and the metadata resources that declare them, sealed
+     * against the resources visible to the given loader.
+     *
+     * @since 3.1.1
+     */
+    public MetaDataIndex newIndex(ClassLoader envLoader) {
+        ClassLoader loader = repos.getConfiguration().
+            getClassResolverInstance().getClassLoader(getClass(), envLoader);
+        _mapped = new LinkedHashMap<>();
+        try {
+            Set<String> names = parsePersistentTypeNames(loader);
+            MetaDataIndex index = new MetaDataIndex();
+            for (Map.Entry<Object, String[]> entry : _mapped.entrySet()) {
+                String rsrc = toResourceName(entry.getKey(), loader);
+                if (rsrc == null)
+                    throw new GeneralException(_loc.get("index-bad-rsrc",
+                        entry.getKey()));
+                index.addTypeNames(rsrc, Arrays.asList(entry.getValue()));
+            }
+            names.removeAll(index.getTypeNames());
+            index.addTypeNames(MetaDataIndex.CLASSES, names);
+            index.seal(loader);
+            return index;
+        } catch (IOException ioe) {
+            throw new GeneralException(ioe);
+        } finally {
+            _mapped = null;
+        }
+    }
+
+    /**
+     * Return the name under which the given loader finds the given metadata
+     * resource, {@link MetaDataIndex#CLASSES} if the resource is a class
+     * file or directory, or null if the loader cannot find the resource.
+     */
+    private static String toResourceName(Object rsrc, ClassLoader loader) {
+        String str = rsrc.toString();
+        if (!(rsrc instanceof URL) || str.endsWith(".class")
+            || str.endsWith("/"))
+            return MetaDataIndex.CLASSES;
+
+        for (int idx = str.indexOf('/'); idx != -1;
+            idx = str.indexOf('/', idx + 1)) {
+            String name = decode(str.substring(idx + 1));
+            URL url = AccessController.doPrivileged(
+                J2DoPrivHelper.getResourceAction(loader, name));
+            if (url != null && str.equals(url.toString()))
+                return name;
+        }
+        return null;
+    }
+
     /**
      * Parse persistent type names.
      */
@@ -681,7 +803,7 @@ public abstract class AbstractCFMetaDataFactory
                         .doPrivileged(J2DoPrivHelper
                             .getAbsoluteFileAction(file));
                     try {
-                        mapPersistentTypeNames(AccessController
+                        mapTypeNames(AccessController
                             .doPrivileged(J2DoPrivHelper.toURLAction(f)), clss);
                     } catch (PrivilegedActionException pae) {
                         throw (FileNotFoundException) pae.getException();
@@ -822,7 +944,7 @@ public abstract class AbstractCFMetaDataFactory
                         if (log.isTraceEnabled())
                             log.trace(_loc.get("scan-found-names", newNames, url));
                         names.addAll(newNames);
-                        mapPersistentTypeNames(url, clss);
+                        mapTypeNames(url, clss);
                     }
                 }
             }
@@ -922,7 +1044,7 @@ public abstract class AbstractCFMetaDataFactory
                             log.trace(_loc.get("scan-found-names", newNames,
                                     rsrc));
                         names.addAll(newNames);
-                        mapPersistentTypeNames(url, clss);
+                        mapTypeNames(url, clss);
                     }
                 }
             }
@@ -958,7 +1080,7 @@ public abstract class AbstractCFMetaDataFactory
         for (Iterator itr = map.entrySet().iterator(); itr.hasNext();) {
             entry = (Map.Entry) itr.next();
             if (mapNames)
-                mapPersistentTypeNames(entry.getKey(), (String[])
+                mapTypeNames(entry.getKey(), (String[])
                     entry.getValue());
             List newNames = Arrays.asList((String[]) entry.getValue());
             if (log.isTraceEnabled())
@@ -1027,6 +1149,16 @@ public abstract class AbstractCFMetaDataFactory
        return builder.toString();
     }
 
+    /**
+     * Record the given mapping when building an index, and pass it on to
+     * {@link #mapPersistentTypeNames}.
+     */
+    private void mapTypeNames(Object rsrc, String[] names) {
+        if (_mapped != null)
+            _mapped.put(rsrc, names);
+        mapPersistentTypeNames(rsrc, names);
+    }
+
     /**
      * Implement this method to map metadata resources to the persistent
      * types contained within them. The method will be called when
@@ -0,0 +1,227 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.meta;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.AccessController;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivilegedActionException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.openjpa.lib.util.J2DoPrivHelper;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.util.GeneralException;
+
+/**
+ * Build-time index of the persistent types of a persistence unit and the
+ * metadata resources that declare them. An index lets
+ * {@link AbstractCFMetaDataFactory} skip scanning jars, directories and
+ * mapping files for persistent types at startup.
+ *
+ * The index carries a hash of the contents of every indexed class file and
+ * metadata resource. An index whose hash no longer matches the resources
+ * visible to the runtime class loader is stale and is ignored.
+ *
+ * @since 3.1.1
+ */
+public class MetaDataIndex {
+
+    private static final Localizer _loc = Localizer.forPackage
+        (MetaDataIndex.class);
+
+    private static final int MAGIC = 0x4F4A4D49; // "OJMI"
+    private static final short VERSION = 1;
+
+    /**
+     * Name of the entry under which types found in class files, rather
+     * than in metadata resources, are indexed.
+     */
+    public static final String CLASSES = "";
+
+    // resource name -> type names, sorted so that equal indexes hash equally
+    private final Map<String, Set<String>> _entries = new TreeMap<>();
+    private byte[] _hash = null;
+
+    /**
+     * Add the given types as declared by the given classpath resource,
+     * or by their own class files if the resource is {@link #CLASSES}.
+     */
+    public void addTypeNames(String rsrc, Collection<String> names) {
+        Set<String> set = _entries.get(rsrc);
+        if (set == null) {
+            set = new TreeSet<>();
+            _entries.put(rsrc, set);
+        }
+        set.addAll(names);
+        _hash = null;
+    }
+
+    /**
+     * Return the classpath resources in this index, excluding
+     * {@link #CLASSES}, mapped to the types each one declares.
+     */
+    public Map<String, Set<String>> getResources() {
+        Map<String, Set<String>> rsrcs = new TreeMap<>(_entries);
+        rsrcs.remove(CLASSES);
+        return Collections.unmodifiableMap(rsrcs);
+    }
+
+    /**
+     * Return the names of all indexed persistent types.
+     */
+    public Set<String> getTypeNames() {
+        Set<String> names = new TreeSet<>();
+        for (Set<String> set : _entries.values())
+            names.addAll(set);
+        return names;
+    }
+
+    /**
+     * Compute and record the hash of the indexed resources as seen by the
+     * given loader.
+     *
+     * @throws GeneralException if an indexed resource cannot be found
+     */
+    public void seal(ClassLoader loader) {
+        _hash = hash(loader);
+        if (_hash == null)
+            throw new GeneralException(_loc.get("index-missing-rsrc"));
+    }
+
+    /**
+     * Return true if this index was sealed against the same resources that
+     * the given loader sees now.
+     */
+    public boolean isValid(ClassLoader loader) {
+        return _hash != null && Arrays.equals(_hash, hash(loader));
+    }
+
+    /**
+     * Hash the index entries together with the contents of every indexed
+     * resource and class file. Returns null if any of them is missing.
+     */
+    private byte[] hash(ClassLoader loader) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new GeneralException(nsae);
+        }
+
+        byte[] buf = new byte[8192];
+        for (Map.Entry<String, Set<String>> entry : _entries.entrySet()) {
+            digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            if (!CLASSES.equals(entry.getKey())
+                && !update(digest, loader, entry.getKey(), buf))
+                return null;
+            for (String name : entry.getValue()) {
+                digest.update(name.getBytes(StandardCharsets.UTF_8));
+                if (!update(digest, loader,
+                    name.replace('.', '/') + ".class", buf))
+                    return null;
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Add the contents of the given resource to the digest, returning
+     * false if the resource does not exist.
+     */
+    private static boolean update(MessageDigest digest, ClassLoader loader,
+        String rsrc, byte[] buf) {
+        URL url = AccessController.doPrivileged(
+            J2DoPrivHelper.getResourceAction(loader, rsrc));
+        if (url == null)
+            return false;
+
+        try (InputStream in = AccessController.doPrivileged(
+            J2DoPrivHelper.openStreamAction(url))) {
+            for (int n; (n = in.read(buf)) != -1;)
+                digest.update(buf, 0, n);
+            return true;
+        } catch (PrivilegedActionException pae) {
+            return false;
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    /**
+     * Write this index in its binary format.
+     */
+    public void write(OutputStream out)
+        throws IOException {
+        if (_hash == null)
+            throw new IllegalStateException();
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeShort(_hash.length);
+        data.write(_hash);
+        data.writeInt(_entries.size());
+        for (Map.Entry<String, Set<String>> entry : _entries.entrySet()) {
+            data.writeUTF(entry.getKey());
+            data.writeInt(entry.getValue().size());
+            for (String name : entry.getValue())
+                data.writeUTF(name);
+        }
+        data.flush();
+    }
+
+    /**
+     * Read an index written by {@link #write}, returning null if the
+     * stream does not hold an index of the current format version.
+     */
+    public static MetaDataIndex read(InputStream in)
+        throws IOException {
+        DataInputStream data = new DataInputStream(
+            new BufferedInputStream(in));
+        if (data.readInt() != MAGIC || data.readShort() != VERSION)
+            return null;
+
+        MetaDataIndex index = new MetaDataIndex();
+        byte[] hash = new byte[data.readShort()];
+        data.readFully(hash);
+        for (int i = data.readInt(); i > 0; i--) {
+            String rsrc = data.readUTF();
+            String[] names = new String[data.readInt()];
+            for (int j = 0; j < names.length; j++)
+                names[j] = data.readUTF();
+            index.addTypeNames(rsrc, Arrays.asList(names));
+        }
+        index._hash = hash;
+        return index;
+    }
+}
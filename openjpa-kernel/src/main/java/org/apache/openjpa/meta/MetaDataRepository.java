@@ -19,6 +19,8 @@
 package org.apache.openjpa.meta;
 
 import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
 import java.util.ArrayList;
@@ -33,7 +35,10 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.apache.openjpa.conf.OpenJPAConfiguration;
 import org.apache.openjpa.enhance.DynamicPersistenceCapable;
@@ -157,7 +162,16 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
 
     protected boolean _preload = false;
     protected boolean _preloadComplete = false;
+    // whether this instance is a registered class listener; transient so a
+    // repository restored from a cache registers itself again
+    private transient boolean _listening = false;
     protected boolean _locking = true;
+    protected boolean _useSnapshot = false;
+    protected int _preloadParallelism = 1;
+
+    // fully resolved metadata, read without locking; entries are added and
+    // removed individually so concurrent publications are never lost
+    private final Map<Class<?>, ClassMetaData> _snapshot = new ConcurrentHashMap<>();
     private static final String PRELOAD_STR = "Preload";
 
     // A boolean used to decide whether or not we need to call to PCEnhancer to check whether we have any down level
@@ -308,6 +322,54 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
         _preload = l;
     }
 
+    /**
+     * The number of threads that load persistent classes and read their
+     * annotations when preloading. Parsing and resolving metadata remains
+     * serial. Defaults to 1.
+     *
+     * @since 3.1.1
+     */
+    public int getPreloadParallelism() {
+        return _preloadParallelism;
+    }
+
+    /**
+     * The number of threads that load persistent classes and read their
+     * annotations when preloading. Parsing and resolving metadata remains
+     * serial. Defaults to 1.
+     *
+     * @since 3.1.1
+     */
+    public void setPreloadParallelism(int parallelism) {
+        _preloadParallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Whether this repository publishes fully resolved metadata to a
+     * concurrent snapshot that {@link #getMetaData(Class, ClassLoader, boolean)}
+     * reads without locking. The snapshot is a live map whose entries are
+     * added and removed individually as metadata is resolved and removed.
+     * Defaults to false.
+     *
+     * @since 3.1.1
+     */
+    public boolean getSnapshot() {
+        return _useSnapshot;
+    }
+
+    /**
+     * Whether this repository publishes fully resolved metadata to a
+     * concurrent snapshot that {@link #getMetaData(Class, ClassLoader, boolean)}
+     * reads without locking. The snapshot is a live map whose entries are
+     * added and removed individually as metadata is resolved and removed.
+     * Defaults to false.
+     *
+     * @since 3.1.1
+     */
+    public void setSnapshot(boolean snapshot) {
+        _useSnapshot = snapshot;
+    }
+
 
      /**
      * If the openjpa.MetaDataRepository plugin value Preload=true is set, this method will load all
@@ -319,24 +381,17 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
         }
         // If pooling EMFs, this method may be invoked more than once. Only perform this work once.
         if (_preloadComplete == true) {
-            return;
-        }
-
-
-        MultiClassLoader multi = AccessController.doPrivileged(J2DoPrivHelper.newMultiClassLoaderAction());
-        multi.addClassLoader(AccessController.doPrivileged(J2DoPrivHelper.getContextClassLoaderAction()));
-        multi.addClassLoader(AccessController.doPrivileged(J2DoPrivHelper
-            .getClassLoaderAction(MetaDataRepository.class)));
-        // If a ClassLoader was passed into Persistence.createContainerEntityManagerFactory on the PersistenceUnitInfo
-        // we need to add that loader to the chain of classloaders
-        ClassResolver resolver = _conf.getClassResolverInstance();
-        if (resolver != null) {
-            ClassLoader cl = resolver.getClassLoader(null, null);
-            if (cl != null) {
-                multi.addClassLoader(cl);
+            // a repository restored from a cache was preloaded in another
+            // JVM and still has to listen for the classes registered in this one
+            if (!_listening) {
+                PCRegistry.addRegisterClassListener(this);
+                processRegisteredClasses(newPreloadClassLoader());
+                _listening = true;
             }
+            return;
         }
 
+        MultiClassLoader multi = newPreloadClassLoader();
         Set<String> classes = getPersistentTypeNames(false, multi);
         if (classes == null || classes.size() == 0) {
             throw new MetaDataException(_loc.get("repos-initializeEager-none"));
@@ -345,15 +400,24 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
             _log.trace(_loc.get("repos-initializeEager-found", classes));
         }
 
-        List<Class<?>> loaded = new ArrayList<>();
-        for (String c : classes) {
-            try {
-                Class<?> cls = AccessController.doPrivileged((J2DoPrivHelper.getForNameAction(c, true, multi)));
-                loaded.add(cls);
-                // This call may be unnecessary?
+        List<Class<?>> loaded;
+        if (_preloadParallelism > 1 && classes.size() > 1) {
+            if (_log.isTraceEnabled())
+                _log.trace(_loc.get("repos-preload-parallel", classes.size(), _preloadParallelism));
+            loaded = loadParallel(classes, multi);
+            for (Class<?> cls : loaded)
                 _factory.load(cls, MODE_ALL, multi);
-            } catch (PrivilegedActionException pae) {
-                throw new MetaDataException(_loc.get("repos-initializeEager-error"), pae);
+        } else {
+            loaded = new ArrayList<>();
+            for (String c : classes) {
+                try {
+                    Class<?> cls = AccessController.doPrivileged((J2DoPrivHelper.getForNameAction(c, true, multi)));
+                    loaded.add(cls);
+                    // This call may be unnecessary?
+                    _factory.load(cls, MODE_ALL, multi);
+                } catch (PrivilegedActionException pae) {
+                    throw new MetaDataException(_loc.get("repos-initializeEager-error"), pae);
+                }
             }
         }
         resolveAll(multi);
@@ -373,10 +437,72 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
         // list.
         PCRegistry.addRegisterClassListener(this);
         processRegisteredClasses(multi);
+        _listening = true;
+        if (_useSnapshot)
+            publishAll();
         _locking = false;
         _preloadComplete = true;
     }
 
+    /**
+     * Return the class loader to preload persistent classes with.
+     */
+    private MultiClassLoader newPreloadClassLoader() {
+        MultiClassLoader multi = AccessController.doPrivileged(J2DoPrivHelper.newMultiClassLoaderAction());
+        multi.addClassLoader(AccessController.doPrivileged(J2DoPrivHelper.getContextClassLoaderAction()));
+        multi.addClassLoader(AccessController.doPrivileged(J2DoPrivHelper
+            .getClassLoaderAction(MetaDataRepository.class)));
+        // If a ClassLoader was passed into Persistence.createContainerEntityManagerFactory on the PersistenceUnitInfo
+        // we need to add that loader to the chain of classloaders
+        ClassResolver resolver = _conf.getClassResolverInstance();
+        if (resolver != null) {
+            ClassLoader cl = resolver.getClassLoader(null, null);
+            if (cl != null) {
+                multi.addClassLoader(cl);
+            }
+        }
+        return multi;
+    }
+
+
+    /**
+     * Load and initialize the given classes on a pool of
+     * {@link #getPreloadParallelism} threads. Each thread also reads the
+     * annotations of the class and its declared members, which the JVM
+     * caches for the metadata parser to reuse.
+     */
+    private List<Class<?>> loadParallel(Set<String> classes, final ClassLoader loader) {
+        ForkJoinPool pool = new ForkJoinPool(_preloadParallelism);
+        try {
+            List<ForkJoinTask<Class<?>>> tasks = new ArrayList<>(classes.size());
+            for (final String c : classes) {
+                tasks.add(pool.submit(new Callable<Class<?>>() {
+                    @Override
+                    public Class<?> call() {
+                        Class<?> cls;
+                        try {
+                            cls = AccessController.doPrivileged(J2DoPrivHelper.getForNameAction(c, true, loader));
+                        } catch (PrivilegedActionException pae) {
+                            throw new MetaDataException(_loc.get("repos-initializeEager-error"), pae);
+                        }
+                        AccessController.doPrivileged(J2DoPrivHelper.getDeclaredAnnotationsAction(cls));
+                        for (Field f : AccessController.doPrivileged(J2DoPrivHelper.getDeclaredFieldsAction(cls)))
+                            AccessController.doPrivileged(J2DoPrivHelper.getDeclaredAnnotationsAction(f));
+                        for (Method m : AccessController.doPrivileged(J2DoPrivHelper.getDeclaredMethodsAction(cls)))
+                            AccessController.doPrivileged(J2DoPrivHelper.getDeclaredAnnotationsAction(m));
+                        return cls;
+                    }
+                }));
+            }
+
+            List<Class<?>> loaded = new ArrayList<>(tasks.size());
+            for (ForkJoinTask<Class<?>> task : tasks)
+                loaded.add(task.join());
+            return loaded;
+        } finally {
+            pool.shutdown();
+        }
+    }
 
     /**
      * Return the metadata for the given class.
@@ -389,15 +515,61 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
      *            if true, throws a {@link MetaDataException} if no metadata is found
      */
     public ClassMetaData getMetaData(Class<?> cls, ClassLoader envLoader, boolean mustExist) {
+        if (_useSnapshot && cls != null) {
+            ClassMetaData meta = _snapshot.get(cls);
+            if (meta != null)
+                return meta;
+        }
+
         if (_locking) {
             synchronized(this){
-                return getMetaDataInternal(cls, envLoader, mustExist);
+                return publish(cls, getMetaDataInternal(cls, envLoader, mustExist));
             }
         } else {
-            return getMetaDataInternal(cls, envLoader, mustExist);
+            return publish(cls, getMetaDataInternal(cls, envLoader, mustExist));
         }
     }
 
+    /**
+     * Add the given metadata to the snapshot under the given class if the
+     * snapshot is in use and the metadata is fully resolved, so that later
+     * lookups of the class do not need to lock the repository. Metadata
+     * returned while other metadatas are still resolving is not published,
+     * since its resolution may yet fail.
+     */
+    private ClassMetaData publish(Class<?> cls, ClassMetaData meta) {
+        if (!_useSnapshot || meta == null || cls == null
+            || (meta.getResolve() & _resMode) != _resMode
+            || !_resolving.isEmpty() || !_mapping.isEmpty())
+            return meta;
+
+        _snapshot.put(cls, meta);
+        return meta;
+    }
+
+    /**
+     * Publish every fully resolved metadata at once, as after preloading.
+     */
+    private void publishAll() {
+        for (Map.Entry<Class<?>, ClassMetaData> entry : _metas.entrySet()) {
+            ClassMetaData meta = entry.getValue();
+            if (meta != null && (meta.getResolve() & _resMode) == _resMode)
+                _snapshot.put(entry.getKey(), meta);
+        }
+    }
+
+    /**
+     * Remove the given class and any metadata describing it from the
+     * snapshot.
+     */
+    private void unpublish(Class<?> cls) {
+        if (_snapshot.isEmpty())
+            return;
+
+        _snapshot.remove(cls);
+        _snapshot.values().removeIf(meta -> meta.getDescribedType() == cls);
+    }
+
     private ClassMetaData getMetaDataInternal(Class<?> cls, ClassLoader envLoader, boolean mustExist) {
         ClassMetaData meta = getMetaDataInternal(cls, envLoader);
         if (meta == null) {
@@ -941,6 +1113,7 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
             if (_pawares.containsKey(cls))
                 throw new MetaDataException(_loc.get("pc-and-aware", cls));
             _metas.put(cls, meta);
+            unpublish(cls);
         return meta;
     }
 
@@ -1086,6 +1259,7 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
     private boolean removeMetaDataInternal(Class<?> cls) {
             if (cls == null)
                 return false;
+            unpublish(cls);
             if (_metas.remove(cls) != null) {
                 Class<?> impl = _ifaces.remove(cls);
                 if (impl != null)
@@ -1458,6 +1632,7 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
     private void clearInternal(){
         // Recreating these datastructures is probably faster than calling clear. Future change?
             _metas.clear();
+            _snapshot.clear();
             _oids.clear();
             _subs.clear();
             _impls.clear();
@@ -1960,7 +2135,8 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
         initializeMetaDataFactory();
         if (_implGen == null)
             _implGen = new InterfaceImplGenerator(this);
-        if (_preload == true) {
+        // a repository restored from a cache is already preloaded
+        if (_preload == true && _preloadComplete == false) {
             _oids = new HashMap<>();
             _impls = new HashMap<>();
             _ifaces = new HashMap<>();
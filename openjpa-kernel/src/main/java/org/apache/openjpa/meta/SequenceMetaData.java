@@ -65,6 +65,13 @@ public class SequenceMetaData
      */
     public static final String IMPL_TIME = "time";
 
+    /**
+     * Time-ordered 64-bit values generated without a datastore trip.
+     *
+     * @since 3.1.1
+     */
+    public static final String IMPL_SNOWFLAKE = "snowflake";
+
     // plugin property names for standard props
     private static final String PROP_SEQUENCE = "Sequence";
     private static final String PROP_INITIAL_VALUE = "InitialValue";
@@ -77,6 +77,16 @@ public class ValueStrategies {
      */
     public static final int UUID_TYPE4_HEX = 8;
 
+    /**
+     * "uuid-type7-string" value strategy.
+     */
+    public static final int UUID_TYPE7_STRING = 9;
+
+    /**
+     * "uuid-type7-hex" value strategy.
+     */
+    public static final int UUID_TYPE7_HEX = 10;
+
     private static final Localizer _loc = Localizer.forPackage
         (ValueStrategies.class);
 
@@ -93,6 +103,8 @@ public class ValueStrategies {
         _map.put("uuid-hex", UUID_HEX);
         _map.put("uuid-type4-string", UUID_TYPE4_STRING);
         _map.put("uuid-type4-hex", UUID_TYPE4_HEX);
+        _map.put("uuid-type7-string", UUID_TYPE7_STRING);
+        _map.put("uuid-type7-hex", UUID_TYPE7_HEX);
     }
 
     /**
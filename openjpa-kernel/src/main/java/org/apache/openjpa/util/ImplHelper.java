@@ -168,6 +168,10 @@ public class ImplHelper {
                 return UUIDGenerator.nextString(UUIDGenerator.TYPE4);
             case ValueStrategies.UUID_TYPE4_HEX:
                 return UUIDGenerator.nextHex(UUIDGenerator.TYPE4);
+            case ValueStrategies.UUID_TYPE7_STRING:
+                return UUIDGenerator.nextCanonical(UUIDGenerator.TYPE7);
+            case ValueStrategies.UUID_TYPE7_HEX:
+                return UUIDGenerator.nextHex(UUIDGenerator.TYPE7);
             default:
                 return null;
         }
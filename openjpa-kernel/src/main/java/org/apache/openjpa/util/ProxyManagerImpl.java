@@ -38,6 +38,7 @@ import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -58,6 +59,9 @@ import org.apache.openjpa.lib.util.J2DoPrivHelper;
 import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.lib.util.Options;
 import org.apache.openjpa.lib.util.StringUtil;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.FieldMetaData;
+import org.apache.openjpa.meta.JavaTypes;
 
 import serp.bytecode.BCClass;
 import serp.bytecode.BCField;
@@ -1655,6 +1659,91 @@ public class ProxyManagerImpl
         }
     }
 
+    /**
+     * Return the types that the given persistent fields may be proxied as,
+     * excluding interfaces and abstract types, whose proxies are based on
+     * the standard concrete types instead. Generating build-time proxies
+     * for these types spares the runtime from generating proxy bytecode.
+     *
+     * @since 3.1.1
+     */
+    public static Set<Class<?>> getProxyTypes(ClassMetaData[] metas) {
+        Set<Class<?>> types = new LinkedHashSet<>();
+        Class<?> type;
+        for (ClassMetaData meta : metas) {
+            for (FieldMetaData fmd : meta.getDeclaredFields()) {
+                switch (fmd.getDeclaredTypeCode()) {
+                    case JavaTypes.COLLECTION:
+                    case JavaTypes.MAP:
+                    case JavaTypes.DATE:
+                    case JavaTypes.CALENDAR:
+                    case JavaTypes.OBJECT:
+                        type = fmd.getProxyType();
+                        if (!type.isInterface() && !type.isArray()
+                            && !Modifier.isAbstract(type.getModifiers())
+                            && !Modifier.isFinal(type.getModifiers())
+                            && type != Object.class)
+                            types.add(type);
+                        break;
+                }
+            }
+        }
+        return types;
+    }
+
+    /**
+     * Generate .class files for the proxies of the given types into the
+     * given directory, which should be the directory of this class' package
+     * beneath a class path root. Types that already have a build-time
+     * proxy, and bean types that cannot be proxied, are skipped.
+     *
+     * @return the names of the generated proxy classes
+     * @since 3.1.1
+     */
+    public static List<String> generateBuildTimeProxies(
+        Collection<Class<?>> types, File dir)
+        throws IOException {
+        final ProxyManagerImpl mgr = new ProxyManagerImpl();
+        List<String> generated = new ArrayList<>();
+        BCClass bc;
+        for (final Class<?> cls : types) {
+            try {
+                if (Class.forName(getProxyClassName(cls, false), true,
+                    GeneratedClasses.getMostDerivedLoader(cls, Proxy.class))
+                    != null)
+                    continue;
+            } catch (Throwable t) {
+                // expected if the class hasn't been generated
+            }
+
+            if (Collection.class.isAssignableFrom(cls))
+                bc = mgr.generateProxyCollectionBytecode(cls, false);
+            else if (Map.class.isAssignableFrom(cls))
+                bc = mgr.generateProxyMapBytecode(cls, false);
+            else if (Date.class.isAssignableFrom(cls))
+                bc = mgr.generateProxyDateBytecode(cls, false);
+            else if (Calendar.class.isAssignableFrom(cls))
+                bc = mgr.generateProxyCalendarBytecode(cls, false);
+            else {
+                bc = AccessController
+                    .doPrivileged(new PrivilegedAction<BCClass>() {
+                        @Override
+                        public BCClass run() {
+                            return mgr.generateProxyBeanBytecode(cls, false);
+                        }
+                    });
+            }
+            if (bc == null)
+                continue;
+
+            if (!dir.exists() && !dir.mkdirs())
+                throw new IOException(dir.getAbsolutePath());
+            AsmAdaptor.write(bc, new File(dir, bc.getClassName() + ".class"));
+            generated.add(bc.getName());
+        }
+        return generated;
+    }
+
     /**
      * Usage: java org.apache.openjpa.util.proxy.ProxyManagerImpl [option]*
      * &lt;class name&gt;+<br />
@@ -1663,6 +1752,9 @@ public class ProxyManagerImpl
      * <li><i>-utils/-u &lt;number&gt;</i>: Generate proxies for the standard
      * java.util collection, map, date, and calendar classes of the given Java
      * version.  Use 4 for Java 1.4, 5 for Java 5, etc.</li>
+     * <li><i>-directory/-d &lt;class path root&gt;</i>: The class path root
+     * to write the generated classes beneath, in the package of this
+     * class.</li>
      * </ul>
      *
      * The main method generates .class files for the proxies to the classes
@@ -1673,14 +1765,21 @@ public class ProxyManagerImpl
      */
     public static void main(String[] args)
         throws ClassNotFoundException, IOException {
-        File dir = Files.getClassFile(ProxyManagerImpl.class);
-        dir = (dir == null) ? new File(AccessController.doPrivileged(
-            J2DoPrivHelper.getPropertyAction("user.dir")))
-            : dir.getParentFile();
-
         Options opts = new Options();
         args = opts.setFromCmdLine(args);
 
+        File dir;
+        String root = opts.removeProperty("directory", "d", null);
+        if (root != null)
+            dir = new File(root, ClassUtil.getPackageName(
+                ProxyManagerImpl.class).replace('.', File.separatorChar));
+        else {
+            dir = Files.getClassFile(ProxyManagerImpl.class);
+            dir = (dir == null) ? new File(AccessController.doPrivileged(
+                J2DoPrivHelper.getPropertyAction("user.dir")))
+                : dir.getParentFile();
+        }
+
         List types = new ArrayList();
         types.addAll(Arrays.asList(args));
         int utils = opts.removeIntProperty("utils", "u", 0);
@@ -1712,43 +1811,13 @@ public class ProxyManagerImpl
             }));
         }
 
-        final ProxyManagerImpl mgr = new ProxyManagerImpl();
-        Class cls;
-        BCClass bc;
-        for (int i = 0; i < types.size(); i++) {
-            cls = Class.forName((String) types.get(i));
-            try {
-                if (Class.forName(getProxyClassName(cls, false), true,
-                    GeneratedClasses.getMostDerivedLoader(cls, Proxy.class))
-                    != null)
-                    continue;
-            } catch (Throwable t) {
-                // expected if the class hasn't been generated
-            }
-
-            if (Collection.class.isAssignableFrom(cls))
-                bc = mgr.generateProxyCollectionBytecode(cls, false);
-            else if (Map.class.isAssignableFrom(cls))
-                bc = mgr.generateProxyMapBytecode(cls, false);
-            else if (Date.class.isAssignableFrom(cls))
-                bc = mgr.generateProxyDateBytecode(cls, false);
-            else if (Calendar.class.isAssignableFrom(cls))
-                bc = mgr.generateProxyCalendarBytecode(cls, false);
-            else {
-                final Class fCls = cls;
-                // TODO Move this to J2DOPrivHelper
-                bc = AccessController
-                    .doPrivileged(new PrivilegedAction<BCClass>() {
-                        @Override
-                        public BCClass run() {
-                            return mgr.generateProxyBeanBytecode(fCls, false);
-                        }
-                    });
-            }
+        List<Class<?>> classes = new ArrayList<>(types.size());
+        for (int i = 0; i < types.size(); i++)
+            classes.add(Class.forName((String) types.get(i)));
+        for (String name : generateBuildTimeProxies(classes, dir)) {
             // START - ALLOW PRINT STATEMENTS
-            System.out.println(bc.getName());
+            System.out.println(name);
             // STOP - ALLOW PRINT STATEMENTS
-            AsmAdaptor.write(bc, new File(dir, bc.getClassName() + ".class"));
         }
     }
 }
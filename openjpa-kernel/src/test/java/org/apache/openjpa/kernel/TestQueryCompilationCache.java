@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class TestQueryCompilationCache {
+
+    @Test
+    public void testCompileCachesResult() {
+        QueryCompilationCache cache = new QueryCompilationCache();
+        final Object value = new Object();
+        Callable<Object> compiler = new Callable<Object>() {
+            @Override
+            public Object call() {
+                return value;
+            }
+        };
+
+        assertSame(value, cache.compile("q", compiler));
+        assertSame(value, cache.compile("q", compiler));
+        assertEquals(1, cache.getCompileCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testNullCompilationIsNotCached() {
+        QueryCompilationCache cache = new QueryCompilationCache();
+        Callable<Object> compiler = new Callable<Object>() {
+            @Override
+            public Object call() {
+                return null;
+            }
+        };
+
+        assertNull(cache.compile("q", compiler));
+        assertEquals(0, cache.size());
+        assertNull(cache.get("q"));
+    }
+
+    @Test
+    public void testConcurrentCompilationsRunOnce() throws Exception {
+        final QueryCompilationCache cache = new QueryCompilationCache();
+        final AtomicInteger compilations = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Object value = new Object();
+        final Callable<Object> compiler = new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                compilations.incrementAndGet();
+                started.countDown();
+                release.await(10, TimeUnit.SECONDS);
+                return value;
+            }
+        };
+
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            Future<?>[] results = new Future<?>[threads];
+            results[0] = pool.submit(newCompile(cache, compiler));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            for (int i = 1; i < threads; i++)
+                results[i] = pool.submit(newCompile(cache, compiler));
+            release.countDown();
+            for (int i = 0; i < threads; i++)
+                assertSame(value, results[i].get(10, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, compilations.get());
+    }
+
+    @Test
+    public void testEvictsToCacheSize() {
+        QueryCompilationCache cache = new QueryCompilationCache();
+        cache.setCacheSize(10);
+        for (int i = 0; i < 100; i++)
+            cache.put("q" + i, Integer.valueOf(i));
+        assertTrue(cache.size() <= 10);
+        assertTrue(cache.getEvictionCount() >= 90);
+    }
+
+    @Test
+    public void testEvictsToMaxMemory() {
+        QueryCompilationCache cache = new QueryCompilationCache();
+        for (int i = 0; i < 100; i++)
+            cache.put("q" + i, Integer.valueOf(i));
+        long perEntry = cache.getEstimatedMemory() / cache.size();
+        cache.setMaxMemory(perEntry * 20);
+        assertTrue(cache.size() <= 20);
+        assertTrue(cache.getEstimatedMemory() <= perEntry * 20);
+    }
+
+    @Test
+    public void testEvictsLeastUsedFirst() {
+        QueryCompilationCache cache = new QueryCompilationCache();
+        cache.setCacheSize(10);
+        for (int i = 0; i < 10; i++)
+            cache.put("q" + i, Integer.valueOf(i));
+        for (int i = 0; i < 5; i++)
+            cache.get("q0");
+        for (int i = 10; i < 20; i++)
+            cache.put("q" + i, Integer.valueOf(i));
+        assertTrue(cache.containsKey("q0"));
+    }
+
+    private static Callable<Object> newCompile(
+        final QueryCompilationCache cache, final Callable<Object> compiler) {
+        return new Callable<Object>() {
+            @Override
+            public Object call() {
+                return cache.compile("q", compiler);
+            }
+        };
+    }
+}
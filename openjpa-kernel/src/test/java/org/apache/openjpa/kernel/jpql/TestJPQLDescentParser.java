@@ -0,0 +1,368 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel.jpql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.openjpa.kernel.jpql.JPQLExpressionBuilder.JPQLNode;
+import org.junit.Test;
+
+/**
+ * Verifies that {@link JPQLDescentParser} builds the same parse trees as
+ * the generated {@link JPQL} parser.
+ */
+public class TestJPQLDescentParser {
+
+    /**
+     * Test source trees whose JPQL string literals form the shared corpus,
+     * relative to the module directory tests run from.
+     */
+    private static final String[] CORPUS_DIRS = {
+        "../openjpa-persistence-jdbc/src/test/java",
+        "../openjpa-persistence/src/test/java",
+    };
+
+    /**
+     * A complete string literal starting with a JPQL statement keyword and
+     * not continued by concatenation.
+     */
+    private static final Pattern QUERY_LITERAL = Pattern.compile(
+        "\"((?i:SELECT|UPDATE|DELETE)\\s(?:[^\"\\\\\\n]|\\\\.)*)\"(?!\\s*\\+)");
+
+    private static final int ITERATIONS = 200;
+    private static boolean FAIL_IF_PERF_DEGRADE = false;
+
+    private static final String[] QUERIES = {
+        "SELECT e FROM Employee e",
+        "select e from Employee e",
+        "SELECT DISTINCT e FROM Employee AS e",
+        "SELECT OBJECT(e) FROM Employee e",
+        "SELECT e.name, e.salary FROM Employee e",
+        "SELECT e FROM org.acme.Employee e",
+        "SELECT e FROM Employee e WHERE e.name = 'Bob'",
+        "SELECT e FROM Employee e WHERE e.name = \"Bob\"",
+        "SELECT e FROM Employee e WHERE e.name = 'O''Brien'",
+        "SELECT e FROM Employee e WHERE e.salary > 1000 AND e.age < 30",
+        "SELECT e FROM Employee e WHERE e.salary >= 1000 OR e.age <= 30 "
+            + "OR e.age <> 40",
+        "SELECT e FROM Employee e WHERE NOT (e.salary > 1000)",
+        "SELECT e FROM Employee e WHERE e.salary + 10 * 2 - e.bonus / 3 > 0",
+        "SELECT e FROM Employee e WHERE e.salary > -1.5e3 AND e.rate < +2.0f",
+        "SELECT e FROM Employee e WHERE e.id = 10L OR e.id = .5 OR e.id = 3d",
+        "SELECT e FROM Employee e WHERE e.active = TRUE AND e.temp = false",
+        "SELECT e FROM Employee e WHERE e.id = :id AND e.name = ?1",
+        "SELECT e FROM Employee e WHERE e.salary BETWEEN 10 AND 20",
+        "SELECT e FROM Employee e WHERE e.name NOT BETWEEN 'a' AND 'm'",
+        "SELECT e FROM Employee e WHERE e.hired BETWEEN :start AND :end",
+        "SELECT e FROM Employee e WHERE e.name LIKE 'A%'",
+        "SELECT e FROM Employee e WHERE e.name NOT LIKE 'A\\_%' ESCAPE '\\'",
+        "SELECT e FROM Employee e WHERE e.name LIKE :pattern",
+        "SELECT e FROM Employee e WHERE e.dept.name IN ('a', 'b', :c)",
+        "SELECT e FROM Employee e WHERE e.id NOT IN (1, 2, 3)",
+        "SELECT e FROM Employee e WHERE e.id IN :ids",
+        "SELECT e FROM Employee e WHERE TYPE(e) IN (Manager, Clerk)",
+        "SELECT e FROM Employee e WHERE TYPE(e) = Manager",
+        "SELECT e FROM Employee e WHERE TYPE(e) <> :type",
+        "SELECT e FROM Employee e WHERE e.manager IS NULL",
+        "SELECT e FROM Employee e WHERE e.manager IS NOT NULL",
+        "SELECT e FROM Employee e WHERE e.projects IS EMPTY",
+        "SELECT e FROM Employee e WHERE e.projects IS NOT EMPTY",
+        "SELECT e FROM Employee e WHERE :p MEMBER OF e.projects",
+        "SELECT e FROM Employee e WHERE :p NOT MEMBER e.projects",
+        "SELECT e FROM Employee e WHERE e.status = org.acme.Status.ACTIVE",
+        "SELECT e FROM Employee e WHERE e.manager = :mgr",
+        "SELECT e FROM Employee e WHERE e.hired > CURRENT_DATE "
+            + "AND e.updated < CURRENT_TIMESTAMP",
+        "SELECT e FROM Employee e WHERE e.hired = {d '2020-01-01'} "
+            + "OR e.time = {t '10:00:00'} "
+            + "OR e.stamp = {ts '2020-01-01 10:00:00.0'}",
+        "SELECT e FROM Employee e JOIN e.projects p",
+        "SELECT e FROM Employee e INNER JOIN e.projects AS p",
+        "SELECT e FROM Employee e LEFT JOIN e.projects p",
+        "SELECT e FROM Employee e LEFT OUTER JOIN e.projects p",
+        "SELECT e FROM Employee e JOIN FETCH e.projects",
+        "SELECT e FROM Employee e LEFT JOIN FETCH e.projects",
+        "SELECT e FROM Employee e, IN(e.projects) p",
+        "SELECT e, d FROM Employee e, Department d WHERE e.dept = d",
+        "SELECT e FROM Employee e WHERE EXISTS "
+            + "(SELECT p FROM Project p WHERE p.lead = e)",
+        "SELECT e FROM Employee e WHERE NOT EXISTS "
+            + "(SELECT p FROM e.projects p WHERE p.done = true)",
+        "SELECT e FROM Employee e WHERE e.salary > ALL "
+            + "(SELECT m.salary FROM Manager m)",
+        "SELECT e FROM Employee e WHERE e.salary < ANY "
+            + "(SELECT m.salary FROM Manager m WHERE m.dept = e.dept)",
+        "SELECT e FROM Employee e WHERE e.salary = SOME "
+            + "(SELECT MAX(m.salary) FROM Manager m GROUP BY m.dept)",
+        "SELECT e FROM Employee e WHERE e.salary > "
+            + "(SELECT AVG(x.salary) FROM Employee x)",
+        "SELECT COUNT(e), AVG(e.salary), MIN(e.age), MAX(e.age), "
+            + "SUM(e.salary) FROM Employee e",
+        "SELECT COUNT(DISTINCT e.dept) FROM Employee e",
+        "SELECT e.dept, COUNT(e) FROM Employee e GROUP BY e.dept "
+            + "HAVING COUNT(e) > 10",
+        "SELECT e FROM Employee e ORDER BY e.name ASC, e.age DESC",
+        "SELECT e.name AS n FROM Employee e ORDER BY n",
+        "SELECT NEW org.acme.EmpInfo(e.name, e.salary * 2) FROM Employee e",
+        "SELECT CONCAT(e.first, ' ', e.last) FROM Employee e",
+        "SELECT SUBSTRING(e.name, 1, 3), LOWER(e.name), UPPER(e.name) "
+            + "FROM Employee e",
+        "SELECT TRIM(e.name), TRIM(LEADING FROM e.name), "
+            + "TRIM(TRAILING 'x' FROM e.name), TRIM('x' FROM e.name) "
+            + "FROM Employee e",
+        "SELECT LENGTH(e.name), LOCATE('a', e.name, 2), ABS(e.balance), "
+            + "SQRT(e.area), MOD(e.age, 7) FROM Employee e",
+        "SELECT e FROM Employee e WHERE SIZE(e.projects) > 2",
+        "SELECT INDEX(p) FROM Employee e JOIN e.projects p "
+            + "WHERE INDEX(p) < 3",
+        "SELECT KEY(p), VALUE(p), ENTRY(p) FROM Employee e "
+            + "JOIN e.phones p",
+        "SELECT KEY(p).type FROM Employee e JOIN e.phones p "
+            + "WHERE VALUE(p).number LIKE '555%'",
+        "SELECT e FROM Employee e JOIN e.phones p WHERE KEY(p) = 'home'",
+        "SELECT CASE WHEN e.age > 60 THEN 'senior' "
+            + "WHEN e.age > 30 THEN 'mid' ELSE 'junior' END FROM Employee e",
+        "SELECT CASE e.status WHEN 1 THEN 'a' WHEN 2 THEN 'b' ELSE 'c' END "
+            + "FROM Employee e",
+        "SELECT CASE TYPE(e) WHEN Manager THEN 1 ELSE 0 END FROM Employee e",
+        "SELECT COALESCE(e.nick, e.name, 'none'), NULLIF(e.age, 0) "
+            + "FROM Employee e",
+        "SELECT e FROM Employee e WHERE e.order.group.select = 1",
+        "SELECT e FROM Employee e WHERE (e.a = 1 OR e.b = 2) AND e.c = 3",
+        "SELECT e FROM Employee e WHERE ((e.salary + 1) * 2) > 10",
+        "UPDATE Employee e SET e.salary = e.salary * 1.1",
+        "UPDATE Employee e SET e.manager = NULL, e.name = :name "
+            + "WHERE e.id = :id",
+        "UPDATE Employee e SET e.status = org.acme.Status.GONE "
+            + "WHERE e.age > 65",
+        "DELETE FROM Employee e",
+        "DELETE FROM Employee e WHERE e.salary < 0",
+        "DELETE FROM Employee WHERE Employee.name IS NULL",
+        "SELECT e FROM Employee e\tWHERE\ne.name = 'a'\r\n",
+        "SELECT \u00e9 FROM Employ\u00e9 \u00e9",
+        "SELECT e FROM Employee e WHERE e.name = 'caf\\u00e9'",
+    };
+
+    private static final String[] INVALID = {
+        "",
+        "SELECT",
+        "SELECT e",
+        "SELECT e FROM",
+        "SELECT e FROM Employee e WHERE",
+        "SELECT e FROM Employee e WHERE e.name =",
+        "SELECT e FROM Employee e WHERE e.name = 'a' AND",
+        "SELECT e FROM Employee e ORDER e.name",
+        "SELECT e FROM Employee e GROUP BY",
+        "SELECT e FROM Employee e WHERE e.id IN ()",
+        "SELECT e FROM Employee e JOIN e.projects",
+        "UPDATE Employee e",
+        "DELETE Employee e",
+        "SELECT e FROM Employee e)",
+        "SELECT e FROM Employee e WHERE (e.id = 1",
+    };
+
+    @Test
+    public void testSameTrees() {
+        for (String query : QUERIES)
+            assertEquals(query, dump(new JPQL(query).parseQuery()),
+                dump(new JPQLDescentParser(query).parseQuery()));
+    }
+
+    @Test
+    public void testRejectsInvalidQueries() {
+        for (String query : INVALID) {
+            try {
+                new JPQL(query).parseQuery();
+                fail("generated parser accepted " + query);
+            } catch (ParseException pe) {
+                // expected
+            }
+            try {
+                new JPQLDescentParser(query).parseQuery();
+                fail("descent parser accepted " + query);
+            } catch (ParseException pe) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testUnexpectedCharacter() {
+        try {
+            new JPQLDescentParser("SELECT e FROM Employee e WHERE e.a # 1")
+                .parseQuery();
+            fail();
+        } catch (ParseException pe) {
+            // expected
+        }
+    }
+
+    /**
+     * Parses every JPQL string literal in the persistence test sources with
+     * both parsers. Queries the generated parser accepts must produce
+     * identical trees; queries it rejects must be rejected by both.
+     */
+    @Test
+    public void testExistingQueryCorpus() throws IOException {
+        List<String> corpus = new ArrayList<>();
+        for (String dir : CORPUS_DIRS)
+            collectQueries(new File(dir), corpus);
+        assumeTrue(!corpus.isEmpty());
+
+        int accepted = 0;
+        for (String query : corpus) {
+            Node expected;
+            try {
+                expected = new JPQL(query).parseQuery();
+            } catch (ParseException | TokenMgrError e) {
+                try {
+                    new JPQLDescentParser(query).parseQuery();
+                    fail("descent parser accepted " + query);
+                } catch (ParseException pe) {
+                    // expected
+                }
+                continue;
+            }
+            assertEquals(query, dump(expected),
+                dump(new JPQLDescentParser(query).parseQuery()));
+            accepted++;
+        }
+        assertTrue("only " + accepted + " of " + corpus.size()
+            + " corpus queries parsed", accepted > corpus.size() / 2);
+    }
+
+    /**
+     * Compares the time both parsers take to parse the queries of
+     * {@link #QUERIES} repeatedly, after a round to warm up.
+     */
+    @Test
+    public void testParseTime() {
+        long javacc = 0;
+        long descent = 0;
+        for (int i = 0; i < 2; i++) {
+            javacc = 0;
+            descent = 0;
+            for (String query : QUERIES) {
+                long start = System.nanoTime();
+                for (int j = 0; j < ITERATIONS; j++)
+                    new JPQL(query).parseQuery();
+                javacc += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                for (int j = 0; j < ITERATIONS; j++)
+                    new JPQLDescentParser(query).parseQuery();
+                descent += System.nanoTime() - start;
+            }
+        }
+        long delta = (javacc == 0) ? 0 : (javacc - descent) * 100 / javacc;
+        System.err.println((delta < 0 ? "***WARN " : "") + Math.abs(delta)
+            + "% " + (delta < 0 ? "degradation" : "improvement")
+            + " parsing " + QUERIES.length * ITERATIONS
+            + " queries with the descent parser (javacc " + javacc / 1000000
+            + " ms, descent " + descent / 1000000 + " ms)");
+        assertTrue(Math.abs(delta) + "% degradation",
+            !FAIL_IF_PERF_DEGRADE || delta > 0);
+    }
+
+    private static void collectQueries(File file, List<String> corpus)
+        throws IOException {
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            if (files != null)
+                for (File child : files)
+                    collectQueries(child, corpus);
+            return;
+        }
+        if (!file.getName().endsWith(".java"))
+            return;
+
+        String source = new String(Files.readAllBytes(file.toPath()),
+            StandardCharsets.UTF_8);
+        Matcher matcher = QUERY_LITERAL.matcher(source);
+        while (matcher.find())
+            corpus.add(unescape(matcher.group(1)));
+    }
+
+    private static String unescape(String literal) {
+        StringBuilder buf = new StringBuilder(literal.length());
+        for (int i = 0; i < literal.length(); i++) {
+            char c = literal.charAt(i);
+            if (c != '\\' || i == literal.length() - 1) {
+                buf.append(c);
+                continue;
+            }
+            c = literal.charAt(++i);
+            switch (c) {
+                case 'n':
+                    buf.append('\n');
+                    break;
+                case 't':
+                    buf.append('\t');
+                    break;
+                case 'r':
+                    buf.append('\r');
+                    break;
+                case 'u':
+                    buf.append((char) Integer.parseInt(
+                        literal.substring(i + 1, i + 5), 16));
+                    i += 4;
+                    break;
+                default:
+                    buf.append(c);
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Dump a parse tree including the node flags, which
+     * {@link JPQLNode#dump} omits.
+     */
+    private static String dump(Node node) {
+        StringBuilder buf = new StringBuilder();
+        dump((JPQLNode) node, "", buf);
+        return buf.toString();
+    }
+
+    private static void dump(JPQLNode node, String prefix, StringBuilder buf) {
+        buf.append(prefix).append(node);
+        if (node.text != null)
+            buf.append(" [").append(node.text).append(']');
+        if (node.not)
+            buf.append(" not");
+        if (node.inEnumPath)
+            buf.append(" inEnumPath");
+        buf.append('\n');
+        for (int i = 0; i < node.jjtGetNumChildren(); i++)
+            if (node.children[i] != null)
+                dump(node.children[i], prefix + " ", buf);
+    }
+}
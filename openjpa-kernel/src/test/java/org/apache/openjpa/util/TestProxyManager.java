@@ -18,14 +18,18 @@
  */
 package org.apache.openjpa.util;
 
+import java.io.File;
 import java.io.InputStream;
 import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.AbstractMap;
 import java.util.AbstractSequentialList;
 import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Comparator;
@@ -862,6 +866,37 @@ public class TestProxyManager {
         }
     }
 
+    @Test
+    public void testBuildTimeProxies() throws Exception {
+        File root = new File(System.getProperty("java.io.tmpdir"),
+            "openjpa-proxies-" + System.nanoTime());
+        File dir = new File(root, "org/apache/openjpa/util");
+        List<Class<?>> types = Arrays.<Class<?>> asList(CustomList.class,
+            CustomMap.class, CustomDate.class, CustomCalendar.class,
+            CustomBean.class);
+        try {
+            List<String> generated = ProxyManagerImpl.generateBuildTimeProxies(
+                types, dir);
+            assertEquals(types.size(), generated.size());
+
+            ClassLoader loader = new URLClassLoader(new URL[] {
+                root.toURI().toURL() }, getClass().getClassLoader());
+            for (Class<?> type : types) {
+                Class<?> proxy = _mgr.loadBuildTimeProxy(type, loader);
+                assertNotNull(type.getName(), proxy);
+                assertTrue(generated.contains(proxy.getName()));
+            }
+        } finally {
+            File[] files = dir.listFiles();
+            if (files != null)
+                for (File file : files)
+                    file.delete();
+            for (File f = dir; f != null && !f.equals(root.getParentFile());
+                f = f.getParentFile())
+                f.delete();
+        }
+    }
+
     /**
      * Used to test custom list handling. Copy constructor intentionally ommitted.
      */
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.lib.instrumentation;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds that can be recorded concurrently
+ * without locking. Each power of two is divided into
+ * {@link #SUB_BUCKETS} buckets of equal width, so that any percentile is
+ * reported within about 3% of the recorded latency whatever its magnitude.
+ * Reading the histogram while latencies are being recorded gives an
+ * approximate, but never torn, view of each value.
+ *
+ * @since 3.1.1
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+
+    /**
+     * The number of buckets each power of two is divided into.
+     */
+    public static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray _buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder _count = new LongAdder();
+    private final LongAdder _total = new LongAdder();
+    private final AtomicLong _max = new AtomicLong();
+
+    /**
+     * Records the given latency.
+     *
+     * @param nanos the latency in nanoseconds. A negative latency, as may
+     * be measured across a clock adjustment, is recorded as zero.
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        _buckets.incrementAndGet(indexOf(nanos));
+        _count.increment();
+        _total.add(nanos);
+        long max = _max.get();
+        while (nanos > max && !_max.compareAndSet(max, nanos))
+            max = _max.get();
+    }
+
+    /**
+     * Gets the number of latencies recorded.
+     */
+    public long getCount() {
+        return _count.sum();
+    }
+
+    /**
+     * Gets the sum of the latencies recorded, in nanoseconds.
+     */
+    public long getTotal() {
+        return _total.sum();
+    }
+
+    /**
+     * Gets the mean of the latencies recorded, in nanoseconds.
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) getTotal() / count;
+    }
+
+    /**
+     * Gets the largest latency recorded, in nanoseconds.
+     */
+    public long getMax() {
+        return _max.get();
+    }
+
+    /**
+     * Gets the latency that the given percentage of the recorded latencies
+     * do not exceed, in nanoseconds.
+     *
+     * @param percent between 0 and 100
+     */
+    public long getPercentile(double percent) {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = _buckets.get(i);
+            count += counts[i];
+        }
+        if (count == 0)
+            return 0;
+        long rank = (long) Math.ceil(Math.max(0, Math.min(100, percent)) / 100 * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= Math.max(1, rank))
+                return Math.min(upperBoundOf(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * Discards all the latencies recorded.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            _buckets.set(i, 0);
+        _count.reset();
+        _total.reset();
+        _max.set(0);
+    }
+
+    /**
+     * Gets the bucket of the given latency. Latencies below
+     * {@link #SUB_BUCKETS} have a bucket each; larger ones share a bucket
+     * with those of the same power of two and leading bits.
+     */
+    static int indexOf(long nanos) {
+        if (nanos < SUB_BUCKETS)
+            return (int) nanos;
+        int msb = 63 - Long.numberOfLeadingZeros(nanos);
+        int shift = msb - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * Gets the largest latency of the given bucket.
+     */
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.lib.instrumentation;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and counters of named operations. Both are created on
+ * first use and updated without locking, so that an operation can be timed
+ * every time it executes. The names of the operations timed by OpenJPA are
+ * declared as constants.
+ *
+ * @since 3.1.1
+ */
+public class Metrics {
+    /**
+     * Finding an instance by its identity.
+     */
+    public static final String BROKER_FIND = "broker.find";
+
+    /**
+     * Flushing the changes of a transaction.
+     */
+    public static final String BROKER_FLUSH = "broker.flush";
+
+    /**
+     * Committing a transaction, including its flush.
+     */
+    public static final String BROKER_COMMIT = "broker.commit";
+
+    /**
+     * Compiling a query, or getting its compilation from the cache.
+     */
+    public static final String QUERY_COMPILE = "query.compile";
+
+    /**
+     * Executing a query, up to the first access of its results.
+     */
+    public static final String QUERY_EXECUTE = "query.execute";
+
+    /**
+     * Executing a SQL statement. The kind of statement, such as
+     * <code>select</code>, is appended after a dot.
+     */
+    public static final String SQL_EXECUTE = "sql.execute";
+
+    /**
+     * Waiting for a connection from the data source.
+     */
+    public static final String CONNECTION_WAIT = "connection.wait";
+
+    /**
+     * Materializing an instance from a row of a result.
+     */
+    public static final String RESULT_LOAD = "result.load";
+
+    /**
+     * The counter of rows inserted, updated or deleted by SQL statements.
+     */
+    public static final String SQL_ROWS_WRITTEN = "sql.rows.written";
+
+    private final ConcurrentMap<String, LatencyHistogram> _histograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> _counters = new ConcurrentHashMap<>();
+    private volatile SQLStatistics _sqlStatistics = null;
+
+    /**
+     * Records the latency of the named operation that started at the given
+     * time.
+     *
+     * @param start the value of {@link System#nanoTime()} when the
+     * operation started
+     */
+    public void record(String name, long start) {
+        LatencyHistogram histogram = _histograms.get(name);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            LatencyHistogram existing = _histograms.putIfAbsent(name, histogram);
+            if (existing != null)
+                histogram = existing;
+        }
+        histogram.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Adds the given amount to the named counter.
+     */
+    public void add(String name, long delta) {
+        LongAdder counter = _counters.get(name);
+        if (counter == null) {
+            counter = new LongAdder();
+            LongAdder existing = _counters.putIfAbsent(name, counter);
+            if (existing != null)
+                counter = existing;
+        }
+        counter.add(delta);
+    }
+
+    /**
+     * Gets the histogram of the named operation, or null if the operation
+     * has not been timed.
+     */
+    public LatencyHistogram getHistogram(String name) {
+        return _histograms.get(name);
+    }
+
+    /**
+     * Gets the value of the named counter.
+     */
+    public long getCounter(String name) {
+        LongAdder counter = _counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Gets the names of the operations timed so far, in alphabetical order.
+     */
+    public Set<String> getHistogramNames() {
+        return new TreeSet<>(_histograms.keySet());
+    }
+
+    /**
+     * Gets the names of the counters updated so far, in alphabetical order.
+     */
+    public Set<String> getCounterNames() {
+        return new TreeSet<>(_counters.keySet());
+    }
+
+    /**
+     * Gets the statistics of the SQL statements executed, or null if they
+     * are not kept.
+     */
+    public SQLStatistics getSQLStatistics() {
+        return _sqlStatistics;
+    }
+
+    /**
+     * Sets the statistics the SQL statements executed are recorded in, or
+     * null not to keep them.
+     */
+    public void setSQLStatistics(SQLStatistics stats) {
+        _sqlStatistics = stats;
+    }
+
+    /**
+     * Discards all the latencies and counts recorded.
+     */
+    public void reset() {
+        for (LatencyHistogram histogram : _histograms.values())
+            histogram.reset();
+        for (LongAdder counter : _counters.values())
+            counter.reset();
+    }
+}
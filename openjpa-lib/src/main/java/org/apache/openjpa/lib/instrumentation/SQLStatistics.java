@@ -0,0 +1,441 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.lib.instrumentation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Statistics of the SQL statements executed, keyed by their normalized
+ * text: literals are replaced by <code>?</code>, lists of parameters in
+ * <code>IN</code> clauses are collapsed and whitespace is condensed, so
+ * that the executions of the same statement shape share an entry. Each
+ * entry keeps a latency histogram, the rows read and written, the batch
+ * sizes and the origins of the statement, that is the JPQL queries or
+ * finders that issued it. The executions slower than a threshold are also
+ * kept, with their parameters, in a bounded ring buffer.
+ *
+ * @since 3.1.1
+ */
+public class SQLStatistics {
+    private static final Pattern IN_LIST = Pattern.compile(
+        "( IN ?)\\(\\? ?(, ?\\? ?)*\\)", Pattern.CASE_INSENSITIVE);
+    private static final int MAX_ORIGINS = 8;
+    private static final int MAX_PARAMETER_LENGTH = 80;
+
+    private final ConcurrentMap<String, Entry> _entries = new ConcurrentHashMap<>();
+    private final ThreadLocal<String> _origin = new ThreadLocal<>();
+    private final int _maxStatements;
+    private final long _slowThreshold;
+    private final AtomicReferenceArray<SlowExecution> _slow;
+    private final AtomicLong _slowCount = new AtomicLong();
+    private final LongAdder _untracked = new LongAdder();
+
+    /**
+     * Constructor.
+     *
+     * @param maxStatements the number of statement shapes to keep statistics
+     * of; executions of further shapes are only counted as untracked
+     * @param slowThreshold the latency in milliseconds from which an
+     * execution is captured as slow, or a negative value to capture none
+     * @param slowHistory the number of slow executions to keep
+     */
+    public SQLStatistics(int maxStatements, long slowThreshold, int slowHistory) {
+        _maxStatements = maxStatements;
+        _slowThreshold = (slowThreshold < 0) ? -1
+            : TimeUnit.MILLISECONDS.toNanos(slowThreshold);
+        _slow = new AtomicReferenceArray<>(Math.max(1, slowHistory));
+    }
+
+    /**
+     * Sets the origin of the SQL statements the current thread executes,
+     * such as the JPQL query being executed.
+     *
+     * @return the origin replaced, which should be restored once the
+     * statements of the given origin are executed
+     */
+    public String setOrigin(String origin) {
+        String previous = _origin.get();
+        if (origin == null)
+            _origin.remove();
+        else
+            _origin.set(origin);
+        return previous;
+    }
+
+    /**
+     * Gets the origin of the SQL statements the current thread executes.
+     */
+    public String getOrigin() {
+        return _origin.get();
+    }
+
+    /**
+     * Records an execution of the given SQL that started at the given time.
+     *
+     * @param normalized the SQL as {@link #normalize normalized}
+     * @param sql the SQL as executed
+     * @param params the parameters of the execution, or null if unknown
+     * @param start the value of {@link System#nanoTime()} when the execution
+     * started
+     * @param batchSize the number of statements of a batch execution, or 0
+     * @param rowsWritten the number of rows inserted, updated or deleted
+     * @return the entry the execution was recorded in, to which the rows
+     * read from its result can be added, or null if the SQL is not tracked
+     */
+    public Entry record(String normalized, String sql, List<?> params, long start,
+        int batchSize, long rowsWritten) {
+        long nanos = System.nanoTime() - start;
+        String origin = _origin.get();
+        Entry entry = getEntry(normalized);
+        if (entry == null)
+            _untracked.increment();
+        else {
+            entry._latency.record(nanos);
+            if (rowsWritten > 0)
+                entry._rowsWritten.add(rowsWritten);
+            if (batchSize > 0)
+                entry.recordBatch(batchSize);
+            if (origin != null)
+                entry.addOrigin(origin);
+        }
+        if (_slowThreshold >= 0 && nanos >= _slowThreshold) {
+            SlowExecution slow = new SlowExecution(sql, origin, toStrings(params),
+                nanos, System.currentTimeMillis());
+            _slow.set((int) (_slowCount.getAndIncrement() % _slow.length()), slow);
+        }
+        return entry;
+    }
+
+    /**
+     * Gets the entry of the given normalized SQL, creating it if it is not
+     * tracked yet, or null if the maximum number of statement shapes is
+     * tracked already.
+     */
+    private Entry getEntry(String normalized) {
+        Entry entry = _entries.get(normalized);
+        if (entry == null) {
+            if (_entries.size() >= _maxStatements)
+                return null;
+            entry = new Entry(normalized);
+            Entry existing = _entries.putIfAbsent(normalized, entry);
+            if (existing != null)
+                entry = existing;
+        }
+        return entry;
+    }
+
+    /**
+     * Gets the normalized SQL statements tracked, in alphabetical order.
+     */
+    public Set<String> getStatements() {
+        return new TreeSet<>(_entries.keySet());
+    }
+
+    /**
+     * Gets the statistics of the given normalized SQL, or null if it is not
+     * tracked.
+     */
+    public Entry getStatistics(String normalized) {
+        return _entries.get(normalized);
+    }
+
+    /**
+     * Gets the statistics of all the statements tracked.
+     */
+    public List<Entry> getStatistics() {
+        return new ArrayList<>(_entries.values());
+    }
+
+    /**
+     * Gets the number of executions of statements that were not tracked,
+     * because the maximum number of statement shapes was reached.
+     */
+    public long getUntrackedCount() {
+        return _untracked.sum();
+    }
+
+    /**
+     * Gets the slow executions kept, from the oldest to the most recent.
+     */
+    public List<SlowExecution> getSlowExecutions() {
+        long count = _slowCount.get();
+        int size = _slow.length();
+        List<SlowExecution> slow = new ArrayList<>(size);
+        for (long i = Math.max(0, count - size); i < count; i++) {
+            SlowExecution exec = _slow.get((int) (i % size));
+            if (exec != null)
+                slow.add(exec);
+        }
+        return slow;
+    }
+
+    /**
+     * Discards the statistics and slow executions recorded.
+     */
+    public void reset() {
+        _entries.clear();
+        _untracked.reset();
+        for (int i = 0; i < _slow.length(); i++)
+            _slow.set(i, null);
+        _slowCount.set(0);
+    }
+
+    /**
+     * Normalizes the given SQL, replacing its string and numeric literals
+     * by <code>?</code>, collapsing the lists of parameters in
+     * <code>IN</code> clauses and condensing its whitespace.
+     */
+    public static String normalize(String sql) {
+        if (sql == null)
+            return null;
+        StringBuilder buf = new StringBuilder(sql.length());
+        int len = sql.length();
+        for (int i = 0; i < len; i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                // skip to the closing quote, which may be escaped by doubling
+                for (i++; i < len; i++) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < len && sql.charAt(i + 1) == '\'')
+                            i++;
+                        else
+                            break;
+                    }
+                }
+                buf.append('?');
+            } else if (Character.isDigit(c) && !isIdentifierPart(buf)) {
+                while (i + 1 < len && (Character.isLetterOrDigit(sql.charAt(i + 1))
+                    || sql.charAt(i + 1) == '.'))
+                    i++;
+                buf.append('?');
+            } else if (Character.isWhitespace(c)) {
+                while (i + 1 < len && Character.isWhitespace(sql.charAt(i + 1)))
+                    i++;
+                if (buf.length() > 0 && i + 1 < len)
+                    buf.append(' ');
+            } else
+                buf.append(c);
+        }
+        return IN_LIST.matcher(buf).replaceAll("$1(?, ...)");
+    }
+
+    /**
+     * Affirms if the last character of the given buffer continues an
+     * identifier, such as <code>t0</code>, rather than starts a literal.
+     */
+    private static boolean isIdentifierPart(StringBuilder buf) {
+        if (buf.length() == 0)
+            return false;
+        char c = buf.charAt(buf.length() - 1);
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '"';
+    }
+
+    private static List<String> toStrings(List<?> params) {
+        if (params == null || params.isEmpty())
+            return Collections.emptyList();
+        List<String> strs = new ArrayList<>(params.size());
+        for (Object param : params) {
+            String str = String.valueOf(param);
+            if (str.length() > MAX_PARAMETER_LENGTH)
+                str = str.substring(0, MAX_PARAMETER_LENGTH - 3) + "...";
+            strs.add(str);
+        }
+        return Collections.unmodifiableList(strs);
+    }
+
+    /**
+     * The statistics of a normalized SQL statement.
+     */
+    public static class Entry {
+        private final String _sql;
+        private final LatencyHistogram _latency = new LatencyHistogram();
+        private final LongAdder _rowsRead = new LongAdder();
+        private final LongAdder _rowsWritten = new LongAdder();
+        private final LongAdder _batches = new LongAdder();
+        private final LongAdder _batched = new LongAdder();
+        private final AtomicLong _maxBatch = new AtomicLong();
+        private final Set<String> _origins = ConcurrentHashMap.newKeySet();
+
+        private Entry(String sql) {
+            _sql = sql;
+        }
+
+        /**
+         * Gets the normalized SQL.
+         */
+        public String getSQL() {
+            return _sql;
+        }
+
+        /**
+         * Gets the latencies of the executions of the statement.
+         */
+        public LatencyHistogram getLatency() {
+            return _latency;
+        }
+
+        /**
+         * Gets the number of executions of the statement, counting each
+         * batch once.
+         */
+        public long getCount() {
+            return _latency.getCount();
+        }
+
+        /**
+         * Adds the given number of rows read from a result of the statement.
+         */
+        public void addRowsRead(long rows) {
+            if (rows > 0)
+                _rowsRead.add(rows);
+        }
+
+        /**
+         * Gets the number of rows read from the results of the statement.
+         */
+        public long getRowsRead() {
+            return _rowsRead.sum();
+        }
+
+        /**
+         * Gets the number of rows inserted, updated or deleted by the
+         * statement.
+         */
+        public long getRowsWritten() {
+            return _rowsWritten.sum();
+        }
+
+        /**
+         * Gets the number of batch executions of the statement.
+         */
+        public long getBatchCount() {
+            return _batches.sum();
+        }
+
+        /**
+         * Gets the mean number of statements of a batch execution.
+         */
+        public double getMeanBatchSize() {
+            long batches = getBatchCount();
+            return batches == 0 ? 0 : (double) _batched.sum() / batches;
+        }
+
+        /**
+         * Gets the largest number of statements of a batch execution.
+         */
+        public long getMaxBatchSize() {
+            return _maxBatch.get();
+        }
+
+        /**
+         * Gets the JPQL queries or finders that issued the statement. Only
+         * the first few origins are kept.
+         */
+        public Set<String> getOrigins() {
+            return new TreeSet<>(_origins);
+        }
+
+        private void recordBatch(int size) {
+            _batches.increment();
+            _batched.add(size);
+            long max = _maxBatch.get();
+            while (size > max && !_maxBatch.compareAndSet(max, size))
+                max = _maxBatch.get();
+        }
+
+        private void addOrigin(String origin) {
+            if (_origins.size() < MAX_ORIGINS)
+                _origins.add(origin);
+        }
+    }
+
+    /**
+     * An execution of a SQL statement slower than the threshold.
+     */
+    public static class SlowExecution {
+        private final String _sql;
+        private final String _origin;
+        private final List<String> _params;
+        private final long _time;
+        private final long _timestamp;
+
+        private SlowExecution(String sql, String origin, List<String> params,
+            long time, long timestamp) {
+            _sql = sql;
+            _origin = origin;
+            _params = params;
+            _time = time;
+            _timestamp = timestamp;
+        }
+
+        /**
+         * Gets the SQL as executed.
+         */
+        public String getSQL() {
+            return _sql;
+        }
+
+        /**
+         * Gets the JPQL query or finder that issued the statement, or null
+         * if unknown.
+         */
+        public String getOrigin() {
+            return _origin;
+        }
+
+        /**
+         * Gets the parameters of the execution, in order.
+         */
+        public List<String> getParameters() {
+            return _params;
+        }
+
+        /**
+         * Gets the latency of the execution, in nanoseconds.
+         */
+        public long getTime() {
+            return _time;
+        }
+
+        /**
+         * Gets the time the execution ended, in milliseconds since the epoch.
+         */
+        public long getTimestamp() {
+            return _timestamp;
+        }
+
+        @Override
+        public String toString() {
+            return TimeUnit.NANOSECONDS.toMillis(_time) + " ms " + _sql
+                + (_params.isEmpty() ? "" : " " + _params)
+                + (_origin == null ? "" : " [" + _origin + "]");
+        }
+    }
+}
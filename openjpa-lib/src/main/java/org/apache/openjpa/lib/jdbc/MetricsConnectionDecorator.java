@@ -0,0 +1,543 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.lib.jdbc;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import org.apache.openjpa.lib.instrumentation.Metrics;
+import org.apache.openjpa.lib.instrumentation.SQLStatistics;
+
+/**
+ * Times the execution of SQL statements into {@link Metrics metrics}, by
+ * the kind of statement, and counts the rows they write. If the metrics
+ * keep {@link SQLStatistics SQL statistics}, each execution is also
+ * recorded there with its parameters and the rows read from its result.
+ *
+ * @since 3.1.1
+ */
+public class MetricsConnectionDecorator implements ConnectionDecorator {
+    private static final String[] KINDS = { "select", "insert", "update", "delete" };
+
+    private final Metrics _metrics;
+
+    public MetricsConnectionDecorator(Metrics metrics) {
+        _metrics = metrics;
+    }
+
+    public Metrics getMetrics() {
+        return _metrics;
+    }
+
+    @Override
+    public Connection decorate(Connection conn) {
+        return new MetricsConnection(conn);
+    }
+
+    /**
+     * Gets the name the execution of the given SQL is timed under.
+     */
+    static String getName(String sql) {
+        String kind = "other";
+        if (sql != null) {
+            int start = 0;
+            while (start < sql.length() && Character.isWhitespace(sql.charAt(start)))
+                start++;
+            for (String k : KINDS) {
+                if (sql.regionMatches(true, start, k, 0, k.length())) {
+                    kind = k;
+                    break;
+                }
+            }
+        }
+        return Metrics.SQL_EXECUTE + "." + kind;
+    }
+
+    private long recordWrites(int count) {
+        if (count > 0)
+            _metrics.add(Metrics.SQL_ROWS_WRITTEN, count);
+        return count;
+    }
+
+    private long recordWrites(int[] counts) {
+        if (counts == null)
+            return 0;
+        long total = 0;
+        for (int count : counts)
+            if (count > 0)
+                total += count;
+        if (total > 0)
+            _metrics.add(Metrics.SQL_ROWS_WRITTEN, total);
+        return total;
+    }
+
+    /**
+     * Times the statements it creates.
+     */
+    private class MetricsConnection extends DelegatingConnection {
+
+        public MetricsConnection(Connection conn) {
+            super(conn);
+        }
+
+        @Override
+        protected Statement createStatement(boolean wrap) throws SQLException {
+            return new MetricsStatement(super.createStatement(false),
+                MetricsConnection.this);
+        }
+
+        @Override
+        protected Statement createStatement(int rsType, int rsConcur,
+            boolean wrap) throws SQLException {
+            return new MetricsStatement(super.createStatement(rsType, rsConcur,
+                false), MetricsConnection.this);
+        }
+
+        @Override
+        protected PreparedStatement prepareStatement(String sql, boolean wrap)
+            throws SQLException {
+            return new MetricsPreparedStatement(super.prepareStatement(sql,
+                false), MetricsConnection.this, sql);
+        }
+
+        @Override
+        protected PreparedStatement prepareStatement(String sql, int rsType,
+            int rsConcur, boolean wrap) throws SQLException {
+            return new MetricsPreparedStatement(super.prepareStatement(sql,
+                rsType, rsConcur, false), MetricsConnection.this, sql);
+        }
+    }
+
+    /**
+     * Times the executions of its SQL, capturing their parameters if SQL
+     * statistics are kept.
+     */
+    private class MetricsPreparedStatement extends DelegatingPreparedStatement {
+
+        private final String _sql;
+        private final String _name;
+        private final SQLStatistics _stats;
+        private final String _normalized;
+        private final List<Object> _params;
+        private int _batchSize = 0;
+
+        public MetricsPreparedStatement(PreparedStatement ps, Connection conn,
+            String sql) {
+            super(ps, conn);
+            _sql = sql;
+            _name = getName(sql);
+            _stats = _metrics.getSQLStatistics();
+            _normalized = (_stats == null) ? null : SQLStatistics.normalize(sql);
+            _params = (_stats == null) ? null : new ArrayList<>();
+        }
+
+        @Override
+        protected ResultSet executeQuery(boolean wrap) throws SQLException {
+            long start = System.nanoTime();
+            ResultSet rs = null;
+            SQLStatistics.Entry entry = null;
+            try {
+                rs = super.executeQuery(false);
+            } finally {
+                _metrics.record(_name, start);
+                entry = recordStatistics(start, 0, 0);
+            }
+            if (entry != null)
+                return new MetricsResultSet(rs, this, entry);
+            return wrapResult(rs, wrap);
+        }
+
+        @Override
+        public int executeUpdate() throws SQLException {
+            long start = System.nanoTime();
+            long rows = 0;
+            try {
+                int count = super.executeUpdate();
+                rows = recordWrites(count);
+                return count;
+            } finally {
+                _metrics.record(_name, start);
+                recordStatistics(start, 0, rows);
+            }
+        }
+
+        @Override
+        public int[] executeBatch() throws SQLException {
+            long start = System.nanoTime();
+            long rows = 0;
+            try {
+                int[] counts = super.executeBatch();
+                rows = recordWrites(counts);
+                return counts;
+            } finally {
+                _metrics.record(_name, start);
+                recordStatistics(start, _batchSize, rows);
+                _batchSize = 0;
+            }
+        }
+
+        @Override
+        public boolean execute() throws SQLException {
+            long start = System.nanoTime();
+            try {
+                return super.execute();
+            } finally {
+                _metrics.record(_name, start);
+                recordStatistics(start, 0, 0);
+            }
+        }
+
+        @Override
+        public void addBatch() throws SQLException {
+            super.addBatch();
+            _batchSize++;
+        }
+
+        @Override
+        public void clearBatch() throws SQLException {
+            super.clearBatch();
+            _batchSize = 0;
+        }
+
+        @Override
+        public void clearParameters() throws SQLException {
+            super.clearParameters();
+            if (_params != null)
+                _params.clear();
+        }
+
+        @Override
+        public void setNull(int i1, int i2) throws SQLException {
+            setParameter(i1, null);
+            super.setNull(i1, i2);
+        }
+
+        @Override
+        public void setNull(int i1, int i2, String s) throws SQLException {
+            setParameter(i1, null);
+            super.setNull(i1, i2, s);
+        }
+
+        @Override
+        public void setBoolean(int i, boolean b) throws SQLException {
+            setParameter(i, b);
+            super.setBoolean(i, b);
+        }
+
+        @Override
+        public void setByte(int i, byte b) throws SQLException {
+            setParameter(i, b);
+            super.setByte(i, b);
+        }
+
+        @Override
+        public void setShort(int i, short s) throws SQLException {
+            setParameter(i, s);
+            super.setShort(i, s);
+        }
+
+        @Override
+        public void setInt(int i1, int i2) throws SQLException {
+            setParameter(i1, i2);
+            super.setInt(i1, i2);
+        }
+
+        @Override
+        public void setLong(int i, long l) throws SQLException {
+            setParameter(i, l);
+            super.setLong(i, l);
+        }
+
+        @Override
+        public void setFloat(int i, float f) throws SQLException {
+            setParameter(i, f);
+            super.setFloat(i, f);
+        }
+
+        @Override
+        public void setDouble(int i, double d) throws SQLException {
+            setParameter(i, d);
+            super.setDouble(i, d);
+        }
+
+        @Override
+        public void setBigDecimal(int i, BigDecimal bd) throws SQLException {
+            setParameter(i, bd);
+            super.setBigDecimal(i, bd);
+        }
+
+        @Override
+        public void setString(int i, String s) throws SQLException {
+            setParameter(i, s);
+            super.setString(i, s);
+        }
+
+        @Override
+        public void setBytes(int i, byte[] b) throws SQLException {
+            setParameter(i, (b == null) ? null : "byte[" + b.length + "]");
+            super.setBytes(i, b);
+        }
+
+        @Override
+        public void setDate(int i, Date d) throws SQLException {
+            setParameter(i, d);
+            super.setDate(i, d);
+        }
+
+        @Override
+        public void setDate(int i, Date d, Calendar c) throws SQLException {
+            setParameter(i, d);
+            super.setDate(i, d, c);
+        }
+
+        @Override
+        public void setTime(int i, Time t) throws SQLException {
+            setParameter(i, t);
+            super.setTime(i, t);
+        }
+
+        @Override
+        public void setTime(int i, Time t, Calendar c) throws SQLException {
+            setParameter(i, t);
+            super.setTime(i, t, c);
+        }
+
+        @Override
+        public void setTimestamp(int i, Timestamp t) throws SQLException {
+            setParameter(i, t);
+            super.setTimestamp(i, t);
+        }
+
+        @Override
+        public void setTimestamp(int i, Timestamp t, Calendar c)
+            throws SQLException {
+            setParameter(i, t);
+            super.setTimestamp(i, t, c);
+        }
+
+        @Override
+        public void setObject(int i, Object o) throws SQLException {
+            setParameter(i, o);
+            super.setObject(i, o);
+        }
+
+        @Override
+        public void setObject(int i1, Object o, int i2) throws SQLException {
+            setParameter(i1, o);
+            super.setObject(i1, o, i2);
+        }
+
+        @Override
+        public void setObject(int i1, Object o, int i2, int i3)
+            throws SQLException {
+            setParameter(i1, o);
+            super.setObject(i1, o, i2, i3);
+        }
+
+        @Override
+        public void setAsciiStream(int i1, InputStream is, int i2)
+            throws SQLException {
+            setParameter(i1, "<stream>");
+            super.setAsciiStream(i1, is, i2);
+        }
+
+        @Override
+        public void setBinaryStream(int i1, InputStream is, int i2)
+            throws SQLException {
+            setParameter(i1, "<stream>");
+            super.setBinaryStream(i1, is, i2);
+        }
+
+        @Override
+        public void setCharacterStream(int i1, Reader r, int i2)
+            throws SQLException {
+            setParameter(i1, "<stream>");
+            super.setCharacterStream(i1, r, i2);
+        }
+
+        @Override
+        public void setBlob(int i, Blob b) throws SQLException {
+            setParameter(i, "<blob>");
+            super.setBlob(i, b);
+        }
+
+        @Override
+        public void setClob(int i, Clob c) throws SQLException {
+            setParameter(i, "<clob>");
+            super.setClob(i, c);
+        }
+
+        private void setParameter(int index, Object val) {
+            if (_params == null)
+                return;
+            while (_params.size() < index)
+                _params.add(null);
+            _params.set(index - 1, val);
+        }
+
+        private SQLStatistics.Entry recordStatistics(long start, int batchSize,
+            long rows) {
+            if (_stats == null)
+                return null;
+            return _stats.record(_normalized, _sql, _params, start, batchSize, rows);
+        }
+    }
+
+    /**
+     * Times the executions of the SQL given to it.
+     */
+    private class MetricsStatement extends DelegatingStatement {
+
+        private String _batch = null;
+        private int _batchSize = 0;
+
+        public MetricsStatement(Statement stmnt, Connection conn) {
+            super(stmnt, conn);
+        }
+
+        @Override
+        protected ResultSet executeQuery(String sql, boolean wrap)
+            throws SQLException {
+            long start = System.nanoTime();
+            ResultSet rs = null;
+            SQLStatistics.Entry entry = null;
+            try {
+                rs = super.executeQuery(sql, false);
+            } finally {
+                _metrics.record(getName(sql), start);
+                entry = recordStatistics(sql, start, 0, 0);
+            }
+            if (entry != null)
+                return new MetricsResultSet(rs, this, entry);
+            return wrapResult(rs, wrap);
+        }
+
+        @Override
+        public int executeUpdate(String sql) throws SQLException {
+            long start = System.nanoTime();
+            long rows = 0;
+            try {
+                int count = super.executeUpdate(sql);
+                rows = recordWrites(count);
+                return count;
+            } finally {
+                _metrics.record(getName(sql), start);
+                recordStatistics(sql, start, 0, rows);
+            }
+        }
+
+        @Override
+        public boolean execute(String sql) throws SQLException {
+            long start = System.nanoTime();
+            try {
+                return super.execute(sql);
+            } finally {
+                _metrics.record(getName(sql), start);
+                recordStatistics(sql, start, 0, 0);
+            }
+        }
+
+        @Override
+        public void addBatch(String sql) throws SQLException {
+            super.addBatch(sql);
+            if (_batch == null)
+                _batch = sql;
+            _batchSize++;
+        }
+
+        @Override
+        public void clearBatch() throws SQLException {
+            super.clearBatch();
+            _batch = null;
+            _batchSize = 0;
+        }
+
+        @Override
+        public int[] executeBatch() throws SQLException {
+            long start = System.nanoTime();
+            long rows = 0;
+            try {
+                int[] counts = super.executeBatch();
+                rows = recordWrites(counts);
+                return counts;
+            } finally {
+                _metrics.record(getName(_batch), start);
+                recordStatistics(_batch, start, _batchSize, rows);
+                _batch = null;
+                _batchSize = 0;
+            }
+        }
+
+        private SQLStatistics.Entry recordStatistics(String sql, long start,
+            int batchSize, long rows) {
+            SQLStatistics stats = _metrics.getSQLStatistics();
+            if (stats == null || sql == null)
+                return null;
+            return stats.record(SQLStatistics.normalize(sql), sql, null, start,
+                batchSize, rows);
+        }
+    }
+
+    /**
+     * Counts the rows read from a result into the statistics of its SQL.
+     */
+    private static class MetricsResultSet extends DelegatingResultSet {
+
+        private final SQLStatistics.Entry _entry;
+        private long _rows = 0;
+
+        public MetricsResultSet(ResultSet rs, Statement stmnt,
+            SQLStatistics.Entry entry) {
+            super(rs, stmnt);
+            _entry = entry;
+        }
+
+        @Override
+        public boolean next() throws SQLException {
+            boolean next = super.next();
+            if (next)
+                _rows++;
+            return next;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            try {
+                super.close();
+            } finally {
+                _entry.addRowsRead(_rows);
+                _rows = 0;
+            }
+        }
+    }
+}
@@ -19,12 +19,17 @@
 package org.apache.openjpa.lib.rop;
 
 import java.util.Comparator;
+import java.util.PriorityQueue;
 
 
 /**
  * A result object provider that merges multiple result object provider
  * delegates. Support exists for maintaining ordering of the internally held
  * results, provided that each of the individual results is itself ordered.
+ * Ordered results are merged with a priority queue over the current value
+ * of each delegate, so that a delegate is only advanced when its value has
+ * been consumed. A delegate is closed as soon as it is exhausted, and all
+ * delegates are closed once an optional limit of results has been reached.
  *
  * @author Abe White
  * @author Marc Prud'hommeaux
@@ -34,14 +39,19 @@ public class MergedResultObjectProvider implements ResultObjectProvider {
     private static final byte UNOPENED = 0;
     private static final byte OPENED = 1;
     private static final byte VALUE = 2;
-    private static final byte DONE = 3;
+    private static final byte CLOSED = 3;
 
     private final ResultObjectProvider[] _rops;
     private final Comparator _comp;
+    private final long _limit;
     private final byte[] _status;
+    private final int[] _counts;
     private Object[] _values;
     private Object[] _orderValues;
+    private PriorityQueue<Integer> _heads;
     private Object _cur = null;
+    private int _last = -1;
+    private long _returned = 0;
     private int _size = -1;
 
     /**
@@ -56,9 +66,22 @@ public class MergedResultObjectProvider implements ResultObjectProvider {
      */
     public MergedResultObjectProvider(ResultObjectProvider[] rops,
         Comparator comp) {
+        this(rops, comp, Long.MAX_VALUE);
+    }
+
+    /**
+     * Constructor. Provide delegates, optional comparator and the maximum
+     * number of results to return.
+     *
+     * @since 3.1.1
+     */
+    public MergedResultObjectProvider(ResultObjectProvider[] rops,
+        Comparator comp, long limit) {
         _rops = rops;
         _comp = comp;
+        _limit = limit;
         _status = new byte[rops.length];
+        _counts = new int[rops.length];
         _values = (comp == null) ? null : new Object[rops.length];
         _orderValues = (comp == null) ? null : new Object[rops.length];
     }
@@ -88,6 +111,12 @@ public class MergedResultObjectProvider implements ResultObjectProvider {
         if (_size != -1)
             return _size;
 
+        // once the limit is reached the delegates hold at least that many
+        if (_returned >= _limit) {
+            _size = (int) Math.min(_limit, Integer.MAX_VALUE);
+            return _size;
+        }
+
         // have to open all to get sizes
         for (int i = 0; i < _status.length; i++) {
             if (_status[i] == UNOPENED) {
@@ -96,17 +125,18 @@ public class MergedResultObjectProvider implements ResultObjectProvider {
             }
         }
 
-        int total = 0;
+        long total = 0;
         int size;
         for (int i = 0; i < _rops.length; i++) {
-            size = _rops[i].size();
+            // a closed delegate was exhausted and returned all its results
+            size = (_status[i] == CLOSED) ? _counts[i] : _rops[i].size();
             if (size == Integer.MAX_VALUE) {
                 total = size;
                 break;
             }
             total += size;
         }
-        _size = total;
+        _size = (int) Math.min(total, Math.min(_limit, Integer.MAX_VALUE));
         return _size;
     }
 
@@ -123,7 +153,7 @@ public class MergedResultObjectProvider implements ResultObjectProvider {
         Exception err = null;
         for (int i = 0; i < _rops.length; i++) {
             try {
-                if (_status[i] != UNOPENED)
+                if (_status[i] != UNOPENED && _status[i] != CLOSED)
                     _rops[i].close();
             } catch (Exception e) {
                 if (err == null)
@@ -138,8 +168,12 @@ public class MergedResultObjectProvider implements ResultObjectProvider {
 
     private void clear() {
         _cur = null;
+        _last = -1;
+        _returned = 0;
+        _heads = null;
         for (int i = 0; i < _rops.length; i++) {
             _status[i] = OPENED;
+            _counts[i] = 0;
             if (_values != null)
                 _values[i] = null;
             if (_orderValues != null)
@@ -156,67 +190,112 @@ public class MergedResultObjectProvider implements ResultObjectProvider {
 
     @Override
     public boolean next() throws Exception {
-        // initialize all rops with the latest values
-        boolean hasValue = false;
+        if (_returned >= _limit) {
+            closeAll();
+            return false;
+        }
+        boolean hasNext = (_comp == null) ? nextUnordered() : nextOrdered();
+        if (hasNext)
+            _returned++;
+        return hasNext;
+    }
+
+    /**
+     * Return the next value of the first delegate that has one.
+     */
+    private boolean nextUnordered() throws Exception {
         for (int i = 0; i < _status.length; i++) {
             switch (_status[i]) {
                 case UNOPENED:
-                    // this will only ever be the case if we aren't ordering
                     _rops[i].open();
                     _status[i] = OPENED;
                     // no break
                 case OPENED:
-                    // if this rop has a value, cache it; if we're not ordering,
-                    // then that's the value to return
-                    if (_rops[i].next()) {
-                        if (_comp == null) {
-                            _cur = _rops[i].getResultObject();
-                            return true;
-                        } else {
-                            hasValue = true;
-                            _status[i] = VALUE;
-                            _values[i] = _rops[i].getResultObject();
-                            _orderValues[i] = getOrderingValue(_values[i],
-                                i, _rops[i]);
-                        }
-                    } else
-                        _status[i] = DONE;
-                    break;
-                case VALUE:
-                    // we only use this state when ordering
-                    hasValue = true;
+                    if (advance(i)) {
+                        _cur = _rops[i].getResultObject();
+                        return true;
+                    }
                     break;
             }
         }
+        return false;
+    }
 
-        // if we get to this point without a comparator, it means none
-        // of our rops have any more values
-        if (_comp == null || !hasValue)
-            return false;
+    /**
+     * Return the least of the current values of the delegates, advancing
+     * only the delegate that produced the previous value.
+     */
+    private boolean nextOrdered() throws Exception {
+        if (_heads == null) {
+            _heads = new PriorityQueue<>(Math.max(1, _rops.length),
+                new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer i1, Integer i2) {
+                        int cmp = _comp.compare(_orderValues[i1],
+                            _orderValues[i2]);
+                        // keep the delegate order among equal values
+                        return (cmp != 0) ? cmp : i1.compareTo(i2);
+                    }
+                });
+            for (int i = 0; i < _status.length; i++)
+                if (_status[i] == OPENED)
+                    fetch(i);
+        } else if (_last != -1)
+            fetch(_last);
 
-        // for all the rops with values, find the 'least' one according to
-        // the comparator
-        int least = -1;
-        Object orderVal = null;
-        for (int i = 0; i < _orderValues.length; i++) {
-            if (_status[i] != VALUE)
-                continue;
-            if (least == -1 || _comp.compare(_orderValues[i], orderVal) < 0) {
-                least = i;
-                orderVal = _orderValues[i];
-            }
+        Integer least = _heads.poll();
+        if (least == null) {
+            _last = -1;
+            return false;
         }
 
-        // assign the least value to the current one, and clear the cached
-        // value for that rop so that we know to get the next value for
-        // the next comparison
-        _cur = _values[least];
-        _values[least] = null;
-        _orderValues[least] = null;
-        _status[least] = OPENED;
+        // hand out the least value and clear the cached value for that rop
+        // so that we know to get the next value for the next comparison
+        _last = least;
+        _cur = _values[_last];
+        _values[_last] = null;
+        _orderValues[_last] = null;
+        _status[_last] = OPENED;
         return true;
     }
 
+    /**
+     * Cache the next value of the given delegate in the priority queue.
+     */
+    private void fetch(int idx) throws Exception {
+        if (!advance(idx))
+            return;
+        _status[idx] = VALUE;
+        _values[idx] = _rops[idx].getResultObject();
+        _orderValues[idx] = getOrderingValue(_values[idx], idx, _rops[idx]);
+        _heads.add(idx);
+    }
+
+    /**
+     * Advance the given delegate, closing it if it has no more results.
+     */
+    private boolean advance(int idx) throws Exception {
+        if (_rops[idx].next()) {
+            _counts[idx]++;
+            return true;
+        }
+        _rops[idx].close();
+        _status[idx] = CLOSED;
+        return false;
+    }
+
+    /**
+     * Close the delegates early once the limit has been reached.
+     */
+    private void closeAll() throws Exception {
+        for (int i = 0; i < _rops.length; i++) {
+            if (_status[i] == OPENED || _status[i] == VALUE) {
+                _rops[i].close();
+                _status[i] = CLOSED;
+            }
+        }
+    }
+
     @Override
     public Object getResultObject() throws Exception {
         return _cur;
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.lib.instrumentation;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link LatencyHistogram} type.
+ */
+public class TestLatencyHistogram {
+
+    @Test
+    public void testBucketsCoverAllLatencies() {
+        int last = -1;
+        for (long v = 0; v < 1L << 20; v += 7) {
+            int index = LatencyHistogram.indexOf(v);
+            assertTrue(index >= last);
+            assertTrue(LatencyHistogram.upperBoundOf(index) >= v);
+            last = index;
+        }
+        assertTrue(LatencyHistogram.upperBoundOf(LatencyHistogram.indexOf(Long.MAX_VALUE))
+            >= Long.MAX_VALUE - 1);
+    }
+
+    @Test
+    public void testPercentilesAreWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long v = 1; v <= 10000; v++)
+            histogram.record(v * 1000);
+        assertEquals(10000, histogram.getCount());
+        assertEquals(5000500.0, histogram.getMean(), 0.001);
+        assertEquals(10000000, histogram.getMax());
+        assertWithin(5000000, histogram.getPercentile(50));
+        assertWithin(9900000, histogram.getPercentile(99));
+        assertEquals(10000000, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void testReset() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(100);
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(50));
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getPercentile(99));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(actual + " is not within 4% of " + expected,
+            Math.abs(actual - expected) <= expected * 0.04);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.lib.instrumentation;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link SQLStatistics} type.
+ */
+public class TestSQLStatistics {
+
+    @Test
+    public void testNormalize() {
+        assertEquals("SELECT t0.ID, t0.NAME FROM T0 t0 WHERE (t0.ID = ? AND t0.NAME = ?)",
+            SQLStatistics.normalize("SELECT t0.ID, t0.NAME FROM T0 t0\n"
+                + "  WHERE (t0.ID = 12 AND t0.NAME = 'it''s')  "));
+        assertEquals("SELECT t1.C2 FROM T1 t1 WHERE t1.C2 IN (?, ...)",
+            SQLStatistics.normalize("SELECT t1.C2 FROM T1 t1 WHERE t1.C2 IN (1, 2, 3.5)"));
+        assertEquals("SELECT t1.C2 FROM T1 t1 WHERE t1.C2 IN (?, ...)",
+            SQLStatistics.normalize("SELECT t1.C2 FROM T1 t1 WHERE t1.C2 IN (?, ?)"));
+        assertEquals("UPDATE T SET V = ? WHERE ID = ?",
+            SQLStatistics.normalize("UPDATE T SET V = ? WHERE ID = ?"));
+        assertEquals("DELETE FROM T WHERE ID NOT IN (?, ...)",
+            SQLStatistics.normalize("DELETE FROM T WHERE ID NOT IN (4)"));
+        assertEquals("INSERT INTO T (ID, V, W) VALUES (?, ?, ?)",
+            SQLStatistics.normalize("INSERT INTO T (ID, V, W) VALUES (?, ?, ?)"));
+        assertEquals("SELECT t0.ID FROM T t0 WHERE t0.V = COALESCE(?, ?)",
+            SQLStatistics.normalize("SELECT t0.ID FROM T t0 WHERE t0.V = COALESCE(?, ?)"));
+        assertNull(SQLStatistics.normalize(null));
+    }
+
+    @Test
+    public void testRecord() {
+        SQLStatistics stats = new SQLStatistics(10, -1, 10);
+        String sql = "INSERT INTO T (ID) VALUES (?)";
+        assertNull(stats.setOrigin("select t from T t"));
+        SQLStatistics.Entry entry = stats.record(sql, sql, null, System.nanoTime(), 0, 1);
+        assertEquals("select t from T t", stats.setOrigin(null));
+        stats.record(sql, sql, null, System.nanoTime(), 4, 4);
+        stats.record(sql, sql, null, System.nanoTime(), 2, 2);
+        entry.addRowsRead(3);
+
+        assertSame(entry, stats.getStatistics(sql));
+        assertEquals(1, stats.getStatements().size());
+        assertEquals(3, entry.getCount());
+        assertEquals(7, entry.getRowsWritten());
+        assertEquals(3, entry.getRowsRead());
+        assertEquals(2, entry.getBatchCount());
+        assertEquals(3.0, entry.getMeanBatchSize(), 0.001);
+        assertEquals(4, entry.getMaxBatchSize());
+        assertEquals(Arrays.asList("select t from T t"),
+            Arrays.asList(entry.getOrigins().toArray()));
+        assertTrue(stats.getSlowExecutions().isEmpty());
+    }
+
+    @Test
+    public void testMaxStatements() {
+        SQLStatistics stats = new SQLStatistics(2, -1, 10);
+        for (int i = 0; i < 4; i++) {
+            String sql = "SELECT C" + i + " FROM T";
+            stats.record(sql, sql, null, System.nanoTime(), 0, 0);
+        }
+        assertEquals(2, stats.getStatements().size());
+        assertEquals(2, stats.getUntrackedCount());
+        stats.reset();
+        assertTrue(stats.getStatements().isEmpty());
+        assertEquals(0, stats.getUntrackedCount());
+    }
+
+    @Test
+    public void testSlowExecutions() {
+        SQLStatistics stats = new SQLStatistics(10, 0, 3);
+        stats.setOrigin("find T");
+        for (int i = 0; i < 5; i++) {
+            String sql = "SELECT * FROM T WHERE ID = ?";
+            stats.record(sql, sql, Arrays.asList(i), System.nanoTime(), 0, 0);
+        }
+        stats.setOrigin(null);
+        List<SQLStatistics.SlowExecution> slow = stats.getSlowExecutions();
+        assertEquals(3, slow.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(Arrays.asList(String.valueOf(i + 2)), slow.get(i).getParameters());
+            assertEquals("find T", slow.get(i).getOrigin());
+            assertTrue(slow.get(i).getTime() >= 0);
+        }
+    }
+}
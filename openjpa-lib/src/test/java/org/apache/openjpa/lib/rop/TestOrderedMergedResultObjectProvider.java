@@ -19,10 +19,17 @@
 package org.apache.openjpa.lib.rop;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 /**
  * Tests the {@link MergedResultObjectProvider}.
  *
@@ -60,6 +67,97 @@ public class TestOrderedMergedResultObjectProvider extends ResultListTest {
         };
     }
 
+    @Test
+    public void testLimitReadsOnlyWindow() throws Exception {
+        // 16 providers of 100 values each, interleaved
+        CountingResultObjectProvider[] rops =
+            new CountingResultObjectProvider[16];
+        for (int i = 0; i < rops.length; i++) {
+            List list = new ArrayList();
+            for (int j = 0; j < 100; j++)
+                list.add(String.valueOf(j * rops.length + i));
+            rops[i] = new CountingResultObjectProvider(list);
+        }
+
+        int limit = 10;
+        MergedResultObjectProvider merged = new MergedResultObjectProvider(
+            rops, new IntValueComparator(), limit);
+        merged.open();
+        for (int i = 0; i < limit; i++) {
+            assertTrue(merged.next());
+            assertEquals(String.valueOf(i), merged.getResultObject());
+        }
+        assertFalse(merged.next());
+        assertEquals(limit, merged.size());
+
+        int read = 0;
+        for (CountingResultObjectProvider rop : rops) {
+            assertTrue(rop.closed);
+            read += rop.reads;
+        }
+        // each provider is read once up front, then once per value taken
+        assertEquals(rops.length + limit - 1, read);
+        merged.close();
+    }
+
+    @Test
+    public void testExhaustedProviderClosedEarly() throws Exception {
+        CountingResultObjectProvider rop1 = new CountingResultObjectProvider(
+            new ArrayList(Arrays.asList("1", "2")));
+        CountingResultObjectProvider rop2 = new CountingResultObjectProvider(
+            new ArrayList(Arrays.asList("3", "4", "5")));
+        MergedResultObjectProvider merged = new MergedResultObjectProvider(
+            new ResultObjectProvider[]{ rop1, rop2 },
+            new IntValueComparator());
+        merged.open();
+        for (int i = 1; i <= 3; i++)
+            assertTrue(merged.next());
+        assertTrue(rop1.closed);
+        assertFalse(rop2.closed);
+        assertEquals(5, merged.size());
+
+        merged.reset();
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(merged.next());
+            assertEquals(String.valueOf(i), merged.getResultObject());
+        }
+        assertFalse(merged.next());
+        merged.close();
+    }
+
+    /**
+     * Provider that records how often it is advanced and whether it has
+     * been closed.
+     */
+    private static class CountingResultObjectProvider
+        extends ListResultObjectProvider {
+
+        int reads;
+        boolean closed;
+
+        public CountingResultObjectProvider(List list) {
+            super(list);
+        }
+
+        @Override
+        public boolean next() throws Exception {
+            reads++;
+            return super.next();
+        }
+
+        @Override
+        public void reset() throws Exception {
+            closed = false;
+            super.reset();
+        }
+
+        @Override
+        public void close() throws Exception {
+            closed = true;
+            super.close();
+        }
+    }
+
     private static class IntValueComparator implements Comparator {
 
         @Override
@@ -21,11 +21,14 @@ package org.apache.openjpa.lib.util;
 import java.lang.reflect.Field;
 import java.security.AccessController;
 import java.security.PrivilegedExceptionAction;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.UUID;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -78,6 +81,62 @@ public class TestUUIDGenerator {
         }
     }
 
+    @Test
+    public void testType7Ordered() {
+        String last = UUIDGenerator.nextHex(UUIDGenerator.TYPE7);
+        for (int i = 0; i < 10000; i++) {
+            String hex = UUIDGenerator.nextHex(UUIDGenerator.TYPE7);
+            assertTrue(hex.compareTo(last) > 0);
+            assertEquals('7', hex.charAt(12));
+            assertTrue("89abAB".indexOf(hex.charAt(16)) != -1);
+            last = hex;
+        }
+    }
+
+    @Test
+    public void testType7CanonicalOrdered() {
+        String last = UUIDGenerator.nextCanonical(UUIDGenerator.TYPE7);
+        for (int i = 0; i < 10000; i++) {
+            String uuid = UUIDGenerator.nextCanonical(UUIDGenerator.TYPE7);
+            assertTrue(uuid.compareTo(last) > 0);
+            assertTrue(uuid, uuid.matches(
+                "[0-9a-f]{8}-[0-9a-f]{4}-7[0-9a-f]{3}-[89ab][0-9a-f]{3}-[0-9a-f]{12}"));
+            assertEquals(uuid, UUID.fromString(uuid).toString());
+            last = uuid;
+        }
+    }
+
+    @Test
+    public void testType7LeadsWithTime() {
+        long before = System.currentTimeMillis();
+        byte[] uuid = UUIDGenerator.next(UUIDGenerator.TYPE7);
+        long millis = 0;
+        for (int i = 0; i < 6; i++)
+            millis = (millis << 8) | (uuid[i] & 0xFF);
+        assertTrue(millis >= before);
+        assertTrue(millis <= System.currentTimeMillis() + 1000);
+    }
+
+    @Test
+    public void testUniqueType7MultiThreaded() throws Exception {
+        final Set<String> seen = Collections.synchronizedSet(
+            new HashSet<String>());
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++)
+                        seen.add(UUIDGenerator.nextHex(UUIDGenerator.TYPE7));
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        assertEquals(40000, seen.size());
+    }
+
     @Test
     public void testGetTime() {
         long time = 0;
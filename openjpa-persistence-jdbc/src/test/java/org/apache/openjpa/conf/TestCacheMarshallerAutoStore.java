@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.conf;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+import org.apache.openjpa.conf.CacheMarshaller.ValidationPolicy;
+import org.apache.openjpa.enhance.PCRegistry;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactorySPI;
+import org.apache.openjpa.persistence.meta.MdrTestEntity;
+import org.apache.openjpa.persistence.test.AbstractPersistenceTestCase;
+
+/**
+ * Verifies that a preloaded repository is stored on the first start when
+ * the metadata cache marshaller is set to auto-store, and restored from the
+ * memory-mapped file on later starts.
+ */
+public class TestCacheMarshallerAutoStore
+    extends AbstractPersistenceTestCase {
+
+    private static final String PU_NAME = "mdr-pu";
+    private static final File FILE = new File("target/"
+        + TestCacheMarshallerAutoStore.class.getName() + ".ser");
+
+    private static final Object[] PROPS = new Object[] {
+        "openjpa.MetaDataRepository", "Preload=true",
+        "openjpa.CacheMarshallers",
+        "default(Id=" + MetaDataCacheMaintenance.class.getName()
+            + ", OutputFile=" + FILE.getPath()
+            + ", AutoStore=true"
+            + ", ConsumeSerializationErrors=false"
+            + ", ValidationPolicy="
+            + PersistentTypesValidationPolicy.class.getName()
+            + ")",
+    };
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        FILE.delete();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        FILE.delete();
+        super.tearDown();
+    }
+
+    public void testStoreThenRestore() {
+        OpenJPAEntityManagerFactorySPI emf = createNamedEMF(PU_NAME, PROPS);
+        try {
+            assertFalse(getMarshaller(emf).isLoaded());
+            assertTrue(FILE.isFile());
+        } finally {
+            closeEMF(emf);
+        }
+
+        emf = createNamedEMF(PU_NAME, PROPS);
+        try {
+            assertTrue(getMarshaller(emf).isLoaded());
+            MetaDataRepository repos = emf.getConfiguration()
+                .getMetaDataRepositoryInstance();
+            assertNotNull(repos.getCachedMetaData(MdrTestEntity.class));
+            assertTrue(repos.getAliasNames().contains("MdrTestEntity"));
+            emf.createEntityManager().close();
+        } finally {
+            closeEMF(emf);
+        }
+    }
+
+    public void testRestoredRepositoryListensForRegisteredClasses()
+        throws Exception {
+        closeEMF(createNamedEMF(PU_NAME, PROPS));
+
+        // a class loader of its own, so the registration can be undone
+        URL classes = LateRegistered.class.getProtectionDomain()
+            .getCodeSource().getLocation();
+        URLClassLoader loader = new URLClassLoader(new URL[] { classes },
+            null);
+        OpenJPAEntityManagerFactorySPI emf = createNamedEMF(PU_NAME, PROPS);
+        try {
+            assertTrue(getMarshaller(emf).isLoaded());
+            MetaDataRepository repos = emf.getConfiguration()
+                .getMetaDataRepositoryInstance();
+            assertFalse(repos.getAliasNames().contains("LateRegistered"));
+
+            Class<?> cls = loader.loadClass(LateRegistered.class.getName());
+            PCRegistry.register(cls, new String[0], new Class[0],
+                new byte[0], null, "LateRegistered", null);
+            assertTrue(repos.getAliasNames().contains("LateRegistered"));
+        } finally {
+            PCRegistry.deRegister(loader);
+            loader.close();
+            closeEMF(emf);
+        }
+    }
+
+    public void testChangedTypeRejected() {
+        OpenJPAEntityManagerFactorySPI emf = createNamedEMF(PU_NAME, PROPS);
+        try {
+            ValidationPolicy vp = getMarshaller(emf).getValidationPolicy();
+            MetaDataRepository repos = emf.getConfiguration()
+                .getMetaDataRepositoryInstance();
+            Object[] cached = (Object[]) vp.getCacheableData(repos);
+            assertSame(repos, vp.getValidData(cached));
+
+            // corrupt the hash of the class files, as a changed class would
+            byte[] index = (byte[]) cached[1];
+            index[8] ^= 0xFF;
+            assertNull(vp.getValidData(cached));
+        } finally {
+            closeEMF(emf);
+        }
+    }
+
+    public void testForeignDataRejected() {
+        OpenJPAEntityManagerFactorySPI emf = createNamedEMF(PU_NAME, PROPS);
+        try {
+            ValidationPolicy vp = getMarshaller(emf).getValidationPolicy();
+            assertNull(vp.getValidData("not a cache"));
+            assertNull(vp.getValidData(new Object[] { "a", "b" }));
+            assertNull(vp.getValidData(new Object[] { new Object[3], "b" }));
+            assertNull(vp.getValidData(new Object[] { "a", "b", "c" }));
+        } finally {
+            closeEMF(emf);
+        }
+    }
+
+    private static CacheMarshallerImpl getMarshaller(
+        OpenJPAEntityManagerFactorySPI emf) {
+        return (CacheMarshallerImpl) CacheMarshallersValue.getMarshallerById(
+            emf.getConfiguration(), MetaDataCacheMaintenance.class.getName());
+    }
+
+    /**
+     * Registered with {@link PCRegistry} only after the repository has
+     * been restored.
+     */
+    public static class LateRegistered {
+    }
+}
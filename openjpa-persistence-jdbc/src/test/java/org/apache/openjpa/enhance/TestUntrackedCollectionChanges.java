@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.enhance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.openjpa.persistence.OpenJPAEntityManager;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+import org.apache.openjpa.util.Proxy;
+
+/**
+ * Verifies that changes to the collection proxy of an instance that is not
+ * intercepting are flushed even when the proxy does not report them, as
+ * with <code>subList().clear()</code> and <code>removeIf</code>. Such
+ * changes are only found by comparing the fields with the snapshot taken
+ * when the instance was loaded, so the snapshot must be a copy.
+ *
+ * Runtime subclassing is not supported in the test environment, so the
+ * entity is enhanced at build time and its metadata is marked as not
+ * intercepting. The state manager then snapshots its fields on
+ * initialization, as it does for unenhanced types.
+ */
+public class TestUntrackedCollectionChanges
+    extends SingleEMFTestCase {
+
+    @Override
+    public void setUp() {
+        setUp(CLEAR_TABLES, UntrackedCollectionEntity.class,
+            "openjpa.RestoreState", "all");
+
+        OpenJPAEntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        UntrackedCollectionEntity e = new UntrackedCollectionEntity(1);
+        e.getValues().addAll(Arrays.asList("a", "b", "c", "d"));
+        em.persist(e);
+        em.getTransaction().commit();
+        em.close();
+
+        emf.getConfiguration().getMetaDataRepositoryInstance()
+            .getMetaData(UntrackedCollectionEntity.class, null, true)
+            .setIntercepting(false);
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        emf.getConfiguration().getMetaDataRepositoryInstance()
+            .getMetaData(UntrackedCollectionEntity.class, null, true)
+            .setIntercepting(true);
+        super.tearDown();
+    }
+
+    public void testSubListClearIsFlushed() {
+        OpenJPAEntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            UntrackedCollectionEntity e = em.find(
+                UntrackedCollectionEntity.class, 1);
+            assertTrue(e.values instanceof Proxy);
+            e.getValues().subList(1, 3).clear();
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+        assertValues("a", "d");
+    }
+
+    public void testRemoveIfIsFlushed() {
+        OpenJPAEntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            UntrackedCollectionEntity e = em.find(
+                UntrackedCollectionEntity.class, 1);
+            assertTrue(e.values instanceof Proxy);
+            assertTrue(e.getValues().removeIf(v -> v.compareTo("b") > 0));
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+        assertValues("a", "b");
+    }
+
+    public void testRollbackRestoresUntrackedChanges() {
+        OpenJPAEntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            UntrackedCollectionEntity e = em.find(
+                UntrackedCollectionEntity.class, 1);
+            List<String> loaded = new ArrayList<>(e.getValues());
+            e.getValues().removeIf(v -> v.equals("a"));
+            em.getTransaction().rollback();
+            assertEquals(loaded, e.getValues());
+        } finally {
+            em.close();
+        }
+    }
+
+    private void assertValues(String... expected) {
+        OpenJPAEntityManager em = emf.createEntityManager();
+        try {
+            UntrackedCollectionEntity e = em.find(
+                UntrackedCollectionEntity.class, 1);
+            // element collections are not ordered when read back
+            List<String> values = new ArrayList<>(e.getValues());
+            Collections.sort(values);
+            assertEquals(Arrays.asList(expected), values);
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.instrumentation;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+
+import javax.management.ObjectName;
+import javax.persistence.EntityManager;
+
+import org.apache.openjpa.instrumentation.jmx.MetricsProvider;
+import org.apache.openjpa.lib.instrumentation.InstrumentationProvider;
+import org.apache.openjpa.lib.instrumentation.LatencyHistogram;
+import org.apache.openjpa.lib.instrumentation.Metrics;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+
+/**
+ * Verifies the operations timed by the metrics instrumentation provider.
+ */
+public class TestMetricsProvider extends SingleEMFTestCase {
+
+    public static final String METRICS_PROVIDER =
+        "metrics(Exporter=org.apache.openjpa.instrumentation.RecordingExporter)";
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp(CacheableEntity.class, CLEAR_TABLES,
+                    "openjpa.Instrumentation", METRICS_PROVIDER);
+    }
+
+    public void testOperationsAreTimed() {
+        Metrics metrics = emf.getConfiguration().getInstrumentationManagerInstance().getMetrics();
+        assertNotNull(metrics);
+        metrics.reset();
+
+        EntityManager em = emf.createEntityManager();
+        CacheableEntity ce = new CacheableEntity();
+        ce.setId(1);
+        ce.setName("metrics");
+        em.getTransaction().begin();
+        em.persist(ce);
+        em.getTransaction().commit();
+        em.clear();
+
+        assertNotNull(em.find(CacheableEntity.class, 1));
+        em.clear();
+        assertEquals(1, em.createQuery("select c from CacheableEntity c where c.name = :name")
+            .setParameter("name", "metrics").getResultList().size());
+        em.close();
+
+        assertTimed(metrics, Metrics.BROKER_COMMIT);
+        assertTimed(metrics, Metrics.BROKER_FLUSH);
+        assertTimed(metrics, Metrics.BROKER_FIND);
+        assertTimed(metrics, Metrics.QUERY_COMPILE);
+        assertTimed(metrics, Metrics.QUERY_EXECUTE);
+        assertTimed(metrics, Metrics.RESULT_LOAD);
+        assertTimed(metrics, Metrics.SQL_EXECUTE + ".insert");
+        assertTimed(metrics, Metrics.SQL_EXECUTE + ".select");
+        assertTrue(metrics.getCounter(Metrics.SQL_ROWS_WRITTEN) > 0);
+    }
+
+    public void testMetricsAreExposedAndExported() throws Exception {
+        EntityManager em = emf.createEntityManager();
+        em.find(CacheableEntity.class, 1);
+        em.close();
+
+        Set<ObjectName> names = ManagementFactory.getPlatformMBeanServer()
+            .queryNames(new ObjectName("org.apache.openjpa:type=Metrics,*"), null);
+        assertFalse(names.isEmpty());
+
+        MetricsProvider provider = null;
+        for (InstrumentationProvider p : emf.getConfiguration()
+            .getInstrumentationManagerInstance().getProviders())
+            if (p instanceof MetricsProvider)
+                provider = (MetricsProvider) p;
+        assertNotNull(provider);
+        provider.export();
+        synchronized (RecordingExporter.EXPORTED) {
+            assertTrue(RecordingExporter.EXPORTED.contains(Metrics.BROKER_FIND));
+        }
+    }
+
+    private static void assertTimed(Metrics metrics, String name) {
+        LatencyHistogram histogram = metrics.getHistogram(name);
+        assertNotNull(name, histogram);
+        assertTrue(name, histogram.getCount() > 0);
+        assertTrue(name, histogram.getPercentile(50) <= histogram.getMax());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.instrumentation;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+
+import javax.management.ObjectName;
+import javax.persistence.EntityManager;
+
+import org.apache.openjpa.lib.instrumentation.SQLStatistics;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+
+/**
+ * Verifies the statistics of the SQL statements kept by the metrics
+ * instrumentation provider.
+ */
+public class TestSQLStatistics extends SingleEMFTestCase {
+
+    private static final String JPQL = "select c from CacheableEntity c where c.name = :name";
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp(CacheableEntity.class, CLEAR_TABLES,
+                    "openjpa.Instrumentation",
+                    "metrics(SQLStatistics=true, SlowSQLThreshold=0, SlowSQLHistory=5)");
+    }
+
+    public void testStatementsAreLinkedToTheirOrigin() {
+        SQLStatistics stats = emf.getSQLStatistics();
+        assertNotNull(stats);
+        stats.reset();
+
+        EntityManager em = emf.createEntityManager();
+        CacheableEntity ce = new CacheableEntity();
+        ce.setId(1);
+        ce.setName("stats");
+        em.getTransaction().begin();
+        em.persist(ce);
+        em.getTransaction().commit();
+        em.clear();
+
+        assertNotNull(em.find(CacheableEntity.class, 1));
+        em.clear();
+        assertEquals(1, em.createQuery(JPQL).setParameter("name", "stats")
+            .getResultList().size());
+        em.close();
+
+        SQLStatistics.Entry insert = null;
+        SQLStatistics.Entry find = null;
+        SQLStatistics.Entry query = null;
+        for (SQLStatistics.Entry entry : stats.getStatistics()) {
+            if (entry.getSQL().startsWith("INSERT"))
+                insert = entry;
+            else if (entry.getOrigins().contains(JPQL))
+                query = entry;
+            else if (entry.getOrigins().contains("find " + CacheableEntity.class.getName()))
+                find = entry;
+        }
+        assertNotNull(insert);
+        assertEquals(1, insert.getRowsWritten());
+        assertNotNull(find);
+        assertEquals(1, find.getRowsRead());
+        assertNotNull(query);
+        assertEquals(1, query.getCount());
+        assertEquals(1, query.getRowsRead());
+        assertTrue(query.getLatency().getPercentile(99) <= query.getLatency().getMax());
+
+        boolean captured = false;
+        for (SQLStatistics.SlowExecution slow : stats.getSlowExecutions())
+            if (JPQL.equals(slow.getOrigin()))
+                captured = slow.getParameters().contains("stats");
+        assertTrue(captured);
+        assertTrue(stats.getSlowExecutions().size() <= 5);
+    }
+
+    public void testStatisticsAreExposed() throws Exception {
+        EntityManager em = emf.createEntityManager();
+        em.find(CacheableEntity.class, 1);
+        em.close();
+
+        Set<ObjectName> names = ManagementFactory.getPlatformMBeanServer()
+            .queryNames(new ObjectName("org.apache.openjpa:type=SQLStatistics,*"), null);
+        assertFalse(names.isEmpty());
+        String[] statements = (String[]) ManagementFactory.getPlatformMBeanServer()
+            .getAttribute(names.iterator().next(), "Statements");
+        assertTrue(statements.length > 0);
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.detach;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.openjpa.conf.Compatibility;
+import org.apache.openjpa.kernel.DetachBatchCallback;
+import org.apache.openjpa.persistence.OpenJPAEntityManager;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+
+/**
+ * Verifies that detaching in batches hands each batch of detached
+ * instances to the callback as it completes.
+ */
+public class TestDetachBatches extends SingleEMFTestCase {
+    private static final int COUNT = 10;
+
+    private boolean copyOnDetach;
+
+    @Override
+    public void setUp() throws Exception {
+        setUp(CLEAR_TABLES, Entity1.class, Entity14.class);
+        copyOnDetach = getCompatibility().getCopyOnDetach();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        // the factory is shared with other tests
+        getCompatibility().setCopyOnDetach(copyOnDetach);
+        super.tearDown();
+    }
+
+    public void testDetachInPlace() {
+        OpenJPAEntityManager em = emf.createEntityManager();
+        try {
+            getCompatibility().setCopyOnDetach(false);
+            final List<Entity1> entities = persist(em);
+
+            final List<Object[]> batches = new ArrayList<>();
+            em.detachAll(entities, 3, new DetachBatchCallback() {
+                @Override
+                public void detached(Object[] detached) {
+                    batches.add(detached);
+                }
+            });
+
+            assertEquals(4, batches.size());
+            int i = 0;
+            for (Object[] batch : batches) {
+                assertEquals(Math.min(3, COUNT - i), batch.length);
+                for (Object detached : batch) {
+                    assertSame(entities.get(i++), detached);
+                    assertFalse(em.contains(detached));
+                }
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    public void testDetachCopies() {
+        OpenJPAEntityManager em = emf.createEntityManager();
+        try {
+            getCompatibility().setCopyOnDetach(true);
+            final List<Entity1> entities = persist(em);
+
+            final List<Object> copies = new ArrayList<>();
+            em.detachAll(entities, 4, new DetachBatchCallback() {
+                @Override
+                public void detached(Object[] detached) {
+                    assertTrue(detached.length <= 4);
+                    for (Object copy : detached)
+                        copies.add(copy);
+                }
+            });
+
+            assertEquals(COUNT, copies.size());
+            for (int i = 0; i < COUNT; i++) {
+                Entity1 copy = (Entity1) copies.get(i);
+                assertNotSame(entities.get(i), copy);
+                assertEquals(entities.get(i).getId(), copy.getId());
+                assertTrue(em.contains(entities.get(i)));
+                assertTrue(em.isDetached(copy));
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    private Compatibility getCompatibility() {
+        return emf.getConfiguration().getCompatibilityInstance();
+    }
+
+    private List<Entity1> persist(OpenJPAEntityManager em) {
+        List<Entity1> entities = new ArrayList<>();
+        em.getTransaction().begin();
+        for (int i = 0; i < COUNT; i++) {
+            Entity1 e = new Entity1(i, "entity" + i);
+            em.persist(e);
+            entities.add(e);
+        }
+        em.getTransaction().commit();
+        return entities;
+    }
+}
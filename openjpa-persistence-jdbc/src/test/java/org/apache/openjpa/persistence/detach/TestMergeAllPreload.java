@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.detach;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.persistence.OptimisticLockException;
+
+import org.apache.openjpa.jdbc.sql.DBDictionary;
+import org.apache.openjpa.persistence.OpenJPAEntityManager;
+import org.apache.openjpa.persistence.test.SQLListenerTestCase;
+
+/**
+ * Verifies that merging many detached instances at once loads their
+ * current state with a single select rather than one select each.
+ */
+public class TestMergeAllPreload extends SQLListenerTestCase {
+    private static final int COUNT = 20;
+
+    @Override
+    public void setUp() throws Exception {
+        setUp(CLEAR_TABLES, IntVersionEntity.class,
+            TimestampVersionEntity.class);
+    }
+
+    public void testMergeAllSelectsOnce() {
+        List<IntVersionEntity> detached = persist();
+        for (IntVersionEntity e : detached)
+            e.setName("merged" + e.getId());
+
+        OpenJPAEntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            resetSQL();
+            Collection merged = em.mergeAll(detached);
+            assertEquals(COUNT, merged.size());
+            assertEquals(sql.toString(), 1, countSelects());
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+
+        em = emf.createEntityManager();
+        try {
+            for (IntVersionEntity e : detached) {
+                IntVersionEntity found = em.find(IntVersionEntity.class,
+                    e.getId());
+                assertEquals("merged" + e.getId(), found.getName());
+                assertEquals(e.getVersion() + 1, found.getVersion());
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    public void testMergeAllSplitsSelectByInClauseLimit() {
+        List<IntVersionEntity> detached = persist();
+        DBDictionary dict = getDBDictionary();
+        int limit = dict.inClauseLimit;
+        dict.inClauseLimit = 7;
+        OpenJPAEntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            resetSQL();
+            Collection merged = em.mergeAll(detached);
+            assertEquals(COUNT, merged.size());
+            assertEquals(sql.toString(), (COUNT + 6) / 7, countSelects());
+            em.getTransaction().commit();
+        } finally {
+            dict.inClauseLimit = limit;
+            if (em.getTransaction().isActive())
+                em.getTransaction().rollback();
+            em.close();
+        }
+    }
+
+    public void testMergeAllChecksVersions() {
+        List<IntVersionEntity> detached = persist();
+
+        OpenJPAEntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.find(IntVersionEntity.class, detached.get(COUNT / 2).getId())
+                .setName("concurrent");
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+
+        em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.mergeAll(detached);
+            em.getTransaction().commit();
+            fail("Expected a stale instance to fail the merge");
+        } catch (RuntimeException re) {
+            Throwable t = re;
+            while (t != null && !(t instanceof OptimisticLockException))
+                t = t.getCause();
+            assertNotNull(re.toString(), t);
+        } finally {
+            if (em.getTransaction().isActive())
+                em.getTransaction().rollback();
+            em.close();
+        }
+    }
+
+    /**
+     * Persist the test instances and return them detached.
+     */
+    private List<IntVersionEntity> persist() {
+        OpenJPAEntityManager em = emf.createEntityManager();
+        List<IntVersionEntity> entities = new ArrayList<>();
+        try {
+            em.getTransaction().begin();
+            for (int i = 0; i < COUNT; i++) {
+                IntVersionEntity e = new IntVersionEntity(i);
+                e.setName("name" + i);
+                em.persist(e);
+                entities.add(e);
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+        return entities;
+    }
+
+    private int countSelects() {
+        int count = 0;
+        for (String s : sql)
+            if (s.startsWith("SELECT"))
+                count++;
+        return count;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.generationtype;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.openjpa.jdbc.kernel.TableJDBCSeq;
+import org.apache.openjpa.kernel.StoreContext;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.persistence.EntityManagerImpl;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+
+/**
+ * Verifies that a {@link TableJDBCSeq} grows its blocks under load, shrinks
+ * them when idle, and hands out every value exactly once and in order when
+ * allocating in the background.
+ */
+public class TestTableGeneratorAdaptive extends SingleEMFTestCase {
+    private static final int THREADS = 5;
+    private static final int LOOPS = 1000;
+
+    private TableJDBCSeq _seq;
+    private volatile long _now = 1000;
+    private EntityManagerImpl _em;
+    private ClassMetaData _meta;
+
+    @Override
+    public void setUp() throws Exception {
+        setUp(Dog.class, CLEAR_TABLES);
+        _meta = emf.getConfiguration().getMetaDataRepositoryInstance()
+            .getMetaData(Dog.class, null, true);
+        _em = (EntityManagerImpl) emf.createEntityManager();
+
+        // a clock that only moves when the test advances it
+        _seq = new TableJDBCSeq() {
+            @Override
+            protected long currentTimeMillis() {
+                return _now;
+            }
+        };
+        _seq.setConfiguration(emf.getConfiguration());
+        _seq.setTable("ADAPTIVE_SEQ");
+        _seq.setAllocate(10);
+        _seq.startConfiguration();
+        _seq.endConfiguration();
+        _seq.dropTable();
+        _seq.refreshTable();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        _seq.close();
+        _seq.dropTable();
+        _em.close();
+        super.tearDown();
+    }
+
+    public void testBlocksGrowUnderLoad() {
+        _seq.setMaxAllocate(80);
+        StoreContext ctx = (StoreContext) _em.getBroker();
+        for (int i = 1; i <= 200; i++)
+            assertEquals((long) i, _seq.next(ctx, _meta));
+
+        // fixed blocks of 10 would have left the table at 201; blocks of
+        // 10, 20, 40, 80 and 80 leave it at 231
+        assertEquals(231L, getTableValue(ctx));
+    }
+
+    public void testBlocksShrinkWhenIdle() {
+        _seq.setMaxAllocate(80);
+        StoreContext ctx = (StoreContext) _em.getBroker();
+
+        // blocks of 10, 20, 40 and 80
+        for (int i = 1; i <= 150; i++)
+            assertEquals((long) i, _seq.next(ctx, _meta));
+        assertEquals(151L, getTableValue(ctx));
+
+        // each block that lasts over a minute halves the next one
+        _now += 2 * 60 * 1000;
+        assertEquals(151L, _seq.next(ctx, _meta));
+        assertEquals(191L, getTableValue(ctx));
+        for (int i = 152; i <= 190; i++)
+            assertEquals((long) i, _seq.next(ctx, _meta));
+
+        _now += 2 * 60 * 1000;
+        assertEquals(191L, _seq.next(ctx, _meta));
+        assertEquals(211L, getTableValue(ctx));
+    }
+
+    public void testFixedBlocksByDefault() {
+        StoreContext ctx = (StoreContext) _em.getBroker();
+        for (int i = 1; i <= 200; i++)
+            assertEquals((long) i, _seq.next(ctx, _meta));
+        assertEquals(201L, getTableValue(ctx));
+    }
+
+    public void testPrefetchHandsOutEveryValueOnce() throws Exception {
+        _seq.setMaxAllocate(1000);
+        _seq.setPrefetch(true);
+
+        final Set<Object> ids = Collections.synchronizedSet(new HashSet<>());
+        final List<Throwable> errors = Collections.synchronizedList(
+            new ArrayList<Throwable>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    EntityManagerImpl em = (EntityManagerImpl)
+                        emf.createEntityManager();
+                    try {
+                        StoreContext ctx = (StoreContext) em.getBroker();
+                        long last = 0;
+                        for (int j = 0; j < LOOPS; j++) {
+                            long id = (Long) _seq.next(ctx, _meta);
+                            assertTrue(ids.add(id));
+                            // blocks are handed out in allocation order
+                            assertTrue(id + " after " + last, id > last);
+                            last = id;
+                        }
+                    } catch (Throwable t) {
+                        errors.add(t);
+                    } finally {
+                        em.close();
+                    }
+                }
+            });
+        }
+
+        for (Thread t : threads)
+            t.start();
+        for (Thread t : threads)
+            t.join();
+
+        assertTrue(errors.toString(), errors.isEmpty());
+        assertEquals(THREADS * LOOPS, ids.size());
+        for (long i = 1; i <= THREADS * LOOPS; i++)
+            assertTrue(String.valueOf(i), ids.contains(i));
+    }
+
+    /**
+     * Return the next value recorded in the sequence table. The sequence
+     * under test caches the last value it handed out as its current value,
+     * so read the table through a fresh sequence.
+     */
+    private Object getTableValue(StoreContext ctx) {
+        TableJDBCSeq seq = new TableJDBCSeq();
+        seq.setConfiguration(emf.getConfiguration());
+        seq.setTable("ADAPTIVE_SEQ");
+        seq.startConfiguration();
+        seq.endConfiguration();
+        try {
+            return seq.current(ctx, _meta);
+        } finally {
+            seq.close();
+        }
+    }
+}
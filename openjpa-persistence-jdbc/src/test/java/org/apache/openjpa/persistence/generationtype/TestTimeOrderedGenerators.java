@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.generationtype;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.openjpa.persistence.OpenJPAEntityManager;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+
+/**
+ * Verifies the time-ordered type 7 UUID and snowflake generators, and
+ * compares their insert throughput with random type 4 UUID keys.
+ */
+public class TestTimeOrderedGenerators extends SingleEMFTestCase {
+    private static final String CANONICAL =
+        "[0-9a-f]{8}-[0-9a-f]{4}-7[0-9a-f]{3}-[89ab][0-9a-f]{3}-[0-9a-f]{12}";
+    private static final int COUNT = 2000;
+    private static final int WARM_UP = 100;
+    private static boolean FAIL_IF_PERF_DEGRADE = false;
+
+    @Override
+    public void setUp() throws Exception {
+        setUp(CLEAR_TABLES, Type4Keyed.class, Type7Keyed.class,
+            SnowflakeKeyed.class);
+    }
+
+    public void testType7KeysAscend() {
+        OpenJPAEntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            String last = null;
+            for (int i = 0; i < 100; i++) {
+                Type7Keyed pc = new Type7Keyed();
+                em.persist(pc);
+                assertEquals(32, pc.getId().length());
+                assertEquals('7', pc.getId().charAt(12));
+                if (last != null)
+                    assertTrue(pc.getId().compareTo(last) > 0);
+                last = pc.getId();
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+    }
+
+    public void testSnowflakeKeysAscend() {
+        OpenJPAEntityManager em = emf.createEntityManager();
+        List<SnowflakeKeyed> pcs = new ArrayList<>();
+        try {
+            em.getTransaction().begin();
+            long last = 0;
+            for (int i = 0; i < 100; i++) {
+                SnowflakeKeyed pc = new SnowflakeKeyed();
+                em.persist(pc);
+                assertTrue(pc.getId() > last);
+                assertEquals(SnowflakeKeyed.NODE_ID,
+                    (pc.getId() >>> 12) & 0x3FF);
+                assertTrue(pc.getUuid(), pc.getUuid().matches(CANONICAL));
+                last = pc.getId();
+                pcs.add(pc);
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+
+        em = emf.createEntityManager();
+        try {
+            for (SnowflakeKeyed pc : pcs)
+                assertNotNull(em.find(SnowflakeKeyed.class, pc.getId()));
+        } finally {
+            em.close();
+        }
+    }
+
+    public void testType7StringKeysRoundTrip() {
+        OpenJPAEntityManager em = emf.createEntityManager();
+        List<SnowflakeKeyed> pcs = new ArrayList<>();
+        try {
+            em.getTransaction().begin();
+            String last = null;
+            for (int i = 0; i < 100; i++) {
+                SnowflakeKeyed pc = new SnowflakeKeyed();
+                em.persist(pc);
+                if (last != null)
+                    assertTrue(pc.getUuid().compareTo(last) > 0);
+                last = pc.getUuid();
+                pcs.add(pc);
+            }
+            em.getTransaction().commit();
+        } finally {
+            em.close();
+        }
+
+        // the stored values must come back unchanged and keep their order
+        // when sorted by the database
+        em = emf.createEntityManager();
+        try {
+            List<String> uuids = em.createQuery("select o.uuid from "
+                + "SnowflakeKeyed o order by o.uuid", String.class)
+                .getResultList();
+            assertEquals(pcs.size(), uuids.size());
+            for (int i = 0; i < pcs.size(); i++)
+                assertEquals(pcs.get(i).getUuid(), uuids.get(i));
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Compare the time taken to insert entities keyed by type 7 UUIDs and
+     * by snowflake values with the time taken for random type 4 UUIDs.
+     */
+    public void testInsertThroughput() {
+        // warm up the mappings and the connection pool
+        insert(Type4Keyed.class, WARM_UP);
+        insert(Type7Keyed.class, WARM_UP);
+        insert(SnowflakeKeyed.class, WARM_UP);
+
+        long type4 = insert(Type4Keyed.class, COUNT);
+        for (Class<?> cls : new Class<?>[] { Type7Keyed.class,
+            SnowflakeKeyed.class }) {
+            long elapsed = insert(cls, COUNT);
+            long delta = (type4 == 0) ? 0 : (type4 - elapsed) * 100 / type4;
+            System.err.println((delta < 0 ? "***WARN " : "") + Math.abs(delta)
+                + "% " + (delta < 0 ? "degradation" : "improvement")
+                + " inserting " + COUNT + " " + cls.getSimpleName()
+                + " over " + Type4Keyed.class.getSimpleName() + " ("
+                + elapsed / 1000000 + " ms against " + type4 / 1000000
+                + " ms)");
+            assertTrue(Math.abs(delta) + "% degradation for "
+                + cls.getSimpleName(), !FAIL_IF_PERF_DEGRADE || delta > 0);
+        }
+        assertEquals(COUNT + WARM_UP, count(Type4Keyed.class));
+        assertEquals(COUNT + WARM_UP, count(Type7Keyed.class));
+        assertEquals(COUNT + WARM_UP, count(SnowflakeKeyed.class));
+    }
+
+    /**
+     * Persist the given number of new instances of the given type in one
+     * transaction, returning the elapsed nanoseconds.
+     */
+    private long insert(Class<?> cls, int count) {
+        OpenJPAEntityManager em = emf.createEntityManager();
+        try {
+            long start = System.nanoTime();
+            em.getTransaction().begin();
+            for (int i = 0; i < count; i++)
+                em.persist(cls.newInstance());
+            em.getTransaction().commit();
+            return System.nanoTime() - start;
+        } catch (ReflectiveOperationException roe) {
+            throw new IllegalStateException(roe);
+        } finally {
+            em.close();
+        }
+    }
+
+    private long count(Class<?> cls) {
+        OpenJPAEntityManager em = emf.createEntityManager();
+        try {
+            return (Long) em.createQuery("select count(o) from "
+                + cls.getSimpleName() + " o").getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+}
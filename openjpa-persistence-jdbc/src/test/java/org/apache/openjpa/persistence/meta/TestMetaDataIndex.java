@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.meta;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.Set;
+
+import org.apache.openjpa.meta.AbstractCFMetaDataFactory;
+import org.apache.openjpa.meta.DelegatingMetaDataFactory;
+import org.apache.openjpa.meta.MetaDataFactory;
+import org.apache.openjpa.meta.MetaDataIndex;
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactorySPI;
+import org.apache.openjpa.persistence.test.AbstractPersistenceTestCase;
+
+/**
+ * Verifies that a {@link MetaDataIndex} round trips through its binary
+ * format, is rejected once stale, and replaces scanning when configured.
+ */
+public class TestMetaDataIndex extends AbstractPersistenceTestCase {
+    private static final String PU_NAME = "mdr-pu";
+
+    public void testRoundTrip() throws Exception {
+        OpenJPAEntityManagerFactorySPI emf = createNamedEMF(PU_NAME);
+        try {
+            ClassLoader loader = getClass().getClassLoader();
+            MetaDataIndex index = getFactory(emf).newIndex(loader);
+            assertTrue(index.getTypeNames().contains(MdrTestEntity.class.getName()));
+
+            MetaDataIndex read = MetaDataIndex.read(
+                new ByteArrayInputStream(toBytes(index)));
+            assertNotNull(read);
+            assertEquals(index.getTypeNames(), read.getTypeNames());
+            assertEquals(index.getResources(), read.getResources());
+            assertTrue(read.isValid(loader));
+        } finally {
+            closeEMF(emf);
+        }
+    }
+
+    public void testMappingFileIndexed() {
+        OpenJPAEntityManagerFactorySPI emf = createNamedEMF("mapsId-pu");
+        try {
+            MetaDataIndex index = getFactory(emf).newIndex(getClass().getClassLoader());
+            boolean found = false;
+            for (String rsrc : index.getResources().keySet())
+                found |= rsrc.endsWith("mapsId-orm.xml");
+            assertTrue(index.getResources().toString(), found);
+        } finally {
+            closeEMF(emf);
+        }
+    }
+
+    public void testStaleIndexRejected() throws Exception {
+        OpenJPAEntityManagerFactorySPI emf = createNamedEMF(PU_NAME);
+        try {
+            ClassLoader loader = getClass().getClassLoader();
+            byte[] bytes = toBytes(getFactory(emf).newIndex(loader));
+
+            // corrupt the first byte of the hash, which follows the magic
+            // number, format version and hash length
+            bytes[8] ^= 0xFF;
+            MetaDataIndex read = MetaDataIndex.read(new ByteArrayInputStream(bytes));
+            assertNotNull(read);
+            assertFalse(read.isValid(loader));
+
+            bytes[4] ^= 0xFF;
+            assertNull(MetaDataIndex.read(new ByteArrayInputStream(bytes)));
+        } finally {
+            closeEMF(emf);
+        }
+    }
+
+    public void testFactoryReadsIndex() throws Exception {
+        OpenJPAEntityManagerFactorySPI emf = createNamedEMF(PU_NAME);
+        File dir = new File(System.getProperty("java.io.tmpdir"),
+            "openjpa-index-" + System.nanoTime());
+        File file = new File(dir, "META-INF/test.idx");
+        try {
+            AbstractCFMetaDataFactory factory = getFactory(emf);
+            ClassLoader loader = getClass().getClassLoader();
+
+            // list a type the factory would never find by scanning, to
+            // tell whether the names came from the index
+            MetaDataIndex index = factory.newIndex(loader);
+            index.addTypeNames(MetaDataIndex.CLASSES,
+                Collections.singleton(getClass().getName()));
+            index.seal(loader);
+            assertTrue(file.getParentFile().mkdirs());
+            try (OutputStream out = new FileOutputStream(file)) {
+                index.write(out);
+            }
+
+            ClassLoader indexLoader = new URLClassLoader(
+                new URL[] { dir.toURI().toURL() }, loader);
+            factory.setIndex("META-INF/test.idx");
+            factory.clear();
+            Set<String> names = factory.getPersistentTypeNames(false, indexLoader);
+            assertTrue(names.contains(MdrTestEntity.class.getName()));
+            assertTrue(names.contains(getClass().getName()));
+
+            factory.setIndex("META-INF/missing.idx");
+            factory.clear();
+            names = factory.getPersistentTypeNames(false, indexLoader);
+            assertTrue(names.contains(MdrTestEntity.class.getName()));
+            assertFalse(names.contains(getClass().getName()));
+        } finally {
+            file.delete();
+            file.getParentFile().delete();
+            dir.delete();
+            closeEMF(emf);
+        }
+    }
+
+    private static AbstractCFMetaDataFactory getFactory(
+        OpenJPAEntityManagerFactorySPI emf) {
+        MetaDataFactory factory = emf.getConfiguration()
+            .getMetaDataRepositoryInstance().getMetaDataFactory();
+        while (factory instanceof DelegatingMetaDataFactory)
+            factory = ((DelegatingMetaDataFactory) factory).getDelegate();
+        return (AbstractCFMetaDataFactory) factory;
+    }
+
+    private static byte[] toBytes(MetaDataIndex index) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.write(out);
+        return out.toByteArray();
+    }
+}
@@ -18,13 +18,20 @@
  */
 package org.apache.openjpa.persistence.meta;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.openjpa.enhance.PCRegistry;
 import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.FieldMetaData;
+import org.apache.openjpa.meta.MetaDataModes;
 import org.apache.openjpa.meta.MetaDataRepository;
 import org.apache.openjpa.meta.QueryMetaData;
 import org.apache.openjpa.persistence.OpenJPAEntityManagerFactorySPI;
+import org.apache.openjpa.persistence.common.utils.BufferedLogFactory;
 import org.apache.openjpa.persistence.test.AbstractPersistenceTestCase;
 import org.apache.openjpa.persistence.xmlmapping.entities.Customer;
 import org.apache.openjpa.persistence.xmlmapping.entities.EAddress;
@@ -33,6 +40,16 @@ import org.apache.openjpa.persistence.xmlmapping.xmlbindings.myaddress.Address;
 
 public class TestMetaDataRepository extends AbstractPersistenceTestCase {
 	private final String PU_NAME = "mdr-pu";
+	private static final Class<?>[] PRELOAD_TYPES = {
+	    MdrTestEntity.class,
+	    ImplicitFieldAccessMappedSuperclass.class,
+	    ImplicitFieldAccessBase.class,
+	    ImplicitFieldAccessSubclass.class,
+	    ExplicitFieldAccess.class,
+	    ExplicitPropertyAccess.class,
+	    Embed0.class,
+	    Embed1.class,
+	};
 
 	@Override
 	public void setUp() throws Exception {
@@ -98,6 +115,51 @@ public class TestMetaDataRepository extends AbstractPersistenceTestCase {
         }
     }
 
+    public void testParallelPreload() {
+        Map<Class<?>, List<String>> serial = preload(1);
+        assertEquals(PRELOAD_TYPES.length, serial.size());
+        for (int parallelism : new int[] { 4, 16 }) {
+            assertEquals(serial, preload(parallelism));
+        }
+    }
+
+    /**
+     * Preload a unit of interrelated types with the given parallelism and return the names of the fields of each
+     * type's resolved metadata.
+     */
+    private Map<Class<?>, List<String>> preload(int parallelism) {
+        OpenJPAEntityManagerFactorySPI emf = createNamedEMF("test", "openjpa.MetaDataRepository",
+            "Preload=true,PreloadParallelism=" + parallelism, "openjpa.Log",
+            BufferedLogFactory.class.getName() + "(DefaultLevel=WARN, MetaData=TRACE)", PRELOAD_TYPES);
+        try {
+            BufferedLogFactory log = (BufferedLogFactory) emf.getConfiguration().getLogFactory();
+            if (parallelism > 1) {
+                log.assertLogMessage(".*Loading \\d+ preloaded classes on " + parallelism + " threads.*");
+            } else {
+                log.assertNoLogMessage(".*preloaded classes on .* threads.*");
+            }
+
+            MetaDataRepository mdr = emf.getConfiguration().getMetaDataRepositoryInstance();
+            assertEquals(parallelism, mdr.getPreloadParallelism());
+            Map<Class<?>, List<String>> fields = new HashMap<>();
+            for (Class<?> type : PRELOAD_TYPES) {
+                ClassMetaData meta = mdr.getCachedMetaData(type);
+                assertNotNull(type.getName(), meta);
+                assertEquals(type.getName(), MetaDataModes.MODE_META, meta.getResolve() & MetaDataModes.MODE_META);
+                List<String> names = new ArrayList<>();
+                for (FieldMetaData fmd : meta.getFields()) {
+                    names.add(fmd.getName());
+                }
+                fields.put(type, names);
+            }
+            assertTrue(mdr.getAliasNames().contains("MdrTestEntity"));
+            assertNotNull(mdr.getCachedQueryMetaData("query"));
+            return fields;
+        } finally {
+            closeEMF(emf);
+        }
+    }
+
     public void testPreloadConfiguration() {
         OpenJPAEntityManagerFactorySPI emf = createNamedEMF(PU_NAME, "openjpa.MetaDataRepository", "preload=true");
         assertTrue(MetaDataRepository.needsPreload(emf.getConfiguration()));
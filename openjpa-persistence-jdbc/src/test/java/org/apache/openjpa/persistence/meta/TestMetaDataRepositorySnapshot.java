@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.meta;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactorySPI;
+import org.apache.openjpa.persistence.test.AbstractPersistenceTestCase;
+
+/**
+ * Verifies that a repository configured with <code>Snapshot=true</code>
+ * serves resolved metadata without taking the repository lock, and that
+ * metadata published by concurrent lookups is not lost. Also compares the
+ * throughput of concurrent lookups with and without the snapshot.
+ */
+public class TestMetaDataRepositorySnapshot extends AbstractPersistenceTestCase {
+    private static final String PU_NAME = "mdr-pu";
+    private static final int THREADS = 8;
+    private static final int LOOKUPS = 1000;
+    private static final int BENCHMARK_LOOKUPS = 200000;
+    private static boolean FAIL_IF_PERF_DEGRADE = false;
+    private static final Class<?>[] TYPES = {
+        MdrTestEntity.class,
+        ImplicitFieldAccessMappedSuperclass.class,
+        ImplicitFieldAccessBase.class,
+        ImplicitFieldAccessSubclass.class,
+        ExplicitFieldAccess.class,
+        ExplicitPropertyAccess.class,
+        Embed0.class,
+        Embed1.class,
+    };
+
+    public void testSnapshotConfiguration() {
+        OpenJPAEntityManagerFactorySPI emf = createNamedEMF(PU_NAME,
+            "openjpa.MetaDataRepository", "Snapshot=true");
+        try {
+            assertTrue(getRepository(emf).getSnapshot());
+        } finally {
+            closeEMF(emf);
+        }
+    }
+
+    public void testLookupDoesNotLockAfterResolution() throws Exception {
+        OpenJPAEntityManagerFactorySPI emf = createNamedEMF(PU_NAME,
+            "openjpa.MetaDataRepository", "Snapshot=true");
+        try {
+            MetaDataRepository repo = getRepository(emf);
+            ClassMetaData meta = repo.getMetaData(MdrTestEntity.class, null, true);
+            assertNotNull(meta);
+            assertSame(meta, lookupWhileLocked(repo));
+        } finally {
+            closeEMF(emf);
+        }
+    }
+
+    public void testLookupDoesNotLockAfterPreload() throws Exception {
+        OpenJPAEntityManagerFactorySPI emf = createNamedEMF(PU_NAME,
+            "openjpa.MetaDataRepository", "Preload=true,Snapshot=true");
+        try {
+            MetaDataRepository repo = getRepository(emf);
+            assertSame(repo.getCachedMetaData(MdrTestEntity.class),
+                lookupWhileLocked(repo));
+        } finally {
+            closeEMF(emf);
+        }
+    }
+
+    public void testRemoveInvalidatesSnapshot() {
+        OpenJPAEntityManagerFactorySPI emf = createNamedEMF(PU_NAME,
+            "openjpa.MetaDataRepository", "Snapshot=true");
+        try {
+            MetaDataRepository repo = getRepository(emf);
+            ClassMetaData meta = repo.getMetaData(MdrTestEntity.class, null, true);
+            assertTrue(repo.removeMetaData(meta));
+            assertNull(repo.getCachedMetaData(MdrTestEntity.class));
+
+            ClassMetaData reloaded = repo.getMetaData(MdrTestEntity.class, null, true);
+            assertNotNull(reloaded);
+            assertNotSame(meta, reloaded);
+            assertSame(reloaded, repo.getMetaData(MdrTestEntity.class, null, true));
+        } finally {
+            closeEMF(emf);
+        }
+    }
+
+    /**
+     * Resolve a set of classes from many threads at once, so that their
+     * metadata is published to the snapshot concurrently, and check that
+     * every thread saw the same instance for each class and that every
+     * class ended up in the snapshot.
+     */
+    public void testConcurrentLookupsSeePublishedMetaData() throws Exception {
+        OpenJPAEntityManagerFactorySPI emf = createNamedEMF("test",
+            "openjpa.MetaDataRepository", "Snapshot=true", TYPES);
+        try {
+            final MetaDataRepository repo = getRepository(emf);
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            final List<Map<Class<?>, ClassMetaData>> seen = new ArrayList<>();
+            Thread[] threads = new Thread[THREADS];
+            for (int i = 0; i < threads.length; i++) {
+                final int offset = i;
+                final Map<Class<?>, ClassMetaData> metas = new HashMap<>();
+                seen.add(metas);
+                threads[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            for (int j = 0; j < LOOKUPS; j++) {
+                                Class<?> type = TYPES[(offset + j) % TYPES.length];
+                                ClassMetaData meta = repo.getMetaData(type, null, true);
+                                ClassMetaData prev = metas.put(type, meta);
+                                if (prev != null && prev != meta)
+                                    throw new AssertionError("metadata for " + type + " changed");
+                            }
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            start.countDown();
+            for (Thread thread : threads)
+                thread.join();
+            if (failure.get() != null)
+                throw new AssertionError(failure.get());
+
+            for (Class<?> type : TYPES) {
+                ClassMetaData meta = lookupWhileLocked(repo, type);
+                assertNotNull(type.getName(), meta);
+                for (Map<Class<?>, ClassMetaData> metas : seen)
+                    assertSame(type.getName(), meta, metas.get(type));
+            }
+        } finally {
+            closeEMF(emf);
+        }
+    }
+
+    /**
+     * Compare the time taken by {@link #THREADS} threads to look up resolved
+     * metadata with and without the snapshot.
+     */
+    public void testConcurrentLookupThroughput() throws Exception {
+        long without = measure("Snapshot=false");
+        long with = measure("Snapshot=true");
+        long delta = (without == 0) ? 0 : (without - with) * 100 / without;
+        System.err.println((delta < 0 ? "***WARN " : "") + Math.abs(delta) + "% "
+            + (delta < 0 ? "degradation" : "improvement") + " for " + THREADS + " threads x "
+            + BENCHMARK_LOOKUPS + " metadata lookups with the snapshot (" + without / 1000000 + " ms without, "
+            + with / 1000000 + " ms with)");
+        assertTrue(Math.abs(delta) + "% degradation with the snapshot", !FAIL_IF_PERF_DEGRADE || delta > 0);
+    }
+
+    /**
+     * Return the nanoseconds {@link #THREADS} threads take to look up the
+     * resolved metadata of {@link #TYPES} under the given repository
+     * configuration.
+     */
+    private long measure(String props) throws Exception {
+        OpenJPAEntityManagerFactorySPI emf = createNamedEMF("test",
+            "openjpa.MetaDataRepository", props, TYPES);
+        try {
+            final MetaDataRepository repo = getRepository(emf);
+            for (Class<?> type : TYPES)
+                assertNotNull(type.getName(), repo.getMetaData(type, null, true));
+
+            final CountDownLatch start = new CountDownLatch(1);
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            Thread[] threads = new Thread[THREADS];
+            for (int i = 0; i < threads.length; i++) {
+                final int offset = i;
+                threads[i] = new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                            for (int j = 0; j < BENCHMARK_LOOKUPS; j++)
+                                repo.getMetaData(TYPES[(offset + j) % TYPES.length], null, true);
+                        } catch (Throwable t) {
+                            failure.compareAndSet(null, t);
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            for (Thread thread : threads)
+                thread.join();
+            long elapsed = System.nanoTime() - begin;
+            if (failure.get() != null)
+                throw new AssertionError(failure.get());
+            return elapsed;
+        } finally {
+            closeEMF(emf);
+        }
+    }
+
+    /**
+     * Look up the test entity's metadata on another thread while this
+     * thread holds the repository lock.
+     */
+    private ClassMetaData lookupWhileLocked(MetaDataRepository repo)
+        throws Exception {
+        return lookupWhileLocked(repo, MdrTestEntity.class);
+    }
+
+    /**
+     * Look up the given type's metadata on another thread while this
+     * thread holds the repository lock.
+     */
+    private ClassMetaData lookupWhileLocked(final MetaDataRepository repo,
+        final Class<?> type) throws Exception {
+        final AtomicReference<ClassMetaData> result = new AtomicReference<>();
+        Thread reader = new Thread() {
+            @Override
+            public void run() {
+                result.set(repo.getMetaData(type, null, true));
+            }
+        };
+        synchronized (repo) {
+            reader.start();
+            reader.join(10000);
+            assertFalse("lookup blocked on the repository lock", reader.isAlive());
+        }
+        return result.get();
+    }
+
+    private static MetaDataRepository getRepository(
+        OpenJPAEntityManagerFactorySPI emf) {
+        return emf.getConfiguration().getMetaDataRepositoryInstance();
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+
+import javax.persistence.EntityManager;
+
+import org.apache.openjpa.persistence.OpenJPAQuery;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+
+/**
+ * Verifies the ordering, grouping, projection and comparison of queries
+ * evaluated in memory over a candidate collection.
+ */
+public class TestInMemoryEvaluation
+    extends SingleEMFTestCase {
+
+    private static final int CANDIDATES = 30;
+
+    private List<SimpleEntity> candidates;
+
+    @Override
+    public void setUp() {
+        setUp(SimpleEntity.class, CLEAR_TABLES);
+        candidates = new ArrayList<>(CANDIDATES);
+        for (int i = 0; i < CANDIDATES; i++) {
+            SimpleEntity s = new SimpleEntity((i % 4 == 3) ? null : "name" + (i % 4),
+                String.valueOf(i % 7));
+            s.setId(i);
+            candidates.add(s);
+        }
+    }
+
+    public void testOrderByUnprojectedValues() {
+        List<?> results = execute("select s from simple s "
+            + "order by s.name desc, s.value");
+        List<SimpleEntity> expected = new ArrayList<>(candidates);
+        Collections.sort(expected, new Comparator<SimpleEntity>() {
+            @Override
+            public int compare(SimpleEntity s1, SimpleEntity s2) {
+                // nulls come first when descending
+                String n1 = s1.getName();
+                String n2 = s2.getName();
+                int cmp;
+                if (Objects.equals(n1, n2))
+                    cmp = 0;
+                else if (n1 == null)
+                    cmp = -1;
+                else if (n2 == null)
+                    cmp = 1;
+                else
+                    cmp = n2.compareTo(n1);
+                return (cmp != 0) ? cmp : s1.getValue().compareTo(s2.getValue());
+            }
+        });
+        assertEquals(expected, results);
+    }
+
+    public void testOrderPlacesNullsLastWhenAscending() {
+        List<?> results = execute("select s from simple s order by s.name");
+        assertEquals(CANDIDATES, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            String name = ((SimpleEntity) results.get(i)).getName();
+            if (i < CANDIDATES - nulls())
+                assertNotNull(name);
+            else
+                assertNull(name);
+        }
+    }
+
+    public void testProjectionOrderedByUnprojectedValue() {
+        List<?> results = execute("select s.id from simple s "
+            + "where s.name is not null order by s.value desc, s.id");
+        List<SimpleEntity> expected = new ArrayList<>();
+        for (SimpleEntity s : candidates)
+            if (s.getName() != null)
+                expected.add(s);
+        Collections.sort(expected, new Comparator<SimpleEntity>() {
+            @Override
+            public int compare(SimpleEntity s1, SimpleEntity s2) {
+                int cmp = s2.getValue().compareTo(s1.getValue());
+                return (cmp != 0) ? cmp : Long.compare(s1.getId(), s2.getId());
+            }
+        });
+        assertEquals(expected.size(), results.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertEquals(expected.get(i).getId(), ((Number) results.get(i)).longValue());
+    }
+
+    public void testProjectionOfSeveralValues() {
+        List<?> results = execute("select s.name, s.value from simple s "
+            + "where s.id = 5");
+        assertEquals(1, results.size());
+        Object[] row = (Object[]) results.get(0);
+        assertEquals("name1", row[0]);
+        assertEquals("5", row[1]);
+    }
+
+    public void testGroupedProjectionOrder() {
+        List<?> results = execute("select s.name, count(s) from simple s "
+            + "where s.name is not null group by s.name order by s.name desc");
+        assertEquals(3, results.size());
+        for (int i = 0; i < 3; i++) {
+            Object[] row = (Object[]) results.get(i);
+            String name = "name" + (2 - i);
+            assertEquals(name, row[0]);
+            int count = 0;
+            for (SimpleEntity s : candidates)
+                if (name.equals(s.getName()))
+                    count++;
+            assertEquals(count, ((Number) row[1]).intValue());
+        }
+    }
+
+    public void testCompareOperandsOfDifferentTypes() {
+        // the long id is promoted against the integer literal, the same way
+        // for every candidate
+        List<?> results = execute("select s from simple s where s.id >= 25");
+        assertEquals(5, results.size());
+        results = execute("select s from simple s where s.id < 2.5");
+        assertEquals(3, results.size());
+        results = execute("select s from simple s where s.value = '3'");
+        for (Object o : results)
+            assertEquals("3", ((SimpleEntity) o).getValue());
+        assertEquals(4, results.size());
+    }
+
+    private int nulls() {
+        int nulls = 0;
+        for (SimpleEntity s : candidates)
+            if (s.getName() == null)
+                nulls++;
+        return nulls;
+    }
+
+    private List<?> execute(String jpql) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            OpenJPAQuery<?> q = (OpenJPAQuery<?>) em.createQuery(jpql);
+            q.setCandidateCollection(candidates);
+            return new ArrayList<>(q.getResultList());
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.persistence.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.apache.openjpa.kernel.QueryHints;
+import org.apache.openjpa.persistence.OpenJPAQuery;
+import org.apache.openjpa.persistence.common.utils.BufferedLogFactory;
+import org.apache.openjpa.persistence.test.SingleEMFTestCase;
+
+/**
+ * Verifies that in-memory queries evaluated on several fork-join workers
+ * return the same results, in the same order, as serial evaluation. The
+ * candidates are fewer than the default threshold, which the queries
+ * lower so that they are evaluated in parallel.
+ */
+public class TestParallelInMemoryQuery
+    extends SingleEMFTestCase {
+
+    private static final int CANDIDATES = 1000;
+    private static final int THRESHOLD = 100;
+    private static final String PARALLEL = ".*1000 candidates in 4 parallel partitions.*";
+
+    private List<SimpleEntity> candidates;
+
+    @Override
+    public void setUp() {
+        setUp(SimpleEntity.class, CLEAR_TABLES, "openjpa.Log",
+            BufferedLogFactory.class.getName() + "(DefaultLevel=WARN, Query=TRACE)");
+        candidates = new ArrayList<>(CANDIDATES);
+        for (int i = 0; i < CANDIDATES; i++)
+            candidates.add(new SimpleEntity("name" + (i % 97),
+                String.valueOf(i)));
+    }
+
+    public void testFilter() {
+        assertSameResults("select s from simple s where s.name = 'name7'");
+    }
+
+    public void testFilterAndOrder() {
+        assertSameResults("select s from simple s where s.name <> 'name7' "
+            + "order by s.name desc, s.value");
+    }
+
+    public void testProjectionAndOrder() {
+        assertSameResults("select s.value, s.name from simple s "
+            + "order by s.name, s.value desc");
+    }
+
+    public void testGroupedAggregate() {
+        assertSameResults("select s.name, count(s) from simple s "
+            + "group by s.name order by s.name");
+    }
+
+    public void testUngroupedAggregate() {
+        assertSameResults("select count(s) from simple s "
+            + "where s.name like 'name1%'");
+    }
+
+    public void testSmallCandidatesAreEvaluatedSerially() {
+        BufferedLogFactory log = getLogFactory();
+        log.clear();
+        List<?> results = execute("select s from simple s where s.name = 'name7'",
+            4, null);
+        assertFalse(results.isEmpty());
+        log.assertNoLogMessage(PARALLEL);
+    }
+
+    private void assertSameResults(String jpql) {
+        BufferedLogFactory log = getLogFactory();
+        log.clear();
+        List<?> serial = execute(jpql, 1, null);
+        log.assertNoLogMessage(PARALLEL);
+        List<?> parallel = execute(jpql, 4, THRESHOLD);
+        log.assertLogMessage(PARALLEL);
+        assertFalse(serial.isEmpty());
+        assertEquals(serial.size(), parallel.size());
+        for (int i = 0; i < serial.size(); i++) {
+            Object s = serial.get(i);
+            Object p = parallel.get(i);
+            if (s instanceof Object[]) {
+                Object[] sa = (Object[]) s;
+                Object[] pa = (Object[]) p;
+                assertEquals(sa.length, pa.length);
+                for (int j = 0; j < sa.length; j++)
+                    assertEquals(sa[j], pa[j]);
+            } else {
+                assertSame(s, p);
+            }
+        }
+    }
+
+    private BufferedLogFactory getLogFactory() {
+        return (BufferedLogFactory) emf.getConfiguration().getLogFactory();
+    }
+
+    private List<?> execute(String jpql, int parallelism, Integer threshold) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            OpenJPAQuery<?> q = (OpenJPAQuery<?>) em.createQuery(jpql);
+            q.setCandidateCollection(candidates);
+            q.setHint(QueryHints.HINT_IN_MEMORY_PARALLELISM, parallelism);
+            if (threshold != null)
+                q.setHint(QueryHints.HINT_IN_MEMORY_PARALLEL_THRESHOLD, threshold);
+            return new ArrayList<>(q.getResultList());
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -1437,6 +1437,10 @@ public class AnnotationPersistenceMetaDataParser
             return ValueStrategies.UUID_TYPE4_HEX;
         if (Generator.UUID_TYPE4_STRING.equals(generator))
             return ValueStrategies.UUID_TYPE4_STRING;
+        if (Generator.UUID_TYPE7_HEX.equals(generator))
+            return ValueStrategies.UUID_TYPE7_HEX;
+        if (Generator.UUID_TYPE7_STRING.equals(generator))
+            return ValueStrategies.UUID_TYPE7_STRING;
         throw new MetaDataException(_loc.get("generator-bad-strategy",
             context, generator));
     }
@@ -34,6 +34,7 @@ import javax.persistence.SynchronizationType;
 import javax.persistence.spi.LoadState;
 
 import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.instrumentation.InstrumentationManager;
 import org.apache.openjpa.kernel.AutoDetach;
 import org.apache.openjpa.kernel.Broker;
 import org.apache.openjpa.kernel.BrokerFactory;
@@ -42,6 +43,8 @@ import org.apache.openjpa.kernel.DelegatingFetchConfiguration;
 import org.apache.openjpa.kernel.FetchConfiguration;
 import org.apache.openjpa.lib.conf.Configurations;
 import org.apache.openjpa.lib.conf.Value;
+import org.apache.openjpa.lib.instrumentation.Metrics;
+import org.apache.openjpa.lib.instrumentation.SQLStatistics;
 import org.apache.openjpa.lib.log.Log;
 import org.apache.openjpa.lib.util.Closeable;
 import org.apache.openjpa.lib.util.Localizer;
@@ -388,6 +391,13 @@ public class EntityManagerFactoryImpl
         return _factory.getSupportedProperties();
     }
 
+    @Override
+    public SQLStatistics getSQLStatistics() {
+        InstrumentationManager im = getConfiguration().getInstrumentationManagerInstance();
+        Metrics metrics = (im == null) ? null : im.getMetrics();
+        return (metrics == null) ? null : metrics.getSQLStatistics();
+    }
+
     @Override
     public MetamodelImpl getMetamodel() {
         if (_metaModel == null) {
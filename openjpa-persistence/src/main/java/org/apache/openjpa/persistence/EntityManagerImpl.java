@@ -68,6 +68,7 @@ import org.apache.openjpa.kernel.Broker;
 import org.apache.openjpa.kernel.DataCacheRetrieveMode;
 import org.apache.openjpa.kernel.DataCacheStoreMode;
 import org.apache.openjpa.kernel.DelegatingBroker;
+import org.apache.openjpa.kernel.DetachBatchCallback;
 import org.apache.openjpa.kernel.FetchConfiguration;
 import org.apache.openjpa.kernel.FindCallbacks;
 import org.apache.openjpa.kernel.OpCallbacks;
@@ -1020,6 +1021,13 @@ public class EntityManagerImpl
         return Arrays.asList(_broker.detachAll(entities, this));
     }
 
+    @Override
+    public void detachAll(Collection entities, int batchSize,
+        DetachBatchCallback callback) {
+        assertNotCloseInvoked();
+        _broker.detachAll(entities, this, batchSize, callback);
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public <T> T merge(T entity) {
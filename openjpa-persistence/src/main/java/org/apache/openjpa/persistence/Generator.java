@@ -31,6 +31,8 @@ public interface Generator {
     String UUID_STRING = "uuid-string";
     String UUID_TYPE4_STRING = "uuid-type4-string";
     String UUID_TYPE4_HEX = "uuid-type4-hex";
+    String UUID_TYPE7_STRING = "uuid-type7-string";
+    String UUID_TYPE7_HEX = "uuid-type7-hex";
 
     /**
      * The sequence name.
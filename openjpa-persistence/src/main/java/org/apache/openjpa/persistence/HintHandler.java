@@ -168,6 +168,13 @@ public class HintHandler  {
                 throw new IllegalArgumentException(_loc.get("bad-query-hint-value", key, value).toString());
             }
             plan.setHint(key, v);
+        } else if (QueryHints.HINT_IN_MEMORY_PARALLELISM.equals(key)
+            || QueryHints.HINT_IN_MEMORY_PARALLEL_THRESHOLD.equals(key)) {
+            int v = (Integer) Filters.convert(value, Integer.class);
+            if (v < 1) {
+                throw new IllegalArgumentException(_loc.get("bad-query-hint-value", key, value).toString());
+            }
+            plan.setHint(key, v);
         } else if (QueryHints.HINT_INVALIDATE_PREPARED_QUERY.equals(key)) {
             plan.setHint(key, Filters.convert(value, Boolean.class));
             owner.invalidatePreparedQuery();
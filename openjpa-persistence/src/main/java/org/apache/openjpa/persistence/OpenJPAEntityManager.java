@@ -31,6 +31,7 @@ import org.apache.openjpa.event.CallbackModes;
 import org.apache.openjpa.kernel.AutoClear;
 import org.apache.openjpa.kernel.AutoDetach;
 import org.apache.openjpa.kernel.ConnectionRetainModes;
+import org.apache.openjpa.kernel.DetachBatchCallback;
 import org.apache.openjpa.kernel.DetachState;
 import org.apache.openjpa.kernel.RestoreState;
 import org.apache.openjpa.persistence.criteria.OpenJPACriteriaBuilder;
@@ -599,6 +600,19 @@ public interface OpenJPAEntityManager
      */
     Object[] detachAll(Object... pcs);
 
+    /**
+     * Detach the specified objects from the entity manager in batches of
+     * the given size, handing the detached instances of each batch to the
+     * given callback as soon as the batch completes.
+     *
+     * @param pcs the instances to detach
+     * @param batchSize the number of instances per batch
+     * @param callback receives the detached instances of each batch
+     * @since 3.1.1
+     */
+    void detachAll(Collection pcs, int batchSize,
+        DetachBatchCallback callback);
+
     /**
      * Merge the specified objects into the entity manager.
      *
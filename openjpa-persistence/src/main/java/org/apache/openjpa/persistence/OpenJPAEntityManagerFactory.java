@@ -24,6 +24,7 @@ import java.util.Set;
 
 import javax.persistence.EntityManagerFactory;
 
+import org.apache.openjpa.lib.instrumentation.SQLStatistics;
 import org.apache.openjpa.persistence.criteria.OpenJPACriteriaBuilder;
 import org.apache.openjpa.persistence.query.QueryBuilder;
 
@@ -146,4 +147,16 @@ public interface OpenJPAEntityManagerFactory
      * @since 2.0.0
     */
     Set<String> getSupportedProperties();
+
+    /**
+     * Gets the statistics of the SQL statements executed by this factory,
+     * by normalized SQL, with the slowest executions. The statistics are
+     * only kept if the <code>metrics</code> instrumentation provider is
+     * configured with <code>SQLStatistics=true</code>.
+     *
+     * @return the statistics, or null if they are not kept
+     *
+     * @since 3.1.1
+     */
+    SQLStatistics getSQLStatistics();
 }
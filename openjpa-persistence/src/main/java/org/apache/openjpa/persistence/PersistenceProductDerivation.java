@@ -140,6 +140,8 @@ public class PersistenceProductDerivation
         _hints.add(QueryHints.HINT_FILTER_LISTENERS);
         _hints.add(QueryHints.HINT_IGNORE_FINDER);
         _hints.add(QueryHints.HINT_IGNORE_PREPARED_QUERY);
+        _hints.add(QueryHints.HINT_IN_MEMORY_PARALLEL_THRESHOLD);
+        _hints.add(QueryHints.HINT_IN_MEMORY_PARALLELISM);
         _hints.add(QueryHints.HINT_INVALIDATE_FINDER);
         _hints.add(QueryHints.HINT_INVALIDATE_PREPARED_QUERY);
         _hints.add(QueryHints.HINT_PARAM_MARKER_IN_QUERY);
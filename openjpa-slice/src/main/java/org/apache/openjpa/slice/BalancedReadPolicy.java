@@ -0,0 +1,211 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.openjpa.slice.SliceStatistics.Operation;
+
+/**
+ * Balances the reads of replicated types across the replicas, by their
+ * {@link SliceStatistics statistics}.
+ * <br>
+ * A replica is avoided while it is unhealthy, that is while its last read
+ * failed or its recent reads took longer than the
+ * {@link #setSlowThreshold(long) slow threshold} on average. An unhealthy
+ * replica is still read from once per {@link #setProbeInterval(long) probe
+ * interval}, so that its statistics reflect when it recovers. If no replica
+ * is healthy, all are considered.
+ * <br>
+ * The subclasses select among the healthy replicas:
+ * <LI>{@link RoundRobin round-robin} takes turns.
+ * <LI>{@link LeastOutstanding least-outstanding} takes the replica with the
+ * fewest operations in progress.
+ * <LI>{@link LatencyWeighted latency} takes a replica at random, with a
+ * probability inversely proportional to its recent read time.
+ *
+ * @since 3.1.1
+ */
+public abstract class BalancedReadPolicy implements ReplicaReadPolicy {
+    private long _slowThreshold = 1000;
+    private long _probeInterval = 5000;
+    private final Map<String, AtomicLong> _probes = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the average read time, in milliseconds, above which a replica is
+     * unhealthy.
+     */
+    public long getSlowThreshold() {
+        return _slowThreshold;
+    }
+
+    /**
+     * Sets the average read time, in milliseconds, above which a replica is
+     * unhealthy. Defaults to 1000. A non-positive value never deems a
+     * replica slow.
+     */
+    public void setSlowThreshold(long millis) {
+        _slowThreshold = millis;
+    }
+
+    /**
+     * Gets the interval, in milliseconds, at which an unhealthy replica is
+     * read from.
+     */
+    public long getProbeInterval() {
+        return _probeInterval;
+    }
+
+    /**
+     * Sets the interval, in milliseconds, at which an unhealthy replica is
+     * read from. Defaults to 5000.
+     */
+    public void setProbeInterval(long millis) {
+        _probeInterval = millis;
+    }
+
+    @Override
+    public Slice select(Class<?> type, List<Slice> replicas, Object context) {
+        if (replicas.size() == 1)
+            return replicas.get(0);
+        List<Slice> healthy = new ArrayList<>(replicas.size());
+        for (Slice replica : replicas) {
+            if (isHealthy(replica))
+                healthy.add(replica);
+            else if (isProbeDue(replica))
+                return replica;
+        }
+        return choose(healthy.isEmpty() ? replicas : healthy);
+    }
+
+    /**
+     * Chooses one of the given replicas.
+     *
+     * @param replicas the healthy replicas, never empty
+     */
+    protected abstract Slice choose(List<Slice> replicas);
+
+    /**
+     * Affirms if the given replica can be read from.
+     */
+    protected boolean isHealthy(Slice replica) {
+        SliceStatistics stats = replica.getStatistics();
+        if (stats.getConsecutiveFailureCount(Operation.QUERY) > 0
+         || stats.getConsecutiveFailureCount(Operation.FIND) > 0)
+            return false;
+        return _slowThreshold <= 0 || getReadTime(replica) <= _slowThreshold * 1000000L;
+    }
+
+    /**
+     * Gets the recent time of a read from the given replica, or 0 if it was
+     * never read from.
+     */
+    protected static long getReadTime(Slice replica) {
+        SliceStatistics stats = replica.getStatistics();
+        return Math.max(stats.getRecentTime(Operation.QUERY), stats.getRecentTime(Operation.FIND));
+    }
+
+    /**
+     * Affirms if the given unhealthy replica is due to be read from, and if
+     * so starts its next probe interval.
+     */
+    private boolean isProbeDue(Slice replica) {
+        long now = System.currentTimeMillis();
+        AtomicLong last = _probes.computeIfAbsent(replica.getName(), k -> new AtomicLong(now));
+        long then = last.get();
+        return now - then >= _probeInterval && last.compareAndSet(then, now);
+    }
+
+    /**
+     * Takes turns among the replicas.
+     */
+    public static class RoundRobin extends BalancedReadPolicy {
+        private final AtomicInteger _next = new AtomicInteger();
+
+        @Override
+        protected Slice choose(List<Slice> replicas) {
+            return replicas.get(Math.floorMod(_next.getAndIncrement(), replicas.size()));
+        }
+    }
+
+    /**
+     * Takes the replica with the fewest operations in progress, taking
+     * turns among the replicas with as few.
+     */
+    public static class LeastOutstanding extends BalancedReadPolicy {
+        private final AtomicInteger _next = new AtomicInteger();
+
+        @Override
+        protected Slice choose(List<Slice> replicas) {
+            int start = Math.floorMod(_next.getAndIncrement(), replicas.size());
+            Slice result = null;
+            int least = Integer.MAX_VALUE;
+            for (int i = 0; i < replicas.size(); i++) {
+                Slice replica = replicas.get((start + i) % replicas.size());
+                int outstanding = replica.getStatistics().getOutstanding();
+                if (outstanding < least) {
+                    least = outstanding;
+                    result = replica;
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Takes a replica at random, with a probability inversely proportional
+     * to its recent read time. A replica that was never read from weighs as
+     * much as the fastest replica.
+     */
+    public static class LatencyWeighted extends BalancedReadPolicy {
+        private static final long MIN_TIME = 1000;
+
+        @Override
+        protected Slice choose(List<Slice> replicas) {
+            long fastest = Long.MAX_VALUE;
+            for (Slice replica : replicas) {
+                long time = getReadTime(replica);
+                if (time > 0)
+                    fastest = Math.min(fastest, time);
+            }
+            double[] weights = new double[replicas.size()];
+            double total = 0;
+            for (int i = 0; i < weights.length; i++) {
+                long time = getReadTime(replicas.get(i));
+                if (time == 0)
+                    time = fastest == Long.MAX_VALUE ? MIN_TIME : fastest;
+                weights[i] = 1.0 / Math.max(time, MIN_TIME);
+                total += weights[i];
+            }
+            double r = ThreadLocalRandom.current().nextDouble(total);
+            for (int i = 0; i < weights.length; i++) {
+                r -= weights[i];
+                if (r < 0)
+                    return replicas.get(i);
+            }
+            return replicas.get(replicas.size() - 1);
+        }
+    }
+}
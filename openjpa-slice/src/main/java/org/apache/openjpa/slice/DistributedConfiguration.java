@@ -38,6 +38,7 @@ import org.apache.openjpa.conf.OpenJPAConfiguration;
  * <LI> {@link ReplicationPolicy Replication Policy} maintains the same instance in multiple slices.
  * <LI> {@link QueryTargetPolicy Query Target Policy} narrows the slices for a query execution.
  * <LI> {@link FinderTargetPolicy Finder Target Policy} narrows the slices for primary key based lookup
+ * <LI> {@link ReplicaReadPolicy Replica Read Policy} selects the replica to read a replicated type from.
  *
  * @author Pinaki Poddar
  *
@@ -102,6 +103,23 @@ public interface DistributedConfiguration extends OpenJPAConfiguration {
      */
     void setDistributionPolicy(String policy);
 
+    /**
+     * Gets the shard keys declared by configuration, as a comma-separated list
+     * of <code>type.field=function</code> entries.
+     *
+     * @see ShardDistributionPolicy
+     * @since 3.1.1
+     */
+    String getShardKeys();
+
+    /**
+     * Sets the shard keys, as a comma-separated list of
+     * <code>type.field=function</code> entries.
+     *
+     * @since 3.1.1
+     */
+    void setShardKeys(String keys);
+
     /**
      * Gets the policy that governs how new replicated instances will be
      * replicated across the available slices.
@@ -132,6 +150,36 @@ public interface DistributedConfiguration extends OpenJPAConfiguration {
     boolean isReplicated(Class<?> type);
 
 
+    /**
+     * Gets the policy that selects the replica to read a replicated type from.
+     *
+     * @since 3.1.1
+     */
+    ReplicaReadPolicy getReplicaReadPolicyInstance();
+
+    /**
+     * Gets the policy, as a plugin string, that selects the replica to read
+     * a replicated type from.
+     *
+     * @since 3.1.1
+     */
+    String getReplicaReadPolicy();
+
+    /**
+     * Sets the policy that selects the replica to read a replicated type from.
+     *
+     * @since 3.1.1
+     */
+    void setReplicaReadPolicyInstance(ReplicaReadPolicy policy);
+
+    /**
+     * Sets the policy, from the given plugin string, that selects the replica
+     * to read a replicated type from.
+     *
+     * @since 3.1.1
+     */
+    void setReplicaReadPolicy(String policy);
+
     /**
      * Gets the policy that governs which slices will be targeted for a given query.
      */
@@ -176,4 +224,26 @@ public interface DistributedConfiguration extends OpenJPAConfiguration {
      */
     void setFinderTargetPolicy(String policy);
 
+    /**
+     * Gets the executor of the operations on the slices.
+     *
+     * @since 3.1.1
+     */
+    SliceExecutor getThreadingPolicyInstance();
+
+    /**
+     * Gets the executor of the operations on the slices, as a plugin string.
+     *
+     * @since 3.1.1
+     */
+    String getThreadingPolicy();
+
+    /**
+     * Sets the executor of the operations on the slices, from the given
+     * plugin string.
+     *
+     * @since 3.1.1
+     */
+    void setThreadingPolicy(String policy);
+
 }
@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice;
+
+import java.util.List;
+
+/**
+ * Policy to select the slice from which an instance of a replicated type,
+ * or the result of a query on a replicated type, is read. As every replica
+ * holds the same instances, a read needs only one of them.
+ * <br>
+ * Within a transaction, Slice reads from the replica selected first in
+ * the transaction, so that the transaction reads its own writes from the
+ * same database.
+ *
+ * @see ReplicationPolicy
+ * @see BalancedReadPolicy
+ * @since 3.1.1
+ */
+public interface ReplicaReadPolicy {
+    /**
+     * Gets the slice to read the given replicated type from.
+     *
+     * @param type the replicated type
+     * @param replicas the active slices that hold the replicas, never empty.
+     * The ordering of the list is the ordering of the active slices.
+     * @param context generic persistence context of the read.
+     *
+     * @return one of the given slices.
+     */
+    Slice select(Class<?> type, List<Slice> replicas, Object context);
+
+    /**
+     * Implements a default policy that always reads from the first replica.
+     */
+    public static class Default implements ReplicaReadPolicy {
+        @Override
+        public Slice select(Class<?> type, List<Slice> replicas, Object context) {
+            return replicas.get(0);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.openjpa.enhance.Reflection;
+import org.apache.openjpa.kernel.Filters;
+import org.apache.openjpa.lib.conf.Configurable;
+import org.apache.openjpa.lib.conf.Configuration;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.FieldMetaData;
+import org.apache.openjpa.util.ApplicationIds;
+import org.apache.openjpa.util.UserException;
+
+/**
+ * Distributes the instances of a type by the value of its {@link ShardKey
+ * shard key}. The key is declared either by the <code>ShardKey</code>
+ * annotation or by the <code>openjpa.slice.ShardKeys</code> property, as a
+ * comma-separated list of <code>type.field=function</code> entries such as
+ * <code>com.acme.Person.name=range(Even&lt;n|Odd)</code>.
+ * <br>
+ * As the slice of an instance follows from its key, Slice also uses this
+ * policy to narrow a lookup by primary key, when the key is a primary key
+ * field, and a query whose filter restricts the key to equal one or more
+ * values, to the slices that can hold the result.
+ * <br>
+ * Instances of types without a key are distributed randomly.
+ * <br>
+ * A subclass that declares no key of its own shares the key of its
+ * superclass, and the function of a key can be {@link
+ * #setShardFunction(ClassMetaData, ShardFunction) replaced} at runtime,
+ * for example once the instances have been moved to a new slice.
+ *
+ * @since 3.1.1
+ */
+public class ShardDistributionPolicy implements DistributionPolicy, Configurable {
+    private static final Localizer _loc = Localizer.forPackage(ShardDistributionPolicy.class);
+    private static final Shard NONE = new Shard(null, null);
+
+    private final DistributionPolicy _fallback = new DistributionPolicy.Default();
+    private final ConcurrentHashMap<Class<?>, Shard> _shards = new ConcurrentHashMap<>();
+    private DistributedConfiguration _conf;
+    private Map<String, String[]> _declared;
+
+    @Override
+    public String distribute(Object pc, List<String> slices, Object context) {
+        Shard shard = getShard(_conf.getMetaDataRepositoryInstance().getMetaData(pc.getClass(), null, false));
+        if (shard == null)
+            return _fallback.distribute(pc, slices, context);
+        Object key = shard.getKey(pc);
+        if (key == null)
+            return null;
+        String slice = shard.function.getSlice(key, slices);
+        if (slice == null)
+            throw new UserException(_loc.get("shard-no-slice", pc, key, shard));
+        return slice;
+    }
+
+    /**
+     * Gets the shard key of the given type, if the instances of the type and
+     * of all its subclasses are distributed by that key.
+     *
+     * @return the key field or null if the type is not distributed by a key.
+     */
+    public FieldMetaData getShardKey(ClassMetaData meta) {
+        Shard shard = getShard(meta);
+        if (shard == null || !isSharedBySubclasses(meta, shard))
+            return null;
+        return shard.field;
+    }
+
+    /**
+     * Gets the slices that store the instances of the given type whose key
+     * equals one of the given values.
+     *
+     * @return the names of the slices or null if the instances can be in any slice.
+     */
+    public String[] getTargets(ClassMetaData meta, Collection<?> keys, List<String> slices) {
+        if (keys == null || getShardKey(meta) == null)
+            return null;
+        Shard shard = getShard(meta);
+        ShardFunction function = shard.function;
+        Set<String> targets = new LinkedHashSet<>();
+        for (Object key : keys) {
+            Object value = shard.convert(key);
+            String slice = value == null ? null : function.getSlice(value, slices);
+            if (slice == null)
+                return null;
+            targets.add(slice);
+        }
+        return targets.toArray(new String[targets.size()]);
+    }
+
+    /**
+     * Gets the slices that store the instance of the given type and the
+     * given identity.
+     *
+     * @return the names of the slices or null if the instance can be in any slice.
+     */
+    public String[] getTargetsById(ClassMetaData meta, Object oid, List<String> slices) {
+        FieldMetaData key = getShardKey(meta);
+        if (oid == null || key == null || !key.isPrimaryKey())
+            return null;
+        FieldMetaData[] pks = meta.getPrimaryKeyFields();
+        Object[] values = ApplicationIds.toPKValues(oid, meta);
+        for (int i = 0; i < pks.length; i++) {
+            if (pks[i].equals(key) && values[i] != null)
+                return getTargets(meta, Collections.singleton(values[i]), slices);
+        }
+        return null;
+    }
+
+    /**
+     * Gets the function that maps the values of the key of the given type
+     * to slices.
+     *
+     * @return the function or null if the type is not distributed by a key.
+     */
+    public ShardFunction getShardFunction(ClassMetaData meta) {
+        Shard shard = getShard(meta);
+        return shard == null ? null : shard.function;
+    }
+
+    /**
+     * Replaces the function that maps the values of the key of the given
+     * type, and of the subclasses that share the key, to slices. Instances
+     * are distributed and looked up by the new function as soon as this
+     * method returns, but are not moved.
+     *
+     * @exception UserException if the type is not distributed by a key
+     */
+    public void setShardFunction(ClassMetaData meta, ShardFunction function) {
+        Shard shard = getShard(meta);
+        if (shard == null)
+            throw new UserException(_loc.get("shard-no-key", meta));
+        shard.function = function;
+    }
+
+    private Shard getShard(ClassMetaData meta) {
+        if (meta == null)
+            return null;
+        Shard shard = _shards.get(meta.getDescribedType());
+        if (shard == null) {
+            shard = findShard(meta);
+            if (shard == null) {
+                Shard inherited = getShard(meta.getPCSuperclassMetaData());
+                shard = inherited == null ? NONE : inherited;
+            }
+            Shard prior = _shards.putIfAbsent(meta.getDescribedType(), shard);
+            if (prior != null)
+                shard = prior;
+        }
+        return shard == NONE ? null : shard;
+    }
+
+    /**
+     * Finds the key declared by the given type itself.
+     *
+     * @return the key or null if the type declares no key.
+     */
+    private Shard findShard(ClassMetaData meta) {
+        String[] declared = getDeclared().get(meta.getDescribedType().getName());
+        if (declared == null)
+            declared = getDeclared().get(meta.getTypeAlias());
+        if (declared != null) {
+            FieldMetaData field = meta.getField(declared[0]);
+            if (field == null)
+                throw new UserException(_loc.get("shard-no-field", declared[0], meta));
+            return new Shard(field, ShardFunction.parse(declared[1]));
+        }
+        for (FieldMetaData field : meta.getDeclaredFields()) {
+            Member member = field.getBackingMember();
+            ShardKey key = member instanceof AnnotatedElement
+                ? ((AnnotatedElement) member).getAnnotation(ShardKey.class) : null;
+            if (key != null)
+                return new Shard(field, new ShardFunction(key.function(), key.slices()));
+        }
+        return null;
+    }
+
+    private boolean isSharedBySubclasses(ClassMetaData meta, Shard shard) {
+        for (ClassMetaData sub : meta.getPCSubclassMetaDatas()) {
+            if (getShard(sub) != shard || !isSharedBySubclasses(sub, shard))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Parses the keys declared by configuration, indexed by type.
+     */
+    private synchronized Map<String, String[]> getDeclared() {
+        if (_declared == null) {
+            Map<String, String[]> declared = new HashMap<>();
+            String keys = _conf.getShardKeys();
+            if (keys != null) {
+                for (String entry : keys.split(",")) {
+                    entry = entry.trim();
+                    if (entry.length() == 0)
+                        continue;
+                    int eq = entry.indexOf('=');
+                    int dot = eq == -1 ? -1 : entry.lastIndexOf('.', eq);
+                    if (dot == -1)
+                        throw new UserException(_loc.get("shard-bad-key", entry));
+                    declared.put(entry.substring(0, dot).trim(), new String[] {
+                        entry.substring(dot + 1, eq).trim(), entry.substring(eq + 1).trim() });
+                }
+            }
+            _declared = declared;
+        }
+        return _declared;
+    }
+
+    @Override
+    public void setConfiguration(Configuration conf) {
+        _conf = (DistributedConfiguration) conf;
+    }
+
+    @Override
+    public void startConfiguration() {
+    }
+
+    @Override
+    public void endConfiguration() {
+    }
+
+    /**
+     * A key field and the function that maps its values to slices.
+     */
+    private static class Shard {
+        final FieldMetaData field;
+        volatile ShardFunction function;
+
+        Shard(FieldMetaData field, ShardFunction function) {
+            this.field = field;
+            this.function = function;
+        }
+
+        Object getKey(Object pc) {
+            Member member = field.getBackingMember();
+            if (member == null)
+                member = Reflection.findField(field.getDeclaringType(), field.getName(), true);
+            return convert(member instanceof Method
+                ? Reflection.get(pc, (Method) member)
+                : Reflection.get(pc, (Field) member));
+        }
+
+        /**
+         * Converts the given value to the type of the key, or to null if
+         * the value can not be a value of the key.
+         */
+        Object convert(Object value) {
+            try {
+                return Filters.convert(value, field.getDeclaredType());
+            } catch (ClassCastException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return field.getFullName(false) + "=" + function;
+        }
+    }
+}
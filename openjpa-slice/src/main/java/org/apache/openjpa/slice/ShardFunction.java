@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.openjpa.kernel.Filters;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.util.InternalException;
+import org.apache.openjpa.util.UserException;
+
+/**
+ * Maps a value of a {@link ShardKey shard key} to the slice that stores the
+ * instances with that value. The function is given as a list of slices:
+ * <LI><code>HASH</code>: the names of the slices, in order. The slice is
+ * chosen by the hash code of the value.
+ * <LI><code>CONSISTENT</code>: the names of the slices, each optionally
+ * followed by <code>*points</code>. Every slice is placed on a hash ring at
+ * as many points, {@link #VIRTUAL_NODES} by default, and a value is stored
+ * in the slice of the first point at or after its hash. Adding a slice to
+ * the ring only moves the values that hash next to its points.
+ * <LI><code>RANGE</code>: entries of the form <code>slice&lt;bound</code>.
+ * A value is stored in the first slice whose bound it is less than. The last
+ * entry may omit its bound to take all larger values.
+ * <LI><code>LIST</code>: entries of the form <code>slice=value value...</code>.
+ * A value is stored in the slice that lists it. One entry may omit its values
+ * to take all values that are not listed.
+ * <br>
+ * A hash or consistent function that names no slice is fixed to the slices
+ * active when it is first used, so that a slice added later receives no
+ * value until the function is {@link #withSlice(String, List) extended} and
+ * the instances are rebalanced.
+ * <br>
+ * A function can also be written as a string, such as <code>hash</code> or
+ * <code>range(Even&lt;n|Odd)</code>.
+ *
+ * @since 3.1.1
+ */
+public class ShardFunction implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final Localizer _loc = Localizer.forPackage(ShardFunction.class);
+
+    /**
+     * The digest of {@link #hash}, one per thread as digests are not thread
+     * safe and costly to look up.
+     */
+    private static final ThreadLocal<MessageDigest> MD5 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new InternalException(e);
+        }
+    });
+
+    /**
+     * A kind of function.
+     */
+    public enum Type {
+        HASH,
+        CONSISTENT,
+        RANGE,
+        LIST
+    }
+
+    /**
+     * The number of points of a slice on the ring of a consistent function,
+     * unless given otherwise.
+     */
+    public static final int VIRTUAL_NODES = 128;
+
+    private final Type _type;
+    private final String[] _entries;
+    private final String[] _slices;
+    private final String[] _bounds;
+    private final int[] _points;
+    private final Map<String, String> _values = new HashMap<>();
+    private String _default;
+    private volatile String[] _actives;
+    private transient volatile TreeMap<Long, String> _ring;
+
+    /**
+     * Creates a function of the given type over the given slices.
+     */
+    public ShardFunction(Type type, String... slices) {
+        _type = type;
+        _entries = new String[slices.length];
+        _slices = new String[slices.length];
+        _bounds = new String[slices.length];
+        _points = new int[slices.length];
+        for (int i = 0; i < slices.length; i++) {
+            String entry = slices[i].trim();
+            _entries[i] = entry;
+            switch (type) {
+            case HASH:
+                _slices[i] = entry;
+                break;
+            case CONSISTENT:
+                int star = entry.indexOf('*');
+                _slices[i] = (star == -1 ? entry : entry.substring(0, star)).trim();
+                try {
+                    _points[i] = star == -1 ? VIRTUAL_NODES
+                        : Integer.parseInt(entry.substring(star + 1).trim());
+                } catch (NumberFormatException e) {
+                    _points[i] = 0;
+                }
+                if (_points[i] <= 0)
+                    throw new UserException(_loc.get("shard-bad-function", type, entry));
+                break;
+            case RANGE:
+                int lt = entry.indexOf('<');
+                if (lt == -1 && i < slices.length - 1)
+                    throw new UserException(_loc.get("shard-bad-function", type, entry));
+                _slices[i] = (lt == -1 ? entry : entry.substring(0, lt)).trim();
+                _bounds[i] = lt == -1 ? null : entry.substring(lt + 1).trim();
+                break;
+            case LIST:
+                int eq = entry.indexOf('=');
+                _slices[i] = (eq == -1 ? entry : entry.substring(0, eq)).trim();
+                if (eq == -1) {
+                    if (_default != null)
+                        throw new UserException(_loc.get("shard-bad-function", type, entry));
+                    _default = _slices[i];
+                } else {
+                    for (String value : entry.substring(eq + 1).trim().split("\\s+"))
+                        _values.put(value, _slices[i]);
+                }
+                break;
+            }
+            if (_slices[i].length() == 0)
+                throw new UserException(_loc.get("shard-bad-function", type, entry));
+        }
+        if ((type == Type.RANGE || type == Type.LIST) && slices.length == 0)
+            throw new UserException(_loc.get("shard-bad-function", type, ""));
+    }
+
+    /**
+     * Parses a function of the form <code>type(entry|entry...)</code>, or of
+     * the form <code>type</code> if no slice is named.
+     */
+    public static ShardFunction parse(String function) {
+        String s = function.trim();
+        int open = s.indexOf('(');
+        if (open != -1 && !s.endsWith(")"))
+            throw new UserException(_loc.get("shard-bad-function", s, s));
+        String name = open == -1 ? s : s.substring(0, open).trim();
+        Type type;
+        try {
+            type = Type.valueOf(name.toUpperCase(Locale.ENGLISH));
+        } catch (IllegalArgumentException e) {
+            throw new UserException(_loc.get("shard-unknown-function", s,
+                Arrays.toString(Type.values())));
+        }
+        String body = open == -1 ? "" : s.substring(open + 1, s.length() - 1).trim();
+        return new ShardFunction(type, body.length() == 0 ? new String[0] : body.split("\\|"));
+    }
+
+    public Type getType() {
+        return _type;
+    }
+
+    /**
+     * Gets the slice that stores the instances with the given value of the key.
+     *
+     * @param key a non-null value of the key
+     * @param slices the active slices
+     *
+     * @return the name of the slice, or null if the function maps the value
+     * to no slice.
+     */
+    public String getSlice(Object key, List<String> slices) {
+        switch (_type) {
+        case HASH:
+            String[] targets = getTargets(slices);
+            if (targets.length == 0)
+                return null;
+            return targets[(int) Math.floorMod(hash(toHashString(key)), (long) targets.length)];
+        case CONSISTENT:
+            TreeMap<Long, String> ring = getRing(slices);
+            if (ring.isEmpty())
+                return null;
+            Map.Entry<Long, String> point = ring.ceilingEntry(hash(toHashString(key)));
+            return (point == null ? ring.firstEntry() : point).getValue();
+        case RANGE:
+            for (int i = 0; i < _slices.length; i++) {
+                if (_bounds[i] == null || compare(key, _bounds[i]) < 0)
+                    return _slices[i];
+            }
+            return null;
+        case LIST:
+            String slice = _values.get(key.toString());
+            return slice == null ? _default : slice;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Creates a function of the same type that also maps values to the given
+     * slice. Only hash and consistent functions can be extended.
+     *
+     * @param slice the name of the new slice
+     * @param slices the active slices, which may include the new slice
+     */
+    public ShardFunction withSlice(String slice, List<String> slices) {
+        if (_type != Type.HASH && _type != Type.CONSISTENT)
+            throw new UserException(_loc.get("shard-not-extensible", this, slice));
+        List<String> entries = new ArrayList<>();
+        if (_entries.length > 0) {
+            entries.addAll(Arrays.asList(_entries));
+        } else if (_actives != null) {
+            entries.addAll(Arrays.asList(_actives));
+        } else {
+            entries.addAll(slices);
+            entries.remove(slice);
+        }
+        if (entries.contains(slice) || Arrays.asList(_slices).contains(slice))
+            throw new UserException(_loc.get("shard-slice-exists", this, slice));
+        entries.add(slice);
+        return new ShardFunction(_type, entries.toArray(new String[entries.size()]));
+    }
+
+    /**
+     * Gets the named slices, or else the active slices when first used.
+     */
+    private String[] getTargets(List<String> slices) {
+        if (_slices.length > 0)
+            return _slices;
+        if (_actives == null)
+            _actives = slices.toArray(new String[slices.size()]);
+        return _actives;
+    }
+
+    private TreeMap<Long, String> getRing(List<String> slices) {
+        TreeMap<Long, String> ring = _ring;
+        if (ring == null) {
+            ring = new TreeMap<>();
+            String[] targets = getTargets(slices);
+            for (int i = 0; i < targets.length; i++) {
+                int points = _slices.length > 0 ? _points[i] : VIRTUAL_NODES;
+                for (int j = 0; j < points; j++)
+                    ring.put(hash(targets[i] + "#" + j), targets[i]);
+            }
+            _ring = ring;
+        }
+        return ring;
+    }
+
+    /**
+     * Gets the string of the given key that is hashed. It is defined by the
+     * value of the key alone, unlike the hash code of some types such as
+     * enums, so that a key maps to the same slice in every JVM.
+     */
+    private static String toHashString(Object key) {
+        return key instanceof Enum ? ((Enum<?>) key).name() : key.toString();
+    }
+
+    /**
+     * Hashes the given string evenly and alike in every JVM.
+     */
+    private static long hash(String s) {
+        byte[] digest = MD5.get().digest(s.getBytes(StandardCharsets.UTF_8));
+        long h = 0;
+        for (int i = 0; i < 8; i++)
+            h = (h << 8) | (digest[i] & 0xFF);
+        return h;
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static int compare(Object key, String bound) {
+        if (key instanceof Number)
+            return new BigDecimal(key.toString()).compareTo(new BigDecimal(bound));
+        if (key instanceof Comparable)
+            return ((Comparable) key).compareTo(Filters.convert(bound, key.getClass()));
+        throw new UserException(_loc.get("shard-not-comparable", key, key.getClass()));
+    }
+
+    @Override
+    public String toString() {
+        String name = _type.name().toLowerCase(Locale.ENGLISH);
+        if (_entries.length == 0)
+            return name;
+        StringBuilder buf = new StringBuilder(name).append('(');
+        for (int i = 0; i < _entries.length; i++)
+            buf.append(i > 0 ? "|" : "").append(_entries[i]);
+        return buf.append(')').toString();
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the persistent field, or property, whose value decides the slice
+ * an instance is stored in, when the {@link ShardDistributionPolicy} is the
+ * distribution policy. The key of a type applies to its subclasses.
+ * <br>
+ * The same declaration can be made with the <code>openjpa.slice.ShardKeys</code>
+ * property, which takes precedence over the annotation.
+ *
+ * @see ShardFunction
+ *
+ * @since 3.1.1
+ */
+@Target({ FIELD, METHOD })
+@Retention(RUNTIME)
+public @interface ShardKey {
+    /**
+     * The function that maps a value of the key to a slice.
+     */
+    ShardFunction.Type function() default ShardFunction.Type.HASH;
+
+    /**
+     * The slices of the function, as described by {@link ShardFunction}.
+     * Hashing spreads the values over all active slices if none is given.
+     */
+    String[] slices() default {};
+}
@@ -42,6 +42,7 @@ public class Slice implements Comparable<Slice>,Serializable {
     private final String name;
     private transient final OpenJPAConfiguration conf;
     private transient Status status;
+    private transient SliceStatistics stats;
 
     /**
      * Supply the logical name and configuration.
@@ -71,6 +72,17 @@ public class Slice implements Comparable<Slice>,Serializable {
         this.status = status;
     }
 
+    /**
+     * Gets the statistics of the transactions completed on this slice.
+     *
+     * @since 3.1.1
+     */
+    public synchronized SliceStatistics getStatistics() {
+        if (stats == null)
+            stats = new SliceStatistics();
+        return stats;
+    }
+
     public boolean isActive() {
         return status == Status.ACTIVE;
     }
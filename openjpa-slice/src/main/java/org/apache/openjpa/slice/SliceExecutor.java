@@ -0,0 +1,391 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.openjpa.lib.util.Closeable;
+
+/**
+ * Executes the operations of a persistence unit on its slices. Each
+ * persistence unit has its own executor, configured with the
+ * <code>openjpa.slice.ThreadingPolicy</code> plug-in property.
+ * <br>
+ * The executor runs at most {@link #setMaximumPoolSize MaximumPoolSize}
+ * operations in parallel and queues the others. It can run the operations
+ * on virtual threads where the JDK supports them, and bound the time a
+ * caller waits for a set of operations with a {@link #setTimeout Timeout}.
+ * The time operations wait in the queue and the time they execute are
+ * measured.
+ *
+ * @since 3.1.1
+ */
+public class SliceExecutor extends AbstractExecutorService
+    implements Closeable {
+    private static final ThreadLocal<Boolean> SLICE_THREAD =
+        new ThreadLocal<>();
+
+    private int _corePoolSize = 10;
+    private int _maxPoolSize = 10;
+    private long _keepAlive = 60;
+    private int _queueSize = Integer.MAX_VALUE;
+    private boolean _virtual = false;
+    private long _timeout = 0;
+
+    private volatile ThreadPoolExecutor _pool;
+    private final AtomicLong _tasks = new AtomicLong();
+    private final AtomicLong _waitTime = new AtomicLong();
+    private final AtomicLong _maxWaitTime = new AtomicLong();
+    private final AtomicLong _execTime = new AtomicLong();
+    private final AtomicLong _maxExecTime = new AtomicLong();
+    private final AtomicLong _timeouts = new AtomicLong();
+
+    /**
+     * Affirms if the current thread executes an operation on a slice.
+     */
+    public static boolean isSliceThread() {
+        return Thread.currentThread() instanceof SliceThread
+            || Boolean.TRUE.equals(SLICE_THREAD.get());
+    }
+
+    public int getCorePoolSize() {
+        return _corePoolSize;
+    }
+
+    /**
+     * Sets the number of threads kept even when idle. Defaults to 10.
+     */
+    public void setCorePoolSize(int size) {
+        _corePoolSize = size;
+    }
+
+    public int getMaximumPoolSize() {
+        return _maxPoolSize;
+    }
+
+    /**
+     * Sets the maximum number of operations executed in parallel. Defaults
+     * to 10.
+     */
+    public void setMaximumPoolSize(int size) {
+        _maxPoolSize = size;
+    }
+
+    public long getKeepAliveTime() {
+        return _keepAlive;
+    }
+
+    /**
+     * Sets the seconds an idle thread beyond the core pool size is kept.
+     * Defaults to 60.
+     */
+    public void setKeepAliveTime(long seconds) {
+        _keepAlive = seconds;
+    }
+
+    public int getQueueSize() {
+        return _queueSize;
+    }
+
+    /**
+     * Sets the number of operations that can wait for a thread. An
+     * operation submitted when the queue is full runs on the caller's
+     * thread. Unbounded by default.
+     */
+    public void setQueueSize(int size) {
+        _queueSize = size;
+    }
+
+    public boolean getVirtualThreads() {
+        return _virtual;
+    }
+
+    /**
+     * Sets whether operations run on virtual threads. Ignored on JDKs
+     * without virtual threads.
+     */
+    public void setVirtualThreads(boolean virtual) {
+        _virtual = virtual;
+    }
+
+    public long getTimeout() {
+        return _timeout;
+    }
+
+    /**
+     * Sets the milliseconds a caller waits for the operations it submitted
+     * to all complete, after which they are cancelled. 0, the default,
+     * waits without limit.
+     */
+    public void setTimeout(long millis) {
+        _timeout = millis;
+    }
+
+    /**
+     * Gets the number of operations executed.
+     */
+    public long getTaskCount() {
+        return _tasks.get();
+    }
+
+    /**
+     * Gets the total nanoseconds operations waited in the queue.
+     */
+    public long getTotalWaitTime() {
+        return _waitTime.get();
+    }
+
+    /**
+     * Gets the longest nanoseconds an operation waited in the queue.
+     */
+    public long getMaxWaitTime() {
+        return _maxWaitTime.get();
+    }
+
+    /**
+     * Gets the total nanoseconds spent executing operations.
+     */
+    public long getTotalExecutionTime() {
+        return _execTime.get();
+    }
+
+    /**
+     * Gets the longest nanoseconds spent executing an operation.
+     */
+    public long getMaxExecutionTime() {
+        return _maxExecTime.get();
+    }
+
+    /**
+     * Gets the number of times a caller stopped waiting for its operations
+     * because of the timeout.
+     */
+    public long getTimeoutCount() {
+        return _timeouts.get();
+    }
+
+    /**
+     * Gets the number of operations waiting in the queue.
+     */
+    public int getQueueLength() {
+        ThreadPoolExecutor pool = _pool;
+        return (pool == null) ? 0 : pool.getQueue().size();
+    }
+
+    /**
+     * Gets the number of operations being executed.
+     */
+    public int getActiveCount() {
+        ThreadPoolExecutor pool = _pool;
+        return (pool == null) ? 0 : pool.getActiveCount();
+    }
+
+    /**
+     * Waits for the results of the given operations. If they do not all
+     * complete within the {@link #getTimeout timeout}, the operations are
+     * cancelled, the given action is run to cancel their work in the
+     * database, and a {@link TimeoutException} is thrown.
+     *
+     * @param cancel the action that cancels the work of the operations,
+     * or null
+     */
+    public <T> List<T> getAll(List<Future<T>> futures, Runnable cancel)
+        throws InterruptedException, ExecutionException, TimeoutException {
+        List<T> results = new ArrayList<>(futures.size());
+        long deadline = System.nanoTime()
+            + TimeUnit.MILLISECONDS.toNanos(_timeout);
+        try {
+            for (Future<T> future : futures) {
+                if (_timeout <= 0)
+                    results.add(future.get());
+                else
+                    results.add(future.get(deadline - System.nanoTime(),
+                        TimeUnit.NANOSECONDS));
+            }
+        } catch (TimeoutException e) {
+            _timeouts.incrementAndGet();
+            for (Future<T> future : futures)
+                future.cancel(true);
+            if (cancel != null)
+                cancel.run();
+            throw e;
+        }
+        return results;
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        // an operation started by a slice operation runs inline rather than
+        // wait for a thread its caller may be holding
+        if (isSliceThread()) {
+            command.run();
+            return;
+        }
+        final long submitted = System.nanoTime();
+        getPool().execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                record(_waitTime, _maxWaitTime, start - submitted);
+                Boolean marked = SLICE_THREAD.get();
+                SLICE_THREAD.set(Boolean.TRUE);
+                try {
+                    command.run();
+                } finally {
+                    SLICE_THREAD.set(marked);
+                    _tasks.incrementAndGet();
+                    record(_execTime, _maxExecTime,
+                        System.nanoTime() - start);
+                }
+            }
+        });
+    }
+
+    private static void record(AtomicLong total, AtomicLong max,
+        long nanos) {
+        total.addAndGet(nanos);
+        long cur;
+        do {
+            cur = max.get();
+        } while (nanos > cur && !max.compareAndSet(cur, nanos));
+    }
+
+    /**
+     * Create the underlying pool on first use, once all properties are set.
+     */
+    protected ThreadPoolExecutor getPool() {
+        ThreadPoolExecutor pool = _pool;
+        if (pool == null) {
+            synchronized (this) {
+                if (_pool == null)
+                    _pool = newPool();
+                pool = _pool;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Create the pool of threads.
+     */
+    protected ThreadPoolExecutor newPool() {
+        int max = Math.max(1, _maxPoolSize);
+        int core = Math.max(0, Math.min(_corePoolSize, max));
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(core, max,
+            _keepAlive, TimeUnit.SECONDS,
+            (_queueSize <= 0) ? new SynchronousQueue<Runnable>()
+                : new LinkedBlockingQueue<Runnable>(_queueSize),
+            newThreadFactory(), new ThreadPoolExecutor.CallerRunsPolicy());
+        if (_keepAlive > 0)
+            pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Create the factory of the threads that execute slice operations.
+     */
+    protected ThreadFactory newThreadFactory() {
+        if (_virtual) {
+            try {
+                Object builder = Thread.class.getMethod("ofVirtual")
+                    .invoke(null);
+                Method factory = Class.forName("java.lang.Thread$Builder")
+                    .getMethod("factory");
+                return (ThreadFactory) factory.invoke(builder);
+            } catch (Exception e) {
+                // no virtual threads on this JDK
+            }
+        }
+        return new ThreadFactory() {
+            private final AtomicInteger n = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread parent = Thread.currentThread();
+                Thread t = new SliceThread(parent.getName() + "-slice-"
+                    + n.getAndIncrement(), parent, r);
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+
+    @Override
+    public void shutdown() {
+        ThreadPoolExecutor pool = _pool;
+        if (pool != null)
+            pool.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        ThreadPoolExecutor pool = _pool;
+        return (pool == null) ? new ArrayList<Runnable>()
+            : pool.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        ThreadPoolExecutor pool = _pool;
+        return pool != null && pool.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        ThreadPoolExecutor pool = _pool;
+        return pool != null && pool.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+        throws InterruptedException {
+        ThreadPoolExecutor pool = _pool;
+        return pool == null || pool.awaitTermination(timeout, unit);
+    }
+
+    @Override
+    public void close() {
+        shutdown();
+    }
+
+    /**
+     * An executor that, like a cached thread pool, creates threads as they
+     * are needed without queueing operations.
+     */
+    public static class Cached extends SliceExecutor {
+        public Cached() {
+            setCorePoolSize(0);
+            setMaximumPoolSize(Integer.MAX_VALUE);
+            setQueueSize(0);
+        }
+    }
+}
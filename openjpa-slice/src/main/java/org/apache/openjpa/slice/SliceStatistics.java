@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts and times the operations executed on a slice, such as queries,
+ * flushes and the steps of transaction completion. All times are in
+ * nanoseconds.
+ * <br>
+ * Besides the totals, the statistics keep the number of operations in
+ * progress and, per operation, a moving average of the recent times and
+ * the number of failures since the last success, by which reads can be
+ * balanced across the slices that hold a replica.
+ *
+ * @since 3.1.1
+ */
+public class SliceStatistics implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * An operation on a slice.
+     */
+    public enum Operation {
+        PREPARE,
+        COMMIT,
+        ROLLBACK,
+        QUERY,
+        FIND,
+        FLUSH
+    }
+
+    private static final int COUNT = 0;
+    private static final int FAILURE = 1;
+    private static final int TIME = 2;
+    private static final int MAX = 3;
+    private static final int RECENT = 4;
+    private static final int FAILING = 5;
+    private static final int WIDTH = 6;
+
+    /**
+     * The weight of the latest time in the moving average, as a shift.
+     */
+    private static final int RECENT_SHIFT = 3;
+
+    private final AtomicLongArray _stats =
+        new AtomicLongArray(Operation.values().length * WIDTH);
+    private final AtomicInteger _outstanding = new AtomicInteger();
+
+    /**
+     * Record that an operation started.
+     *
+     * @return the start time, to pass to {@link #end(Operation, long, boolean)}
+     */
+    public long begin() {
+        _outstanding.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Record that the given operation, started at the given time, ended.
+     *
+     * @param failed whether the operation failed
+     */
+    public void end(Operation op, long start, boolean failed) {
+        _outstanding.decrementAndGet();
+        record(op, System.nanoTime() - start, failed);
+    }
+
+    /**
+     * Record that the given operation took the given time.
+     *
+     * @param failed whether the operation failed
+     */
+    public void record(Operation op, long nanos, boolean failed) {
+        int base = op.ordinal() * WIDTH;
+        _stats.incrementAndGet(base + COUNT);
+        if (failed) {
+            _stats.incrementAndGet(base + FAILURE);
+            _stats.incrementAndGet(base + FAILING);
+        } else {
+            _stats.set(base + FAILING, 0);
+        }
+        _stats.addAndGet(base + TIME, nanos);
+        long max;
+        do {
+            max = _stats.get(base + MAX);
+        } while (nanos > max && !_stats.compareAndSet(base + MAX, max, nanos));
+        long recent;
+        long next;
+        do {
+            recent = _stats.get(base + RECENT);
+            next = recent == 0 ? nanos : recent + ((nanos - recent) >> RECENT_SHIFT);
+        } while (!_stats.compareAndSet(base + RECENT, recent, next));
+    }
+
+    /**
+     * Gets the number of operations in progress, as recorded by
+     * {@link #begin()}.
+     */
+    public int getOutstanding() {
+        return _outstanding.get();
+    }
+
+    /**
+     * Gets the moving average of the recent times of the given operation,
+     * or 0 if it was never executed.
+     */
+    public long getRecentTime(Operation op) {
+        return _stats.get(op.ordinal() * WIDTH + RECENT);
+    }
+
+    /**
+     * Gets the number of times the given operation failed since it last
+     * succeeded.
+     */
+    public long getConsecutiveFailureCount(Operation op) {
+        return _stats.get(op.ordinal() * WIDTH + FAILING);
+    }
+
+    /**
+     * Gets the number of times the given operation was executed.
+     */
+    public long getCount(Operation op) {
+        return _stats.get(op.ordinal() * WIDTH + COUNT);
+    }
+
+    /**
+     * Gets the number of times the given operation failed.
+     */
+    public long getFailureCount(Operation op) {
+        return _stats.get(op.ordinal() * WIDTH + FAILURE);
+    }
+
+    /**
+     * Gets the total time spent in the given operation.
+     */
+    public long getTotalTime(Operation op) {
+        return _stats.get(op.ordinal() * WIDTH + TIME);
+    }
+
+    /**
+     * Gets the longest time spent in a single execution of the given
+     * operation.
+     */
+    public long getMaxTime(Operation op) {
+        return _stats.get(op.ordinal() * WIDTH + MAX);
+    }
+
+    /**
+     * Gets the average time spent in the given operation, or 0 if it was
+     * never executed.
+     */
+    public long getAverageTime(Operation op) {
+        long count = getCount(op);
+        return (count == 0) ? 0 : getTotalTime(op) / count;
+    }
+
+    /**
+     * Clear all statistics but the number of operations in progress.
+     */
+    public void reset() {
+        for (int i = 0; i < _stats.length(); i++)
+            _stats.set(i, 0);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder();
+        for (Operation op : Operation.values()) {
+            if (buf.length() > 0)
+                buf.append(", ");
+            buf.append(op).append("=").append(getCount(op)).append("/")
+                .append(getFailureCount(op)).append(" avg=")
+                .append(getAverageTime(op) / 1000).append("us max=")
+                .append(getMaxTime(op) / 1000).append("us");
+        }
+        return buf.toString();
+    }
+}
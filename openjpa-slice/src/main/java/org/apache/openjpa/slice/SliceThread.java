@@ -54,7 +54,11 @@ public class SliceThread extends Thread {
      * Create a cached pool of <em>slice</em> threads.
      * The thread factory creates specialized threads for preferential locking treatment.
      *
+     * @deprecated each persistence unit executes its slice operations with
+     * its own {@link DistributedConfiguration#getThreadingPolicyInstance()
+     * executor}.
      */
+    @Deprecated
 
     public static ExecutorService getPool() {
         if (_pool == null) {
@@ -36,4 +36,28 @@ public interface DistributedJDBCConfiguration extends JDBCConfiguration,
      */
     Slice getMasterSlice();
 
+    /**
+     * Gets the file that logs transactions committed across slices without
+     * a JTA transaction manager, or null if they are not logged.
+     *
+     * @since 3.1.1
+     */
+    String getRecoveryLog();
+
+    /**
+     * Sets the file that logs transactions committed across slices without
+     * a JTA transaction manager.
+     *
+     * @since 3.1.1
+     */
+    void setRecoveryLog(String file);
+
+    /**
+     * Gets the log of transactions committed across slices without a JTA
+     * transaction manager, or null if none is configured.
+     *
+     * @since 3.1.1
+     */
+    SliceRecoveryLog getRecoveryLogInstance();
+
 }
@@ -18,6 +18,8 @@
  */
 package org.apache.openjpa.slice.jdbc;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.security.AccessController;
 import java.sql.Connection;
@@ -51,13 +53,17 @@ import org.apache.openjpa.lib.util.J2DoPrivHelper;
 import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.meta.ClassMetaData;
 import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.slice.BalancedReadPolicy;
 import org.apache.openjpa.slice.DistributedBrokerImpl;
 import org.apache.openjpa.slice.DistributionPolicy;
 import org.apache.openjpa.slice.FinderTargetPolicy;
 import org.apache.openjpa.slice.ProductDerivation;
 import org.apache.openjpa.slice.QueryTargetPolicy;
+import org.apache.openjpa.slice.ReplicaReadPolicy;
 import org.apache.openjpa.slice.ReplicationPolicy;
+import org.apache.openjpa.slice.ShardDistributionPolicy;
 import org.apache.openjpa.slice.Slice;
+import org.apache.openjpa.slice.SliceExecutor;
 import org.apache.openjpa.util.UserException;
 
 /**
@@ -79,13 +85,18 @@ public class DistributedJDBCConfigurationImpl extends JDBCConfigurationImpl
     protected BooleanValue lenientPlugin;
     protected StringValue masterPlugin;
     protected StringListValue namesPlugin;
+    protected StringValue recoveryLogPlugin;
     public PluginValue distributionPolicyPlugin;
     public PluginValue replicationPolicyPlugin;
+    public PluginValue replicaReadPolicyPlugin;
     public PluginValue queryTargetPolicyPlugin;
     public PluginValue finderTargetPolicyPlugin;
+    public PluginValue threadingPolicyPlugin;
     public StringListValue replicatedTypesPlugin;
+    public StringValue shardKeysPlugin;
 
     private ReplicatedTypeRepository _replicationRepos;
+    private SliceRecoveryLog _recoveryLog;
 
     public static final String DOT = ".";
     public static final String REGEX_DOT = "\\.";
@@ -103,6 +114,7 @@ public class DistributedJDBCConfigurationImpl extends JDBCConfigurationImpl
 
         distributionPolicyPlugin = addPlugin(PREFIX_SLICE + "DistributionPolicy", true);
         distributionPolicyPlugin.setAlias("random", DistributionPolicy.Default.class.getName());
+        distributionPolicyPlugin.setAlias("shard", ShardDistributionPolicy.class.getName());
         distributionPolicyPlugin.setDefault("random");
         distributionPolicyPlugin.setString("random");
         distributionPolicyPlugin.setDynamic(true);
@@ -113,20 +125,39 @@ public class DistributedJDBCConfigurationImpl extends JDBCConfigurationImpl
         replicationPolicyPlugin.setString("all");
         replicationPolicyPlugin.setDynamic(true);
 
+        replicaReadPolicyPlugin = addPlugin(PREFIX_SLICE + "ReplicaReadPolicy", true);
+        replicaReadPolicyPlugin.setAlias("first", ReplicaReadPolicy.Default.class.getName());
+        replicaReadPolicyPlugin.setAlias("round-robin", BalancedReadPolicy.RoundRobin.class.getName());
+        replicaReadPolicyPlugin.setAlias("least-outstanding",
+            BalancedReadPolicy.LeastOutstanding.class.getName());
+        replicaReadPolicyPlugin.setAlias("latency", BalancedReadPolicy.LatencyWeighted.class.getName());
+        replicaReadPolicyPlugin.setDefault("first");
+        replicaReadPolicyPlugin.setString("first");
+        replicaReadPolicyPlugin.setDynamic(true);
+
         queryTargetPolicyPlugin = addPlugin(PREFIX_SLICE + "QueryTargetPolicy", true);
         queryTargetPolicyPlugin.setDynamic(true);
 
         finderTargetPolicyPlugin = addPlugin(PREFIX_SLICE + "FinderTargetPolicy", true);
         finderTargetPolicyPlugin.setDynamic(true);
 
+        threadingPolicyPlugin = addPlugin(PREFIX_SLICE + "ThreadingPolicy", true);
+        threadingPolicyPlugin.setAlias("fixed", SliceExecutor.class.getName());
+        threadingPolicyPlugin.setAlias("cached", SliceExecutor.Cached.class.getName());
+        threadingPolicyPlugin.setDefault("fixed");
+        threadingPolicyPlugin.setString("fixed");
+
         replicatedTypesPlugin = new StringListValue(PREFIX_SLICE + "ReplicatedTypes");
         addValue(replicatedTypesPlugin);
 
+        shardKeysPlugin = addString(PREFIX_SLICE + "ShardKeys");
+
         lenientPlugin = addBoolean(PREFIX_SLICE + "Lenient");
         lenientPlugin.setDefault("true");
 
         masterPlugin  = addString(PREFIX_SLICE + "Master");
         namesPlugin   = addStringList(PREFIX_SLICE + "Names");
+        recoveryLogPlugin = addString(PREFIX_SLICE + "RecoveryLog");
     }
 
     /**
@@ -242,6 +273,16 @@ public class DistributedJDBCConfigurationImpl extends JDBCConfigurationImpl
         distributionPolicyPlugin.setString(policy);
     }
 
+    @Override
+    public String getShardKeys() {
+        return shardKeysPlugin.get();
+    }
+
+    @Override
+    public void setShardKeys(String keys) {
+        shardKeysPlugin.set(keys);
+    }
+
     @Override
     public ReplicationPolicy getReplicationPolicyInstance() {
         if (replicationPolicyPlugin.get() == null) {
@@ -270,6 +311,29 @@ public class DistributedJDBCConfigurationImpl extends JDBCConfigurationImpl
         replicationPolicyPlugin.setString(policy);
     }
 
+    @Override
+    public ReplicaReadPolicy getReplicaReadPolicyInstance() {
+        if (replicaReadPolicyPlugin.get() == null) {
+            replicaReadPolicyPlugin.instantiate(ReplicaReadPolicy.class, this, true);
+        }
+        return (ReplicaReadPolicy) replicaReadPolicyPlugin.get();
+    }
+
+    @Override
+    public String getReplicaReadPolicy() {
+        return replicaReadPolicyPlugin.getString();
+    }
+
+    @Override
+    public void setReplicaReadPolicyInstance(ReplicaReadPolicy policy) {
+        replicaReadPolicyPlugin.set(policy);
+    }
+
+    @Override
+    public void setReplicaReadPolicy(String policy) {
+        replicaReadPolicyPlugin.setString(policy);
+    }
+
     @Override
     public QueryTargetPolicy getQueryTargetPolicyInstance() {
         if (queryTargetPolicyPlugin.get() == null) {
@@ -326,6 +390,24 @@ public class DistributedJDBCConfigurationImpl extends JDBCConfigurationImpl
         finderTargetPolicyPlugin.setString(policy);
     }
 
+    @Override
+    public SliceExecutor getThreadingPolicyInstance() {
+        if (threadingPolicyPlugin.get() == null) {
+            threadingPolicyPlugin.instantiate(SliceExecutor.class, this, true);
+        }
+        return (SliceExecutor) threadingPolicyPlugin.get();
+    }
+
+    @Override
+    public String getThreadingPolicy() {
+        return threadingPolicyPlugin.getString();
+    }
+
+    @Override
+    public void setThreadingPolicy(String policy) {
+        threadingPolicyPlugin.setString(policy);
+    }
+
     @Override
     public DistributedDataSource getConnectionFactory() {
         if (virtualDataSource == null) {
@@ -344,6 +426,34 @@ public class DistributedJDBCConfigurationImpl extends JDBCConfigurationImpl
         lenientPlugin.set(lenient);
     }
 
+    @Override
+    public String getRecoveryLog() {
+        return recoveryLogPlugin.get();
+    }
+
+    @Override
+    public void setRecoveryLog(String file) {
+        recoveryLogPlugin.set(file);
+    }
+
+    @Override
+    public synchronized SliceRecoveryLog getRecoveryLogInstance() {
+        String file = getRecoveryLog();
+        if (_recoveryLog == null && file != null && file.length() > 0) {
+            try {
+                _recoveryLog = new SliceRecoveryLog(new File(file));
+                Map<String, List<String>> inDoubt = _recoveryLog.getInDoubt();
+                if (!inDoubt.isEmpty())
+                    getConfigurationLog().warn(_loc.get("recovery-in-doubt",
+                        file, inDoubt));
+            } catch (IOException e) {
+                throw new UserException(_loc.get("recovery-log-error", file),
+                    e);
+            }
+        }
+        return _recoveryLog;
+    }
+
     public void setMaster(String master) {
         masterPlugin.set(master);
     }
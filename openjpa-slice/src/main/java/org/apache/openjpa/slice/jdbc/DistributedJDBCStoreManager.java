@@ -18,27 +18,37 @@
  */
 package org.apache.openjpa.slice.jdbc;
 
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 
+import org.apache.openjpa.conf.OpenJPAConfiguration;
 import org.apache.openjpa.enhance.PersistenceCapable;
 import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
 import org.apache.openjpa.jdbc.kernel.ConnectionInfo;
+import org.apache.openjpa.jdbc.kernel.JDBCFetchConfiguration;
 import org.apache.openjpa.jdbc.kernel.JDBCStore;
 import org.apache.openjpa.jdbc.kernel.JDBCStoreManager;
+import org.apache.openjpa.jdbc.meta.ClassMapping;
 import org.apache.openjpa.jdbc.sql.Result;
 import org.apache.openjpa.jdbc.sql.ResultSetResult;
+import org.apache.openjpa.jdbc.sql.SQLExceptions;
 import org.apache.openjpa.kernel.FetchConfiguration;
 import org.apache.openjpa.kernel.OpenJPAStateManager;
 import org.apache.openjpa.kernel.PCState;
@@ -55,13 +65,19 @@ import org.apache.openjpa.meta.ClassMetaData;
 import org.apache.openjpa.meta.FieldMetaData;
 import org.apache.openjpa.slice.DistributedConfiguration;
 import org.apache.openjpa.slice.DistributedStoreManager;
+import org.apache.openjpa.slice.DistributionPolicy;
+import org.apache.openjpa.slice.FinderTargetPolicy;
+import org.apache.openjpa.slice.ShardDistributionPolicy;
 import org.apache.openjpa.slice.Slice;
 import org.apache.openjpa.slice.SliceImplHelper;
 import org.apache.openjpa.slice.SliceInfo;
+import org.apache.openjpa.slice.SliceStatistics;
 import org.apache.openjpa.slice.SlicePersistence;
-import org.apache.openjpa.slice.SliceThread;
+import org.apache.openjpa.slice.SliceExecutor;
 import org.apache.openjpa.util.InternalException;
+import org.apache.openjpa.util.OpenJPAId;
 import org.apache.openjpa.util.StoreException;
+import org.apache.openjpa.util.UserException;
 
 /**
  * A Store manager for multiple physical databases referred as <em>slice</em>.
@@ -78,6 +94,7 @@ class DistributedJDBCStoreManager extends JDBCStoreManager
     private final List<SliceStoreManager> _slices;
     private JDBCStoreManager _master;
     private final DistributedJDBCConfiguration _conf;
+    private volatile String _replica;
     private static final Localizer _loc = Localizer.forPackage(DistributedJDBCStoreManager.class);
 
     /**
@@ -208,8 +225,21 @@ class DistributedJDBCStoreManager extends JDBCStoreManager
         _master.beforeStateChange(sm, fromState, toState);
     }
 
+    /**
+     * Begins the transaction on all slices, so that each can be completed
+     * on its own.
+     */
+    @Override
+    public void begin() {
+        super.begin();
+        _replica = null;
+        for (SliceStoreManager slice : _slices)
+            slice.begin();
+    }
+
     @Override
     public void beginOptimistic() {
+        _replica = null;
         for (SliceStoreManager slice : _slices)
             slice.beginOptimistic();
     }
@@ -247,7 +277,7 @@ class DistributedJDBCStoreManager extends JDBCStoreManager
     @Override
     public boolean exists(OpenJPAStateManager sm, Object edata) {
     	String origin = null;
-        for (SliceStoreManager slice : _slices) {
+        for (SliceStoreManager slice : getTargetsById(null, sm.getMetaData(), sm.getObjectId())) {
             if (slice.exists(sm, edata)) {
             	origin = slice.getName();
             	break;
@@ -270,7 +300,7 @@ class DistributedJDBCStoreManager extends JDBCStoreManager
         Map<String, StateManagerSet> subsets = bin(sms, null);
         Collection<StateManagerSet> remaining =
             new ArrayList<>(subsets.values());
-        ExecutorService threadPool = SliceThread.getPool();
+        SliceExecutor threadPool = _conf.getThreadingPolicyInstance();
         for (int i = 0; i < _slices.size(); i++) {
             SliceStoreManager slice = _slices.get(i);
             StateManagerSet subset = subsets.get(slice.getName());
@@ -286,14 +316,21 @@ class DistributedJDBCStoreManager extends JDBCStoreManager
             	futures.add(threadPool.submit(new Flusher(slice, subset)));
             }
         }
-        for (Future<Collection> future : futures) {
-            try {
-            	collectException(future.get(), exceptions);
-            } catch (InterruptedException e) {
-                throw new StoreException(e);
-            } catch (ExecutionException e) {
-                throw new StoreException(e.getCause());
-            }
+        try {
+            for (Collection error : threadPool.getAll(futures, new Runnable() {
+                @Override
+                public void run() {
+                    cancelAll();
+                }
+            }))
+                collectException(error, exceptions);
+        } catch (InterruptedException e) {
+            throw new StoreException(e);
+        } catch (ExecutionException e) {
+            throw new StoreException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new StoreException(_loc.get("flush-timeout",
+                threadPool.getTimeout()), e);
         }
 
 	    return exceptions;
@@ -305,18 +342,128 @@ class DistributedJDBCStoreManager extends JDBCStoreManager
         }
     }
 
+    /**
+     * Commits all slices in parallel. Unless the transaction is managed, the
+     * slices first verify in parallel that they can commit, and the whole
+     * transaction is rolled back if any can not. Then the slices commit,
+     * logged to the {@link SliceRecoveryLog recovery log} if one is
+     * configured, so that a transaction committed on some slices but not on
+     * others can be reconciled later.
+     */
     @Override
     public void commit() {
-    	for (SliceStoreManager slice : _slices) {
-    		slice.commit();
-    	}
+        boolean managed = getContext().isManaged()
+            && _conf.isConnectionFactoryModeManaged();
+        if (!managed && _slices.size() > 1) {
+            Map<SliceStoreManager, Throwable> failed = complete(
+                SliceStatistics.Operation.PREPARE, null, null);
+            if (!failed.isEmpty()) {
+                rollback();
+                throw new StoreException(_loc.get("prepare-failed",
+                    names(failed.keySet()))).setNestedThrowables(
+                    failed.values().toArray(new Throwable[failed.size()]));
+            }
+        }
+
+        SliceRecoveryLog log = (managed || _slices.size() < 2) ? null
+            : _conf.getRecoveryLogInstance();
+        String txId = null;
+        if (log != null) {
+            txId = UUID.randomUUID().toString();
+            try {
+                log.prepared(txId, names(_slices));
+            } catch (IOException e) {
+                rollback();
+                throw new StoreException(_loc.get("recovery-log-error",
+                    log.getFile()), e);
+            }
+        }
+
+        Map<SliceStoreManager, Throwable> failed = complete(
+            SliceStatistics.Operation.COMMIT, log, txId);
+        if (failed.isEmpty() || failed.size() == _slices.size()) {
+            if (log != null) {
+                try {
+                    log.completed(txId);
+                } catch (IOException e) {
+                    getConfiguration().getLog(OpenJPAConfiguration.LOG_RUNTIME)
+                        .warn(_loc.get("recovery-log-error", log.getFile()), e);
+                }
+            }
+            if (failed.isEmpty())
+                return;
+            throw new StoreException(_loc.get("commit-failed")).
+                setNestedThrowables(failed.values().toArray(
+                    new Throwable[failed.size()]));
+        }
+
+        // some slices committed while others did not
+        List<SliceStoreManager> committed = new ArrayList<>(_slices);
+        committed.removeAll(failed.keySet());
+        if (log != null)
+            log.abandoned(txId);
+        throw new StoreException(_loc.get("commit-in-doubt", txId,
+            names(committed), names(failed.keySet()))).setFatal(true).
+            setNestedThrowables(failed.values().toArray(
+                new Throwable[failed.size()]));
     }
 
+    /**
+     * Rolls back all slices in parallel.
+     */
     @Override
     public void rollback() {
-    	for (SliceStoreManager slice : _slices) {
-    		slice.rollback();
-    	}
+        Map<SliceStoreManager, Throwable> failed = complete(
+            SliceStatistics.Operation.ROLLBACK, null, null);
+        if (failed.isEmpty())
+            return;
+        Throwable t = failed.values().iterator().next();
+        if (failed.size() == 1 && t instanceof RuntimeException)
+            throw (RuntimeException) t;
+        throw new StoreException(_loc.get("rollback-failed",
+            names(failed.keySet()))).setNestedThrowables(
+            failed.values().toArray(new Throwable[failed.size()]));
+    }
+
+    /**
+     * Executes the given transaction completion step on all slices in
+     * parallel, and returns the slices on which it failed with their errors.
+     */
+    private Map<SliceStoreManager, Throwable> complete(
+        SliceStatistics.Operation op, SliceRecoveryLog log, String txId) {
+        Map<SliceStoreManager, Throwable> failed = new LinkedHashMap<>();
+        if (_slices.size() == 1) {
+            Throwable t = new Completer(_slices.get(0), op, log, txId).call();
+            if (t != null)
+                failed.put(_slices.get(0), t);
+            return failed;
+        }
+
+        // a commit is not abandoned midway, so it waits without timeout
+        ExecutorService threadPool = _conf.getThreadingPolicyInstance();
+        List<Future<Throwable>> futures = new ArrayList<>();
+        for (SliceStoreManager slice : _slices)
+            futures.add(threadPool.submit(new Completer(slice, op, log, txId)));
+        for (int i = 0; i < futures.size(); i++) {
+            Throwable t;
+            try {
+                t = futures.get(i).get();
+            } catch (InterruptedException e) {
+                t = e;
+            } catch (ExecutionException e) {
+                t = e.getCause();
+            }
+            if (t != null)
+                failed.put(_slices.get(i), t);
+        }
+        return failed;
+    }
+
+    private static List<String> names(Collection<SliceStoreManager> slices) {
+        List<String> names = new ArrayList<>();
+        for (SliceStoreManager slice : slices)
+            names.add(slice.getName());
+        return names;
     }
 
     /**
@@ -412,9 +559,37 @@ class DistributedJDBCStoreManager extends JDBCStoreManager
             }
         }
         // not a part of Query result load. Look into the slices till found
-        List<SliceStoreManager> targets = getTargets(fetch);
+        return find(sm, state, fetch, edata,
+            getTargetsById(fetch, sm.getMetaData(), sm.getObjectId()));
+    }
+
+    /**
+     * Initializes the given instance from the first of the given slices
+     * that stores it, looking first into the selected replica if the
+     * instance is replicated.
+     */
+    private boolean find(OpenJPAStateManager sm, PCState state,
+            FetchConfiguration fetch, Object edata, List<SliceStoreManager> targets) {
+        Class<?> type = sm.getMetaData().getDescribedType();
+        if (targets.size() > 1 && _conf.isReplicated(type)) {
+            // look first into the selected replica
+            SliceStoreManager replica = selectReplica(type, targets);
+            targets = new ArrayList<>(targets);
+            targets.remove(replica);
+            targets.add(0, replica);
+        }
         for (SliceStoreManager slice : targets) {
-            if (slice.initialize(sm, state, fetch, edata)) {
+            SliceStatistics stats = slice.getSlice().getStatistics();
+            long start = stats.begin();
+            boolean found = false;
+            boolean failed = true;
+            try {
+                found = slice.initialize(sm, state, fetch, edata);
+                failed = false;
+            } finally {
+                stats.end(SliceStatistics.Operation.FIND, start, failed);
+            }
+            if (found) {
                 assignSlice(sm, slice.getName());
                 return true;
             }
@@ -425,25 +600,220 @@ class DistributedJDBCStoreManager extends JDBCStoreManager
     @Override
     public boolean load(OpenJPAStateManager sm, BitSet fields,
             FetchConfiguration fetch, int lockLevel, Object edata) {
+        Class<?> type = sm.getMetaData().getDescribedType();
+        if (_conf.isReplicated(type) && !(edata instanceof ConnectionInfo)) {
+            // a replicated instance can be read from any of its replicas
+            String[] targets = findSliceNames(sm, edata).getSlices();
+            if (targets.length > 1)
+                return selectReplica(type, getTargets(targets)).load(sm, fields, fetch, lockLevel, edata);
+        }
         return selectStore(sm, edata).load(sm, fields, fetch, lockLevel, edata);
     }
 
+    /**
+     * Loads the given instances from the slices that store them. The
+     * instances not yet known to any slice are found by one statement per
+     * slice and type, executed on their target slices in parallel, and
+     * remember the slice they are found in. The other instances are loaded
+     * from the slice they are known to reside in.
+     */
     @Override
     public Collection loadAll(Collection sms, PCState state, int load,
             FetchConfiguration fetch, Object edata) {
-        Map<String, StateManagerSet> subsets = bin(sms, edata);
         Collection result = new ArrayList();
-        for (SliceStoreManager slice : _slices) {
-            StateManagerSet subset = subsets.get(slice.getName());
-            if (subset.isEmpty())
+        List<OpenJPAStateManager> known = new ArrayList<>();
+        List<OpenJPAStateManager> unknown = new ArrayList<>();
+        Map<SliceStoreManager, Map<ClassMapping, List<OpenJPAStateManager>>> finds =
+            new LinkedHashMap<>();
+        for (Object x : sms) {
+            OpenJPAStateManager sm = (OpenJPAStateManager) x;
+            if (sm.getManagedInstance() != null || edata instanceof ConnectionInfo
+                || SliceImplHelper.isSliceAssigned(sm)) {
+                known.add(sm);
                 continue;
-            Collection tmp = slice.loadAll(subset, state, load, fetch, edata);
-            if (tmp != null && !tmp.isEmpty())
-                result.addAll(tmp);
+            }
+            ClassMapping[] mappings = ((ClassMapping) sm.getMetaData())
+                .getIndependentAssignableMappings();
+            if (mappings.length != 1 || !JDBCStoreManager.canSelectAll(mappings[0])) {
+                unknown.add(sm);
+                continue;
+            }
+            List<SliceStoreManager> targets = getFindTargets(sm, fetch);
+            Class<?> type = sm.getMetaData().getDescribedType();
+            if (targets.size() > 1 && _conf.isReplicated(type))
+                targets = Collections.singletonList(selectReplica(type, targets));
+            for (SliceStoreManager slice : targets) {
+                Map<ClassMapping, List<OpenJPAStateManager>> groups = finds.get(slice);
+                if (groups == null) {
+                    groups = new LinkedHashMap<>();
+                    finds.put(slice, groups);
+                }
+                List<OpenJPAStateManager> group = groups.get(mappings[0]);
+                if (group == null) {
+                    group = new ArrayList<>();
+                    groups.put(mappings[0], group);
+                }
+                group.add(sm);
+            }
         }
+
+        if (!known.isEmpty()) {
+            Map<String, StateManagerSet> subsets = bin(known, edata);
+            for (SliceStoreManager slice : _slices) {
+                StateManagerSet subset = subsets.get(slice.getName());
+                if (subset.isEmpty())
+                    continue;
+                Collection tmp = slice.loadAll(subset, state, load, fetch, edata);
+                if (tmp != null && !tmp.isEmpty())
+                    result.addAll(tmp);
+            }
+        }
+        for (OpenJPAStateManager sm : unknown)
+            if (!find(sm, state, fetch, edata, getFindTargets(sm, fetch)))
+                result.add(sm.getId());
+        if (!finds.isEmpty())
+            result.addAll(findAll(finds, state, fetch));
         return result;
     }
 
+    /**
+     * Finds the given instances of each slice with a statement per type,
+     * executed on all the slices in parallel. The results are read in the
+     * calling thread, and an instance found in more than one slice is
+     * initialized from the first.
+     *
+     * @return the identities of the instances not found in any slice
+     */
+    private Collection findAll(Map<SliceStoreManager, Map<ClassMapping, List<OpenJPAStateManager>>> finds,
+            PCState state, FetchConfiguration fetch) {
+        Map<ClassMapping, Map<Object, OpenJPAStateManager>> pending = new HashMap<>();
+        List<Future<Map<ClassMapping, List<Result>>>> futures = new ArrayList<>();
+        SliceExecutor threadPool = _conf.getThreadingPolicyInstance();
+        for (Map.Entry<SliceStoreManager, Map<ClassMapping, List<OpenJPAStateManager>>> e
+            : finds.entrySet()) {
+            Map<ClassMapping, List<Object>> oids = new LinkedHashMap<>();
+            for (Map.Entry<ClassMapping, List<OpenJPAStateManager>> group : e.getValue().entrySet()) {
+                Map<Object, OpenJPAStateManager> smsById = pending.get(group.getKey());
+                if (smsById == null) {
+                    smsById = new HashMap<>();
+                    pending.put(group.getKey(), smsById);
+                }
+                List<Object> ids = new ArrayList<>(group.getValue().size());
+                for (OpenJPAStateManager sm : group.getValue()) {
+                    smsById.put(toIdValue(sm.getObjectId()), sm);
+                    ids.add(sm.getObjectId());
+                }
+                oids.put(group.getKey(), ids);
+            }
+            futures.add(threadPool.submit(new Finder(e.getKey(), oids,
+                (JDBCFetchConfiguration) fetch)));
+        }
+
+        List<Map<ClassMapping, List<Result>>> results;
+        try {
+            results = threadPool.getAll(futures, new Runnable() {
+                @Override
+                public void run() {
+                    cancelAll();
+                }
+            });
+        } catch (InterruptedException e) {
+            close(futures);
+            throw new StoreException(e);
+        } catch (ExecutionException e) {
+            close(futures);
+            throw new StoreException(e.getCause());
+        } catch (TimeoutException e) {
+            close(futures);
+            throw new StoreException(_loc.get("find-timeout",
+                threadPool.getTimeout()), e);
+        }
+
+        // the types a slice could not select at once are found one by one
+        Set<ClassMapping> unselected = new HashSet<>();
+        int i = 0;
+        try {
+            for (SliceStoreManager slice : finds.keySet()) {
+                for (Map.Entry<ClassMapping, List<Result>> e : results.get(i++).entrySet()) {
+                    if (e.getValue() == null) {
+                        unselected.add(e.getKey());
+                        continue;
+                    }
+                    Map<Object, OpenJPAStateManager> smsById = pending.get(e.getKey());
+                    for (Result res : e.getValue()) {
+                        while (res.next()) {
+                            Object oid = e.getKey().getObjectId(slice, res, null, true, null);
+                            OpenJPAStateManager sm = smsById.remove(toIdValue(oid));
+                            if (sm == null)
+                                continue;
+                            ConnectionInfo info = new ConnectionInfo();
+                            info.result = res;
+                            info.mapping = e.getKey();
+                            if (slice.initialize(sm, state, fetch, info))
+                                assignSlice(sm, slice.getName());
+                        }
+                    }
+                }
+            }
+        } catch (SQLException se) {
+            throw new StoreException(se);
+        } finally {
+            for (Map<ClassMapping, List<Result>> result : results)
+                close(result);
+        }
+
+        Collection failed = new ArrayList();
+        for (Map.Entry<ClassMapping, Map<Object, OpenJPAStateManager>> e : pending.entrySet()) {
+            for (OpenJPAStateManager sm : e.getValue().values()) {
+                if (!unselected.contains(e.getKey())
+                    || !find(sm, state, fetch, null, getFindTargets(sm, fetch)))
+                    failed.add(sm.getId());
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Gets the slices that may store the given instance to be found. The
+     * finder target policy, if any, applies to each instance on its own.
+     */
+    private List<SliceStoreManager> getFindTargets(OpenJPAStateManager sm, FetchConfiguration fetch) {
+        Object oid = sm.getObjectId();
+        FinderTargetPolicy policy = _conf.getFinderTargetPolicyInstance();
+        if (policy != null && oid instanceof OpenJPAId
+            && fetch instanceof TargetFetchConfiguration
+            && !((TargetFetchConfiguration) fetch).isExplicitTarget()) {
+            String[] targets = policy.getTargets(((OpenJPAId) oid).getType(),
+                ((OpenJPAId) oid).getIdObject(), _conf.getActiveSliceNames(), getContext());
+            if (targets != null)
+                return getTargets(targets);
+            fetch = null;
+        }
+        return getTargetsById(fetch, sm.getMetaData(), oid);
+    }
+
+    private static Object toIdValue(Object oid) {
+        return oid instanceof OpenJPAId ? ((OpenJPAId) oid).getIdObject() : oid;
+    }
+
+    private static void close(List<Future<Map<ClassMapping, List<Result>>>> futures) {
+        for (Future<Map<ClassMapping, List<Result>>> future : futures) {
+            if (!future.isDone() || future.isCancelled())
+                continue;
+            try {
+                close(future.get());
+            } catch (Exception e) {
+            }
+        }
+    }
+
+    private static void close(Map<ClassMapping, List<Result>> results) {
+        for (List<Result> list : results.values())
+            if (list != null)
+                for (Result res : list)
+                    res.close();
+    }
+
     @Override
     public Object newDataStoreId(Object oidVal, ClassMetaData meta) {
         return _master.newDataStoreId(oidVal, meta);
@@ -491,7 +861,7 @@ class DistributedJDBCStoreManager extends JDBCStoreManager
         }
     }
 
-    private SliceStoreManager lookup(String name) {
+    SliceStoreManager lookup(String name) {
         for (SliceStoreManager slice : _slices)
             if (slice.getName().equals(name))
                 return slice;
@@ -534,6 +904,84 @@ class DistributedJDBCStoreManager extends JDBCStoreManager
             return _slices;
         String[] targetNames = hint instanceof String
                 ? new String[]{hint.toString()} : (String[])hint;
+        return getTargets(targetNames);
+    }
+
+    /**
+     * Gets the slices that may store the instances of the given type whose
+     * shard key equals one of the given values. The slices mentioned as
+     * hint of the given fetch configuration take precedence.
+     *
+     * @param keys the values of the key, or null if unknown.
+     */
+    List<SliceStoreManager> getTargets(FetchConfiguration fetch, ClassMetaData meta, Collection<?> keys) {
+        ShardDistributionPolicy shards = getShardPolicy();
+        if (shards == null || keys == null || hasTarget(fetch))
+            return getTargets(fetch);
+        return getTargets(shards.getTargets(meta, keys, _conf.getActiveSliceNames()));
+    }
+
+    /**
+     * Gets the slices that may store the instance of the given type and
+     * identity. The slices mentioned as hint of the given fetch configuration
+     * take precedence.
+     */
+    List<SliceStoreManager> getTargetsById(FetchConfiguration fetch, ClassMetaData meta, Object oid) {
+        ShardDistributionPolicy shards = getShardPolicy();
+        if (shards == null || hasTarget(fetch))
+            return getTargets(fetch);
+        return getTargets(shards.getTargetsById(meta, oid, _conf.getActiveSliceNames()));
+    }
+
+    /**
+     * Selects the slice to read the given replicated type from, among the
+     * given slices, by the configured replica read policy. Within a
+     * transaction, the slice selected first is kept while it is among the
+     * given slices, so that the transaction reads its own writes.
+     */
+    SliceStoreManager selectReplica(Class<?> type, List<SliceStoreManager> candidates) {
+        if (candidates.size() == 1)
+            return candidates.get(0);
+        boolean active = getContext() != null && getContext().isActive();
+        String replica = _replica;
+        if (active && replica != null) {
+            for (SliceStoreManager candidate : candidates)
+                if (candidate.getName().equals(replica))
+                    return candidate;
+        }
+        List<Slice> replicas = new ArrayList<>(candidates.size());
+        for (SliceStoreManager candidate : candidates)
+            replicas.add(candidate.getSlice());
+        Slice selected = _conf.getReplicaReadPolicyInstance().select(type, replicas, getContext());
+        int index = replicas.indexOf(selected);
+        if (index == -1)
+            throw new UserException(_loc.get("wrong-replica", selected, type, replicas));
+        SliceStoreManager result = candidates.get(index);
+        if (active)
+            _replica = result.getName();
+        return result;
+    }
+
+    /**
+     * Gets the distribution policy, if it distributes instances by their
+     * shard key.
+     */
+    ShardDistributionPolicy getShardPolicy() {
+        DistributionPolicy policy = _conf.getDistributionPolicyInstance();
+        return policy instanceof ShardDistributionPolicy ? (ShardDistributionPolicy) policy : null;
+    }
+
+    private static boolean hasTarget(FetchConfiguration fetch) {
+        return fetch != null && fetch.getHint(SlicePersistence.HINT_TARGET) != null;
+    }
+
+    /**
+     * Gets the slices of the given names, or all active slices if the names
+     * are null or match no active slice.
+     */
+    private List<SliceStoreManager> getTargets(String[] targetNames) {
+        if (targetNames == null)
+            return _slices;
         List<SliceStoreManager> targets = new ArrayList<>();
         for (SliceStoreManager slice : _slices) {
             for (String name : targetNames) {
@@ -558,7 +1006,101 @@ class DistributedJDBCStoreManager extends JDBCStoreManager
 
         @Override
         public Collection call() throws Exception {
-        	return store.flush(toFlush);
+            SliceStatistics stats = store.getSlice().getStatistics();
+            long start = stats.begin();
+            boolean failed = true;
+            try {
+                Collection errors = store.flush(toFlush);
+                failed = errors != null && !errors.isEmpty();
+                return errors;
+            } finally {
+                stats.end(SliceStatistics.Operation.FLUSH, start, failed);
+            }
+        }
+    }
+
+    /**
+     * Selects and times the instances of each type to be found in a slice.
+     */
+    private static class Finder implements Callable<Map<ClassMapping, List<Result>>> {
+        final SliceStoreManager store;
+        final Map<ClassMapping, List<Object>> oids;
+        final JDBCFetchConfiguration fetch;
+
+        Finder(SliceStoreManager store, Map<ClassMapping, List<Object>> oids,
+            JDBCFetchConfiguration fetch) {
+            this.store = store;
+            this.oids = oids;
+            this.fetch = fetch;
+        }
+
+        @Override
+        public Map<ClassMapping, List<Result>> call() throws Exception {
+            SliceStatistics stats = store.getSlice().getStatistics();
+            long start = stats.begin();
+            boolean failed = true;
+            Map<ClassMapping, List<Result>> results = new LinkedHashMap<>();
+            try {
+                for (Map.Entry<ClassMapping, List<Object>> e : oids.entrySet())
+                    results.put(e.getKey(), store.selectAll(e.getKey(), e.getValue(), fetch));
+                failed = false;
+                return results;
+            } catch (SQLException se) {
+                throw SQLExceptions.getStore(se, store.getDBDictionary());
+            } finally {
+                if (failed)
+                    close(results);
+                stats.end(SliceStatistics.Operation.FIND, start, failed);
+            }
+        }
+    }
+
+    /**
+     * Executes and times a transaction completion step on a slice,
+     * returning its error rather than throwing it.
+     */
+    private static class Completer implements Callable<Throwable> {
+        final SliceStoreManager store;
+        final SliceStatistics.Operation op;
+        final SliceRecoveryLog log;
+        final String txId;
+
+        Completer(SliceStoreManager store, SliceStatistics.Operation op,
+            SliceRecoveryLog log, String txId) {
+            this.store = store;
+            this.op = op;
+            this.log = log;
+            this.txId = txId;
+        }
+
+        @Override
+        public Throwable call() {
+            SliceStatistics stats = store.getSlice().getStatistics();
+            long start = stats.begin();
+            Throwable error = null;
+            try {
+                switch (op) {
+                    case PREPARE:
+                        store.prepare();
+                        break;
+                    case COMMIT:
+                        store.commit();
+                        break;
+                    default:
+                        store.rollback();
+                }
+            } catch (Throwable t) {
+                error = t;
+            }
+            stats.end(op, start, error != null);
+            if (error == null && log != null) {
+                try {
+                    log.committed(txId, store.getName());
+                } catch (IOException e) {
+                    // the slice committed; at worst it is reported in doubt
+                }
+            }
+            return error;
         }
     }
 
@@ -19,12 +19,13 @@
 package org.apache.openjpa.slice.jdbc;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.openjpa.jdbc.kernel.JDBCStore;
 import org.apache.openjpa.jdbc.kernel.SQLStoreQuery;
@@ -38,7 +39,9 @@ import org.apache.openjpa.lib.rop.RangeResultObjectProvider;
 import org.apache.openjpa.lib.rop.ResultObjectProvider;
 import org.apache.openjpa.meta.ClassMetaData;
 import org.apache.openjpa.slice.DistributedConfiguration;
-import org.apache.openjpa.slice.SliceThread;
+import org.apache.openjpa.slice.SliceExecutor;
+import org.apache.openjpa.slice.SliceStatistics;
+import org.apache.openjpa.util.QueryException;
 import org.apache.openjpa.util.StoreException;
 
 /**
@@ -115,13 +118,19 @@ class DistributedSQLStoreQuery extends SQLStoreQuery {
 				new ArrayList<>();
 			List<SliceStoreManager> targets = findTargets();
 			QueryContext ctx = q.getContext();
-			boolean isReplicated = containsReplicated(ctx);
-            ExecutorService threadPool = SliceThread.getPool();
+			Class<?> replicated = getReplicatedType(ctx);
+			boolean isReplicated = replicated != null;
+			if (isReplicated) {
+			    // read from a single replica
+			    targets = Collections.singletonList(owner.getDistributedStore()
+			        .selectReplica(replicated, targets));
+			}
+            // each slice can skip none of the rows before the start of the
+            // range, but none needs to return more than its end
+            Range sliceRange = new Range(0, range.end);
+            sliceRange.lrs = range.lrs;
+            SliceExecutor threadPool = getThreadPool();
 			for (int i = 0; i < owner._queries.size(); i++) {
-                // if replicated, then execute only on single slice
-				if (isReplicated && !usedExecutors.isEmpty()) {
-					break;
-				}
                 StoreManager sm = owner.getDistributedStore().getSlice(i);
 				if (!targets.contains(sm))
 					continue;
@@ -131,20 +140,21 @@ class DistributedSQLStoreQuery extends SQLStoreQuery {
 					continue;
 				usedExecutors.add(executor);
                 QueryExecutor call = new QueryExecutor();
+                call.slice = owner.getDistributedStore().getSlice(i);
                 call.executor = executor;
                 call.query = query;
                 call.params = params;
-                call.range = range;
+                call.range = sliceRange;
                 futures.add(threadPool.submit(call));
 			}
-			for (Future<ResultObjectProvider> future : futures) {
-				try {
-					rops.add(future.get());
-				} catch (InterruptedException e) {
-					throw new RuntimeException(e);
-				} catch (ExecutionException e) {
-					throw new StoreException(e.getCause());
-				}
+			try {
+				rops.addAll(threadPool.getAll(futures, canceller()));
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new StoreException(e.getCause());
+			} catch (TimeoutException e) {
+				throw new QueryException(ctx.getQueryString(), (int) threadPool.getTimeout());
 			}
 
 			ResultObjectProvider[] tmp = rops
@@ -160,9 +170,9 @@ class DistributedSQLStoreQuery extends SQLStoreQuery {
 			} else if (isAscending) {
                 result = new OrderingMergedResultObjectProvider(tmp, ascending,
                     usedExecutors.toArray(new Executor[usedExecutors.size()]),
-					q, params);
+					q, params, range.end);
 			} else {
-				result = new MergedResultObjectProvider(tmp);
+				result = new MergedResultObjectProvider(tmp, null, range.end);
 			}
 			if (hasRange) {
                 result = new RangeResultObjectProvider(result,
@@ -173,21 +183,23 @@ class DistributedSQLStoreQuery extends SQLStoreQuery {
 
 		/**
          * Scans metadata to find out if a replicated class is the candidate.
+		 *
+		 * @return the replicated class or null if none.
 		 */
-		boolean containsReplicated(QueryContext query) {
+		Class<?> getReplicatedType(QueryContext query) {
 			Class<?> candidate = query.getCandidateType();
 			DistributedConfiguration conf = (DistributedConfiguration)query.getStoreContext()
 			    .getConfiguration();
 			if (candidate != null) {
-			    return conf.isReplicated(candidate);
+			    return conf.isReplicated(candidate) ? candidate : null;
 			}
 			ClassMetaData[] metas = query.getAccessPathMetaDatas();
 			if (metas == null || metas.length < 1)
-				return false;
+				return null;
 			for (ClassMetaData meta : metas)
 				if (conf.isReplicated(meta.getDescribedType()))
-					return true;
-			return false;
+					return meta.getDescribedType();
+			return null;
 		}
 
 		@Override
@@ -195,7 +207,7 @@ class DistributedSQLStoreQuery extends SQLStoreQuery {
 			Iterator<StoreQuery> qs = owner._queries.iterator();
 			List<Future<Number>> futures = null;
 			int result = 0;
-            ExecutorService threadPool = SliceThread.getPool();
+            SliceExecutor threadPool = getThreadPool();
 			for (Executor ex : executors) {
 				if (futures == null)
                     futures = new ArrayList<>();
@@ -205,16 +217,17 @@ class DistributedSQLStoreQuery extends SQLStoreQuery {
 				call.params = params;
 				futures.add(threadPool.submit(call));
 			}
-			for (Future<Number> future : futures) {
-				try {
-					Number n = future.get();
+			try {
+				for (Number n : threadPool.getAll(futures, canceller())) {
 					if (n != null)
 						result += n.intValue();
-				} catch (InterruptedException e) {
-					throw new RuntimeException(e);
-				} catch (ExecutionException e) {
-					throw new StoreException(e.getCause());
 				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new StoreException(e.getCause());
+			} catch (TimeoutException e) {
+				throw new QueryException(q.getContext().getQueryString(), (int) threadPool.getTimeout());
 			}
 			return result;
 		}
@@ -224,7 +237,7 @@ class DistributedSQLStoreQuery extends SQLStoreQuery {
 			Iterator<StoreQuery> qs = owner._queries.iterator();
 			List<Future<Number>> futures = null;
 			int result = 0;
-            ExecutorService threadPool = SliceThread.getPool();
+            SliceExecutor threadPool = getThreadPool();
 			for (Executor ex : executors) {
 				if (futures == null)
                     futures = new ArrayList<>();
@@ -234,19 +247,40 @@ class DistributedSQLStoreQuery extends SQLStoreQuery {
 				call.params = params;
 				futures.add(threadPool.submit(call));
 			}
-			for (Future<Number> future : futures) {
-				try {
-					Number n = future.get();
-                    result += (n == null) ? 0 : n.intValue();
-				} catch (InterruptedException e) {
-					throw new RuntimeException(e);
-				} catch (ExecutionException e) {
-					throw new StoreException(e.getCause());
+			try {
+				for (Number n : threadPool.getAll(futures, canceller())) {
+					if (n != null)
+						result += n.intValue();
 				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new StoreException(e.getCause());
+			} catch (TimeoutException e) {
+				throw new QueryException(q.getContext().getQueryString(), (int) threadPool.getTimeout());
 			}
 			return result;
 		}
 
+		/**
+		 * Gets the executor of the operations on the slices.
+		 */
+		SliceExecutor getThreadPool() {
+		    return owner.getDistributedStore().getConfiguration().getThreadingPolicyInstance();
+		}
+
+		/**
+		 * Gets the action that cancels the statements running on the slices.
+		 */
+		Runnable canceller() {
+		    return new Runnable() {
+		        @Override
+		        public void run() {
+		            owner.getDistributedStore().cancelAll();
+		        }
+		    };
+		}
+
 		List<SliceStoreManager> findTargets() {
 			FetchConfiguration fetch = owner.getContext()
 					.getFetchConfiguration();
@@ -256,6 +290,7 @@ class DistributedSQLStoreQuery extends SQLStoreQuery {
 	}
 
 	static class QueryExecutor implements Callable<ResultObjectProvider> {
+		SliceStoreManager slice;
 		StoreQuery query;
 		Executor executor;
 		Object[] params;
@@ -263,7 +298,16 @@ class DistributedSQLStoreQuery extends SQLStoreQuery {
 
 		@Override
         public ResultObjectProvider call() throws Exception {
-			return executor.executeQuery(query, params, range);
+			SliceStatistics stats = slice.getSlice().getStatistics();
+			long start = stats.begin();
+			boolean failed = true;
+			try {
+				ResultObjectProvider rop = executor.executeQuery(query, params, range);
+				failed = false;
+				return rop;
+			} finally {
+				stats.end(SliceStatistics.Operation.QUERY, start, failed);
+			}
 		}
 	}
 
@@ -19,28 +19,37 @@
 package org.apache.openjpa.slice.jdbc;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.openjpa.jdbc.kernel.JDBCStore;
 import org.apache.openjpa.jdbc.kernel.JDBCStoreQuery;
+import org.apache.openjpa.jdbc.kernel.exps.FieldValuesExpressionVisitor;
 import org.apache.openjpa.kernel.ExpressionStoreQuery;
 import org.apache.openjpa.kernel.FetchConfiguration;
 import org.apache.openjpa.kernel.OrderingMergedResultObjectProvider;
 import org.apache.openjpa.kernel.QueryContext;
 import org.apache.openjpa.kernel.StoreManager;
 import org.apache.openjpa.kernel.StoreQuery;
+import org.apache.openjpa.kernel.exps.ExpressionFactory;
 import org.apache.openjpa.kernel.exps.ExpressionParser;
+import org.apache.openjpa.kernel.exps.QueryExpressions;
 import org.apache.openjpa.lib.rop.MergedResultObjectProvider;
 import org.apache.openjpa.lib.rop.RangeResultObjectProvider;
 import org.apache.openjpa.lib.rop.ResultObjectProvider;
+import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.FieldMetaData;
 import org.apache.openjpa.slice.DistributedConfiguration;
-import org.apache.openjpa.slice.SliceThread;
+import org.apache.openjpa.slice.ShardDistributionPolicy;
+import org.apache.openjpa.slice.SliceExecutor;
+import org.apache.openjpa.slice.SliceStatistics;
+import org.apache.openjpa.util.QueryException;
 import org.apache.openjpa.util.StoreException;
 
 /**
@@ -76,6 +85,13 @@ class DistributedStoreQuery extends JDBCStoreQuery {
 		for (StoreQuery q : _queries) {
 			ex.addExecutor(q.newDataStoreExecutor(meta, subs));
 		}
+		if (GroupingResultObjectProvider.isGrouping(ex.getQueryExpressions()[0])) {
+			ExpressionFactory fact = getExpressionFactory(meta);
+			for (Executor slice : ex.executors) {
+				GroupingResultObjectProvider.rewrite(
+				    ((ExpressionStoreQuery.DataStoreExecutor) slice).getQueryExpressions()[0], fact);
+			}
+		}
 		return ex;
 	}
 
@@ -95,14 +111,17 @@ class DistributedStoreQuery extends JDBCStoreQuery {
 	public static class ParallelExecutor extends
 			ExpressionStoreQuery.DataStoreExecutor {
         private static final long serialVersionUID = 1L;
+        private static final Localizer _loc = Localizer.forPackage(ParallelExecutor.class);
         private List<Executor> executors = new ArrayList<>();
 		private DistributedStoreQuery owner = null;
+		private ClassMetaData candidate = null;
 
         public ParallelExecutor(DistributedStoreQuery dsq, ClassMetaData meta,
                 boolean subclasses, ExpressionParser parser, Object parsed,
 				boolean parallel) {
 			super(dsq, meta, subclasses, parser, parsed);
 			owner = dsq;
+			candidate = meta;
 		}
 
 		public void addExecutor(Executor ex) {
@@ -119,35 +138,48 @@ class DistributedStoreQuery extends JDBCStoreQuery {
 			List<Future<ResultObjectProvider>> futures = new ArrayList<>();
             final List<Executor> usedExecutors = new ArrayList<>();
 			final List<ResultObjectProvider> rops = new ArrayList<>();
-			List<SliceStoreManager> targets = findTargets();
+			QueryExpressions exps = getQueryExpressions()[0];
+			List<SliceStoreManager> targets = findTargets(exps, params);
 			QueryContext ctx = q.getContext();
-			boolean isReplicated = containsReplicated(ctx);
-            ExecutorService threadPool = SliceThread.getPool();
+			Class<?> replicated = getReplicatedType(ctx);
+			boolean isReplicated = replicated != null;
+			if (isReplicated) {
+			    // read from a single replica
+			    targets = Collections.singletonList(owner.getDistributedStore()
+			        .selectReplica(replicated, targets));
+			}
+			boolean isGrouping = GroupingResultObjectProvider.isGrouping(exps);
+			if (isGrouping && exps.having != null && !isReplicated && targets.size() > 1) {
+			    throw new UnsupportedOperationException(_loc.get("having-unsupported").toString());
+			}
+            // each slice can skip none of the rows before the start of the
+            // range, but none needs to return more than its end, unless its
+            // groups are only complete after the merge
+            Range sliceRange = isGrouping ? new Range() : new Range(0, range.end);
+            sliceRange.lrs = range.lrs;
+            SliceExecutor threadPool = getThreadPool();
 
 			for (int i = 0; i < owner._queries.size(); i++) {
-                // if replicated, then execute only on single slice
-				if (isReplicated && !usedExecutors.isEmpty()) {
-					break;
-				}
                 StoreManager sm = owner.getDistributedStore().getSlice(i);
 				if (!targets.contains(sm))
 					continue;
                 QueryExecutor call = new QueryExecutor();
+                call.slice = owner.getDistributedStore().getSlice(i);
                 call.executor = executors.get(i);
                 call.query = owner._queries.get(i);
                 call.params = params;
-                call.range = range;
+                call.range = sliceRange;
 				usedExecutors.add(call.executor);
                 futures.add(threadPool.submit(call));
 			}
-			for (Future<ResultObjectProvider> future : futures) {
-				try {
-					rops.add(future.get());
-				} catch (InterruptedException e) {
-					throw new RuntimeException(e);
-				} catch (ExecutionException e) {
-					throw new StoreException(e.getCause());
-				}
+			try {
+				rops.addAll(threadPool.getAll(futures, canceller()));
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new StoreException(e.getCause());
+			} catch (TimeoutException e) {
+				throw new QueryException(ctx.getQueryString(), (int) threadPool.getTimeout());
 			}
 
 			ResultObjectProvider[] tmp = rops.toArray(new ResultObjectProvider[rops.size()]);
@@ -156,14 +188,16 @@ class DistributedStoreQuery extends JDBCStoreQuery {
 			boolean isAscending = ascending.length > 0;
 			boolean isAggregate = ctx.isAggregate();
 			boolean hasRange = ctx.getEndRange() != Long.MAX_VALUE;
-			if (isAggregate) {
+			if (isGrouping) {
+				result = new GroupingResultObjectProvider(tmp, exps);
+			} else if (isAggregate) {
 				result = new UniqueResultObjectProvider(tmp, q,	getQueryExpressions());
 			} else if (isAscending) {
                 result = new OrderingMergedResultObjectProvider(tmp, ascending,
                     usedExecutors.toArray(new Executor[usedExecutors.size()]),
-					q, params);
+					q, params, range.end);
 			} else {
-				result = new MergedResultObjectProvider(tmp);
+				result = new MergedResultObjectProvider(tmp, null, range.end);
 			}
 			if (hasRange) {
                 result = new RangeResultObjectProvider(result, ctx.getStartRange(), ctx.getEndRange());
@@ -173,29 +207,31 @@ class DistributedStoreQuery extends JDBCStoreQuery {
 
 		/**
          * Scans metadata to find out if a replicated class is the candidate.
+		 *
+		 * @return the replicated class or null if none.
 		 */
-		boolean containsReplicated(QueryContext query) {
+		Class<?> getReplicatedType(QueryContext query) {
 			Class<?> candidate = query.getCandidateType();
 			DistributedConfiguration conf = (DistributedConfiguration)query.getStoreContext()
 			    .getConfiguration();
 			if (candidate != null) {
-			    return conf.isReplicated(candidate);
+			    return conf.isReplicated(candidate) ? candidate : null;
 			}
 			ClassMetaData[] metas = query.getAccessPathMetaDatas();
 			if (metas == null || metas.length < 1)
-				return false;
+				return null;
 			for (ClassMetaData meta : metas)
 				if (conf.isReplicated(meta.getDescribedType()))
-					return true;
-			return false;
+					return meta.getDescribedType();
+			return null;
 		}
 
 		@Override
         public Number executeDelete(StoreQuery q, Object[] params) {
 			List<Future<Number>> futures = new ArrayList<>();
 			int result = 0;
-            ExecutorService threadPool = SliceThread.getPool();
-			List<SliceStoreManager> targets = findTargets();
+            SliceExecutor threadPool = getThreadPool();
+			List<SliceStoreManager> targets = findTargets(getQueryExpressions()[0], params);
 			for (int i = 0; i < owner._queries.size(); i++) {
                 StoreManager sm = owner.getDistributedStore().getSlice(i);
 				if (!targets.contains(sm))
@@ -207,16 +243,17 @@ class DistributedStoreQuery extends JDBCStoreQuery {
 				call.params = params;
 				futures.add(threadPool.submit(call));
 			}
-			for (Future<Number> future : futures) {
-				try {
-					Number n = future.get();
+			try {
+				for (Number n : threadPool.getAll(futures, canceller())) {
 					if (n != null)
 						result += n.intValue();
-				} catch (InterruptedException e) {
-					throw new RuntimeException(e);
-				} catch (ExecutionException e) {
-					throw new StoreException(e.getCause());
 				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new StoreException(e.getCause());
+			} catch (TimeoutException e) {
+				throw new QueryException(q.getContext().getQueryString(), (int) threadPool.getTimeout());
 			}
 			return result;
 		}
@@ -226,7 +263,7 @@ class DistributedStoreQuery extends JDBCStoreQuery {
 			Iterator<StoreQuery> qs = owner._queries.iterator();
 			List<Future<Number>> futures = null;
 			int result = 0;
-            ExecutorService threadPool = SliceThread.getPool();
+            SliceExecutor threadPool = getThreadPool();
 			for (Executor ex : executors) {
 				if (futures == null)
                     futures = new ArrayList<>();
@@ -236,27 +273,60 @@ class DistributedStoreQuery extends JDBCStoreQuery {
 				call.params = params;
 				futures.add(threadPool.submit(call));
 			}
-			for (Future<Number> future : futures) {
-				try {
-					Number n = future.get();
-                    result += (n == null) ? 0 : n.intValue();
-				} catch (InterruptedException e) {
-					throw new RuntimeException(e);
-				} catch (ExecutionException e) {
-					throw new StoreException(e.getCause());
+			try {
+				for (Number n : threadPool.getAll(futures, canceller())) {
+					if (n != null)
+						result += n.intValue();
 				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new StoreException(e.getCause());
+			} catch (TimeoutException e) {
+				throw new QueryException(q.getContext().getQueryString(), (int) threadPool.getTimeout());
 			}
 			return result;
 		}
 
-		List<SliceStoreManager> findTargets() {
+		/**
+		 * Gets the executor of the operations on the slices.
+		 */
+		SliceExecutor getThreadPool() {
+		    return owner.getDistributedStore().getConfiguration().getThreadingPolicyInstance();
+		}
+
+		/**
+		 * Gets the action that cancels the statements running on the slices.
+		 */
+		Runnable canceller() {
+		    return new Runnable() {
+		        @Override
+		        public void run() {
+		            owner.getDistributedStore().cancelAll();
+		        }
+		    };
+		}
+
+		/**
+		 * Finds the slices to execute on. Unless the targets are given, the
+		 * slices are narrowed to those that can store the candidates whose
+		 * shard key the filter restricts to equal one or more values.
+		 */
+		List<SliceStoreManager> findTargets(QueryExpressions exps, Object[] params) {
   		    FetchConfiguration fetch = owner.getContext().getFetchConfiguration();
-			return owner.getDistributedStore().getTargets(fetch);
+  		    DistributedJDBCStoreManager store = owner.getDistributedStore();
+  		    ShardDistributionPolicy shards = store.getShardPolicy();
+  		    if (shards == null || candidate == null)
+  		        return store.getTargets(fetch);
+  		    FieldMetaData key = shards.getShardKey(candidate);
+  		    return store.getTargets(fetch, candidate,
+  		        FieldValuesExpressionVisitor.getValues(exps.filter, key, params));
 		}
 
 	}
 
 	static class QueryExecutor implements Callable<ResultObjectProvider> {
+		SliceStoreManager slice;
 		StoreQuery query;
 		Executor executor;
 		Object[] params;
@@ -264,7 +334,16 @@ class DistributedStoreQuery extends JDBCStoreQuery {
 
 		@Override
         public ResultObjectProvider call() throws Exception {
-			return executor.executeQuery(query, params, range);
+			SliceStatistics stats = slice.getSlice().getStatistics();
+			long start = stats.begin();
+			boolean failed = true;
+			try {
+				ResultObjectProvider rop = executor.executeQuery(query, params, range);
+				failed = false;
+				return rop;
+			} finally {
+				stats.end(SliceStatistics.Operation.QUERY, start, failed);
+			}
 		}
 	}
 
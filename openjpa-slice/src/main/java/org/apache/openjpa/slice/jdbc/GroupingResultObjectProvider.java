@@ -0,0 +1,355 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice.jdbc;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.openjpa.kernel.Filters;
+import org.apache.openjpa.kernel.exps.AbstractExpressionVisitor;
+import org.apache.openjpa.kernel.exps.ExpressionFactory;
+import org.apache.openjpa.kernel.exps.QueryExpressions;
+import org.apache.openjpa.kernel.exps.Value;
+import org.apache.openjpa.lib.rop.ResultObjectProvider;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.util.InternalException;
+
+/**
+ * Merges the partial groups of a grouped or averaging query from different
+ * databases in a hash aggregation, then orders the merged groups.
+ * <p>
+ * Each slice query is first {@link #rewrite rewritten} so that its rows
+ * carry everything needed to merge them: every <code>AVG</code> projection
+ * is replaced by a <code>SUM</code>, and the rows end with a
+ * <code>COUNT</code> of the value of each average followed by the grouping
+ * values. Rows with the same grouping values are then combined, and each
+ * average is computed from the merged sum and count.
+ *
+ * @since 3.1.1
+ */
+public class GroupingResultObjectProvider implements ResultObjectProvider {
+    private static final String AVG = "Avg";
+    private static final String COUNT = "Count";
+    private static final String MAX = "Max";
+    private static final String MIN = "Min";
+    private static final String SUM = "Sum";
+    private static final String DISTINCT = "Distinct";
+
+    private static final Localizer _loc =
+        Localizer.forPackage(GroupingResultObjectProvider.class);
+
+    private final ResultObjectProvider[] _rops;
+    private final Value[] _projections;
+    private final String[] _ops;
+    private final int[] _counts;
+    private final int[] _order;
+    private final boolean[] _ascending;
+    private final int _groupStart;
+    private final int _width;
+    private List<Object[]> _rows;
+    private int _index = -1;
+    private boolean _opened;
+
+    /**
+     * Constructor.
+     *
+     * @param rops the results of the rewritten slice queries
+     * @param exps the expressions of the original query
+     */
+    public GroupingResultObjectProvider(ResultObjectProvider[] rops,
+        QueryExpressions exps) {
+        _rops = rops;
+        _projections = exps.projections;
+        int n = _projections.length;
+        _ops = new String[n];
+        _counts = new int[n];
+        int width = n;
+        for (int i = 0; i < n; i++) {
+            _ops[i] = _projections[i].getClass().getSimpleName();
+            _counts[i] = AVG.equals(_ops[i]) ? width++ : -1;
+        }
+        _groupStart = width;
+        _width = width + exps.grouping.length;
+
+        _order = new int[exps.ordering.length];
+        _ascending = exps.ascending;
+        for (int i = 0; i < _order.length; i++) {
+            _order[i] = findColumn(exps, i, _groupStart);
+            if (_order[i] == -1)
+                throw new UnsupportedOperationException(_loc.get(
+                    "grouping-order-unsupported", exps.orderingClauses[i])
+                    .toString());
+        }
+    }
+
+    /**
+     * Whether the given query expressions need their slice results merged
+     * by group rather than by {@link UniqueResultObjectProvider}.
+     */
+    public static boolean isGrouping(QueryExpressions exps) {
+        if (exps.grouping.length > 0)
+            return true;
+        for (Value v : exps.projections)
+            if (AVG.equals(v.getClass().getSimpleName()))
+                return true;
+        return false;
+    }
+
+    /**
+     * Rewrite the expressions of a slice query into the partial aggregation
+     * this provider merges.
+     *
+     * @param exps the expressions of the slice query, which are modified
+     * @param fact the expression factory of the slice query
+     */
+    public static void rewrite(QueryExpressions exps, ExpressionFactory fact) {
+        Value[] projections = exps.projections;
+        List<Value> counts = new ArrayList<>();
+        for (int i = 0; i < projections.length; i++) {
+            if (!AVG.equals(projections[i].getClass().getSimpleName()))
+                continue;
+            Value arg = getArgument(projections[i]);
+            if (arg == null
+                || DISTINCT.equals(arg.getClass().getSimpleName()))
+                throw new UnsupportedOperationException(_loc.get(
+                    "aggregate-unsupported", "AVG(DISTINCT)").toString());
+            projections[i] = fact.sum(arg);
+            counts.add(fact.count(arg));
+        }
+
+        List<Value> all = new ArrayList<>(Arrays.asList(projections));
+        all.addAll(counts);
+        all.addAll(Arrays.asList(exps.grouping));
+        exps.projections = all.toArray(new Value[all.size()]);
+        exps.projectionClauses = pad(exps.projectionClauses, all.size());
+        exps.projectionAliases = pad(exps.projectionAliases, all.size());
+    }
+
+    /**
+     * Return the value the given aggregate applies to.
+     */
+    private static Value getArgument(Value aggregate) {
+        final Value[] arg = new Value[1];
+        aggregate.acceptVisit(new AbstractExpressionVisitor() {
+            @Override
+            public void enter(Value val) {
+                if (val != aggregate && arg[0] == null)
+                    arg[0] = val;
+            }
+        });
+        return arg[0];
+    }
+
+    private static String[] pad(String[] strs, int length) {
+        if (strs.length >= length)
+            return strs;
+        String[] padded = new String[length];
+        Arrays.fill(padded, "");
+        System.arraycopy(strs, 0, padded, 0, strs.length);
+        return padded;
+    }
+
+    /**
+     * Return the column of the merged rows the given ordering refers to, or
+     * -1 if it is neither projected nor grouped on.
+     */
+    private static int findColumn(QueryExpressions exps, int ordering,
+        int groupStart) {
+        Value val = exps.ordering[ordering];
+        String clause = exps.orderingClauses.length > ordering
+            ? exps.orderingClauses[ordering] : null;
+        for (int i = 0; i < exps.projections.length; i++) {
+            if (exps.projections[i] == val
+                || matches(clause, exps.projectionClauses, i)
+                || matches(clause, exps.projectionAliases, i))
+                return i;
+        }
+        for (int i = 0; i < exps.grouping.length; i++) {
+            if (exps.grouping[i] == val
+                || matches(clause, exps.groupingClauses, i))
+                return groupStart + i;
+        }
+        return -1;
+    }
+
+    private static boolean matches(String clause, String[] clauses, int i) {
+        return clause != null && clauses.length > i
+            && clause.equalsIgnoreCase(clauses[i]);
+    }
+
+    @Override
+    public boolean supportsRandomAccess() {
+        return false;
+    }
+
+    @Override
+    public void open() throws Exception {
+        for (ResultObjectProvider rop : _rops)
+            rop.open();
+        _opened = true;
+    }
+
+    @Override
+    public Object getResultObject() throws Exception {
+        if (!_opened)
+            throw new InternalException(_loc.get("not-open"));
+        return _rows.get(_index);
+    }
+
+    @Override
+    public boolean next() throws Exception {
+        if (!_opened)
+            open();
+        if (_rows == null)
+            _rows = merge();
+        return ++_index < _rows.size();
+    }
+
+    /**
+     * Combine the slice rows by grouping values, then complete, order and
+     * convert the merged rows.
+     */
+    private List<Object[]> merge() throws Exception {
+        Map<List<Object>, Object[]> groups = new LinkedHashMap<>();
+        for (ResultObjectProvider rop : _rops) {
+            while (rop.next()) {
+                Object[] row = (Object[]) rop.getResultObject();
+                List<Object> key = Arrays.asList(Arrays.copyOfRange(row,
+                    _groupStart, _width));
+                Object[] group = groups.get(key);
+                if (group == null)
+                    groups.put(key, row.clone());
+                else
+                    combine(group, row);
+            }
+        }
+
+        List<Object[]> merged = new ArrayList<>(groups.values());
+        for (Object[] group : merged) {
+            for (int i = 0; i < _counts.length; i++) {
+                if (_counts[i] == -1)
+                    continue;
+                Number sum = (Number) group[i];
+                Number count = (Number) group[_counts[i]];
+                group[i] = (sum == null || count == null
+                    || count.longValue() == 0) ? null
+                    : sum.doubleValue() / count.longValue();
+            }
+        }
+        if (_order.length > 0)
+            Collections.sort(merged, new GroupComparator());
+
+        List<Object[]> rows = new ArrayList<>(merged.size());
+        for (Object[] group : merged) {
+            Object[] row = new Object[_projections.length];
+            for (int i = 0; i < row.length; i++)
+                row[i] = Filters.convert(group[i], _projections[i].getType());
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Fold the given partial row into the given merged group.
+     */
+    private void combine(Object[] group, Object[] row) {
+        for (int i = 0; i < _ops.length; i++) {
+            if (COUNT.equals(_ops[i]))
+                group[i] = UniqueResultObjectProvider.count(group[i], row[i]);
+            else if (MAX.equals(_ops[i]))
+                group[i] = UniqueResultObjectProvider.max(group[i], row[i]);
+            else if (MIN.equals(_ops[i]))
+                group[i] = UniqueResultObjectProvider.min(group[i], row[i]);
+            else if (SUM.equals(_ops[i]) || AVG.equals(_ops[i]))
+                group[i] = UniqueResultObjectProvider.sum(group[i], row[i]);
+            else if (_projections[i].isAggregate())
+                throw new UnsupportedOperationException(_loc.get(
+                    "aggregate-unsupported", _ops[i]).toString());
+            else if (group[i] == null)
+                group[i] = row[i];
+
+            if (_counts[i] != -1)
+                group[_counts[i]] = UniqueResultObjectProvider.count(
+                    group[_counts[i]], row[_counts[i]]);
+        }
+    }
+
+    /**
+     * Orders merged groups by the ordering of the query.
+     */
+    private class GroupComparator implements Comparator<Object[]> {
+        @Override
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        public int compare(Object[] a, Object[] b) {
+            for (int i = 0; i < _order.length; i++) {
+                Object o1 = a[_order[i]];
+                Object o2 = b[_order[i]];
+                int cmp;
+                if (o1 == o2)
+                    cmp = 0;
+                else if (o1 == null)
+                    cmp = -1;
+                else if (o2 == null)
+                    cmp = 1;
+                else
+                    cmp = ((Comparable) o1).compareTo(o2);
+                if (cmp != 0)
+                    return _ascending[i] ? cmp : -cmp;
+            }
+            return 0;
+        }
+    }
+
+    @Override
+    public boolean absolute(int pos) throws Exception {
+        return false;
+    }
+
+    @Override
+    public int size() throws Exception {
+        if (_rows == null)
+            next();
+        return _rows.size();
+    }
+
+    @Override
+    public void reset() throws Exception {
+        _rows = null;
+        _index = -1;
+        for (ResultObjectProvider rop : _rops)
+            rop.reset();
+    }
+
+    @Override
+    public void close() throws Exception {
+        _opened = false;
+        for (ResultObjectProvider rop : _rops)
+            rop.close();
+    }
+
+    @Override
+    public void handleCheckedException(Exception e) {
+        _rops[0].handleCheckedException(e);
+    }
+}
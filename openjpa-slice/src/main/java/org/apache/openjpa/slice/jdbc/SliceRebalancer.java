@@ -0,0 +1,724 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice.jdbc;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.openjpa.jdbc.meta.ClassMapping;
+import org.apache.openjpa.jdbc.meta.FieldMapping;
+import org.apache.openjpa.jdbc.meta.JavaSQLTypes;
+import org.apache.openjpa.jdbc.meta.MappingRepository;
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.schema.Table;
+import org.apache.openjpa.jdbc.sql.DBDictionary;
+import org.apache.openjpa.jdbc.sql.SQLExceptions;
+import org.apache.openjpa.kernel.Broker;
+import org.apache.openjpa.kernel.Filters;
+import org.apache.openjpa.lib.conf.Configurations;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.lib.util.Options;
+import org.apache.openjpa.meta.FieldMetaData;
+import org.apache.openjpa.meta.JavaTypes;
+import org.apache.openjpa.slice.DistributedBroker;
+import org.apache.openjpa.slice.ShardDistributionPolicy;
+import org.apache.openjpa.slice.ShardFunction;
+import org.apache.openjpa.util.StoreException;
+import org.apache.openjpa.util.UserException;
+
+/**
+ * Moves the instances of types distributed by a {@link ShardDistributionPolicy
+ * shard key} to the slices that a new shard function maps them to, typically
+ * after a slice has been added.
+ * <br>
+ * The rows of each type are streamed from every active slice in batches.
+ * A row whose key the new function maps to another slice is copied to that
+ * slice, and the copy is read back and compared column by column. Once all
+ * rows of the type have been copied, the policy is switched to the new
+ * function at once and the copied rows are deleted from their former slice.
+ * A failure before the switch leaves the former rows and the routing as they
+ * were, and the move can simply be repeated.
+ * <br>
+ * The switch only changes the policy of the given factory. When other
+ * factories, possibly in other processes, read the same slices, the copied
+ * rows must be kept with {@link #setDeleteMoved(boolean)}, and are deleted
+ * by {@link #purge()} once every factory is configured with the new
+ * functions.
+ * <br>
+ * Rows are moved with plain JDBC, so only types whose persistent state,
+ * including that of their subclasses, is held in the single primary table
+ * of the type and whose primary key is a single column can be moved. Types
+ * with relations are rejected, as their related instances must stay in the
+ * same slice.
+ * <br>
+ * The rebalancer is meant to run while the moved types are not modified.
+ * Queries that are not narrowed by the key can see a moved instance in both
+ * slices between the switch and the deletion.
+ *
+ * @since 3.1.1
+ */
+public class SliceRebalancer {
+    private static final Localizer _loc = Localizer.forPackage(SliceRebalancer.class);
+
+    /**
+     * The number of rows read, copied or deleted at a time, unless given
+     * otherwise.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final DistributedJDBCBrokerFactory _factory;
+    private final DistributedJDBCConfiguration _conf;
+    private final Log _log;
+    private int _batchSize = DEFAULT_BATCH_SIZE;
+    private boolean _deleteMoved = true;
+
+    public SliceRebalancer(DistributedJDBCBrokerFactory factory) {
+        _factory = factory;
+        _conf = factory.getConfiguration();
+        _log = _conf.getLog(DistributedJDBCConfiguration.LOG_RUNTIME);
+    }
+
+    public int getBatchSize() {
+        return _batchSize;
+    }
+
+    /**
+     * Sets the number of rows read, copied or deleted at a time.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0)
+            throw new UserException(_loc.get("rebalance-bad-batch", batchSize));
+        _batchSize = batchSize;
+    }
+
+    public boolean getDeleteMoved() {
+        return _deleteMoved;
+    }
+
+    /**
+     * Sets whether the copied rows are deleted from their former slice once
+     * the policy of the factory has been switched to the new function.
+     * Defaults to true. Set to false when other factories read the same
+     * slices, as they keep routing by the former function until they are
+     * configured with the new one, and then delete the rows by
+     * {@link #purge()}.
+     */
+    public void setDeleteMoved(boolean deleteMoved) {
+        _deleteMoved = deleteMoved;
+    }
+
+    /**
+     * Extends the function of every type distributed by a hash or consistent
+     * shard key to the given active slice, and moves the instances that the
+     * extended function maps to the slice.
+     *
+     * @return the number of rows moved, indexed by the type that declares
+     * the key.
+     */
+    public Map<Class<?>, Long> addSlice(String slice) {
+        if (!_conf.getActiveSliceNames().contains(slice))
+            throw new UserException(_loc.get("rebalance-no-slice", slice,
+                _conf.getActiveSliceNames()));
+        ShardDistributionPolicy policy = getPolicy();
+        Map<Class<?>, Long> moved = new LinkedHashMap<>();
+        for (ClassMapping mapping : getShardedMappings(policy)) {
+            ShardFunction function = policy.getShardFunction(mapping);
+            moved.put(mapping.getDescribedType(), rebalance(mapping,
+                function.withSlice(slice, _conf.getActiveSliceNames())));
+        }
+        return moved;
+    }
+
+    /**
+     * Deletes the rows of every type distributed by a shard key that the
+     * current function of the type maps to another slice, once their copy in
+     * that slice has been read back and compared. This completes the moves
+     * that kept the copied rows, and must only run once every factory that
+     * reads the slices is configured with the functions of this factory.
+     *
+     * @return the number of rows deleted, indexed by the type that declares
+     * the key.
+     */
+    public Map<Class<?>, Long> purge() {
+        ShardDistributionPolicy policy = getPolicy();
+        Map<Class<?>, Long> purged = new LinkedHashMap<>();
+        for (ClassMapping mapping : getShardedMappings(policy))
+            purged.put(mapping.getDescribedType(), purge(mapping));
+        return purged;
+    }
+
+    /**
+     * Deletes the rows of the given type, and of the subclasses that share
+     * its key, that the current function of the type maps to another slice,
+     * once their copy in that slice has been read back and compared. A row
+     * without such a copy fails the purge before any row of its slice is
+     * deleted.
+     *
+     * @return the number of rows deleted.
+     */
+    public long purge(ClassMapping mapping) {
+        ShardDistributionPolicy policy = getPolicy();
+        FieldMetaData key = policy.getShardKey(mapping);
+        ShardFunction function = policy.getShardFunction(mapping);
+        if (key == null || function == null)
+            throw new UserException(_loc.get("rebalance-no-key", mapping));
+        Broker broker = _factory.newBroker();
+        try {
+            DistributedJDBCStoreManager store = (DistributedJDBCStoreManager)
+                ((DistributedBroker) broker).getDistributedStoreManager();
+            Rows rows = newRows(store.getDBDictionary(), mapping, key);
+            List<String> slices = _conf.getActiveSliceNames();
+            long count = 0;
+            for (String slice : slices) {
+                List<Object> ids = verify(store, slice, rows, key, function, slices);
+                delete(store.lookup(slice), rows, ids);
+                count += ids.size();
+            }
+            if (_log.isInfoEnabled())
+                _log.info(_loc.get("rebalance-purged", mapping, function, count));
+            return count;
+        } finally {
+            broker.close();
+        }
+    }
+
+    /**
+     * Gets the mappings of the types that declare a shard key.
+     */
+    private List<ClassMapping> getShardedMappings(ShardDistributionPolicy policy) {
+        MappingRepository repos = _conf.getMappingRepositoryInstance();
+        ClassLoader loader = _conf.getClassResolverInstance().getClassLoader(getClass(), null);
+        List<ClassMapping> mappings = new ArrayList<>();
+        for (Class<?> cls : repos.loadPersistentTypes(false, loader)) {
+            ClassMapping mapping = repos.getMapping(cls, loader, false);
+            ShardFunction function = mapping == null ? null : policy.getShardFunction(mapping);
+            if (function == null || (mapping.getPCSuperclassMetaData() != null
+                && policy.getShardFunction(mapping.getPCSuperclassMetaData()) == function))
+                continue;
+            mappings.add(mapping);
+        }
+        return mappings;
+    }
+
+    /**
+     * Moves the instances of the given type, and of the subclasses that share
+     * its key, to the slices that the given function maps them to, and then
+     * distributes the type by the given function.
+     *
+     * @return the number of rows moved.
+     */
+    public long rebalance(ClassMapping mapping, ShardFunction function) {
+        ShardDistributionPolicy policy = getPolicy();
+        FieldMetaData key = policy.getShardKey(mapping);
+        if (key == null)
+            throw new UserException(_loc.get("rebalance-no-key", mapping));
+
+        Broker broker = _factory.newBroker();
+        try {
+            DistributedJDBCStoreManager store = (DistributedJDBCStoreManager)
+                ((DistributedBroker) broker).getDistributedStoreManager();
+            Rows rows = newRows(store.getDBDictionary(), mapping, key);
+            List<String> slices = _conf.getActiveSliceNames();
+            Map<String, List<Object>> copied = new LinkedHashMap<>();
+            long count = 0;
+            for (String slice : slices) {
+                List<Object> ids = copy(store, slice, rows, key, function, slices);
+                copied.put(slice, ids);
+                count += ids.size();
+            }
+            policy.setShardFunction(mapping, function);
+            if (_log.isInfoEnabled())
+                _log.info(_loc.get("rebalance-switched", mapping, function, count));
+            if (_deleteMoved)
+                for (Map.Entry<String, List<Object>> entry : copied.entrySet())
+                    delete(store.lookup(entry.getKey()), rows, entry.getValue());
+            return count;
+        } finally {
+            broker.close();
+        }
+    }
+
+    /**
+     * Gets the rows of the given type, asserting that they can be moved.
+     */
+    private static Rows newRows(DBDictionary dict, ClassMapping mapping, FieldMetaData key) {
+        Table table = mapping.getTable();
+        Column[] pks = mapping.getPrimaryKeyColumns();
+        Column[] keys = mapping.getFieldMapping(key.getIndex()).getColumns();
+        if (pks.length != 1 || keys.length != 1)
+            throw new UserException(_loc.get("rebalance-bad-key", mapping));
+        assertMovable(mapping, table);
+        return new Rows(dict, table, pks[0], keys[0]);
+    }
+
+    /**
+     * Copies the rows of the given slice that the given function maps to
+     * another slice.
+     *
+     * @return the primary keys of the copied rows.
+     */
+    private List<Object> copy(DistributedJDBCStoreManager store, String slice, Rows rows,
+        FieldMetaData key, ShardFunction function, List<String> slices) {
+        SliceStoreManager source = store.lookup(slice);
+        List<Object> ids = new ArrayList<>();
+        Map<String, List<Object[]>> batch = new HashMap<>();
+        int pending = 0;
+        Connection conn = source.getNewConnection();
+        try (Statement stmnt = conn.createStatement()) {
+            stmnt.setFetchSize(_batchSize);
+            try (ResultSet rs = stmnt.executeQuery(rows.select)) {
+                while (rs.next()) {
+                    Object[] row = rows.read(rs);
+                    String target = getSlice(row[rows.key], key, function, slices);
+                    if (target == null)
+                        throw new UserException(_loc.get("rebalance-no-target", rows.table,
+                            row[rows.key], function));
+                    if (target.equals(slice))
+                        continue;
+                    batch.computeIfAbsent(target, k -> new ArrayList<>()).add(row);
+                    ids.add(row[rows.pk]);
+                    if (++pending == _batchSize) {
+                        insert(store, rows, batch);
+                        pending = 0;
+                    }
+                }
+            }
+            insert(store, rows, batch);
+        } catch (SQLException se) {
+            throw SQLExceptions.getStore(se, source.getDBDictionary());
+        } finally {
+            close(conn);
+        }
+        return ids;
+    }
+
+    /**
+     * Verifies that the rows of the given slice that the given function maps
+     * to another slice have an identical copy there.
+     *
+     * @return the primary keys of the verified rows.
+     */
+    private List<Object> verify(DistributedJDBCStoreManager store, String slice, Rows rows,
+        FieldMetaData key, ShardFunction function, List<String> slices) {
+        SliceStoreManager source = store.lookup(slice);
+        List<Object> ids = new ArrayList<>();
+        Map<String, List<Object[]>> batch = new HashMap<>();
+        int pending = 0;
+        Connection conn = source.getNewConnection();
+        try (Statement stmnt = conn.createStatement()) {
+            stmnt.setFetchSize(_batchSize);
+            try (ResultSet rs = stmnt.executeQuery(rows.select)) {
+                while (rs.next()) {
+                    Object[] row = rows.read(rs);
+                    String target = getSlice(row[rows.key], key, function, slices);
+                    if (target == null || target.equals(slice))
+                        continue;
+                    batch.computeIfAbsent(target, k -> new ArrayList<>()).add(row);
+                    ids.add(row[rows.pk]);
+                    if (++pending == _batchSize) {
+                        verify(store, rows, batch);
+                        pending = 0;
+                    }
+                }
+            }
+            verify(store, rows, batch);
+        } catch (SQLException se) {
+            throw SQLExceptions.getStore(se, source.getDBDictionary());
+        } finally {
+            close(conn);
+        }
+        return ids;
+    }
+
+    private void verify(DistributedJDBCStoreManager store, Rows rows,
+        Map<String, List<Object[]>> batch) throws SQLException {
+        for (Map.Entry<String, List<Object[]>> entry : batch.entrySet()) {
+            Connection conn = store.lookup(entry.getKey()).getNewConnection();
+            try {
+                Object pk = verify(conn, rows, entry.getValue());
+                if (pk != null)
+                    throw new StoreException(_loc.get("rebalance-purge-failed", rows.table,
+                        pk, entry.getKey()));
+            } finally {
+                close(conn);
+            }
+            entry.getValue().clear();
+        }
+    }
+
+    private static String getSlice(Object value, FieldMetaData key, ShardFunction function,
+        List<String> slices) {
+        if (value == null)
+            return null;
+        return function.getSlice(Filters.convert(value, key.getDeclaredType()), slices);
+    }
+
+    /**
+     * Inserts the given rows into their slice, replacing earlier copies, and
+     * verifies that they read back the same.
+     */
+    private void insert(DistributedJDBCStoreManager store, Rows rows,
+        Map<String, List<Object[]>> batch) throws SQLException {
+        for (Map.Entry<String, List<Object[]>> entry : batch.entrySet()) {
+            if (entry.getValue().isEmpty())
+                continue;
+            Connection conn = store.lookup(entry.getKey()).getNewConnection();
+            try {
+                conn.setAutoCommit(false);
+                try (PreparedStatement delete = conn.prepareStatement(rows.delete);
+                    PreparedStatement insert = conn.prepareStatement(rows.insert)) {
+                    for (Object[] row : entry.getValue()) {
+                        rows.bind(delete, 1, rows.pk, row[rows.pk]);
+                        delete.addBatch();
+                        for (int i = 0; i < row.length; i++)
+                            rows.bind(insert, i + 1, i, row[i]);
+                        insert.addBatch();
+                    }
+                    delete.executeBatch();
+                    insert.executeBatch();
+                }
+                conn.commit();
+                Object pk = verify(conn, rows, entry.getValue());
+                if (pk != null)
+                    throw new StoreException(_loc.get("rebalance-verify-failed", rows.table,
+                        pk, entry.getKey()));
+            } finally {
+                close(conn);
+            }
+            entry.getValue().clear();
+        }
+    }
+
+    /**
+     * Reads back the given rows through the given connection.
+     *
+     * @return the primary key of the first row that is missing or differs,
+     * or null if all rows read back the same.
+     */
+    private static Object verify(Connection conn, Rows rows, List<Object[]> copied)
+        throws SQLException {
+        try (PreparedStatement select = conn.prepareStatement(rows.find)) {
+            for (Object[] row : copied) {
+                rows.bind(select, 1, rows.pk, row[rows.pk]);
+                Object[] copy;
+                try (ResultSet rs = select.executeQuery()) {
+                    copy = rs.next() ? rows.read(rs) : null;
+                }
+                if (copy == null || !rows.equal(row, copy))
+                    return row[rows.pk];
+            }
+            return null;
+        }
+    }
+
+    private void delete(SliceStoreManager source, Rows rows, List<Object> ids) {
+        if (ids.isEmpty())
+            return;
+        Connection conn = source.getNewConnection();
+        try {
+            conn.setAutoCommit(false);
+            try (PreparedStatement delete = conn.prepareStatement(rows.delete)) {
+                for (int i = 0; i < ids.size(); i++) {
+                    rows.bind(delete, 1, rows.pk, ids.get(i));
+                    delete.addBatch();
+                    if ((i + 1) % _batchSize == 0 || i == ids.size() - 1) {
+                        delete.executeBatch();
+                        conn.commit();
+                    }
+                }
+            }
+        } catch (SQLException se) {
+            throw SQLExceptions.getStore(se, source.getDBDictionary());
+        } finally {
+            close(conn);
+        }
+    }
+
+    /**
+     * Asserts that the rows of the given table hold all the persistent state
+     * of the given type and its subclasses, and refer to no other instance.
+     */
+    private static void assertMovable(ClassMapping mapping, Table table) {
+        if (mapping.getTable() != table)
+            throw new UserException(_loc.get("rebalance-not-movable", mapping, table));
+        for (FieldMapping fm : mapping.getDefinedFieldMappings()) {
+            if (fm.getTable() != table || fm.getJoinForeignKey() != null
+                || fm.getDeclaredTypeMetaData() != null
+                || fm.getElement().getDeclaredTypeMetaData() != null
+                || fm.getKey().getDeclaredTypeMetaData() != null)
+                throw new UserException(_loc.get("rebalance-not-movable", fm, table));
+        }
+        for (ClassMapping sub : mapping.getPCSubclassMappings())
+            assertMovable(sub, table);
+    }
+
+    private ShardDistributionPolicy getPolicy() {
+        if (!(_conf.getDistributionPolicyInstance() instanceof ShardDistributionPolicy))
+            throw new UserException(_loc.get("rebalance-no-policy",
+                _conf.getDistributionPolicyInstance()));
+        return (ShardDistributionPolicy) _conf.getDistributionPolicyInstance();
+    }
+
+    private static void close(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException se) {
+        }
+    }
+
+    /**
+     * Usage: java org.apache.openjpa.slice.jdbc.SliceRebalancer
+     * [option]* -slice &lt;name&gt; | -purge true
+     * <br>
+     * With <code>-slice</code>, copies the instances to the given active
+     * slice as {@link #addSlice(String)} does, but keeps them in their former
+     * slices, as running applications still route by their configured
+     * functions. It prints the extended functions, with which the
+     * <code>openjpa.slice.ShardKeys</code> property of every application must
+     * then be updated. The functions must name their slices, as the given
+     * slice is already active.
+     * <br>
+     * With <code>-purge</code>, run with the updated properties, deletes the
+     * rows that the configured functions map to another slice as
+     * {@link #purge()} does, once their copies are verified. Options:
+     * <ul>
+     * <li><i>-properties/-p &lt;properties file or resource&gt;</i>: The
+     * path or resource name of an OpenJPA properties file containing
+     * information such as the slices, as outlined in
+     * {@link org.apache.openjpa.conf.OpenJPAConfiguration}. Optional.</li>
+     * <li><i>-&lt;property name&gt; &lt;property value&gt;</i>: All bean
+     * properties of the Slice configuration interface can be set by
+     * using their names and supplying a value.</li>
+     * <li><i>-slice/-s &lt;name&gt;</i>: The name of the new slice.</li>
+     * <li><i>-purge/-pu &lt;true/t | false/f&gt;</i>: Whether to delete the
+     * rows copied to other slices by an earlier run.</li>
+     * <li><i>-batchSize/-b &lt;rows&gt;</i>: The number of rows moved at a
+     * time. Defaults to 1000.</li>
+     * </ul>
+     */
+    public static void main(String[] args) throws Exception {
+        Options opts = new Options();
+        final String[] arguments = opts.setFromCmdLine(args);
+        boolean ret = Configurations.runAgainstAllAnchors(opts,
+            new Configurations.Runnable() {
+            @Override
+            public boolean run(Options opts) throws Exception {
+                DistributedJDBCConfigurationImpl conf = new DistributedJDBCConfigurationImpl();
+                try {
+                    return SliceRebalancer.run(conf, arguments, opts);
+                } finally {
+                    conf.close();
+                }
+            }
+        });
+        if (!ret) {
+            // START - ALLOW PRINT STATEMENTS
+            System.out.println(_loc.get("rebalance-usage"));
+            // STOP - ALLOW PRINT STATEMENTS
+        }
+    }
+
+    /**
+     * Run the tool. Returns false if invalid options were given.
+     */
+    public static boolean run(DistributedJDBCConfigurationImpl conf, String[] args, Options opts) {
+        String slice = opts.removeProperty("slice", "s", null);
+        boolean purge = opts.removeBooleanProperty("purge", "pu", false);
+        int batchSize = opts.removeIntProperty("batchSize", "b", DEFAULT_BATCH_SIZE);
+        Configurations.populateConfiguration(conf, opts);
+        if (args.length != 0 || (slice == null) == !purge)
+            return false;
+
+        DistributedJDBCBrokerFactory factory = new DistributedJDBCBrokerFactory(conf);
+        try {
+            SliceRebalancer rebalancer = new SliceRebalancer(factory);
+            rebalancer.setBatchSize(batchSize);
+            if (purge) {
+                Map<Class<?>, Long> purged = rebalancer.purge();
+                for (Map.Entry<Class<?>, Long> entry : purged.entrySet()) {
+                    // START - ALLOW PRINT STATEMENTS
+                    System.out.println(_loc.get("rebalance-purged-rows", entry.getValue(),
+                        entry.getKey().getName()));
+                    // STOP - ALLOW PRINT STATEMENTS
+                }
+                return true;
+            }
+
+            // the routing of this process is not shared, so the copied rows
+            // stay until every application routes by the new functions
+            rebalancer.setDeleteMoved(false);
+            Map<Class<?>, Long> moved = rebalancer.addSlice(slice);
+            ShardDistributionPolicy policy = rebalancer.getPolicy();
+            MappingRepository repos = conf.getMappingRepositoryInstance();
+            for (Map.Entry<Class<?>, Long> entry : moved.entrySet()) {
+                ClassMapping mapping = repos.getMapping(entry.getKey(), null, true);
+                // START - ALLOW PRINT STATEMENTS
+                System.out.println(_loc.get("rebalance-moved", entry.getValue(),
+                    policy.getShardKey(mapping).getFullName(false), policy.getShardFunction(mapping)));
+                // STOP - ALLOW PRINT STATEMENTS
+            }
+        } finally {
+            factory.close();
+        }
+        return true;
+    }
+
+    /**
+     * The statements and the columns of the rows of a table.
+     */
+    private static class Rows {
+        final Table table;
+        final Column[] columns;
+        final int pk;
+        final int key;
+        final String select;
+        final String find;
+        final String insert;
+        final String delete;
+
+        Rows(DBDictionary dict, Table table, Column pk, Column key) {
+            this.table = table;
+            this.columns = table.getColumns();
+            this.pk = Arrays.asList(columns).indexOf(pk);
+            this.key = Arrays.asList(columns).indexOf(key);
+            String name = dict.getFullName(table, false);
+            String pkName = dict.getColumnDBName(pk);
+            StringBuilder cols = new StringBuilder();
+            StringBuilder params = new StringBuilder();
+            for (int i = 0; i < columns.length; i++) {
+                cols.append(i > 0 ? ", " : "").append(dict.getColumnDBName(columns[i]));
+                params.append(i > 0 ? ", " : "").append('?');
+            }
+            select = "SELECT " + cols + " FROM " + name;
+            find = select + " WHERE " + pkName + " = ?";
+            insert = "INSERT INTO " + name + " (" + cols + ") VALUES (" + params + ")";
+            delete = "DELETE FROM " + name + " WHERE " + pkName + " = ?";
+        }
+
+        Object[] read(ResultSet rs) throws SQLException {
+            Object[] row = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                switch (columns[i].getType()) {
+                case Types.BLOB:
+                case Types.BINARY:
+                case Types.VARBINARY:
+                case Types.LONGVARBINARY:
+                    row[i] = rs.getBytes(i + 1);
+                    break;
+                case Types.CLOB:
+                case Types.LONGVARCHAR:
+                    row[i] = rs.getString(i + 1);
+                    break;
+                default:
+                    row[i] = rs.getObject(i + 1);
+                }
+            }
+            return row;
+        }
+
+        /**
+         * Affirms if the given rows hold the same values. The values of a
+         * column are compared as the Java type of the column, so that values
+         * that a driver reads back with another scale, precision or padding
+         * are still equal.
+         */
+        boolean equal(Object[] row, Object[] copy) {
+            for (int i = 0; i < columns.length; i++)
+                if (!equal(columns[i].getJavaType(), row[i], copy[i]))
+                    return false;
+            return true;
+        }
+
+        private static boolean equal(int type, Object value, Object copy) {
+            if (value == null || copy == null)
+                return value == copy;
+            if (value instanceof byte[] && copy instanceof byte[])
+                return Arrays.equals((byte[]) value, (byte[]) copy);
+            switch (type) {
+                case JavaTypes.FLOAT:
+                case JavaTypes.FLOAT_OBJ:
+                case JavaTypes.DOUBLE:
+                case JavaTypes.DOUBLE_OBJ:
+                    if (value instanceof Number && copy instanceof Number)
+                        return Double.compare(((Number) value).doubleValue(),
+                            ((Number) copy).doubleValue()) == 0;
+                    break;
+                case JavaTypes.BYTE:
+                case JavaTypes.BYTE_OBJ:
+                case JavaTypes.SHORT:
+                case JavaTypes.SHORT_OBJ:
+                case JavaTypes.INT:
+                case JavaTypes.INT_OBJ:
+                case JavaTypes.LONG:
+                case JavaTypes.LONG_OBJ:
+                case JavaTypes.NUMBER:
+                case JavaTypes.BIGINTEGER:
+                case JavaTypes.BIGDECIMAL:
+                    if (value instanceof Number && copy instanceof Number)
+                        return new BigDecimal(value.toString()).compareTo(
+                            new BigDecimal(copy.toString())) == 0;
+                    break;
+                case JavaTypes.DATE:
+                case JavaTypes.CALENDAR:
+                case JavaSQLTypes.SQL_DATE:
+                case JavaSQLTypes.TIME:
+                case JavaSQLTypes.TIMESTAMP:
+                    // drivers differ in the fractions of a second they keep
+                    if (value instanceof Date && copy instanceof Date)
+                        return ((Date) value).getTime() == ((Date) copy).getTime();
+                    break;
+                case JavaTypes.STRING:
+                case JavaTypes.CHAR:
+                case JavaTypes.CHAR_OBJ:
+                    // fixed width columns may pad their values differently
+                    return stripTrailing(value.toString()).equals(
+                        stripTrailing(copy.toString()));
+            }
+            return value.equals(copy);
+        }
+
+        private static String stripTrailing(String s) {
+            int end = s.length();
+            while (end > 0 && s.charAt(end - 1) == ' ')
+                end--;
+            return s.substring(0, end);
+        }
+
+        void bind(PreparedStatement stmnt, int param, int column, Object value)
+            throws SQLException {
+            if (value == null)
+                stmnt.setNull(param, columns[column].getType());
+            else
+                stmnt.setObject(param, value);
+        }
+    }
+}
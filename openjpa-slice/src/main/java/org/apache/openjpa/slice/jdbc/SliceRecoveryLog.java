@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice.jdbc;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A local, append-only log of the transactions committed across several
+ * slices without a JTA transaction manager. A transaction is logged with
+ * the slices it commits on before the commit starts, each slice as soon as
+ * it commits, and its end once all slices have committed. A transaction
+ * that has not ended was interrupted or failed on some slices after others
+ * committed, and is <em>in doubt</em>: its uncommitted slices must be
+ * reconciled with the committed ones.
+ *
+ * @since 3.1.1
+ */
+public class SliceRecoveryLog {
+    private static final String PREPARE = "PREPARE";
+    private static final String COMMIT = "COMMIT";
+    private static final String END = "END";
+
+    private final File _file;
+    private int _pending = 0;
+    private boolean _inDoubt;
+
+    /**
+     * Supply the file of the log.
+     */
+    public SliceRecoveryLog(File file) throws IOException {
+        _file = file;
+        _inDoubt = !getInDoubt().isEmpty();
+    }
+
+    public File getFile() {
+        return _file;
+    }
+
+    /**
+     * Record that the given transaction is about to commit on the given
+     * slices.
+     */
+    public void prepared(String txId, Collection<String> slices)
+        throws IOException {
+        StringBuilder buf = new StringBuilder(PREPARE).append(' ')
+            .append(txId);
+        for (String slice : slices)
+            buf.append(' ').append(slice);
+        synchronized (this) {
+            append(buf.toString());
+            _pending++;
+        }
+    }
+
+    /**
+     * Record that the given transaction has committed on the given slice.
+     */
+    public void committed(String txId, String slice) throws IOException {
+        append(COMMIT + ' ' + txId + ' ' + slice);
+    }
+
+    /**
+     * Record that the given transaction has committed on all its slices.
+     * The log is emptied once no transaction is pending or in doubt.
+     */
+    public synchronized void completed(String txId) throws IOException {
+        append(END + ' ' + txId);
+        if (--_pending == 0 && !_inDoubt)
+            _file.delete();
+    }
+
+    /**
+     * Note that the given transaction failed on some of its slices after
+     * others committed, so that it stays in doubt.
+     */
+    public synchronized void abandoned(String txId) {
+        _pending--;
+        _inDoubt = true;
+    }
+
+    /**
+     * Gets the transactions in doubt, each with the slices it has not
+     * committed on.
+     */
+    public synchronized Map<String, List<String>> getInDoubt()
+        throws IOException {
+        Map<String, List<String>> txs = new LinkedHashMap<>();
+        if (!_file.exists())
+            return txs;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+            new FileInputStream(_file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] tokens = line.trim().split(" ");
+                if (tokens.length < 2)
+                    continue;
+                if (PREPARE.equals(tokens[0])) {
+                    List<String> slices = new ArrayList<>();
+                    for (int i = 2; i < tokens.length; i++)
+                        slices.add(tokens[i]);
+                    txs.put(tokens[1], slices);
+                } else if (COMMIT.equals(tokens[0]) && tokens.length > 2
+                    && txs.containsKey(tokens[1]))
+                    txs.get(tokens[1]).remove(tokens[2]);
+                else if (END.equals(tokens[0]))
+                    txs.remove(tokens[1]);
+            }
+        }
+        return txs;
+    }
+
+    /**
+     * Mark the given transaction in doubt as resolved.
+     */
+    public synchronized void resolve(String txId) throws IOException {
+        append(END + ' ' + txId);
+        _inDoubt = !getInDoubt().isEmpty();
+    }
+
+    /**
+     * Affirms if the log holds transactions in doubt.
+     */
+    public synchronized boolean isInDoubt() {
+        return _inDoubt;
+    }
+
+    /**
+     * Append the given record and force it to disk.
+     */
+    private synchronized void append(String record) throws IOException {
+        File dir = _file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists())
+            dir.mkdirs();
+        try (FileOutputStream out = new FileOutputStream(_file, true)) {
+            out.write((record + '\n').getBytes(StandardCharsets.UTF_8));
+            out.getChannel().force(false);
+        }
+    }
+}
@@ -18,8 +18,14 @@
  */
 package org.apache.openjpa.slice.jdbc;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+
 import org.apache.openjpa.jdbc.kernel.JDBCStoreManager;
+import org.apache.openjpa.jdbc.sql.SQLExceptions;
+import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.slice.Slice;
+import org.apache.openjpa.util.StoreException;
 
 /**
  * A specialized JDBCStoreManager for a slice.
@@ -28,6 +34,8 @@ import org.apache.openjpa.slice.Slice;
  *
  */
 public class SliceStoreManager extends JDBCStoreManager {
+	private static final Localizer _loc = Localizer.forPackage(SliceStoreManager.class);
+	private static final int VALIDATION_TIMEOUT = 10;
 	private final Slice _slice;
 
 	/**
@@ -47,4 +55,27 @@ public class SliceStoreManager extends JDBCStoreManager {
 	public String getName() {
 	    return _slice.getName();
 	}
+
+	/**
+	 * Verifies that the connection of this slice can still commit, as the
+	 * first phase of a commit across slices. Resource local connections
+	 * cannot vote on the outcome of a transaction, so a connection that is
+	 * still valid is taken as a vote to commit.
+	 *
+	 * @since 3.1.1
+	 */
+	public void prepare() {
+	    Connection conn = getConnection();
+	    try {
+	        if (!conn.isValid(VALIDATION_TIMEOUT))
+	            throw new StoreException(_loc.get("prepare-invalid", getName()));
+	    } catch (SQLException se) {
+	        throw SQLExceptions.getStore(se, getDBDictionary());
+	    } finally {
+	        try {
+	            conn.close();
+	        } catch (SQLException se) {
+	        }
+	    }
+	}
 }
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice;
+
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Tests grouped and averaging aggregate queries whose groups span slices.
+ */
+public class TestDistributedAggregation extends SliceTestCase {
+
+    @Override
+    protected String getPersistenceUnitName() {
+        return "ordering";
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp(PObject.class, Person.class, Address.class, Country.class,
+                Car.class, Manufacturer.class, CLEAR_TABLES);
+        if (count(Person.class) == 0) {
+            create();
+        }
+    }
+
+    void create() {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        // names from a to m are stored in Even, the rest in Odd
+        persist(em, "Alice", "Rome", 10, "Even");
+        persist(em, "Bob", "Paris", 20, "Even");
+        persist(em, "Carl", "Rome", 30, "Even");
+        persist(em, "Nina", "Rome", 40, "Odd");
+        persist(em, "Otto", "Paris", 50, "Odd");
+        for (int i = 100; i < 110; i++) {
+            PObject pc = new PObject();
+            pc.setValue(i);
+            em.persist(pc);
+        }
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    void persist(EntityManager em, String name, String city, int zip,
+        String slice) {
+        Person p = new Person(name);
+        p.setAddress(new Address(city, zip));
+        em.persist(p);
+        assertEquals(slice, SlicePersistence.getSlice(p));
+    }
+
+    public void testGroupsMergedAcrossSlices() {
+        EntityManager em = emf.createEntityManager();
+        List<?> result = em.createQuery("SELECT a.city, COUNT(p), "
+            + "SUM(a.zip), AVG(a.zip), MIN(a.zip), MAX(a.zip) "
+            + "FROM Person p JOIN p.address a GROUP BY a.city "
+            + "ORDER BY a.city").getResultList();
+        assertEquals(2, result.size());
+        assertRow((Object[]) result.get(0), "Paris", 2, 70, 35, 20, 50);
+        assertRow((Object[]) result.get(1), "Rome", 3, 80, 26, 10, 40);
+        em.close();
+    }
+
+    public void testOrderByAggregateOfUnprojectedGroup() {
+        EntityManager em = emf.createEntityManager();
+        List<?> result = em.createQuery("SELECT COUNT(p) AS c "
+            + "FROM Person p JOIN p.address a GROUP BY a.city "
+            + "ORDER BY c DESC").getResultList();
+        assertEquals(2, result.size());
+        assertEquals(3, ((Number) result.get(0)).intValue());
+        assertEquals(2, ((Number) result.get(1)).intValue());
+        em.close();
+    }
+
+    public void testRangeAppliedAfterMerge() {
+        EntityManager em = emf.createEntityManager();
+        List<?> result = em.createQuery("SELECT a.city, COUNT(p) "
+            + "FROM Person p JOIN p.address a GROUP BY a.city "
+            + "ORDER BY a.city DESC").setMaxResults(1).getResultList();
+        assertEquals(1, result.size());
+        Object[] row = (Object[]) result.get(0);
+        assertEquals("Rome", row[0]);
+        assertEquals(3, ((Number) row[1]).intValue());
+        em.close();
+    }
+
+    public void testAverageMergedAcrossSlices() {
+        EntityManager em = emf.createEntityManager();
+        Object avg = em.createQuery("SELECT AVG(p.value) FROM PObject p "
+            + "WHERE p.value IN (100, 101, 103, 105)").getSingleResult();
+        // the mean of the slice means would be (100 + 103) / 2
+        assertEquals(102, ((Number) avg).intValue());
+        em.close();
+    }
+
+    void assertRow(Object[] row, String city, int count, int sum, int avg,
+        int min, int max) {
+        assertEquals(city, row[0]);
+        assertEquals(count, ((Number) row[1]).intValue());
+        assertEquals(sum, ((Number) row[2]).intValue());
+        assertEquals(avg, ((Number) row[3]).intValue());
+        assertEquals(min, ((Number) row[4]).intValue());
+        assertEquals(max, ((Number) row[5]).intValue());
+    }
+}
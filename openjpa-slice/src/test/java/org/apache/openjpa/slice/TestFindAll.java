@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.apache.openjpa.persistence.OpenJPAPersistence;
+import org.apache.openjpa.slice.SliceStatistics.Operation;
+
+/**
+ * Tests finding a batch of instances across the slices.
+ */
+public class TestFindAll extends SliceTestCase {
+    private final List<Long> _ids = new ArrayList<>();
+
+    @Override
+    protected String getPersistenceUnitName() {
+        return "ordering";
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp(PObject.class, Person.class, Address.class, Country.class,
+                Car.class, Manufacturer.class, CLEAR_TABLES);
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        for (int i = 0; i < 10; i++) {
+            PObject pc = new PObject();
+            pc.setValue(i);
+            em.persist(pc);
+            _ids.add(pc.getId());
+        }
+        em.getTransaction().commit();
+        em.close();
+        for (Slice slice : getConfiguration().getSlices(Slice.Status.ACTIVE))
+            slice.getStatistics().reset();
+    }
+
+    public void testFindAllQueriesEachSliceOnce() {
+        EntityManager em = emf.createEntityManager();
+        PObject[] pcs = OpenJPAPersistence.cast(em).findAll(PObject.class, _ids.toArray());
+        assertEquals(_ids.size(), pcs.length);
+        for (int i = 0; i < pcs.length; i++) {
+            assertNotNull(pcs[i]);
+            assertEquals(_ids.get(i).longValue(), pcs[i].getId());
+            assertEquals(pcs[i].getValue() % 2 == 0 ? "Even" : "Odd",
+                SlicePersistence.getSlice(pcs[i]));
+        }
+        assertEquals(1, getCount("Even"));
+        assertEquals(1, getCount("Odd"));
+        em.close();
+    }
+
+    public void testFindAllLeavesMissingInstancesNull() {
+        EntityManager em = emf.createEntityManager();
+        Object[] ids = {_ids.get(0), -1L, _ids.get(1)};
+        PObject[] pcs = OpenJPAPersistence.cast(em).findAll(PObject.class, ids);
+        assertEquals(3, pcs.length);
+        assertEquals(_ids.get(0).longValue(), pcs[0].getId());
+        assertNull(pcs[1]);
+        assertEquals(_ids.get(1).longValue(), pcs[2].getId());
+        em.close();
+    }
+
+    public void testFoundInstancesAreLoadedFromTheirSlice() {
+        EntityManager em = emf.createEntityManager();
+        PObject[] pcs = OpenJPAPersistence.cast(em).findAll(PObject.class, _ids.toArray());
+        em.getTransaction().begin();
+        for (PObject pc : pcs)
+            pc.setValue(pc.getValue() + 2);
+        em.getTransaction().commit();
+        em.close();
+
+        em = emf.createEntityManager();
+        for (int i = 0; i < _ids.size(); i++) {
+            PObject pc = em.find(PObject.class, _ids.get(i));
+            assertEquals(i + 2, pc.getValue());
+        }
+        em.close();
+    }
+
+    private DistributedConfiguration getConfiguration() {
+        return (DistributedConfiguration) emf.getConfiguration();
+    }
+
+    private long getCount(String slice) {
+        return getConfiguration().getSlice(slice).getStatistics().getCount(Operation.FIND);
+    }
+}
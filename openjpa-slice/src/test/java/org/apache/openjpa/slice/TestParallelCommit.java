@@ -0,0 +1,240 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+
+import org.apache.openjpa.lib.jdbc.ConnectionDecorator;
+import org.apache.openjpa.lib.jdbc.DelegatingConnection;
+import org.apache.openjpa.slice.SliceStatistics.Operation;
+import org.apache.openjpa.slice.jdbc.DistributedJDBCConfiguration;
+import org.apache.openjpa.slice.jdbc.SliceRecoveryLog;
+import org.apache.openjpa.util.OpenJPAException;
+import org.apache.openjpa.util.StoreException;
+
+/**
+ * Tests that transactions are completed on all slices in two phases, that
+ * each phase is timed per slice, and that transactions are logged until
+ * they have committed on all slices.
+ */
+public class TestParallelCommit extends SliceTestCase {
+    private static final File LOG = new File("target/"
+        + TestParallelCommit.class.getName() + ".log");
+
+    @Override
+    protected String getPersistenceUnitName() {
+        return "ordering";
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        LOG.delete();
+        super.setUp(PObject.class, Person.class, Address.class, Country.class,
+                Car.class, Manufacturer.class, CLEAR_TABLES,
+                "openjpa.slice.RecoveryLog", LOG.getPath(),
+                "openjpa.slice.Odd.jdbc.ConnectionDecorators",
+                FailingCommitDecorator.class.getName());
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        FailingCommitDecorator.failing = false;
+        super.tearDown();
+        LOG.delete();
+    }
+
+    public void testCommitIsTimedOnEverySlice() {
+        DistributedJDBCConfiguration conf =
+            (DistributedJDBCConfiguration) emf.getConfiguration();
+        List<Slice> slices = conf.getSlices(Slice.Status.ACTIVE);
+        assertTrue(slices.size() > 1);
+        for (Slice slice : slices)
+            slice.getStatistics().reset();
+
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        for (int i = 0; i < 10; i++) {
+            PObject pc = new PObject();
+            pc.setValue(i);
+            em.persist(pc);
+        }
+        em.getTransaction().commit();
+        em.close();
+
+        for (Slice slice : slices) {
+            SliceStatistics stats = slice.getStatistics();
+            assertEquals(1, stats.getCount(Operation.PREPARE));
+            assertEquals(1, stats.getCount(Operation.COMMIT));
+            assertEquals(0, stats.getFailureCount(Operation.COMMIT));
+            assertTrue(stats.getMaxTime(Operation.COMMIT) > 0);
+        }
+        assertEquals(10, count(PObject.class));
+
+        SliceRecoveryLog log = conf.getRecoveryLogInstance();
+        assertNotNull(log);
+        assertFalse(log.isInDoubt());
+        assertFalse(LOG.exists());
+    }
+
+    public void testRollbackIsTimedOnEverySlice() {
+        DistributedJDBCConfiguration conf =
+            (DistributedJDBCConfiguration) emf.getConfiguration();
+        List<Slice> slices = conf.getSlices(Slice.Status.ACTIVE);
+        for (Slice slice : slices)
+            slice.getStatistics().reset();
+
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        PObject pc = new PObject();
+        pc.setValue(1);
+        em.persist(pc);
+        em.flush();
+        em.getTransaction().rollback();
+        em.close();
+
+        for (Slice slice : slices)
+            assertEquals(1, slice.getStatistics().getCount(
+                Operation.ROLLBACK));
+        assertEquals(0, count(PObject.class));
+    }
+
+    public void testCommitFailingOnOneSliceIsInDoubt() throws Exception {
+        DistributedJDBCConfiguration conf =
+            (DistributedJDBCConfiguration) emf.getConfiguration();
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        for (int i = 0; i < 10; i++) {
+            PObject pc = new PObject();
+            pc.setValue(i);
+            em.persist(pc);
+        }
+        em.flush();
+
+        // Odd passes the prepare phase, then fails to commit while Even
+        // commits
+        FailingCommitDecorator.failing = true;
+        RuntimeException error = null;
+        try {
+            em.getTransaction().commit();
+            fail("Commit should fail on slice Odd");
+        } catch (RuntimeException e) {
+            error = e;
+        } finally {
+            FailingCommitDecorator.failing = false;
+            if (em.getTransaction().isActive())
+                em.getTransaction().rollback();
+            em.close();
+        }
+
+        // the transaction stays in the log with the slice it did not
+        // commit on
+        SliceRecoveryLog log = conf.getRecoveryLogInstance();
+        assertTrue(log.isInDoubt());
+        assertTrue(LOG.exists());
+        Map<String, List<String>> txs = new SliceRecoveryLog(LOG).getInDoubt();
+        assertEquals(1, txs.size());
+        String txId = txs.keySet().iterator().next();
+        assertEquals(Collections.singletonList("Odd"), txs.get(txId));
+
+        // and is reported by a fatal error naming both sets of slices
+        StoreException inDoubt = findStoreException(error, txId);
+        assertNotNull("No error reports transaction " + txId, inDoubt);
+        assertTrue(inDoubt.isFatal());
+        String message = inDoubt.getMessage();
+        assertTrue(message, message.contains("slices [Even]"));
+        assertTrue(message, message.contains("slices [Odd]"));
+
+        // only the even values reached the database
+        assertEquals(5, count(PObject.class));
+    }
+
+    /**
+     * Find the store exception about the given transaction among the causes
+     * of the given error.
+     */
+    private static StoreException findStoreException(Throwable t,
+        String txId) {
+        if (t == null)
+            return null;
+        if (t instanceof StoreException && t.getMessage() != null
+            && t.getMessage().contains(txId))
+            return (StoreException) t;
+        if (t instanceof OpenJPAException) {
+            for (Throwable nested : ((OpenJPAException) t)
+                .getNestedThrowables()) {
+                StoreException se = findStoreException(nested, txId);
+                if (se != null)
+                    return se;
+            }
+        }
+        return (t.getCause() == t) ? null
+            : findStoreException(t.getCause(), txId);
+    }
+
+    public void testRecoveryLogListsUncommittedSlices() throws Exception {
+        SliceRecoveryLog log = new SliceRecoveryLog(LOG);
+        log.prepared("tx1", Arrays.asList("Even", "Odd"));
+        log.committed("tx1", "Even");
+        log.abandoned("tx1");
+        log.prepared("tx2", Arrays.asList("Even", "Odd"));
+        log.committed("tx2", "Even");
+        log.committed("tx2", "Odd");
+        log.completed("tx2");
+        assertTrue(LOG.exists());
+
+        log = new SliceRecoveryLog(LOG);
+        assertTrue(log.isInDoubt());
+        Map<String, List<String>> inDoubt = log.getInDoubt();
+        assertEquals(Collections.singleton("tx1"), inDoubt.keySet());
+        assertEquals(Collections.singletonList("Odd"), inDoubt.get("tx1"));
+
+        log.resolve("tx1");
+        assertFalse(log.isInDoubt());
+        assertTrue(log.getInDoubt().isEmpty());
+    }
+
+    /**
+     * Decorates the connections of a slice so that commits fail while
+     * {@link #failing} is set.
+     */
+    public static class FailingCommitDecorator implements ConnectionDecorator {
+        static volatile boolean failing = false;
+
+        @Override
+        public Connection decorate(Connection conn) {
+            return new DelegatingConnection(conn) {
+                @Override
+                public void commit() throws SQLException {
+                    if (failing)
+                        throw new SQLException("Commit failure injected by "
+                            + "the test");
+                    super.commit();
+                }
+            };
+        }
+    }
+}
@@ -192,6 +192,19 @@ public class TestQuery extends SliceTestCase {
         em.getTransaction().rollback();
     }
 
+    public void testSetFirstAndMaxResult() {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        List<PObject> result =
+            em.createQuery("SELECT p FROM PObject p ORDER BY p.value DESC")
+                .setFirstResult(5).setMaxResults(4).getResultList();
+        assertEquals(4, result.size());
+        for (int i = 0; i < result.size(); i++) {
+            assertEquals(VALUE_MAX - 5 - i, result.get(i).getValue());
+        }
+        em.getTransaction().rollback();
+    }
+
     public void testHint() {
         List<String> targets = new ArrayList<>();
         targets.add("Even");
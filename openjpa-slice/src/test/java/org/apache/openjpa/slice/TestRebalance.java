@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+
+import org.apache.openjpa.jdbc.meta.ClassMapping;
+import org.apache.openjpa.persistence.JPAFacadeHelper;
+import org.apache.openjpa.persistence.OpenJPAEntityManagerFactorySPI;
+import org.apache.openjpa.slice.jdbc.DistributedJDBCBrokerFactory;
+import org.apache.openjpa.slice.jdbc.DistributedJDBCConfiguration;
+import org.apache.openjpa.slice.jdbc.SliceRebalancer;
+import org.apache.openjpa.util.StoreException;
+import org.apache.openjpa.util.UserException;
+
+/**
+ * Tests moving the instances distributed by a consistent shard function to
+ * a slice added to the function.
+ */
+public class TestRebalance extends SliceTestCase {
+    private static final int COUNT = 40;
+
+    @Override
+    protected String getPersistenceUnitName() {
+        return "ordering";
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp(PObject.class, Person.class, Address.class, Country.class,
+                Car.class, Manufacturer.class, CLEAR_TABLES,
+                "openjpa.slice.DistributionPolicy", "shard",
+                "openjpa.slice.ShardKeys",
+                "org.apache.openjpa.slice.PObject.id=consistent(Even)");
+    }
+
+    public void testConsistentFunctionMovesFewValues() {
+        List<String> slices = ((DistributedConfiguration) emf.getConfiguration())
+            .getActiveSliceNames();
+        ShardFunction two = ShardFunction.parse("consistent(Even|Odd)");
+        ShardFunction three = two.withSlice("Three", slices);
+        assertEquals("consistent(Even|Odd|Three)", three.toString());
+        int moved = 0;
+        for (long key = 0; key < 3000; key++) {
+            String before = two.getSlice(key, slices);
+            String after = three.getSlice(key, slices);
+            if (!before.equals(after)) {
+                assertEquals("Three", after);
+                moved++;
+            }
+        }
+        assertTrue(moved > 500 && moved < 1500);
+    }
+
+    public void testAddSliceMovesInstances() {
+        PObject[] pcs = persist();
+        SliceRebalancer rebalancer = new SliceRebalancer(
+            (DistributedJDBCBrokerFactory) JPAFacadeHelper.toBrokerFactory(emf));
+        rebalancer.setBatchSize(7);
+        Map<Class<?>, Long> moved = rebalancer.addSlice("Odd");
+        assertEquals(1, moved.size());
+
+        DistributedJDBCConfiguration conf = (DistributedJDBCConfiguration) emf.getConfiguration();
+        ClassMapping mapping = conf.getMappingRepositoryInstance().getMapping(PObject.class, null, true);
+        ShardFunction function = ((ShardDistributionPolicy) conf.getDistributionPolicyInstance())
+            .getShardFunction(mapping);
+        assertEquals("consistent(Even|Odd)", function.toString());
+
+        List<String> slices = conf.getActiveSliceNames();
+        int odd = 0;
+        EntityManager em = emf.createEntityManager();
+        for (PObject pc : pcs) {
+            PObject found = em.find(PObject.class, pc.getId());
+            assertNotNull(found);
+            assertEquals(pc.getValue(), found.getValue());
+            String slice = function.getSlice(pc.getId(), slices);
+            assertEquals(slice, SlicePersistence.getSlice(found));
+            if ("Odd".equals(slice))
+                odd++;
+        }
+        em.close();
+        assertTrue(odd > 0);
+        assertEquals(Long.valueOf(odd), moved.get(PObject.class));
+        assertEquals(COUNT - odd, count("Even"));
+        assertEquals(odd, count("Odd"));
+    }
+
+    public void testCopiedInstancesAreDeletedByPurge() {
+        persist();
+        SliceRebalancer rebalancer = new SliceRebalancer(
+            (DistributedJDBCBrokerFactory) JPAFacadeHelper.toBrokerFactory(emf));
+        rebalancer.setDeleteMoved(false);
+        long moved = rebalancer.addSlice("Odd").get(PObject.class);
+        assertTrue(moved > 0);
+        assertEquals(COUNT, count("Even"));
+        assertEquals(moved, count("Odd"));
+
+        // a factory configured with the extended function deletes the
+        // former rows
+        OpenJPAEntityManagerFactorySPI emf2 = createEMF(PObject.class,
+            "openjpa.slice.DistributionPolicy", "shard",
+            "openjpa.slice.ShardKeys",
+            "org.apache.openjpa.slice.PObject.id=consistent(Even|Odd)");
+        try {
+            SliceRebalancer purger = new SliceRebalancer(
+                (DistributedJDBCBrokerFactory) JPAFacadeHelper.toBrokerFactory(emf2));
+            purger.setBatchSize(7);
+            assertEquals(Long.valueOf(moved), purger.purge().get(PObject.class));
+            assertEquals(COUNT - moved, count("Even"));
+            assertEquals(moved, count("Odd"));
+            assertEquals(Long.valueOf(0), purger.purge().get(PObject.class));
+        } finally {
+            closeEMF(emf2);
+        }
+    }
+
+    public void testPurgeKeepsInstancesWithoutCopy() {
+        persist();
+        OpenJPAEntityManagerFactorySPI emf2 = createEMF(PObject.class,
+            "openjpa.slice.DistributionPolicy", "shard",
+            "openjpa.slice.ShardKeys",
+            "org.apache.openjpa.slice.PObject.id=consistent(Even|Odd)");
+        try {
+            new SliceRebalancer((DistributedJDBCBrokerFactory)
+                JPAFacadeHelper.toBrokerFactory(emf2)).purge();
+            fail("Expected the purge to find no copy in slice Odd");
+        } catch (StoreException e) {
+            // expected
+        } finally {
+            closeEMF(emf2);
+        }
+        assertEquals(COUNT, count("Even"));
+        assertEquals(0, count("Odd"));
+    }
+
+    public void testFunctionRejectsInvalidExtension() {
+        try {
+            ShardFunction.parse("range(Even<10|Odd)").withSlice("Three",
+                ((DistributedConfiguration) emf.getConfiguration()).getActiveSliceNames());
+            fail("Expected a range function to reject a new slice");
+        } catch (UserException e) {
+            // expected
+        }
+        try {
+            ShardFunction.parse("hash(Even|Odd)").withSlice("Odd",
+                ((DistributedConfiguration) emf.getConfiguration()).getActiveSliceNames());
+            fail("Expected a function to reject a slice it already maps to");
+        } catch (UserException e) {
+            // expected
+        }
+    }
+
+    private PObject[] persist() {
+        PObject[] pcs = new PObject[COUNT];
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        for (int i = 0; i < pcs.length; i++) {
+            pcs[i] = new PObject();
+            pcs[i].setValue(i);
+            em.persist(pcs[i]);
+        }
+        em.getTransaction().commit();
+        em.close();
+        assertEquals(COUNT, count("Even"));
+        assertEquals(0, count("Odd"));
+        return pcs;
+    }
+
+    private long count(String slice) {
+        EntityManager em = emf.createEntityManager();
+        long count = em.createQuery("SELECT COUNT(p) FROM PObject p", Long.class)
+            .setHint(SlicePersistence.HINT_TARGET, slice).getSingleResult();
+        em.close();
+        return count;
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.apache.openjpa.slice.SliceStatistics.Operation;
+
+/**
+ * Tests the selection of the replica that reads of replicated types are
+ * executed on.
+ */
+public class TestReplicaRead extends SingleEMFTestCase {
+    private static final String JPQL = "select p from ReplicatedParent p where p.name=:name";
+
+    @Override
+    public void setUp() {
+        super.setUp(CLEAR_TABLES, "openjpa.slice.ReplicaReadPolicy", "round-robin");
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        ReplicatedParent parent = new ReplicatedParent();
+        parent.setName("parent");
+        em.persist(parent);
+        em.getTransaction().commit();
+        em.close();
+        for (Slice slice : getConfiguration().getSlices(Slice.Status.ACTIVE))
+            slice.getStatistics().reset();
+    }
+
+    @Override
+    protected String getPersistenceUnitName() {
+        return "replication";
+    }
+
+    public void testQueriesAreSpreadAcrossReplicas() {
+        EntityManager em = emf.createEntityManager();
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(em.createQuery(JPQL).setParameter("name", "parent").getSingleResult());
+            em.clear();
+        }
+        em.close();
+        assertSpread(Operation.QUERY, 4);
+    }
+
+    public void testFindsAreSpreadAcrossReplicas() {
+        EntityManager em = emf.createEntityManager();
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(em.find(ReplicatedParent.class, "parent"));
+            em.clear();
+        }
+        em.close();
+        assertSpread(Operation.FIND, 4);
+    }
+
+    public void testTransactionReadsFromOneReplica() {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(em.createQuery(JPQL).setParameter("name", "parent").getSingleResult());
+            em.clear();
+        }
+        em.getTransaction().rollback();
+        em.close();
+        long one = getCount("One", Operation.QUERY);
+        long two = getCount("Two", Operation.QUERY);
+        assertEquals(4, one + two);
+        assertTrue(one == 0 || two == 0);
+    }
+
+    public void testFailedReplicaIsAvoided() {
+        Slice one = new Slice("One", null);
+        Slice two = new Slice("Two", null);
+        one.getStatistics().record(Operation.QUERY, 1000, true);
+        List<Slice> replicas = Arrays.asList(one, two);
+        BalancedReadPolicy policy = new BalancedReadPolicy.RoundRobin();
+        for (int i = 0; i < 4; i++)
+            assertSame(two, policy.select(ReplicatedParent.class, replicas, null));
+
+        one.getStatistics().record(Operation.QUERY, 1000, false);
+        assertSame(one, policy.select(ReplicatedParent.class, replicas, null));
+    }
+
+    public void testSlowReplicaIsAvoided() {
+        Slice one = new Slice("One", null);
+        Slice two = new Slice("Two", null);
+        one.getStatistics().record(Operation.FIND, 5000000, false);
+        two.getStatistics().record(Operation.FIND, 100000, false);
+        List<Slice> replicas = Arrays.asList(one, two);
+        BalancedReadPolicy policy = new BalancedReadPolicy.LatencyWeighted();
+        policy.setSlowThreshold(1);
+        for (int i = 0; i < 10; i++)
+            assertSame(two, policy.select(ReplicatedParent.class, replicas, null));
+    }
+
+    public void testLeastOutstandingReplicaIsSelected() {
+        Slice one = new Slice("One", null);
+        Slice two = new Slice("Two", null);
+        one.getStatistics().begin();
+        List<Slice> replicas = Arrays.asList(one, two);
+        BalancedReadPolicy policy = new BalancedReadPolicy.LeastOutstanding();
+        for (int i = 0; i < 4; i++)
+            assertSame(two, policy.select(ReplicatedParent.class, replicas, null));
+    }
+
+    private void assertSpread(Operation op, long total) {
+        long one = getCount("One", op);
+        long two = getCount("Two", op);
+        assertEquals(total, one + two);
+        assertTrue(one > 0 && two > 0);
+    }
+
+    private DistributedConfiguration getConfiguration() {
+        return (DistributedConfiguration) emf.getConfiguration();
+    }
+
+    private long getCount(String slice, Operation op) {
+        return getConfiguration().getSlice(slice).getStatistics().getCount(op);
+    }
+}
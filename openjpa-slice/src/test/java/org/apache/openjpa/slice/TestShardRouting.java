@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice;
+
+import java.lang.annotation.RetentionPolicy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.apache.openjpa.slice.SliceStatistics.Operation;
+
+/**
+ * Tests the routing of inserts, finds and queries by a declared shard key.
+ */
+public class TestShardRouting extends SliceTestCase {
+
+    @Override
+    protected String getPersistenceUnitName() {
+        return "ordering";
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp(PObject.class, Person.class, Address.class, Country.class,
+                Car.class, Manufacturer.class, CLEAR_TABLES,
+                "openjpa.slice.DistributionPolicy", "shard",
+                "openjpa.slice.ShardKeys",
+                "org.apache.openjpa.slice.Person.name=range(Even<n|Odd),"
+                + "org.apache.openjpa.slice.PObject.id=hash");
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        for (String name : new String[] {"alice", "bob", "xavier", "zoe"})
+            em.persist(new Person(name));
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    public void testInsertIsRoutedByShardKey() {
+        EntityManager em = emf.createEntityManager();
+        List<Person> persons = em.createQuery("SELECT p FROM Person p", Person.class)
+            .getResultList();
+        assertEquals(4, persons.size());
+        for (Person p : persons)
+            assertEquals(p.getName(), p.getName().compareTo("n") < 0 ? "Even" : "Odd",
+                SlicePersistence.getSlice(p));
+        em.close();
+    }
+
+    public void testEqualityOnShardKeyTargetsOneSlice() {
+        resetStatistics();
+        EntityManager em = emf.createEntityManager();
+        List<Person> persons = em.createQuery("SELECT p FROM Person p WHERE p.name = :name",
+            Person.class).setParameter("name", "zoe").getResultList();
+        assertEquals(1, persons.size());
+        assertQueried(0, 1);
+        em.close();
+    }
+
+    public void testInOnShardKeyTargetsMatchingSlices() {
+        resetStatistics();
+        EntityManager em = emf.createEntityManager();
+        List<Person> persons = em.createQuery(
+            "SELECT p FROM Person p WHERE p.name IN ('alice', 'bob')", Person.class)
+            .getResultList();
+        assertEquals(2, persons.size());
+        assertQueried(1, 0);
+
+        persons = em.createQuery("SELECT p FROM Person p WHERE p.name IN :names", Person.class)
+            .setParameter("names", Arrays.asList("alice", "zoe")).getResultList();
+        assertEquals(2, persons.size());
+        assertQueried(2, 1);
+        em.close();
+    }
+
+    public void testQueryWithoutShardKeyIsBroadcast() {
+        resetStatistics();
+        EntityManager em = emf.createEntityManager();
+        List<Person> persons = em.createQuery(
+            "SELECT p FROM Person p WHERE p.name = 'alice' OR p.name LIKE 'z%'", Person.class)
+            .getResultList();
+        assertEquals(2, persons.size());
+        assertQueried(1, 1);
+        em.close();
+    }
+
+    public void testFindByShardKey() {
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        PObject[] pcs = new PObject[6];
+        for (int i = 0; i < pcs.length; i++) {
+            pcs[i] = new PObject();
+            em.persist(pcs[i]);
+        }
+        em.getTransaction().commit();
+        em.close();
+
+        List<String> slices = ((DistributedConfiguration) emf.getConfiguration())
+            .getActiveSliceNames();
+        ShardFunction hash = new ShardFunction(ShardFunction.Type.HASH);
+        em = emf.createEntityManager();
+        for (PObject pc : pcs) {
+            PObject found = em.find(PObject.class, pc.getId());
+            assertNotNull(found);
+            assertEquals(hash.getSlice(pc.getId(), slices), SlicePersistence.getSlice(found));
+        }
+        em.close();
+    }
+
+    public void testHashIsStableAcrossJVMs() {
+        // the slices are pinned, as a key must map to the same slice after
+        // a restart, whatever the hash code of its type
+        List<String> slices = Arrays.asList("Even", "Odd", "Three");
+        ShardFunction hash = ShardFunction.parse("hash(Even|Odd|Three)");
+        assertEquals("Odd", hash.getSlice(TimeUnit.SECONDS, slices));
+        assertEquals("Odd", hash.getSlice(TimeUnit.DAYS, slices));
+        assertEquals("Even", hash.getSlice(RetentionPolicy.RUNTIME, slices));
+        assertEquals("Even", hash.getSlice(42L, slices));
+        assertEquals("Even", hash.getSlice(42, slices));
+        assertEquals("Odd", hash.getSlice(7L, slices));
+        assertEquals(hash.getSlice("SECONDS", slices),
+            hash.getSlice(TimeUnit.SECONDS, slices));
+    }
+
+    private void resetStatistics() {
+        for (Slice slice : ((DistributedConfiguration) emf.getConfiguration())
+                .getSlices(Slice.Status.ACTIVE))
+            slice.getStatistics().reset();
+    }
+
+    private void assertQueried(long even, long odd) {
+        DistributedConfiguration conf = (DistributedConfiguration) emf.getConfiguration();
+        assertEquals(even, conf.getSlice("Even").getStatistics().getCount(Operation.QUERY));
+        assertEquals(odd, conf.getSlice("Odd").getStatistics().getCount(Operation.QUERY));
+    }
+}
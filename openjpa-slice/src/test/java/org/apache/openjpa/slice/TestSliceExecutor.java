@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.slice;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Tests the executor of the operations on the slices of a persistence unit.
+ */
+public class TestSliceExecutor extends SliceTestCase {
+
+    @Override
+    protected String getPersistenceUnitName() {
+        return "ordering";
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp(PObject.class, Person.class, Address.class, Country.class,
+                Car.class, Manufacturer.class, CLEAR_TABLES,
+                "openjpa.slice.ThreadingPolicy", "fixed(MaximumPoolSize=2)");
+    }
+
+    public void testConfiguredPerPersistenceUnit() {
+        SliceExecutor executor = ((DistributedConfiguration) emf
+            .getConfiguration()).getThreadingPolicyInstance();
+        assertEquals(2, executor.getMaximumPoolSize());
+
+        long tasks = executor.getTaskCount();
+        EntityManager em = emf.createEntityManager();
+        em.createQuery("SELECT p FROM PObject p").getResultList();
+        em.close();
+        assertTrue(executor.getTaskCount() > tasks);
+        assertTrue(executor.getTotalExecutionTime() > 0);
+    }
+
+    public void testParallelismIsBounded() throws Exception {
+        SliceExecutor executor = ((DistributedConfiguration) emf
+            .getConfiguration()).getThreadingPolicyInstance();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    int n = running.incrementAndGet();
+                    maxRunning.accumulateAndGet(n, Math::max);
+                    Thread.sleep(20);
+                    running.decrementAndGet();
+                    return SliceExecutor.isSliceThread();
+                }
+            }));
+        }
+        for (Boolean isSliceThread : executor.getAll(futures, null))
+            assertTrue(isSliceThread);
+        assertTrue(String.valueOf(maxRunning), maxRunning.get() <= 2);
+        assertTrue(executor.getMaxWaitTime() > 0);
+        System.out.println("Waited at most " + executor.getMaxWaitTime()
+            / 1000000 + " ms for a thread");
+    }
+
+    public void testTimeoutCancelsOperations() throws Exception {
+        SliceExecutor executor = new SliceExecutor();
+        executor.setTimeout(100);
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        List<Future<Object>> futures = Collections.singletonList(
+            executor.submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    Thread.sleep(10000);
+                    return null;
+                }
+            }));
+        try {
+            executor.getAll(futures, new Runnable() {
+                @Override
+                public void run() {
+                    cancelled.set(true);
+                }
+            });
+            fail("Expected " + TimeoutException.class.getName());
+        } catch (TimeoutException e) {
+            // expected
+        } finally {
+            executor.close();
+        }
+        assertTrue(cancelled.get());
+        assertTrue(futures.get(0).isCancelled());
+        assertEquals(1, executor.getTimeoutCount());
+    }
+}
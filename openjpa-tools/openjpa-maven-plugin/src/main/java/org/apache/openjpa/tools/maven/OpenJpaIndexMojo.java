@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.tools.maven;
+
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
+import org.apache.openjpa.jdbc.conf.JDBCConfigurationImpl;
+import org.apache.openjpa.lib.conf.Configurations;
+import org.apache.openjpa.lib.util.Options;
+import org.apache.openjpa.meta.AbstractCFMetaDataFactory;
+import org.apache.openjpa.meta.DelegatingMetaDataFactory;
+import org.apache.openjpa.meta.MetaDataFactory;
+import org.apache.openjpa.meta.MetaDataIndex;
+
+/**
+ * Writes an index of the persistent types of each persistence unit, so that
+ * the runtime can skip scanning for them. The runtime reads the index if
+ * the unit sets <code>openjpa.MetaDataFactory</code> to e.g.
+ * <code>jpa(Index=META-INF/openjpa/myunit.idx)</code>.
+ *
+ * The index is bound to the prepare-package phase so that it hashes the
+ * class files as they are packaged, after build time enhancement.
+ *
+ * @since 3.1.1
+ */
+@Mojo(name="index", defaultPhase=LifecyclePhase.PREPARE_PACKAGE, requiresDependencyResolution=ResolutionScope.COMPILE)
+public class OpenJpaIndexMojo extends AbstractOpenJpaMojo {
+
+    /**
+     * The directory to write the index of each persistence unit to, as
+     * <code>&lt;unit name&gt;.idx</code>.
+     */
+    @Parameter(defaultValue="${project.build.outputDirectory}/META-INF/openjpa")
+    protected File indexDirectory;
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see org.apache.maven.plugin.Mojo#execute()
+     */
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skipMojo()) {
+            return;
+        }
+
+        extendRealmClasspath();
+
+        Options opts = getOptions();
+        boolean ok = Configurations.runAgainstAllAnchors(opts,
+                new Configurations.Runnable() {
+                    @Override
+                    public boolean run(Options opts) throws IOException {
+                        JDBCConfiguration conf = new JDBCConfigurationImpl();
+                        try {
+                            Configurations.populateConfiguration(conf, opts);
+                            writeIndex(conf.getId(), newIndex(conf));
+                            return true;
+                        } finally {
+                            conf.close();
+                        }
+                    }
+                }
+        );
+
+        if (!ok) {
+            throw new MojoExecutionException("The OpenJPA metadata index could not be written!");
+        }
+    }
+
+    /**
+     * Build the index of the given unit.
+     */
+    private MetaDataIndex newIndex(JDBCConfiguration conf) throws IOException {
+        MetaDataFactory factory = conf.newMetaDataRepositoryInstance().getMetaDataFactory();
+        while (factory instanceof DelegatingMetaDataFactory) {
+            factory = ((DelegatingMetaDataFactory) factory).getDelegate();
+        }
+        if (!(factory instanceof AbstractCFMetaDataFactory)) {
+            throw new IOException("Cannot index the metadata of " + factory);
+        }
+        return ((AbstractCFMetaDataFactory) factory).newIndex(Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Write the index of the given unit to the index directory.
+     */
+    private void writeIndex(String unit, MetaDataIndex index) throws IOException {
+        if (!indexDirectory.exists() && !indexDirectory.mkdirs()) {
+            throw new IOException("Can't create " + indexDirectory.getAbsolutePath());
+        }
+
+        File file = new File(indexDirectory, unit + ".idx");
+        try (OutputStream out = new FileOutputStream(file)) {
+            index.write(out);
+        }
+        getLog().info("Indexed " + index.getTypeNames().size() + " persistent types to " + file);
+    }
+
+    /**
+     * @return Options filled with all necessary plugin parameters
+     */
+    @Override
+    protected Options getOptions() throws MojoExecutionException {
+        return createOptions();
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.tools.maven;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
+import org.apache.openjpa.jdbc.conf.JDBCConfigurationImpl;
+import org.apache.openjpa.lib.conf.Configurations;
+import org.apache.openjpa.lib.util.Options;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.MetaDataModes;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.util.ProxyManagerImpl;
+
+/**
+ * Generates the proxy classes for the custom collection, map, date,
+ * calendar and bean types of the persistent fields of each persistence
+ * unit, so that the runtime loads them instead of generating them on
+ * first use. Proxies of the standard java.util types ship with OpenJPA.
+ *
+ * @since 3.1.1
+ */
+@Mojo(name="proxies", defaultPhase=LifecyclePhase.PROCESS_CLASSES, requiresDependencyResolution=ResolutionScope.COMPILE)
+public class OpenJpaProxyMojo extends AbstractOpenJpaMojo {
+
+    /**
+     * {@inheritDoc}
+     *
+     * @see org.apache.maven.plugin.Mojo#execute()
+     */
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        if (skipMojo()) {
+            return;
+        }
+
+        extendRealmClasspath();
+
+        final File dir = new File(classes, ProxyManagerImpl.class.getPackage().getName().replace('.', File.separatorChar));
+        Options opts = getOptions();
+        boolean ok = Configurations.runAgainstAllAnchors(opts,
+                new Configurations.Runnable() {
+                    @Override
+                    public boolean run(Options opts) throws IOException {
+                        JDBCConfiguration conf = new JDBCConfigurationImpl();
+                        try {
+                            Configurations.populateConfiguration(conf, opts);
+                            Set<Class<?>> types = ProxyManagerImpl.getProxyTypes(loadMetaDatas(conf));
+                            List<String> generated = ProxyManagerImpl.generateBuildTimeProxies(types, dir);
+                            getLog().info("Generated " + generated.size() + " proxies for " + conf.getId());
+                            return true;
+                        } finally {
+                            conf.close();
+                        }
+                    }
+                }
+        );
+
+        if (!ok) {
+            throw new MojoExecutionException("The OpenJPA proxies could not be generated!");
+        }
+    }
+
+    /**
+     * Load the metadata of the persistent types of the given unit.
+     */
+    private ClassMetaData[] loadMetaDatas(JDBCConfiguration conf) throws IOException {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        MetaDataRepository repos = conf.newMetaDataRepositoryInstance();
+        repos.setSourceMode(MetaDataModes.MODE_META);
+
+        Collection<String> names = repos.getPersistentTypeNames(true, loader);
+        List<ClassMetaData> metas = new ArrayList<>();
+        if (names == null) {
+            return new ClassMetaData[0];
+        }
+        for (String name : names) {
+            try {
+                ClassMetaData meta = repos.getMetaData(Class.forName(name, false, loader), loader, false);
+                if (meta != null) {
+                    metas.add(meta);
+                }
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Cannot load persistent type " + name, e);
+            }
+        }
+        return metas.toArray(new ClassMetaData[metas.size()]);
+    }
+
+    /**
+     * @return Options filled with all necessary plugin parameters
+     */
+    @Override
+    protected Options getOptions() throws MojoExecutionException {
+        return createOptions();
+    }
+}